@@ -39,8 +39,11 @@ import java.util.Iterator;
 import java.util.NoSuchElementException;
 import java.util.Queue;
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
 
 import org.deegree.feature.Feature;
 import org.deegree.feature.FeatureCollection;
@@ -65,6 +68,11 @@ public class ThreadedFeatureInputStream implements FeatureInputStream {
 
     private final QueueFiller producer;
 
+    private final Callable<FeatureInputStream> opener;
+
+    // only used if no worker thread was available
+    private FeatureInputStream syncStream;
+
     /**
      * Creates a new {@link ThreadedFeatureInputStream} based on the given {@link FeatureInputStream} that uses the
      * given thread to keep the internal queue of results filled.
@@ -74,13 +82,62 @@ public class ThreadedFeatureInputStream implements FeatureInputStream {
      * @param minFill
      */
     public ThreadedFeatureInputStream( FeatureInputStream rs, int maxFill, int minFill ) {
-        producer = new QueueFiller( rs, maxFill, minFill );
+        producer = new QueueFiller( rs, null, maxFill, minFill, 0 );
+        opener = null;
         service.execute( producer );
     }
 
+    /**
+     * Creates a new {@link ThreadedFeatureInputStream} that opens the backing {@link FeatureInputStream} in a thread of
+     * the given executor as well, e.g. to perform several feature store queries concurrently.
+     * <p>
+     * If the executor rejects the task (e.g. because all of its threads are busy), the stream falls back to opening
+     * the backing stream in the consuming thread when it is iterated for the first time. If opening the stream fails,
+     * the exception is rethrown (wrapped in a {@link RuntimeException}) on iterating.
+     * </p>
+     * 
+     * @param opener
+     *            opens the backing stream when invoked, must not be <code>null</code>
+     * @param maxFill
+     * @param minFill
+     * @param executor
+     *            executor that provides the producer thread, must not be <code>null</code>
+     * @param timeout
+     *            maximum time (in milliseconds) that the producer waits for the consumer to take features from a full
+     *            queue and the consumer waits for the next feature, 0 for no timeout; the producer only starts to
+     *            wait for the consumer once the stream is iterated, so streams that are consumed one after another
+     *            (e.g. in a {@link CombinedFeatureInputStream}) don't time out while waiting for their turn
+     */
+    public ThreadedFeatureInputStream( Callable<FeatureInputStream> opener, int maxFill, int minFill,
+                                       ExecutorService executor, long timeout ) {
+        QueueFiller filler = new QueueFiller( null, opener, maxFill, minFill, timeout );
+        try {
+            executor.execute( filler );
+        } catch ( RejectedExecutionException e ) {
+            LOG.debug( "No worker thread available, stream will be opened synchronously." );
+            filler = null;
+        }
+        this.producer = filler;
+        this.opener = opener;
+    }
+
+    /**
+     * Returns whether the features are produced by a separate thread.
+     * 
+     * @return <code>true</code>, if a separate thread is used, <code>false</code> if the stream is opened
+     *         synchronously
+     */
+    public boolean isThreaded() {
+        return producer != null;
+    }
+
     @Override
     public void close() {
-        producer.exit();
+        if ( producer != null ) {
+            producer.exit();
+        } else if ( syncStream != null ) {
+            syncStream.close();
+        }
     }
 
     @Override
@@ -90,6 +147,18 @@ public class ThreadedFeatureInputStream implements FeatureInputStream {
 
     @Override
     public Iterator<Feature> iterator() {
+        if ( producer == null ) {
+            if ( syncStream == null ) {
+                try {
+                    syncStream = opener.call();
+                } catch ( Exception e ) {
+                    LOG.debug( e.getMessage(), e );
+                    throw new RuntimeException( e.getMessage(), e );
+                }
+            }
+            return syncStream.iterator();
+        }
+        producer.reached();
         return new Iterator<Feature>() {
 
             @Override
@@ -122,28 +191,49 @@ public class ThreadedFeatureInputStream implements FeatureInputStream {
 
     private class QueueFiller implements Runnable {
 
-        private final FeatureInputStream rs;
+        private FeatureInputStream rs;
+
+        private final Callable<FeatureInputStream> opener;
 
         private final Queue<Feature> featureQueue;
 
-        private int minFill;
+        private final int minFill;
+
+        private final long timeout;
+
+        private volatile boolean exitRequested;
+
+        private volatile boolean sleeping;
+
+        private volatile boolean finished;
 
-        private boolean exitRequested;
+        private volatile Throwable failure;
 
-        private boolean sleeping;
+        // number of features taken by the consumer, used to detect stalled consumers
+        private volatile long consumed;
 
-        private boolean finished;
+        // set when the consumer starts iterating, before that a full queue is not a stalled consumer
+        private volatile boolean reached;
 
-        private QueueFiller( FeatureInputStream rs, int maxFill, int minFill ) {
+        private QueueFiller( FeatureInputStream rs, Callable<FeatureInputStream> opener, int maxFill, int minFill,
+                             long timeout ) {
             this.rs = rs;
+            this.opener = opener;
             this.featureQueue = new ArrayBlockingQueue<Feature>( maxFill, true );
             this.minFill = minFill;
+            this.timeout = timeout;
         }
 
         @Override
         public void run() {
             LOG.debug( "Producer thread starting" );
             try {
+                if ( rs == null ) {
+                    if ( exitRequested ) {
+                        return;
+                    }
+                    rs = opener.call();
+                }
                 Iterator<Feature> iter = rs.iterator();
                 try {
                     Feature f = null;
@@ -154,31 +244,40 @@ public class ThreadedFeatureInputStream implements FeatureInputStream {
                         synchronized ( this ) {
                             if ( !featureQueue.offer( f ) ) {
                                 // wait until we get notified that queue needs to be filled up again
-
-                                // LOG.debug( "Producer thread going to sleep: fill=" + featureQueue.size() );
+                                boolean stallTimeout = timeout > 0 && reached;
+                                long consumedBefore = consumed;
                                 sleeping = true;
-                                wait();
+                                wait( stallTimeout ? timeout : 0 );
                                 sleeping = false;
-                                // LOG.debug( "Producer thread waking up: fill=" + featureQueue.size() );
+                                if ( stallTimeout && !exitRequested && consumed == consumedBefore
+                                     && featureQueue.remainingCapacity() == 0 ) {
+                                    throw new TimeoutException( "Consumer did not take any features within "
+                                                                + timeout + " ms." );
+                                }
                             } else {
                                 f = null;
                                 // Wake reading thread
-                                notify();
+                                notifyAll();
                             }
                         }
                     }
                 } catch ( InterruptedException e ) {
                     LOG.debug( "Got interrupted." );
                 }
+            } catch ( Throwable t ) {
+                LOG.debug( t.getMessage(), t );
+                failure = t;
             } finally {
                 finished = true;
-                rs.close();
-                
+                if ( rs != null ) {
+                    rs.close();
+                }
+
                 // Consumer may still be waiting for more input
                 synchronized ( this ) {
-                    notify();
+                    notifyAll();
                 }
-                
+
                 LOG.debug( "Producer thread exiting" );
             }
         }
@@ -188,24 +287,33 @@ public class ThreadedFeatureInputStream implements FeatureInputStream {
             if ( sleeping && fill < minFill ) {
                 // LOG.debug( "Queue below min fill. Waking producer thread." );
                 synchronized ( this ) {
-                    notify();
+                    notifyAll();
                 }
             }
             if ( fill > 0 ) {
                 return true;
             }
-            synchronized (this) {
+            long start = System.currentTimeMillis();
+            synchronized ( this ) {
                 while ( true ) {
                     // LOG.debug( "Queue empty. Checking if more features are coming from producer." );
                     if ( finished && featureQueue.isEmpty() ) {
+                        if ( failure != null ) {
+                            throw new RuntimeException( failure.getMessage(), failure );
+                        }
                         return false;
                     }
                     if ( !featureQueue.isEmpty() ) {
                         return true;
                     }
+                    if ( timeout > 0 && System.currentTimeMillis() - start >= timeout ) {
+                        exit();
+                        throw new RuntimeException( "No features received from producer thread within " + timeout
+                                                    + " ms." );
+                    }
                     try {
-                        wait(1000);
-                    } catch(InterruptedException ex) {
+                        wait( 1000 );
+                    } catch ( InterruptedException ex ) {
                         // Ignore
                     }
                 }
@@ -216,17 +324,22 @@ public class ThreadedFeatureInputStream implements FeatureInputStream {
             if ( !hasNext() ) {
                 throw new NoSuchElementException();
             }
+            consumed++;
             return featureQueue.poll();
         }
 
-        private void exit() {
-            exitRequested = true;
-            if ( sleeping ) {
-                synchronized ( this ) {
-                    notify();
-                }
+        private synchronized void reached() {
+            if ( !reached ) {
+                reached = true;
+                // restart the wait of the producer with the stall timeout
+                notifyAll();
             }
         }
+
+        private synchronized void exit() {
+            exitRequested = true;
+            notifyAll();
+        }
     }
 
     /**
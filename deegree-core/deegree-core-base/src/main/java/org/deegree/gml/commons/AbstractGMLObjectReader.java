@@ -737,7 +737,7 @@ public abstract class AbstractGMLObjectReader extends XMLAdapter {
         return attrs;
     }
 
-    private SimpleProperty createSimpleProperty( XMLStreamReader xmlStream, SimplePropertyType pt, String s )
+    protected SimpleProperty createSimpleProperty( XMLStreamReader xmlStream, SimplePropertyType pt, String s )
                             throws XMLParsingException {
 
         SimpleProperty prop = null;
@@ -0,0 +1,353 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.gml.feature;
+
+import static org.deegree.gml.feature.GMLFeatureReader.BOUNDED_BY_GML31;
+import static org.deegree.gml.feature.GMLFeatureReader.BOUNDED_BY_GML32;
+
+import static org.deegree.commons.tom.primitive.XMLValueMangler.xmlToInternal;
+
+import java.lang.ref.SoftReference;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import javax.xml.namespace.QName;
+
+import org.apache.xerces.xs.XSAttributeDeclaration;
+import org.apache.xerces.xs.XSAttributeUse;
+import org.apache.xerces.xs.XSComplexTypeDefinition;
+import org.apache.xerces.xs.XSElementDeclaration;
+import org.deegree.commons.tom.gml.property.PropertyType;
+import org.deegree.commons.tom.primitive.BaseType;
+import org.deegree.commons.tom.primitive.PrimitiveType;
+import org.deegree.commons.tom.primitive.PrimitiveValue;
+import org.deegree.feature.property.SimpleProperty;
+import org.deegree.feature.types.DynamicFeatureType;
+import org.deegree.feature.types.FeatureType;
+import org.deegree.feature.types.property.SimplePropertyType;
+
+/**
+ * Precompiled information for decoding the property elements of a {@link FeatureType}.
+ * <p>
+ * For every element name that may occur as a property element, the plan provides the (ordered) declarations that the
+ * element may belong to, together with the concrete (substitution) property type. This replaces the scan of the
+ * substitutions of the declarations for every property element. For simple properties, the attribute requirements of
+ * the schema are evaluated once and the parser for the primitive type is bound in advance, so the common case of
+ * property elements without attributes can be decoded directly from the element text.
+ * </p>
+ * <p>
+ * Plans are immutable and shared by all readers (see {@link #getPlan(FeatureType)}).
+ * </p>
+ * 
+ * @see GMLFeatureReader
+ * 
+ * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+class FeatureDecoderPlan {
+
+    // plans of the static feature types, only softly referenced, so feature types that are no longer used can be
+    // collected
+    private static final Map<FeatureType, SoftReference<FeatureDecoderPlan>> PLANS = new WeakHashMap<FeatureType, SoftReference<FeatureDecoderPlan>>();
+
+    private static final ValueParser STRING_PARSER = new ValueParser() {
+        @Override
+        Object parse( String s ) {
+            return s;
+        }
+    };
+
+    private static final ValueParser DOUBLE_PARSER = new ValueParser() {
+        @Override
+        Object parse( String s ) {
+            return new Double( s );
+        }
+    };
+
+    private static final ValueParser DECIMAL_PARSER = new ValueParser() {
+        @Override
+        Object parse( String s ) {
+            return new BigDecimal( s );
+        }
+    };
+
+    private static final ValueParser INTEGER_PARSER = new ValueParser() {
+        @Override
+        Object parse( String s ) {
+            return new BigInteger( s );
+        }
+    };
+
+    private final PropertyType[] decls;
+
+    private final boolean[] isBoundedBy;
+
+    private final Map<QName, Step[]> elementToSteps = new HashMap<QName, Step[]>();
+
+    /**
+     * Compiles the decoder plan for the given {@link FeatureType}.
+     * 
+     * @param ft
+     *            feature type, must not be <code>null</code>
+     */
+    FeatureDecoderPlan( FeatureType ft ) {
+        List<PropertyType> propDecls = ft.getPropertyDeclarations();
+        decls = propDecls.toArray( new PropertyType[propDecls.size()] );
+        isBoundedBy = new boolean[decls.length];
+        Map<QName, List<Step>> steps = new HashMap<QName, List<Step>>();
+        for ( int i = 0; i < decls.length; i++ ) {
+            QName declName = decls[i].getName();
+            isBoundedBy[i] = BOUNDED_BY_GML31.equals( declName ) || BOUNDED_BY_GML32.equals( declName );
+            for ( PropertyType substitution : decls[i].getSubstitutions() ) {
+                List<Step> elSteps = steps.get( substitution.getName() );
+                if ( elSteps == null ) {
+                    elSteps = new ArrayList<Step>( 1 );
+                    steps.put( substitution.getName(), elSteps );
+                }
+                // the first matching substitution of a declaration wins
+                if ( elSteps.isEmpty() || elSteps.get( elSteps.size() - 1 ).declIndex != i ) {
+                    elSteps.add( new Step( i, substitution ) );
+                }
+            }
+        }
+        for ( Map.Entry<QName, List<Step>> entry : steps.entrySet() ) {
+            List<Step> elSteps = entry.getValue();
+            elementToSteps.put( entry.getKey(), elSteps.toArray( new Step[elSteps.size()] ) );
+        }
+    }
+
+    /**
+     * Returns the decoder plan for the given {@link FeatureType}.
+     * <p>
+     * The plan is compiled once and shared, unless the feature type is a {@link DynamicFeatureType} (its declarations
+     * may change while parsing).
+     * </p>
+     * 
+     * @param ft
+     *            feature type, must not be <code>null</code>
+     * @return decoder plan, never <code>null</code>
+     */
+    static FeatureDecoderPlan getPlan( FeatureType ft ) {
+        if ( ft instanceof DynamicFeatureType ) {
+            return new FeatureDecoderPlan( ft );
+        }
+        synchronized ( PLANS ) {
+            SoftReference<FeatureDecoderPlan> ref = PLANS.get( ft );
+            FeatureDecoderPlan plan = ref != null ? ref.get() : null;
+            if ( plan == null ) {
+                plan = new FeatureDecoderPlan( ft );
+                PLANS.put( ft, new SoftReference<FeatureDecoderPlan>( plan ) );
+            }
+            return plan;
+        }
+    }
+
+    private static ValueParser getParser( final BaseType bt ) {
+        switch ( bt ) {
+        case STRING:
+            return STRING_PARSER;
+        case DOUBLE:
+            return DOUBLE_PARSER;
+        case DECIMAL:
+            return DECIMAL_PARSER;
+        case INTEGER:
+            return INTEGER_PARSER;
+        default:
+            return new ValueParser() {
+                @Override
+                Object parse( String s ) {
+                    return xmlToInternal( s, bt );
+                }
+            };
+        }
+    }
+
+    /**
+     * Returns the number of property declarations.
+     * 
+     * @return number of property declarations
+     */
+    int size() {
+        return decls.length;
+    }
+
+    /**
+     * Returns the property declaration with the given index.
+     * 
+     * @param declIndex
+     *            index of the declaration
+     * @return property declaration, never <code>null</code>
+     */
+    PropertyType getDeclaration( int declIndex ) {
+        return decls[declIndex];
+    }
+
+    /**
+     * Returns whether the property declaration with the given index is <code>gml:boundedBy</code>.
+     * 
+     * @param declIndex
+     *            index of the declaration
+     * @return <code>true</code>, if the declaration is <code>gml:boundedBy</code>
+     */
+    boolean isBoundedBy( int declIndex ) {
+        return isBoundedBy[declIndex];
+    }
+
+    /**
+     * Returns the first step for a property element with the given name, starting at the given declaration.
+     * 
+     * @param elName
+     *            name of the property element, must not be <code>null</code>
+     * @param minDeclIndex
+     *            index of the first declaration to consider
+     * @return step, <code>null</code> if the element does not match the given or any following declaration
+     */
+    Step getStep( QName elName, int minDeclIndex ) {
+        Step[] steps = elementToSteps.get( elName );
+        if ( steps != null ) {
+            for ( Step step : steps ) {
+                if ( step.declIndex >= minDeclIndex ) {
+                    return step;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Decoding information for a property element that matches a certain declaration.
+     */
+    static class Step {
+
+        private final int declIndex;
+
+        private final PropertyType pt;
+
+        private final boolean simple;
+
+        private final QName[] requiredAttributes;
+
+        private final PrimitiveType primitiveType;
+
+        private final ValueParser parser;
+
+        private Step( int declIndex, PropertyType pt ) {
+            this.declIndex = declIndex;
+            this.pt = pt;
+            this.simple = pt instanceof SimplePropertyType;
+            this.requiredAttributes = simple ? getRequiredAttributes( pt.getElementDecl() ) : null;
+            this.primitiveType = simple ? ( (SimplePropertyType) pt ).getPrimitiveType() : null;
+            this.parser = simple ? getParser( primitiveType.getBaseType() ) : null;
+        }
+
+        /**
+         * @return index of the matched declaration
+         */
+        int getDeclarationIndex() {
+            return declIndex;
+        }
+
+        /**
+         * @return concrete property type of the element, never <code>null</code>
+         */
+        PropertyType getPropertyType() {
+            return pt;
+        }
+
+        /**
+         * Returns whether the element is a simple property that can be decoded directly from its text, i.e. without
+         * evaluating the schema information for attributes.
+         * 
+         * @param attributeCount
+         *            number of attributes of the element
+         * @return <code>true</code>, if the element can be decoded directly
+         */
+        boolean isDirectlyDecodable( int attributeCount ) {
+            return simple && attributeCount == 0;
+        }
+
+        /**
+         * @return names of the attributes that the schema requires, never <code>null</code> for simple properties
+         */
+        QName[] getRequiredAttributes() {
+            return requiredAttributes;
+        }
+
+        /**
+         * Creates the property for a directly decodable element, using the parser of the primitive type.
+         * 
+         * @param text
+         *            (trimmed) text of the element, must not be <code>null</code>
+         * @return property, never <code>null</code>
+         * @throws IllegalArgumentException
+         *             if the text is not a valid value of the primitive type
+         */
+        SimpleProperty createSimpleProperty( String text ) {
+            return new SimpleProperty( (SimplePropertyType) pt, new PrimitiveValue( parser.parse( text ), text,
+                                                                                    primitiveType ) );
+        }
+
+        private static QName[] getRequiredAttributes( XSElementDeclaration elDecl ) {
+            List<QName> required = new ArrayList<QName>();
+            if ( elDecl != null && elDecl.getTypeDefinition() instanceof XSComplexTypeDefinition ) {
+                XSComplexTypeDefinition xsdValueType = (XSComplexTypeDefinition) elDecl.getTypeDefinition();
+                for ( int i = 0; i < xsdValueType.getAttributeUses().getLength(); i++ ) {
+                    XSAttributeUse attrUse = (XSAttributeUse) xsdValueType.getAttributeUses().item( i );
+                    if ( attrUse.getRequired() ) {
+                        XSAttributeDeclaration attrDecl = attrUse.getAttrDeclaration();
+                        required.add( new QName( attrDecl.getNamespace(), attrDecl.getName() ) );
+                    }
+                }
+            }
+            return required.toArray( new QName[required.size()] );
+        }
+    }
+
+    /**
+     * Converts the text of an element into the internal representation of a primitive type.
+     */
+    private abstract static class ValueParser {
+
+        abstract Object parse( String s );
+    }
+}
@@ -50,7 +50,7 @@ import static org.deegree.feature.types.property.ValueRepresentation.INLINE;
 
 import java.net.URL;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -82,6 +82,7 @@ import org.deegree.feature.types.property.SimplePropertyType;
 import org.deegree.geometry.Envelope;
 import org.deegree.gml.GMLStreamReader;
 import org.deegree.gml.commons.AbstractGMLObjectReader;
+import org.deegree.gml.feature.FeatureDecoderPlan.Step;
 import org.deegree.gml.reference.FeatureReference;
 import org.deegree.gml.schema.GMLAppSchemaReader;
 import org.deegree.gml.schema.WellKnownGMLTypes;
@@ -108,6 +109,9 @@ public class GMLFeatureReader extends AbstractGMLObjectReader {
 
     public static final QName BOUNDED_BY_GML32 = new QName( GML3_2_NS, "boundedBy", "gml" );
 
+    // shared decoder plans of the feature types encountered so far (avoids synchronization for every feature)
+    private final Map<FeatureType, FeatureDecoderPlan> decoderPlans = new HashMap<FeatureType, FeatureDecoderPlan>();
+
     /**
      * Creates a new {@link GMLFeatureReader} instance that is configured from the given {@link GMLStreamReader}.
      * 
@@ -295,8 +299,8 @@ public class GMLFeatureReader extends AbstractGMLObjectReader {
         }
 
         // parse properties
-        Iterator<PropertyType> declIter = ft.getPropertyDeclarations().iterator();
-        PropertyType activeDecl = declIter.next();
+        FeatureDecoderPlan plan = getDecoderPlan( ft );
+        int activeIndex = 0;
         int propOccurences = 0;
 
         ICRS activeCRS = crs;
@@ -331,16 +335,21 @@ public class GMLFeatureReader extends AbstractGMLObjectReader {
                 continue;
             }
 
-            if ( findConcretePropertyType( propName, activeDecl ) != null ) {
+            Step step = plan.getStep( propName, activeIndex );
+            if ( step != null && step.getDeclarationIndex() == activeIndex ) {
                 // current property element is equal to active declaration
+                PropertyType activeDecl = plan.getDeclaration( activeIndex );
                 if ( activeDecl.getMaxOccurs() != -1 && propOccurences > activeDecl.getMaxOccurs() ) {
                     String msg = Messages.getMessage( "ERROR_PROPERTY_TOO_MANY_OCCURENCES", propName,
                                                       activeDecl.getMaxOccurs(), ft.getName() );
                     throw new XMLParsingException( xmlStream, msg );
                 }
             } else {
-                // current property element is not equal to active declaration
-                while ( declIter.hasNext() && findConcretePropertyType( propName, activeDecl ) == null ) {
+                // current property element is not equal to active declaration, skip to the matching one (or to the
+                // last one, if there is none)
+                int targetIndex = step != null ? step.getDeclarationIndex() : plan.size() - 1;
+                while ( activeIndex < targetIndex ) {
+                    PropertyType activeDecl = plan.getDeclaration( activeIndex );
                     if ( propOccurences < activeDecl.getMinOccurs() ) {
                         String msg = null;
                         if ( activeDecl.getMinOccurs() == 1 ) {
@@ -351,20 +360,20 @@ public class GMLFeatureReader extends AbstractGMLObjectReader {
                         }
                         throw new XMLParsingException( xmlStream, msg );
                     }
-                    activeDecl = declIter.next();
+                    activeIndex++;
                     propOccurences = 0;
                 }
-                if ( findConcretePropertyType( propName, activeDecl ) == null ) {
+                if ( step == null ) {
                     String msg = Messages.getMessage( "ERROR_PROPERTY_UNEXPECTED", propName, ft.getName() );
                     throw new XMLParsingException( xmlStream, msg );
                 }
             }
 
-            Property property = parseProperty( xmlStream, findConcretePropertyType( propName, activeDecl ), activeCRS );
+            Property property = parseProperty( xmlStream, step, activeCRS );
             if ( property != null ) {
                 // if this is the "gml:boundedBy" property, override active CRS
                 // (see GML spec. (where???))
-                if ( BOUNDED_BY_GML31.equals( activeDecl.getName() ) || BOUNDED_BY_GML32.equals( activeDecl.getName() ) ) {
+                if ( plan.isBoundedBy( activeIndex ) ) {
                     Envelope bbox = (Envelope) property.getValue();
                     if ( bbox.getCoordinateSystem() != null ) {
                         activeCRS = bbox.getCoordinateSystem();
@@ -398,6 +407,38 @@ public class GMLFeatureReader extends AbstractGMLObjectReader {
         return feature;
     }
 
+    private FeatureDecoderPlan getDecoderPlan( FeatureType ft ) {
+        if ( ft instanceof DynamicFeatureType ) {
+            // declarations may change while parsing
+            return FeatureDecoderPlan.getPlan( ft );
+        }
+        FeatureDecoderPlan plan = decoderPlans.get( ft );
+        if ( plan == null ) {
+            plan = FeatureDecoderPlan.getPlan( ft );
+            decoderPlans.put( ft, plan );
+        }
+        return plan;
+    }
+
+    private Property parseProperty( XMLStreamReaderWrapper xmlStream, Step step, ICRS crs )
+                            throws XMLStreamException, XMLParsingException, UnknownCRSException {
+        if ( !step.isDirectlyDecodable( xmlStream.getAttributeCount() ) ) {
+            return parseProperty( xmlStream, step.getPropertyType(), crs );
+        }
+        QName[] requiredAttributes = step.getRequiredAttributes();
+        if ( requiredAttributes.length > 0 ) {
+            String msg = "Required attribute '" + requiredAttributes[0] + "' is missing.";
+            throw new XMLParsingException( xmlStream, msg );
+        }
+        String text = xmlStream.getElementText().trim();
+        try {
+            return step.createSimpleProperty( text );
+        } catch ( IllegalArgumentException e ) {
+            String msg = "Property '" + step.getPropertyType().getName() + "' is not valid: " + e.getMessage();
+            throw new XMLParsingException( xmlStream, msg );
+        }
+    }
+
     /**
      * Returns a {@link StreamFeatureCollection} that allows stream-based access to the members of the feature
      * collection that the cursor of the given <code>XMLStreamReader</code> points at.
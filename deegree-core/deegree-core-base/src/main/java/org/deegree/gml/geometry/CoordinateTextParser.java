@@ -0,0 +1,326 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.gml.geometry;
+
+import static javax.xml.stream.XMLStreamConstants.CDATA;
+import static javax.xml.stream.XMLStreamConstants.CHARACTERS;
+import static javax.xml.stream.XMLStreamConstants.COMMENT;
+import static javax.xml.stream.XMLStreamConstants.END_DOCUMENT;
+import static javax.xml.stream.XMLStreamConstants.END_ELEMENT;
+import static javax.xml.stream.XMLStreamConstants.ENTITY_REFERENCE;
+import static javax.xml.stream.XMLStreamConstants.PROCESSING_INSTRUCTION;
+import static javax.xml.stream.XMLStreamConstants.SPACE;
+import static javax.xml.stream.XMLStreamConstants.START_ELEMENT;
+
+import java.util.Arrays;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.deegree.commons.xml.XMLParsingException;
+import org.deegree.commons.xml.stax.XMLStreamReaderWrapper;
+
+/**
+ * Parses the text content of coordinate elements (<code>gml:pos</code>, <code>gml:posList</code>,
+ * <code>gml:coordinates</code>, ...) into a <code>double</code> array.
+ * <p>
+ * The text is consumed directly from the character chunks provided by
+ * {@link XMLStreamReaderWrapper#getTextCharacters()}, without building the element text as a {@link String} or
+ * creating tokens. Plain decimal numbers with up to 15 significant digits (the usual case for coordinates) are
+ * converted by a hand-written parser, which yields exactly the same values as {@link Double#parseDouble(String)}.
+ * Everything else is delegated to {@link Double#parseDouble(String)}.
+ * </p>
+ * <p>
+ * Instances keep reusable buffers and are not thread-safe.
+ * </p>
+ * 
+ * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+class CoordinateTextParser {
+
+    private static final String WHITESPACE = " \t\n\r\f";
+
+    // maximum number of significant digits that can be converted exactly
+    private static final int MAX_FAST_DIGITS = 15;
+
+    // powers of ten that are exactly representable as doubles
+    private static final double[] POW10 = { 1E0, 1E1, 1E2, 1E3, 1E4, 1E5, 1E6, 1E7, 1E8, 1E9, 1E10, 1E11, 1E12,
+                                           1E13, 1E14, 1E15, 1E16, 1E17, 1E18, 1E19, 1E20, 1E21, 1E22 };
+
+    private double[] values = new double[256];
+
+    private int numValues;
+
+    private char[] token = new char[32];
+
+    private int tokenLength;
+
+    private String coordinateSeparators;
+
+    private String tupleSeparators;
+
+    private int tupleDim;
+
+    private int currentTupleDim;
+
+    /**
+     * Parses the whitespace-separated list of doubles contained in the current element.
+     * <p>
+     * On return, the stream points at the corresponding <code>END_ELEMENT</code> event.
+     * </p>
+     * 
+     * @param xmlStream
+     *            must point at a <code>START_ELEMENT</code> event, never <code>null</code>
+     * @return parsed values, never <code>null</code>
+     * @throws XMLParsingException
+     *             if a value cannot be parsed as a double
+     * @throws XMLStreamException
+     */
+    double[] parseDoubleList( XMLStreamReaderWrapper xmlStream )
+                            throws XMLParsingException, XMLStreamException {
+        parse( xmlStream, null, null );
+        return Arrays.copyOf( values, numValues );
+    }
+
+    /**
+     * Parses the tuples contained in the current element (e.g. <code>gml:coordinates</code>).
+     * <p>
+     * Besides the given separators, whitespace is accepted as tuple separator as well. On return, the stream points at
+     * the corresponding <code>END_ELEMENT</code> event.
+     * </p>
+     * 
+     * @param xmlStream
+     *            must point at a <code>START_ELEMENT</code> event, never <code>null</code>
+     * @param cs
+     *            coordinate separator chars, must not be <code>null</code>
+     * @param ts
+     *            tuple separator chars, must not be <code>null</code>
+     * @return parsed values (tuple by tuple), never <code>null</code>
+     * @throws XMLParsingException
+     *             if a value cannot be parsed as a double or the tuples have different dimensions
+     * @throws XMLStreamException
+     */
+    double[] parseTuples( XMLStreamReaderWrapper xmlStream, String cs, String ts )
+                            throws XMLParsingException, XMLStreamException {
+        parse( xmlStream, cs, ts );
+        return Arrays.copyOf( values, numValues );
+    }
+
+    /**
+     * Returns the dimension of the tuples parsed by the last call to
+     * {@link #parseTuples(XMLStreamReaderWrapper, String, String)}.
+     * 
+     * @return dimension of the tuples, <code>-1</code> if no tuple has been parsed
+     */
+    int getTupleDimension() {
+        return tupleDim;
+    }
+
+    private void parse( XMLStreamReaderWrapper xmlStream, String cs, String ts )
+                            throws XMLParsingException, XMLStreamException {
+        if ( xmlStream.getEventType() != START_ELEMENT ) {
+            throw new XMLStreamException( "parser must be on START_ELEMENT to read next text",
+                                          xmlStream.getLocation() );
+        }
+        coordinateSeparators = cs;
+        tupleSeparators = ts;
+        numValues = 0;
+        tokenLength = 0;
+        tupleDim = -1;
+        currentTupleDim = 0;
+
+        int eventType = xmlStream.next();
+        while ( eventType != END_ELEMENT ) {
+            if ( eventType == CHARACTERS || eventType == CDATA || eventType == SPACE ) {
+                char[] chars = xmlStream.getTextCharacters();
+                consume( xmlStream, chars, xmlStream.getTextStart(), xmlStream.getTextLength() );
+            } else if ( eventType == ENTITY_REFERENCE ) {
+                String text = xmlStream.getText();
+                consume( xmlStream, text.toCharArray(), 0, text.length() );
+            } else if ( eventType == PROCESSING_INSTRUCTION || eventType == COMMENT ) {
+                // skipping
+            } else if ( eventType == END_DOCUMENT ) {
+                throw new XMLStreamException( "unexpected end of document when reading element text content",
+                                              xmlStream.getLocation() );
+            } else if ( eventType == START_ELEMENT ) {
+                throw new XMLStreamException( "element text content may not contain START_ELEMENT",
+                                              xmlStream.getLocation() );
+            } else {
+                throw new XMLStreamException( "Unexpected event type " + eventType, xmlStream.getLocation() );
+            }
+            eventType = xmlStream.next();
+        }
+        endToken( xmlStream );
+        endTuple( xmlStream );
+    }
+
+    private void consume( XMLStreamReaderWrapper xmlStream, char[] chars, int start, int length )
+                            throws XMLParsingException {
+        int end = start + length;
+        for ( int i = start; i < end; i++ ) {
+            char c = chars[i];
+            if ( coordinateSeparators == null ) {
+                if ( WHITESPACE.indexOf( c ) != -1 ) {
+                    endToken( xmlStream );
+                    continue;
+                }
+            } else if ( coordinateSeparators.indexOf( c ) != -1 ) {
+                endToken( xmlStream );
+                continue;
+            } else if ( tupleSeparators.indexOf( c ) != -1 || WHITESPACE.indexOf( c ) != -1 ) {
+                endToken( xmlStream );
+                endTuple( xmlStream );
+                continue;
+            }
+            if ( tokenLength == token.length ) {
+                token = Arrays.copyOf( token, tokenLength * 2 );
+            }
+            token[tokenLength++] = c;
+        }
+    }
+
+    private void endToken( XMLStreamReaderWrapper xmlStream )
+                            throws XMLParsingException {
+        if ( tokenLength == 0 ) {
+            return;
+        }
+        if ( numValues == values.length ) {
+            values = Arrays.copyOf( values, numValues * 2 );
+        }
+        values[numValues++] = parseToken( xmlStream );
+        tokenLength = 0;
+        currentTupleDim++;
+    }
+
+    private void endTuple( XMLStreamReaderWrapper xmlStream )
+                            throws XMLParsingException {
+        if ( currentTupleDim == 0 || coordinateSeparators == null ) {
+            return;
+        }
+        if ( tupleDim == -1 ) {
+            tupleDim = currentTupleDim;
+        } else if ( tupleDim != currentTupleDim ) {
+            String msg = "Cannot parse coordinates: tuples with " + tupleDim + " and " + currentTupleDim
+                         + " values found. All tuples must have the same dimension.";
+            throw new XMLParsingException( xmlStream, msg );
+        }
+        currentTupleDim = 0;
+    }
+
+    private double parseToken( XMLStreamReaderWrapper xmlStream )
+                            throws XMLParsingException {
+        int i = 0;
+        boolean negative = false;
+        if ( token[0] == '-' || token[0] == '+' ) {
+            negative = token[0] == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int significantDigits = 0;
+        int exponent = 0;
+        boolean digitFound = false;
+        boolean fast = true;
+        for ( ; i < tokenLength && isDigit( token[i] ); i++ ) {
+            digitFound = true;
+            int digit = token[i] - '0';
+            if ( mantissa != 0 || digit != 0 ) {
+                if ( ++significantDigits > MAX_FAST_DIGITS ) {
+                    fast = false;
+                    break;
+                }
+                mantissa = mantissa * 10 + digit;
+            }
+        }
+        if ( fast && i < tokenLength && token[i] == '.' ) {
+            for ( i++; i < tokenLength && isDigit( token[i] ); i++ ) {
+                digitFound = true;
+                int digit = token[i] - '0';
+                if ( mantissa != 0 || digit != 0 ) {
+                    if ( ++significantDigits > MAX_FAST_DIGITS ) {
+                        fast = false;
+                        break;
+                    }
+                    mantissa = mantissa * 10 + digit;
+                }
+                exponent--;
+            }
+        }
+        if ( fast && digitFound && i < tokenLength && ( token[i] == 'e' || token[i] == 'E' ) ) {
+            i++;
+            boolean negativeExponent = false;
+            if ( i < tokenLength && ( token[i] == '-' || token[i] == '+' ) ) {
+                negativeExponent = token[i] == '-';
+                i++;
+            }
+            int exponentStart = i;
+            int explicitExponent = 0;
+            for ( ; i < tokenLength && isDigit( token[i] ) && explicitExponent < 1000; i++ ) {
+                explicitExponent = explicitExponent * 10 + ( token[i] - '0' );
+            }
+            if ( i == exponentStart ) {
+                fast = false;
+            }
+            exponent += negativeExponent ? -explicitExponent : explicitExponent;
+        }
+        if ( fast && digitFound && i == tokenLength ) {
+            if ( mantissa == 0 ) {
+                return negative ? -0.0 : 0.0;
+            }
+            // mantissa and power of ten are exact, so a single (correctly rounded) operation is needed
+            if ( exponent >= 0 && exponent < POW10.length ) {
+                double value = mantissa * POW10[exponent];
+                return negative ? -value : value;
+            }
+            if ( exponent < 0 && -exponent < POW10.length ) {
+                double value = mantissa / POW10[-exponent];
+                return negative ? -value : value;
+            }
+        }
+        String s = new String( token, 0, tokenLength );
+        try {
+            return Double.parseDouble( s );
+        } catch ( NumberFormatException e ) {
+            String msg = "Value '" + s + "' cannot be parsed as a double.";
+            throw new XMLParsingException( xmlStream, msg );
+        }
+    }
+
+    private static boolean isDigit( char c ) {
+        return c >= '0' && c <= '9';
+    }
+}
@@ -37,12 +37,10 @@ package org.deegree.gml.geometry;
 import static javax.xml.stream.XMLStreamConstants.END_ELEMENT;
 import static javax.xml.stream.XMLStreamConstants.START_ELEMENT;
 
-import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
-import java.util.StringTokenizer;
 
 import javax.xml.namespace.QName;
 import javax.xml.stream.XMLStreamConstants;
@@ -154,6 +152,8 @@ public class GML2GeometryReader extends AbstractGMLObjectReader implements GMLGe
 
     private GeometryFactory geomFac;
 
+    private final CoordinateTextParser coordinateParser = new CoordinateTextParser();
+
     /**
      * Creates a new {@link GML2GeometryReader} for the given {@link GMLStreamReader}.
      * 
@@ -600,24 +600,25 @@ public class GML2GeometryReader extends AbstractGMLObjectReader implements GMLGe
         ICRS crs = determineActiveCRS( xmlStream, defaultCRS );
         xmlStream.nextTag();
 
-        List<Point> points = null;
+        Points points = null;
         if ( xmlStream.getEventType() == XMLStreamConstants.START_ELEMENT ) {
             String name = xmlStream.getLocalName();
             if ( "coordinates".equals( name ) ) {
                 points = parseCoordinates( xmlStream, crs );
                 xmlStream.nextTag();
             } else {
-                points = new LinkedList<Point>();
+                List<Point> pointList = new LinkedList<Point>();
                 do {
                     if ( "coord".equals( name ) ) {
                         double[] coords = parseCoordType( xmlStream );
                         // anonymous point (no registering necessary)
-                        points.add( geomFac.createPoint( null, coords, crs ) );
+                        pointList.add( geomFac.createPoint( null, coords, crs ) );
                     } else {
                         String msg = "Error in 'gml:Envelope' element.";
                         throw new XMLParsingException( xmlStream, msg );
                     }
                 } while ( xmlStream.nextTag() == XMLStreamConstants.START_ELEMENT );
+                points = geomFac.createPoints( pointList );
             }
         }
 
@@ -653,24 +654,25 @@ public class GML2GeometryReader extends AbstractGMLObjectReader implements GMLGe
         ICRS crs = determineActiveCRS( xmlStream, defaultCRS );
         xmlStream.nextTag();
 
-        List<Point> points = null;
+        Points points = null;
         if ( xmlStream.getEventType() == XMLStreamConstants.START_ELEMENT ) {
             String name = xmlStream.getLocalName();
             if ( "coordinates".equals( name ) ) {
                 points = parseCoordinates( xmlStream, crs );
                 xmlStream.nextTag();
             } else {
-                points = new LinkedList<Point>();
+                List<Point> pointList = new LinkedList<Point>();
                 do {
                     if ( "coord".equals( name ) ) {
                         double[] coords = parseCoordType( xmlStream );
                         // anonymous point (no registering necessary)
-                        points.add( geomFac.createPoint( null, coords, crs ) );
+                        pointList.add( geomFac.createPoint( null, coords, crs ) );
                     } else {
                         String msg = "Error in 'gml:LineString' element.";
                         throw new XMLParsingException( xmlStream, msg );
                     }
                 } while ( xmlStream.nextTag() == XMLStreamConstants.START_ELEMENT );
+                points = geomFac.createPoints( pointList );
             }
         }
 
@@ -678,7 +680,7 @@ public class GML2GeometryReader extends AbstractGMLObjectReader implements GMLGe
             String msg = "Error in 'gml:LineString' element. Must consist of two points at least.";
             throw new XMLParsingException( xmlStream, msg );
         }
-        LineString lineString = geomFac.createLineString( gid, crs, geomFac.createPoints( points ) );
+        LineString lineString = geomFac.createLineString( gid, crs, points );
         idContext.addObject( lineString );
         return lineString;
     }
@@ -780,7 +782,7 @@ public class GML2GeometryReader extends AbstractGMLObjectReader implements GMLGe
 
     private Points parseControlPoints( XMLStreamReaderWrapper xmlStream, ICRS crs )
                             throws XMLStreamException {
-        List<Point> controlPoints = null;
+        Points controlPoints = null;
 
         if ( xmlStream.getEventType() == XMLStreamConstants.START_ELEMENT ) {
             String name = xmlStream.getLocalName();
@@ -788,20 +790,21 @@ public class GML2GeometryReader extends AbstractGMLObjectReader implements GMLGe
                 controlPoints = parseCoordinates( xmlStream, crs );
                 xmlStream.nextTag();
             } else {
-                controlPoints = new LinkedList<Point>();
+                List<Point> pointList = new LinkedList<Point>();
                 do {
                     name = xmlStream.getLocalName();
                     if ( "coord".equals( name ) ) {
                         double[] coords = parseCoordType( xmlStream );
                         // anonymous point (no registering necessary)
-                        controlPoints.add( geomFac.createPoint( null, coords, crs ) );
+                        pointList.add( geomFac.createPoint( null, coords, crs ) );
                     } else {
                         break;
                     }
                 } while ( xmlStream.nextTag() == XMLStreamConstants.START_ELEMENT );
+                controlPoints = geomFac.createPoints( pointList );
             }
         }
-        return geomFac.createPoints( controlPoints );
+        return controlPoints;
     }
 
     /**
@@ -831,12 +834,12 @@ public class GML2GeometryReader extends AbstractGMLObjectReader implements GMLGe
         if ( xmlStream.getEventType() == START_ELEMENT ) {
             String name = xmlStream.getLocalName();
             if ( "coordinates".equals( name ) ) {
-                List<Point> points = parseCoordinates( xmlStream, crs );
+                Points points = parseCoordinates( xmlStream, crs );
                 if ( points.size() != 1 ) {
                     String msg = "A gml:Point element must contain exactly one tuple of coordinates.";
                     throw new XMLParsingException( xmlStream, msg );
                 }
-                point = points.get( 0 );
+                point = geomFac.createPoint( null, points.get( 0 ).getAsArray(), crs );
             } else if ( "coord".equals( name ) ) {
                 double[] coords = parseCoordType( xmlStream );
                 point = geomFac.createPoint( gid, coords, crs );
@@ -903,7 +906,7 @@ public class GML2GeometryReader extends AbstractGMLObjectReader implements GMLGe
         return new double[] { x, y, z };
     }
 
-    private List<Point> parseCoordinates( XMLStreamReaderWrapper xmlStream, ICRS crs )
+    private Points parseCoordinates( XMLStreamReaderWrapper xmlStream, ICRS crs )
                             throws XMLStreamException {
 
         String decimalSeparator = xmlStream.getAttributeValueWDefault( "decimal", "." );
@@ -915,36 +918,9 @@ public class GML2GeometryReader extends AbstractGMLObjectReader implements GMLGe
         String coordinateSeparator = xmlStream.getAttributeValueWDefault( "cs", "," );
         String tupleSeparator = xmlStream.getAttributeValueWDefault( "ts", " " );
 
-        String text = xmlStream.getElementText();
-
-        List<String> tuples = new LinkedList<String>();
-        StringTokenizer tupleTokenizer = new StringTokenizer( text, tupleSeparator + "\n" );
-        while ( tupleTokenizer.hasMoreTokens() ) {
-            String newToken = tupleTokenizer.nextToken();
-            if ( newToken != null && newToken.trim().length() > 0 ) {
-                tuples.add( newToken );
-            }
-        }
-
-        List<Point> points = new ArrayList<Point>( tuples.size() );
-        for ( int i = 0; i < tuples.size(); i++ ) {
-            StringTokenizer coordinateTokenizer = new StringTokenizer( tuples.get( i ), coordinateSeparator );
-            List<String> tokens = new ArrayList<String>();
-            while ( coordinateTokenizer.hasMoreTokens() ) {
-                tokens.add( coordinateTokenizer.nextToken() );
-            }
-            double[] tuple = new double[tokens.size()];
-            for ( int j = 0; j < tuple.length; j++ ) {
-                try {
-                    tuple[j] = Double.parseDouble( tokens.get( j ) );
-                } catch ( NumberFormatException e ) {
-                    String msg = "Value '" + tokens.get( j ) + "' cannot be parsed as a double.";
-                    throw new XMLParsingException( xmlStream, msg );
-                }
-            }
-            points.add( geomFac.createPoint( null, tuple, crs ) );
-        }
-        return points;
+        double[] coords = coordinateParser.parseTuples( xmlStream, coordinateSeparator, tupleSeparator );
+        int dim = coordinateParser.getTupleDimension();
+        return geomFac.createPoints( crs, coords, dim == -1 ? 2 : dim );
     }
 
     private ICRS determineActiveCRS( XMLStreamReaderWrapper xmlStream, ICRS defaultCRS ) {
@@ -52,6 +52,7 @@ import org.deegree.geometry.composite.CompositeCurve;
 import org.deegree.geometry.composite.CompositeGeometry;
 import org.deegree.geometry.composite.CompositeSolid;
 import org.deegree.geometry.composite.CompositeSurface;
+import org.deegree.geometry.io.CoordinateCharBuffer;
 import org.deegree.geometry.io.CoordinateFormatter;
 import org.deegree.geometry.io.DecimalCoordinateFormatter;
 import org.deegree.geometry.multi.MultiCurve;
@@ -96,6 +97,9 @@ public class GML2GeometryWriter extends AbstractGMLObjectWriter implements GMLGe
 
     private CoordinateFormatter formatter;
 
+    // reused for assembling the text content of coordinates elements
+    private final CoordinateCharBuffer coordBuffer;
+
     private CoordinateTransformer transformer;
 
     private double[] transformedOrdinates;
@@ -128,6 +132,7 @@ public class GML2GeometryWriter extends AbstractGMLObjectWriter implements GMLGe
         if ( formatter == null ) {
             formatter = new DecimalCoordinateFormatter( crsUnits );
         }
+        coordBuffer = new CoordinateCharBuffer( formatter );
     }
 
     @SuppressWarnings("unchecked")
@@ -215,21 +220,15 @@ public class GML2GeometryWriter extends AbstractGMLObjectWriter implements GMLGe
         writer.writeAttribute( "decimal", "." );
         writer.writeAttribute( "cs", "," );
         writer.writeAttribute( "ts", " " );
-        StringBuilder sb = new StringBuilder();
-        boolean first = true;
+        coordBuffer.reset();
         for ( Point point : points ) {
-            if ( !first ) {
-                sb.append( " " );
+            if ( !coordBuffer.isEmpty() ) {
+                coordBuffer.append( ' ' );
             }
             double[] ords = getTransformedCoordinate( point.getCoordinateSystem(), point.getAsArray() );
-            sb.append( formatter.format( ords[0] ) );
-            for ( int i = 1; i < ords.length; i++ ) {
-                sb.append( "," );
-                sb.append( formatter.format( ords[i] ) );
-            }
-            first = false;
+            coordBuffer.append( ords, ',' );
         }
-        writer.writeCharacters( sb.toString() );
+        writer.writeCharacters( coordBuffer.getChars(), 0, coordBuffer.length() );
         writer.writeEndElement();
     }
 
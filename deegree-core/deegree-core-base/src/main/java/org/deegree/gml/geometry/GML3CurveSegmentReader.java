@@ -795,24 +795,25 @@ class GML3CurveSegmentReader extends GML3GeometryBaseReader {
 
         // the #parseControlPoints(String) method is not used here, because the GML 3.1.1 schema defines a slightly
         // different model here (no 'gml:coordinates' and no 'gml:coordinates' element)
-        List<Point> points = null;
+        Points points = null;
         if ( xmlStream.nextTag() == XMLStreamConstants.START_ELEMENT ) {
             String name = xmlStream.getLocalName();
             if ( "posList".equals( name ) ) {
                 points = parsePosList( xmlStream, defaultCRS );
                 xmlStream.nextTag();
             } else {
-                points = new LinkedList<Point>();
+                List<Point> pointList = new LinkedList<Point>();
                 do {
                     name = xmlStream.getLocalName();
                     if ( "pos".equals( name ) ) {
-                        points.add( parseDirectPositionType( xmlStream, defaultCRS ) );
+                        pointList.add( parseDirectPositionType( xmlStream, defaultCRS ) );
                     } else if ( "pointProperty".equals( name ) ) {
-                        points.add( geometryParser.parsePointProperty( xmlStream, defaultCRS ) );
+                        pointList.add( geometryParser.parsePointProperty( xmlStream, defaultCRS ) );
                     } else {
                         break;
                     }
                 } while ( xmlStream.nextTag() == XMLStreamConstants.START_ELEMENT );
+                points = geomFac.createPoints( pointList );
             }
         }
 
@@ -848,24 +849,25 @@ class GML3CurveSegmentReader extends GML3GeometryBaseReader {
 
         // the #parseControlPoints(String) method is not used here, because the GML 3.1.1 schema defines a slightly
         // different model here (no 'gml:coordinates' and no 'gml:coordinates' element)
-        List<Point> points = null;
+        Points points = null;
         if ( xmlStream.nextTag() == XMLStreamConstants.START_ELEMENT ) {
             String name = xmlStream.getLocalName();
             if ( "posList".equals( name ) ) {
                 points = parsePosList( xmlStream, defaultCRS );
                 xmlStream.nextTag();
             } else {
-                points = new LinkedList<Point>();
+                List<Point> pointList = new LinkedList<Point>();
                 do {
                     name = xmlStream.getLocalName();
                     if ( "pos".equals( name ) ) {
-                        points.add( parseDirectPositionType( xmlStream, defaultCRS ) );
+                        pointList.add( parseDirectPositionType( xmlStream, defaultCRS ) );
                     } else if ( "pointProperty".equals( name ) ) {
-                        points.add( geometryParser.parsePointProperty( xmlStream, defaultCRS ) );
+                        pointList.add( geometryParser.parsePointProperty( xmlStream, defaultCRS ) );
                     } else {
                         break;
                     }
                 } while ( xmlStream.nextTag() == XMLStreamConstants.START_ELEMENT );
+                points = geomFac.createPoints( pointList );
             }
         }
 
@@ -874,7 +876,7 @@ class GML3CurveSegmentReader extends GML3GeometryBaseReader {
             throw new XMLParsingException( xmlStream, msg );
         }
         xmlStream.require( XMLStreamConstants.END_ELEMENT, gmlNs, "GeodesicString" );
-        return geomFac.createGeodesicString( geomFac.createPoints( points ) );
+        return geomFac.createGeodesicString( points );
     }
 
     /**
@@ -987,7 +989,7 @@ class GML3CurveSegmentReader extends GML3GeometryBaseReader {
     Points parseControlPoints( XMLStreamReaderWrapper xmlStream, ICRS crs )
                             throws XMLParsingException, XMLStreamException, UnknownCRSException {
 
-        List<Point> controlPoints = null;
+        Points controlPoints = null;
 
         if ( xmlStream.getEventType() == XMLStreamConstants.START_ELEMENT ) {
             String name = xmlStream.getLocalName();
@@ -999,26 +1001,27 @@ class GML3CurveSegmentReader extends GML3GeometryBaseReader {
                 controlPoints = parseCoordinates( xmlStream, crs );
                 xmlStream.nextTag();
             } else {
-                controlPoints = new LinkedList<Point>();
+                List<Point> pointList = new LinkedList<Point>();
                 do {
                     name = xmlStream.getLocalName();
                     if ( "pos".equals( name ) ) {
-                        controlPoints.add( parseDirectPositionType( xmlStream, crs ) );
+                        pointList.add( parseDirectPositionType( xmlStream, crs ) );
                     } else if ( "pointProperty".equals( name ) || "pointRep".equals( name ) ) {
                         // pointRep has been deprecated since GML 3.1.0, only included for backward compatibility
-                        controlPoints.add( geometryParser.parsePointProperty( xmlStream, crs ) );
+                        pointList.add( geometryParser.parsePointProperty( xmlStream, crs ) );
                     } else if ( "coord".equals( name ) ) {
                         // deprecated since GML 3.0, only included for backward compatibility
                         double[] coords = parseCoordType( xmlStream );
                         // anonymous point (no registering necessary)
-                        controlPoints.add( geomFac.createPoint( null, coords, crs ) );
+                        pointList.add( geomFac.createPoint( null, coords, crs ) );
                     } else {
                         break;
                     }
                 } while ( xmlStream.nextTag() == XMLStreamConstants.START_ELEMENT );
+                controlPoints = geomFac.createPoints( pointList );
             }
         }
-        return geomFac.createPoints( controlPoints );
+        return controlPoints;
     }
 
     private void validateInterpolationAttribute( XMLStreamReaderWrapper xmlStream, String expected )
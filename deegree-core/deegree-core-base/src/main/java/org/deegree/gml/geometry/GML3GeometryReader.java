@@ -1091,12 +1091,12 @@ public class GML3GeometryReader extends GML3GeometryBaseReader implements GMLGeo
                 double[] coords = parseDoubleList( xmlStream );
                 point = geomFac.createPoint( gid, coords, crs );
             } else if ( "coordinates".equals( name ) ) {
-                List<Point> points = parseCoordinates( xmlStream, crs );
+                Points points = parseCoordinates( xmlStream, crs );
                 if ( points.size() != 1 ) {
                     String msg = "A gml:Point (or derived) element must contain exactly one tuple of coordinates.";
                     throw new XMLParsingException( xmlStream, msg );
                 }
-                point = points.get( 0 );
+                point = geomFac.createPoint( null, points.get( 0 ).getAsArray(), crs );
             } else if ( "coord".equals( name ) ) {
                 // deprecated since GML 3.0, only included for backward compatibility
                 double[] coords = parseCoordType( xmlStream );
@@ -1152,7 +1152,7 @@ public class GML3GeometryReader extends GML3GeometryBaseReader implements GMLGeo
         GMLObjectType type = getType( xmlStream );
         List<Property> props = readStandardProperties( xmlStream, type, crs );
 
-        List<Point> points = null;
+        Points points = null;
         if ( xmlStream.getEventType() == XMLStreamConstants.START_ELEMENT ) {
             String name = xmlStream.getLocalName();
             if ( "posList".equals( name ) ) {
@@ -1163,25 +1163,26 @@ public class GML3GeometryReader extends GML3GeometryBaseReader implements GMLGeo
                 points = parseCoordinates( xmlStream, crs );
                 xmlStream.nextTag();
             } else {
-                points = new LinkedList<Point>();
+                List<Point> pointList = new LinkedList<Point>();
                 do {
                     if ( "pos".equals( name ) ) {
                         double[] coords = parseDoubleList( xmlStream );
                         // anonymous point (no registering necessary)
-                        points.add( geomFac.createPoint( null, coords, crs ) );
+                        pointList.add( geomFac.createPoint( null, coords, crs ) );
                     } else if ( "pointProperty".equals( name ) || "pointRep".equals( name ) ) {
                         // pointRep has been deprecated since GML 3.1.0, only included for backward compatibility
-                        points.add( parsePointProperty( xmlStream, crs ) );
+                        pointList.add( parsePointProperty( xmlStream, crs ) );
                     } else if ( "coord".equals( name ) ) {
                         // deprecated since GML 3.0, only included for backward compatibility
                         double[] coords = parseCoordType( xmlStream );
                         // anonymous point (no registering necessary)
-                        points.add( geomFac.createPoint( null, coords, crs ) );
+                        pointList.add( geomFac.createPoint( null, coords, crs ) );
                     } else {
                         String msg = "Error in 'gml:LineString' element.";
                         throw new XMLParsingException( xmlStream, msg );
                     }
                 } while ( xmlStream.nextTag() == XMLStreamConstants.START_ELEMENT );
+                points = geomFac.createPoints( pointList );
             }
         }
 
@@ -1190,7 +1191,7 @@ public class GML3GeometryReader extends GML3GeometryBaseReader implements GMLGeo
             throw new XMLParsingException( xmlStream, msg );
         }
 
-        LineString lineString = geomFac.createLineString( gid, crs, geomFac.createPoints( points ) );
+        LineString lineString = geomFac.createLineString( gid, crs, points );
         lineString.setType( type );
 
         props.addAll( readAdditionalProperties( xmlStream, type, crs ) );
@@ -1681,7 +1682,7 @@ public class GML3GeometryReader extends GML3GeometryBaseReader implements GMLGeo
         Length maxLength = parseLengthType( xmlStream );
         xmlStream.nextTag();
 
-        List<Point> controlPoints = null;
+        Points controlPoints = null;
         xmlStream.require( START_ELEMENT, gmlNs, "controlPoint" );
         if ( xmlStream.nextTag() == XMLStreamConstants.START_ELEMENT ) {
             String name = xmlStream.getLocalName();
@@ -1689,18 +1690,19 @@ public class GML3GeometryReader extends GML3GeometryBaseReader implements GMLGeo
                 controlPoints = parsePosList( xmlStream, crs );
                 xmlStream.nextTag();
             } else {
-                controlPoints = new LinkedList<Point>();
+                List<Point> pointList = new LinkedList<Point>();
                 do {
                     if ( "pos".equals( name ) ) {
                         double[] coords = parseDoubleList( xmlStream );
-                        controlPoints.add( geomFac.createPoint( gid, coords, crs ) );
+                        pointList.add( geomFac.createPoint( gid, coords, crs ) );
                     } else if ( "pointProperty".equals( name ) ) {
-                        controlPoints.add( parsePointProperty( xmlStream, crs ) );
+                        pointList.add( parsePointProperty( xmlStream, crs ) );
                     } else {
                         String msg = "Error in 'gml:Tin' element.";
                         throw new XMLParsingException( xmlStream, msg );
                     }
                 } while ( xmlStream.nextTag() == XMLStreamConstants.START_ELEMENT );
+                controlPoints = geomFac.createPoints( pointList );
             }
         }
         nextElement( xmlStream );
@@ -1710,8 +1712,7 @@ public class GML3GeometryReader extends GML3GeometryBaseReader implements GMLGeo
             throw new XMLParsingException( xmlStream, msg );
         }
 
-        Tin tin = geomFac.createTin( gid, crs, stopLines, breakLines, maxLength, geomFac.createPoints( controlPoints ),
-                                     memberPatches );
+        Tin tin = geomFac.createTin( gid, crs, stopLines, breakLines, maxLength, controlPoints, memberPatches );
         tin.setType( type );
 
         props.addAll( readAdditionalProperties( xmlStream, type, crs ) );
@@ -2473,7 +2474,7 @@ public class GML3GeometryReader extends GML3GeometryBaseReader implements GMLGeo
                 upperCorner = parseDoubleList( xmlStream );
                 xmlStream.require( END_ELEMENT, gmlNs, "pos" );
             } else if ( "coordinates".equals( name ) ) {
-                List<Point> coords = parseCoordinates( xmlStream, crs );
+                Points coords = parseCoordinates( xmlStream, crs );
                 if ( coords.size() != 2 ) {
                     String msg = "Error in 'gml:Envelope' element, if 'gml:coordinates' is used, it must specify the coordinates of two points.";
                     throw new XMLParsingException( xmlStream, msg );
@@ -60,6 +60,7 @@ import org.deegree.geometry.composite.CompositeCurve;
 import org.deegree.geometry.composite.CompositeGeometry;
 import org.deegree.geometry.composite.CompositeSolid;
 import org.deegree.geometry.composite.CompositeSurface;
+import org.deegree.geometry.io.CoordinateCharBuffer;
 import org.deegree.geometry.io.CoordinateFormatter;
 import org.deegree.geometry.io.DecimalCoordinateFormatter;
 import org.deegree.geometry.multi.MultiCurve;
@@ -137,6 +138,9 @@ public class GML3GeometryWriter extends AbstractGMLObjectWriter implements GMLGe
 
     private CoordinateFormatter formatter;
 
+    // reused for assembling the text content of pos/posList elements
+    private final CoordinateCharBuffer coordBuffer;
+
     private CoordinateTransformer transformer;
 
     private GeometryTransformer geoTransformer;
@@ -177,6 +181,7 @@ public class GML3GeometryWriter extends AbstractGMLObjectWriter implements GMLGe
         if ( formatter == null ) {
             formatter = new DecimalCoordinateFormatter( crsUnits );
         }
+        coordBuffer = new CoordinateCharBuffer( formatter );
         this.stdPropsWriter = new GMLStdPropsWriter( version, writer );
     }
 
@@ -416,13 +421,17 @@ public class GML3GeometryWriter extends AbstractGMLObjectWriter implements GMLGe
 
         writer.writeStartElement( gmlNs, "pos" );
         double[] ordinates = getTransformedCoordinate( point.getCoordinateSystem(), point.getAsArray() );
-        writer.writeCharacters( formatter.format( ordinates[0] ) );
-        for ( int i = 1; i < ordinates.length; i++ ) {
-            writer.writeCharacters( " " + formatter.format( ordinates[i] ) );
-        }
+        writeOrdinates( ordinates );
         writer.writeEndElement();
     }
 
+    private void writeOrdinates( double[] ordinates )
+                            throws XMLStreamException {
+        coordBuffer.reset();
+        coordBuffer.append( ordinates, ' ' );
+        writer.writeCharacters( coordBuffer.getChars(), 0, coordBuffer.length() );
+    }
+
     /**
      * Exporting a curve via the XMLStreamWriter given when the class was constructed
      * 
@@ -881,11 +890,7 @@ public class GML3GeometryWriter extends AbstractGMLObjectWriter implements GMLGe
         } else {
             writer.writeStartElement( "gml", "lowerCorner", gmlNs );
         }
-        double[] ordinates = env.getMin().getAsArray();
-        writer.writeCharacters( formatter.format( ordinates[0] ) );
-        for ( int i = 1; i < ordinates.length; i++ ) {
-            writer.writeCharacters( " " + formatter.format( ordinates[i] ) );
-        }
+        writeOrdinates( env.getMin().getAsArray() );
         writer.writeEndElement();
 
         if ( version == GML_30 ) {
@@ -893,11 +898,7 @@ public class GML3GeometryWriter extends AbstractGMLObjectWriter implements GMLGe
         } else {
             writer.writeStartElement( "gml", "upperCorner", gmlNs );
         }
-        ordinates = env.getMax().getAsArray();
-        writer.writeCharacters( formatter.format( ordinates[0] ) );
-        for ( int i = 1; i < ordinates.length; i++ ) {
-            writer.writeCharacters( " " + formatter.format( ordinates[i] ) );
-        }
+        writeOrdinates( env.getMax().getAsArray() );
         writer.writeEndElement();
         writer.writeEndElement();
     }
@@ -1496,18 +1497,15 @@ public class GML3GeometryWriter extends AbstractGMLObjectWriter implements GMLGe
 
                 // TODO CITE
                 // writer.writeAttribute( "srsDimension", String.valueOf( srsDimension ) );
-                boolean first = true;
+                coordBuffer.reset();
                 for ( Point p : points ) {
                     double[] ordinates = getTransformedCoordinate( p.getCoordinateSystem(), p.getAsArray() );
-                    for ( int i = 0; i < ordinates.length; i++ ) {
-                        if ( !first ) {
-                            writer.writeCharacters( " " + formatter.format( ordinates[i] ) );
-                        } else {
-                            writer.writeCharacters( formatter.format( ordinates[i] ) );
-                            first = false;
-                        }
+                    if ( !coordBuffer.isEmpty() ) {
+                        coordBuffer.append( ' ' );
                     }
+                    coordBuffer.append( ordinates, ' ' );
                 }
+                writer.writeCharacters( coordBuffer.getChars(), 0, coordBuffer.length() );
                 writer.writeEndElement();
             } else {
                 for ( Point p : points ) {
@@ -182,11 +182,11 @@ class GML3SurfacePatchReader extends GML3GeometryBaseReader {
         List<Points> grid = new ArrayList<Points>();
         while ( xmlStream.getLocalName().equals( "row" ) ) {
             xmlStream.nextTag();
-            List<Point> currentRow = new LinkedList<Point>();
             if ( xmlStream.getLocalName().equals( "posList" ) ) {
-                currentRow = geometryParser.parsePosList( xmlStream, defaultCRS );
+                grid.add( geometryParser.parsePosList( xmlStream, defaultCRS ) );
                 xmlStream.nextTag();
             } else {
+                List<Point> currentRow = new LinkedList<Point>();
                 while ( xmlStream.getLocalName().equals( "pos" ) || xmlStream.getLocalName().equals( "pointProperty" ) ) {
                     if ( xmlStream.getLocalName().equals( "pos" ) ) {
                         Point point = geometryParser.parsePoint( xmlStream, defaultCRS );
@@ -197,8 +197,8 @@ class GML3SurfacePatchReader extends GML3GeometryBaseReader {
                     }
                     xmlStream.nextTag();
                 }
+                grid.add( geomFac.createPoints( currentRow ) );
             }
-            grid.add( geomFac.createPoints( currentRow ) );
             xmlStream.require( END_ELEMENT, gmlNs, "row" );
             xmlStream.nextTag();
         }
@@ -244,11 +244,11 @@ class GML3SurfacePatchReader extends GML3GeometryBaseReader {
         List<Points> grid = new ArrayList<Points>();
         while ( xmlStream.getLocalName().equals( "row" ) ) {
             xmlStream.nextTag();
-            List<Point> currentRow = new LinkedList<Point>();
             if ( xmlStream.getLocalName().equals( "posList" ) ) {
-                currentRow = geometryParser.parsePosList( xmlStream, defaultCRS );
+                grid.add( geometryParser.parsePosList( xmlStream, defaultCRS ) );
                 xmlStream.nextTag();
             } else {
+                List<Point> currentRow = new LinkedList<Point>();
                 while ( xmlStream.getLocalName().equals( "pos" ) || xmlStream.getLocalName().equals( "pointProperty" ) ) {
                     if ( xmlStream.getLocalName().equals( "pos" ) ) {
                         Point point = geometryParser.parsePoint( xmlStream, defaultCRS );
@@ -259,8 +259,8 @@ class GML3SurfacePatchReader extends GML3GeometryBaseReader {
                     }
                     xmlStream.nextTag();
                 }
+                grid.add( geomFac.createPoints( currentRow ) );
             }
-            grid.add( geomFac.createPoints( currentRow ) );
             xmlStream.require( END_ELEMENT, gmlNs, "row" );
             xmlStream.nextTag();
         }
@@ -306,11 +306,11 @@ class GML3SurfacePatchReader extends GML3GeometryBaseReader {
         List<Points> grid = new ArrayList<Points>();
         while ( xmlStream.getLocalName().equals( "row" ) ) {
             xmlStream.nextTag();
-            List<Point> currentRow = new LinkedList<Point>();
             if ( xmlStream.getLocalName().equals( "posList" ) ) {
-                currentRow = geometryParser.parsePosList( xmlStream, defaultCRS );
+                grid.add( geometryParser.parsePosList( xmlStream, defaultCRS ) );
                 xmlStream.nextTag();
             } else {
+                List<Point> currentRow = new LinkedList<Point>();
                 while ( xmlStream.getLocalName().equals( "pos" ) || xmlStream.getLocalName().equals( "pointProperty" ) ) {
                     if ( xmlStream.getLocalName().equals( "pos" ) ) {
                         Point point = geometryParser.parsePoint( xmlStream, defaultCRS );
@@ -321,8 +321,8 @@ class GML3SurfacePatchReader extends GML3GeometryBaseReader {
                     }
                     xmlStream.nextTag();
                 }
+                grid.add( geomFac.createPoints( currentRow ) );
             }
-            grid.add( geomFac.createPoints( currentRow ) );
             xmlStream.require( END_ELEMENT, gmlNs, "row" );
             xmlStream.nextTag();
         }
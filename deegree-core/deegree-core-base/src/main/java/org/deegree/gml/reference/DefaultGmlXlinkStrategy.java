@@ -35,9 +35,6 @@
  ----------------------------------------------------------------------------*/
 package org.deegree.gml.reference;
 
-import java.util.HashSet;
-import java.util.Set;
-
 import org.deegree.commons.tom.gml.GMLReference;
 
 public class DefaultGmlXlinkStrategy implements GmlXlinkStrategy {
@@ -46,7 +43,7 @@ public class DefaultGmlXlinkStrategy implements GmlXlinkStrategy {
 
     private final GmlXlinkOptions resolveOptions;
 
-    private final Set<String> exportedIds = new HashSet<String>();
+    private final ExportedIdSet exportedIds = new ExportedIdSet();
 
     public DefaultGmlXlinkStrategy() {
         this.remoteXlinkTemplate = "#{}";
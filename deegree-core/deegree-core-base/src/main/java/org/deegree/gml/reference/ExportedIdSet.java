@@ -0,0 +1,220 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.gml.reference;
+
+/**
+ * Compact set for keeping track of the <code>gml:id</code>s that have been exported to a GML document.
+ * <p>
+ * Large GML documents (e.g. GetFeature responses with millions of features) contain a huge number of identifiers.
+ * Instead of the identifier strings, this set only stores a 128 bit fingerprint for every identifier in primitive
+ * arrays (open addressing), which reduces the memory footprint to a fraction of a {@link java.util.HashSet}. A Bloom
+ * filter is used as fast path for the common case of identifiers that have not been exported before.
+ * </p>
+ * <p>
+ * NOTE: Two different identifiers are only confused if both 64 bit hashes collide, which is practically impossible.
+ * This class is not thread-safe.
+ * </p>
+ * 
+ * @see GmlXlinkStrategy
+ * 
+ * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class ExportedIdSet {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    // number of bloom filter bits per table slot
+    private static final int BLOOM_BITS_PER_SLOT = 8;
+
+    private static final int BLOOM_HASHES = 3;
+
+    // fingerprints (first and second 64 bit hash), slot is empty if both values are 0
+    private long[] hashes1;
+
+    private long[] hashes2;
+
+    private long[] bloom;
+
+    private int size;
+
+    // set size that triggers the next resize (75% load)
+    private int threshold;
+
+    // scratch values for the hashes of the current identifier
+    private long h1, h2;
+
+    /**
+     * Creates a new empty {@link ExportedIdSet} instance.
+     */
+    public ExportedIdSet() {
+        init( INITIAL_CAPACITY );
+    }
+
+    /**
+     * Adds the given identifier.
+     * 
+     * @param id
+     *            identifier, must not be <code>null</code>
+     * @return <code>true</code>, if the identifier has not been contained before, <code>false</code> otherwise
+     */
+    public boolean add( String id ) {
+        hash( id );
+        if ( mightContain( h1, h2 ) && find( h1, h2 ) >= 0 ) {
+            return false;
+        }
+        if ( size >= threshold ) {
+            init( hashes1.length * 2 );
+        }
+        insert( h1, h2 );
+        size++;
+        return true;
+    }
+
+    /**
+     * Returns whether the given identifier has been added before.
+     * 
+     * @param id
+     *            identifier, must not be <code>null</code>
+     * @return <code>true</code>, if the identifier is contained, <code>false</code> otherwise
+     */
+    public boolean contains( String id ) {
+        hash( id );
+        return mightContain( h1, h2 ) && find( h1, h2 ) >= 0;
+    }
+
+    /**
+     * Returns the number of contained identifiers.
+     * 
+     * @return number of identifiers
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Removes all identifiers.
+     */
+    public void clear() {
+        hashes1 = null;
+        hashes2 = null;
+        size = 0;
+        init( INITIAL_CAPACITY );
+    }
+
+    private void init( int capacity ) {
+        long[] oldHashes1 = hashes1;
+        long[] oldHashes2 = hashes2;
+        hashes1 = new long[capacity];
+        hashes2 = new long[capacity];
+        bloom = new long[capacity * BLOOM_BITS_PER_SLOT / 64];
+        threshold = capacity / 4 * 3;
+        if ( oldHashes1 != null ) {
+            for ( int i = 0; i < oldHashes1.length; i++ ) {
+                if ( oldHashes1[i] != 0 || oldHashes2[i] != 0 ) {
+                    insert( oldHashes1[i], oldHashes2[i] );
+                }
+            }
+        }
+    }
+
+    private void insert( long hash1, long hash2 ) {
+        int mask = hashes1.length - 1;
+        int slot = (int) hash1 & mask;
+        while ( hashes1[slot] != 0 || hashes2[slot] != 0 ) {
+            slot = ( slot + 1 ) & mask;
+        }
+        hashes1[slot] = hash1;
+        hashes2[slot] = hash2;
+        long bloomMask = bloom.length * 64L - 1;
+        for ( int i = 0; i < BLOOM_HASHES; i++ ) {
+            long bit = ( hash2 + i * ( hash1 >>> 32 ) ) & bloomMask;
+            bloom[(int) ( bit >>> 6 )] |= 1L << bit;
+        }
+    }
+
+    private boolean mightContain( long hash1, long hash2 ) {
+        long bloomMask = bloom.length * 64L - 1;
+        for ( int i = 0; i < BLOOM_HASHES; i++ ) {
+            long bit = ( hash2 + i * ( hash1 >>> 32 ) ) & bloomMask;
+            if ( ( bloom[(int) ( bit >>> 6 )] & ( 1L << bit ) ) == 0 ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int find( long hash1, long hash2 ) {
+        int mask = hashes1.length - 1;
+        int slot = (int) hash1 & mask;
+        while ( hashes1[slot] != 0 || hashes2[slot] != 0 ) {
+            if ( hashes1[slot] == hash1 && hashes2[slot] == hash2 ) {
+                return slot;
+            }
+            slot = ( slot + 1 ) & mask;
+        }
+        return -1;
+    }
+
+    private void hash( String id ) {
+        // two independent 64 bit hashes (FNV-1a and a multiplicative hash), both finalized with the MurmurHash3 mixer
+        long fnv = 0xcbf29ce484222325L;
+        long mult = 0x9e3779b97f4a7c15L ^ id.length();
+        for ( int i = 0; i < id.length(); i++ ) {
+            char c = id.charAt( i );
+            fnv = ( fnv ^ c ) * 0x100000001b3L;
+            mult = ( mult + c ) * 0xc2b2ae3d27d4eb4fL;
+            mult ^= mult >>> 31;
+        }
+        h1 = mix( fnv );
+        h2 = mix( mult );
+        if ( h1 == 0 && h2 == 0 ) {
+            // reserved for empty slots
+            h1 = 1;
+        }
+    }
+
+    private static long mix( long h ) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
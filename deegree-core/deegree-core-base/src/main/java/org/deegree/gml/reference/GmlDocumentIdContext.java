@@ -212,4 +212,17 @@ public class GmlDocumentIdContext implements GMLReferenceResolver {
             }
         }
     }
+
+    /**
+     * Forgets all objects and references that have been added before.
+     * <p>
+     * This allows to keep the memory footprint low when processing a stream of features in chunks. Note that
+     * references to objects that have been added before clearing can not be resolved afterwards.
+     * </p>
+     */
+    public void clear() {
+        idToObject.clear();
+        refs.clear();
+        localRefs.clear();
+    }
 }
@@ -0,0 +1,241 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.deegree.feature.Feature;
+import org.deegree.feature.FeatureCollection;
+import org.deegree.feature.Features;
+import org.junit.Test;
+
+/**
+ * Tests for {@link PagedFeatureInputStream}.
+ * 
+ * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class PagedFeatureInputStreamTest {
+
+    @Test
+    public void testFirstPage() {
+        ListStream rs = new ListStream( 10 );
+        assertEquals( rs.features.subList( 0, 3 ), read( new PagedFeatureInputStream( rs, 0, 3 ) ) );
+    }
+
+    @Test
+    public void testPagesSplitResult() {
+        ListStream rs = new ListStream( 10 );
+        List<Feature> all = new ArrayList<Feature>();
+        for ( int offset = 0; offset < 10; offset += 3 ) {
+            all.addAll( read( new PagedFeatureInputStream( new ListStream( rs.features ), offset, 3 ) ) );
+        }
+        assertEquals( rs.features, all );
+    }
+
+    @Test
+    public void testMiddlePage() {
+        ListStream rs = new ListStream( 10 );
+        assertEquals( rs.features.subList( 3, 6 ), read( new PagedFeatureInputStream( rs, 3, 3 ) ) );
+    }
+
+    @Test
+    public void testLastPartialPage() {
+        ListStream rs = new ListStream( 10 );
+        assertEquals( rs.features.subList( 9, 10 ), read( new PagedFeatureInputStream( rs, 9, 3 ) ) );
+    }
+
+    @Test
+    public void testPageEndingAtLastFeature() {
+        ListStream rs = new ListStream( 9 );
+        assertEquals( rs.features.subList( 6, 9 ), read( new PagedFeatureInputStream( rs, 6, 3 ) ) );
+    }
+
+    @Test
+    public void testOffsetBeyondEnd() {
+        assertTrue( read( new PagedFeatureInputStream( new ListStream( 10 ), 10, 3 ) ).isEmpty() );
+        assertTrue( read( new PagedFeatureInputStream( new ListStream( 10 ), 25, 3 ) ).isEmpty() );
+    }
+
+    @Test
+    public void testEmptyResult() {
+        assertTrue( read( new PagedFeatureInputStream( new ListStream( 0 ), 0, 3 ) ).isEmpty() );
+        assertTrue( read( new PagedFeatureInputStream( new ListStream( 0 ), 5, -1 ) ).isEmpty() );
+    }
+
+    @Test
+    public void testNoLimit() {
+        ListStream rs = new ListStream( 10 );
+        assertEquals( rs.features.subList( 4, 10 ), read( new PagedFeatureInputStream( rs, 4, -1 ) ) );
+    }
+
+    @Test
+    public void testZeroLimitDoesNotReadSource() {
+        ListStream rs = new ListStream( 10 );
+        assertTrue( read( new PagedFeatureInputStream( rs, 2, 0 ) ).isEmpty() );
+        assertEquals( 0, rs.read );
+    }
+
+    @Test
+    public void testNoReadAheadAfterLimit() {
+        ListStream rs = new ListStream( 10 );
+        read( new PagedFeatureInputStream( rs, 2, 3 ) );
+        assertEquals( 5, rs.read );
+    }
+
+    @Test
+    public void testHasNextDoesNotSkipFeatures() {
+        ListStream rs = new ListStream( 10 );
+        Iterator<Feature> iter = new PagedFeatureInputStream( rs, 2, 2 ).iterator();
+        assertTrue( iter.hasNext() );
+        assertTrue( iter.hasNext() );
+        assertEquals( rs.features.get( 2 ), iter.next() );
+        assertTrue( iter.hasNext() );
+        assertEquals( rs.features.get( 3 ), iter.next() );
+        assertFalse( iter.hasNext() );
+        try {
+            iter.next();
+            fail( "Expected NoSuchElementException." );
+        } catch ( NoSuchElementException e ) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testNextWithoutHasNext() {
+        ListStream rs = new ListStream( 5 );
+        Iterator<Feature> iter = new PagedFeatureInputStream( rs, 3, 5 ).iterator();
+        assertEquals( rs.features.get( 3 ), iter.next() );
+        assertEquals( rs.features.get( 4 ), iter.next() );
+        try {
+            iter.next();
+            fail( "Expected NoSuchElementException." );
+        } catch ( NoSuchElementException e ) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testCountClosesSource() {
+        ListStream rs = new ListStream( 10 );
+        assertEquals( 2, new PagedFeatureInputStream( rs, 8, 5 ).count() );
+        assertTrue( rs.closed );
+    }
+
+    @Test
+    public void testCloseClosesSource() {
+        ListStream rs = new ListStream( 10 );
+        new PagedFeatureInputStream( rs, 0, 5 ).close();
+        assertTrue( rs.closed );
+    }
+
+    private static List<Feature> read( FeatureInputStream rs ) {
+        List<Feature> features = new ArrayList<Feature>();
+        for ( Feature f : rs ) {
+            features.add( f );
+        }
+        rs.close();
+        return features;
+    }
+
+    private static class ListStream implements FeatureInputStream {
+
+        private final List<Feature> features;
+
+        private int read;
+
+        private boolean closed;
+
+        private ListStream( int numFeatures ) {
+            features = new ArrayList<Feature>();
+            for ( int i = 0; i < numFeatures; i++ ) {
+                features.add( mock( Feature.class ) );
+            }
+        }
+
+        private ListStream( List<Feature> features ) {
+            this.features = features;
+        }
+
+        @Override
+        public Iterator<Feature> iterator() {
+            final Iterator<Feature> iter = features.iterator();
+            return new Iterator<Feature>() {
+                @Override
+                public boolean hasNext() {
+                    return iter.hasNext();
+                }
+
+                @Override
+                public Feature next() {
+                    read++;
+                    return iter.next();
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+
+        @Override
+        public FeatureCollection toCollection() {
+            return Features.toCollection( this );
+        }
+
+        @Override
+        public int count() {
+            return features.size();
+        }
+    }
+}
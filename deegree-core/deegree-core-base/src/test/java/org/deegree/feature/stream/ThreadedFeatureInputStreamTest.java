@@ -0,0 +1,337 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.stream;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.deegree.feature.Feature;
+import org.deegree.feature.FeatureCollection;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link ThreadedFeatureInputStream}.
+ * 
+ * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class ThreadedFeatureInputStreamTest {
+
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        executor = new ThreadPoolExecutor( 0, 1, 1, SECONDS, new SynchronousQueue<Runnable>() );
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test(timeout = 10000)
+    public void testFeaturesInOrder() {
+        ListStream rs = new ListStream( createFeatures( 1000 ), -1 );
+        ThreadedFeatureInputStream stream = new ThreadedFeatureInputStream( opener( rs ), 10, 2, executor, 5000 );
+        assertTrue( stream.isThreaded() );
+        assertFeatures( rs.features, stream );
+    }
+
+    @Test(timeout = 10000)
+    public void testOpenerFailurePropagates() {
+        final IllegalStateException failure = new IllegalStateException( "open failed" );
+        Callable<FeatureInputStream> opener = new Callable<FeatureInputStream>() {
+            @Override
+            public FeatureInputStream call() {
+                throw failure;
+            }
+        };
+        ThreadedFeatureInputStream stream = new ThreadedFeatureInputStream( opener, 10, 2, executor, 5000 );
+        try {
+            stream.iterator().hasNext();
+            fail( "Expected exception." );
+        } catch ( RuntimeException e ) {
+            assertSame( failure, e.getCause() );
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testIterationFailurePropagates()
+                            throws InterruptedException {
+        ListStream rs = new ListStream( createFeatures( 100 ), 50 );
+        ThreadedFeatureInputStream stream = new ThreadedFeatureInputStream( opener( rs ), 10, 2, executor, 5000 );
+        Iterator<Feature> iter = stream.iterator();
+        int read = 0;
+        try {
+            while ( iter.hasNext() ) {
+                assertSame( rs.features.get( read++ ), iter.next() );
+            }
+            fail( "Expected exception." );
+        } catch ( RuntimeException e ) {
+            assertEquals( 50, read );
+        }
+        assertTrue( rs.closed.await( 5, SECONDS ) );
+    }
+
+    @Test(timeout = 10000)
+    public void testCloseBeforeDrainReleasesThread()
+                            throws InterruptedException {
+        ListStream rs = new ListStream( createFeatures( 10000 ), -1 );
+        ThreadedFeatureInputStream stream = new ThreadedFeatureInputStream( opener( rs ), 10, 2, executor, 0 );
+        Iterator<Feature> iter = stream.iterator();
+        for ( int i = 0; i < 5; i++ ) {
+            iter.next();
+        }
+        stream.close();
+        assertTrue( rs.closed.await( 5, SECONDS ) );
+
+        // the (only) worker thread is available again
+        ListStream rs2 = new ListStream( createFeatures( 10 ), -1 );
+        ThreadedFeatureInputStream stream2 = null;
+        for ( int i = 0; i < 50 && ( stream2 == null || !stream2.isThreaded() ); i++ ) {
+            Thread.sleep( 100 );
+            stream2 = new ThreadedFeatureInputStream( opener( rs2 ), 10, 2, executor, 5000 );
+        }
+        assertTrue( stream2.isThreaded() );
+        assertFeatures( rs2.features, stream2 );
+    }
+
+    @Test(timeout = 10000)
+    public void testSynchronousFallbackWhenNoThreadIsFree()
+                            throws InterruptedException {
+        ListStream blocking = new ListStream( createFeatures( 100 ), -1 );
+        ThreadedFeatureInputStream busy = new ThreadedFeatureInputStream( opener( blocking ), 10, 2, executor, 0 );
+        assertTrue( busy.isThreaded() );
+
+        ListStream rs = new ListStream( createFeatures( 100 ), -1 );
+        ThreadedFeatureInputStream stream = new ThreadedFeatureInputStream( opener( rs ), 10, 2, executor, 0 );
+        assertFalse( stream.isThreaded() );
+        assertFalse( rs.opened );
+        assertFeatures( rs.features, stream );
+        stream.close();
+        assertTrue( rs.closed.await( 5, SECONDS ) );
+        busy.close();
+    }
+
+    @Test(timeout = 10000)
+    public void testConsumerTimeout() {
+        Callable<FeatureInputStream> opener = new Callable<FeatureInputStream>() {
+            @Override
+            public FeatureInputStream call()
+                                    throws InterruptedException {
+                Thread.sleep( 5000 );
+                return new ListStream( createFeatures( 1 ), -1 );
+            }
+        };
+        ThreadedFeatureInputStream stream = new ThreadedFeatureInputStream( opener, 10, 2, executor, 200 );
+        try {
+            stream.iterator().hasNext();
+            fail( "Expected exception." );
+        } catch ( RuntimeException e ) {
+            // expected
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testProducerTimeoutOnStalledConsumer()
+                            throws InterruptedException {
+        ListStream rs = new ListStream( createFeatures( 100 ), -1 );
+        ThreadedFeatureInputStream stream = new ThreadedFeatureInputStream( opener( rs ), 2, 1, executor, 200 );
+        Iterator<Feature> iter = stream.iterator();
+        // no features are consumed, so the producer gives up and releases the backing stream
+        assertTrue( rs.closed.await( 5, SECONDS ) );
+        try {
+            while ( iter.hasNext() ) {
+                iter.next();
+            }
+            fail( "Expected exception." );
+        } catch ( RuntimeException e ) {
+            // expected
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testNoProducerTimeoutBeforeStreamIsReached()
+                            throws InterruptedException {
+        ListStream rs = new ListStream( createFeatures( 100 ), -1 );
+        ThreadedFeatureInputStream stream = new ThreadedFeatureInputStream( opener( rs ), 2, 1, executor, 200 );
+        // the queue is full, but the stream has not been iterated yet
+        assertFalse( rs.closed.await( 1, SECONDS ) );
+        assertFeatures( rs.features, stream );
+    }
+
+    @Test(timeout = 20000)
+    public void testSlowFirstStreamOfCombinedStreams() {
+        ExecutorService twoThreads = new ThreadPoolExecutor( 0, 2, 1, SECONDS, new SynchronousQueue<Runnable>() );
+        try {
+            ListStream rs1 = new ListStream( createFeatures( 20 ), -1 );
+            ListStream rs2 = new ListStream( createFeatures( 100 ), -1 );
+            List<FeatureInputStream> streams = new ArrayList<FeatureInputStream>();
+            streams.add( new ThreadedFeatureInputStream( opener( rs1 ), 5, 1, twoThreads, 200 ) );
+            streams.add( new ThreadedFeatureInputStream( opener( rs2 ), 5, 1, twoThreads, 200 ) );
+            assertTrue( ( (ThreadedFeatureInputStream) streams.get( 1 ) ).isThreaded() );
+
+            List<Feature> expected = new ArrayList<Feature>( rs1.features );
+            expected.addAll( rs2.features );
+            CombinedFeatureInputStream combined = new CombinedFeatureInputStream( streams.iterator() );
+            int i = 0;
+            for ( Feature f : combined ) {
+                assertSame( expected.get( i ), f );
+                if ( i++ < rs1.features.size() ) {
+                    // the first stream takes much longer than the timeout, while the second one has a full queue
+                    sleep( 50 );
+                }
+            }
+            assertEquals( expected.size(), i );
+        } finally {
+            twoThreads.shutdownNow();
+        }
+    }
+
+    private static void sleep( long millis ) {
+        try {
+            Thread.sleep( millis );
+        } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void assertFeatures( List<Feature> expected, FeatureInputStream stream ) {
+        int i = 0;
+        for ( Feature f : stream ) {
+            assertSame( expected.get( i++ ), f );
+        }
+        assertEquals( expected.size(), i );
+    }
+
+    private static List<Feature> createFeatures( int num ) {
+        List<Feature> features = new ArrayList<Feature>( num );
+        for ( int i = 0; i < num; i++ ) {
+            features.add( mock( Feature.class ) );
+        }
+        return features;
+    }
+
+    private static Callable<FeatureInputStream> opener( final ListStream rs ) {
+        return new Callable<FeatureInputStream>() {
+            @Override
+            public FeatureInputStream call() {
+                rs.opened = true;
+                return rs;
+            }
+        };
+    }
+
+    /**
+     * Stream over a list of features that records closing and can fail after a number of features.
+     */
+    private static class ListStream implements FeatureInputStream {
+
+        private final List<Feature> features;
+
+        private final int failAfter;
+
+        private final CountDownLatch closed = new CountDownLatch( 1 );
+
+        private volatile boolean opened;
+
+        private ListStream( List<Feature> features, int failAfter ) {
+            this.features = features;
+            this.failAfter = failAfter;
+        }
+
+        @Override
+        public Iterator<Feature> iterator() {
+            final Iterator<Feature> iter = features.iterator();
+            return new Iterator<Feature>() {
+
+                private int read;
+
+                @Override
+                public boolean hasNext() {
+                    return iter.hasNext();
+                }
+
+                @Override
+                public Feature next() {
+                    if ( read++ == failAfter ) {
+                        throw new IllegalStateException( "read failed" );
+                    }
+                    return iter.next();
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+        @Override
+        public void close() {
+            closed.countDown();
+        }
+
+        @Override
+        public FeatureCollection toCollection() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int count() {
+            return features.size();
+        }
+    }
+
+}
@@ -0,0 +1,286 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.gml.feature;
+
+import static org.deegree.commons.tom.primitive.BaseType.BOOLEAN;
+import static org.deegree.commons.tom.primitive.BaseType.DOUBLE;
+import static org.deegree.commons.tom.primitive.BaseType.INTEGER;
+import static org.deegree.commons.tom.primitive.BaseType.STRING;
+import static org.deegree.gml.GMLVersion.GML_32;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.StringReader;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamReader;
+
+import org.deegree.commons.tom.gml.property.Property;
+import org.deegree.commons.tom.gml.property.PropertyType;
+import org.deegree.commons.tom.primitive.PrimitiveValue;
+import org.deegree.commons.xml.XMLParsingException;
+import org.deegree.feature.Feature;
+import org.deegree.feature.types.DynamicFeatureType;
+import org.deegree.feature.types.FeatureType;
+import org.deegree.feature.types.GenericAppSchema;
+import org.deegree.feature.types.GenericFeatureType;
+import org.deegree.feature.types.property.SimplePropertyType;
+import org.deegree.gml.GMLInputFactory;
+import org.deegree.gml.GMLStreamReader;
+import org.deegree.gml.feature.FeatureDecoderPlan.Step;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link FeatureDecoderPlan} and the decoding of property elements in {@link GMLFeatureReader}.
+ * 
+ * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class FeatureDecoderPlanTest {
+
+    private static final String APP_NS = "http://www.example.org/app";
+
+    private static final String GML_NS = "http://www.opengis.net/gml/3.2";
+
+    private static final QName NAME = new QName( APP_NS, "name" );
+
+    private static final QName ALT_NAME = new QName( APP_NS, "altName" );
+
+    private static final QName LANES = new QName( APP_NS, "lanes" );
+
+    private static final QName WIDTH = new QName( APP_NS, "width" );
+
+    private static final QName OPEN = new QName( APP_NS, "open" );
+
+    private static final QName NOTE = new QName( APP_NS, "note" );
+
+    private GenericAppSchema schema;
+
+    private FeatureType ft;
+
+    @Before
+    public void setUp() {
+        List<PropertyType> decls = new ArrayList<PropertyType>();
+        // name (1), substitutable by altName
+        List<PropertyType> nameSubstitutions = new ArrayList<PropertyType>();
+        nameSubstitutions.add( new SimplePropertyType( ALT_NAME, 1, 1, STRING, null, null ) );
+        decls.add( new SimplePropertyType( NAME, 1, 1, STRING, null, nameSubstitutions ) );
+        decls.add( new SimplePropertyType( NOTE, 0, 1, STRING, null, null ) );
+        decls.add( new SimplePropertyType( LANES, 0, 1, INTEGER, null, null ) );
+        decls.add( new SimplePropertyType( WIDTH, 0, -1, DOUBLE, null, null ) );
+        decls.add( new SimplePropertyType( OPEN, 0, 1, BOOLEAN, null, null ) );
+        // the same element may occur again later in the sequence
+        decls.add( new SimplePropertyType( NOTE, 0, 1, STRING, null, null ) );
+        ft = new GenericFeatureType( new QName( APP_NS, "Road" ), decls, false );
+        schema = new GenericAppSchema( new FeatureType[] { ft }, null, null, null, null, null );
+    }
+
+    @Test
+    public void testStepsInDeclarationOrder() {
+        FeatureDecoderPlan plan = new FeatureDecoderPlan( ft );
+        assertEquals( 6, plan.size() );
+        assertEquals( 1, plan.getStep( NOTE, 0 ).getDeclarationIndex() );
+        assertEquals( 1, plan.getStep( NOTE, 1 ).getDeclarationIndex() );
+        assertEquals( 5, plan.getStep( NOTE, 2 ).getDeclarationIndex() );
+        assertEquals( 5, plan.getStep( NOTE, 5 ).getDeclarationIndex() );
+        assertEquals( 3, plan.getStep( WIDTH, 0 ).getDeclarationIndex() );
+        assertNull( plan.getStep( WIDTH, 4 ) );
+        assertNull( plan.getStep( new QName( APP_NS, "unknown" ), 0 ) );
+    }
+
+    @Test
+    public void testStepForSubstitution() {
+        FeatureDecoderPlan plan = new FeatureDecoderPlan( ft );
+        Step step = plan.getStep( ALT_NAME, 0 );
+        assertEquals( 0, step.getDeclarationIndex() );
+        assertEquals( ALT_NAME, step.getPropertyType().getName() );
+        assertEquals( NAME, plan.getDeclaration( 0 ).getName() );
+        assertNull( plan.getStep( ALT_NAME, 1 ) );
+    }
+
+    @Test
+    public void testDirectlyDecodable() {
+        Step step = new FeatureDecoderPlan( ft ).getStep( LANES, 0 );
+        assertTrue( step.isDirectlyDecodable( 0 ) );
+        assertFalse( step.isDirectlyDecodable( 1 ) );
+        assertEquals( 0, step.getRequiredAttributes().length );
+    }
+
+    @Test
+    public void testBoundParsers() {
+        FeatureDecoderPlan plan = new FeatureDecoderPlan( ft );
+        assertEquals( "x", plan.getStep( NAME, 0 ).createSimpleProperty( "x" ).getValue().getValue() );
+        Object lanes = plan.getStep( LANES, 0 ).createSimpleProperty( "42" ).getValue().getValue();
+        assertEquals( BigInteger.valueOf( 42 ), lanes );
+        assertEquals( 2.5, plan.getStep( WIDTH, 0 ).createSimpleProperty( "2.5" ).getValue().getValue() );
+        assertEquals( Boolean.TRUE, plan.getStep( OPEN, 0 ).createSimpleProperty( "1" ).getValue().getValue() );
+        // lexical form is retained
+        assertEquals( "2.50", plan.getStep( WIDTH, 0 ).createSimpleProperty( "2.50" ).getValue().getAsText() );
+        try {
+            plan.getStep( LANES, 0 ).createSimpleProperty( "four" );
+            fail( "Expected exception." );
+        } catch ( IllegalArgumentException e ) {
+            // expected
+        }
+        try {
+            plan.getStep( OPEN, 0 ).createSimpleProperty( "yes" );
+            fail( "Expected exception." );
+        } catch ( IllegalArgumentException e ) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testPlansShared() {
+        FeatureDecoderPlan plan = FeatureDecoderPlan.getPlan( ft );
+        assertSame( plan, FeatureDecoderPlan.getPlan( ft ) );
+        DynamicFeatureType dynamic = new DynamicFeatureType( new QName( APP_NS, "Dynamic" ), null );
+        assertNotSame( FeatureDecoderPlan.getPlan( dynamic ), FeatureDecoderPlan.getPlan( dynamic ) );
+    }
+
+    @Test
+    public void testParseAllProperties()
+                            throws Exception {
+        Feature feature = parse( "<app:name>Main Street</app:name><app:note>a</app:note><app:lanes>4</app:lanes>"
+                                 + "<app:width>2.5</app:width><app:open>true</app:open><app:note>b</app:note>" );
+        assertEquals( Collections.singletonList( "Main Street" ), getValues( feature, NAME ) );
+        assertEquals( BigInteger.valueOf( 4 ), getValue( feature, LANES ) );
+        assertEquals( 2.5, getValue( feature, WIDTH ) );
+        assertEquals( Boolean.TRUE, getValue( feature, OPEN ) );
+        assertEquals( 6, feature.getProperties().size() );
+        // both occurrences of note, in document order
+        assertEquals( "a", ( (PrimitiveValue) feature.getProperties().get( 1 ).getValue() ).getAsText() );
+        assertEquals( "b", ( (PrimitiveValue) feature.getProperties().get( 5 ).getValue() ).getAsText() );
+    }
+
+    @Test
+    public void testOptionalPropertiesOmitted()
+                            throws Exception {
+        Feature feature = parse( "<app:altName>Main Street</app:altName><app:open>0</app:open>" );
+        assertEquals( 2, feature.getProperties().size() );
+        assertEquals( Collections.singletonList( "Main Street" ), getValues( feature, ALT_NAME ) );
+        assertEquals( Boolean.FALSE, getValue( feature, OPEN ) );
+    }
+
+    @Test
+    public void testRepeatedProperty()
+                            throws Exception {
+        Feature feature = parse( "<app:name>x</app:name><app:width>1.0</app:width><app:width>2.0</app:width>"
+                                 + "<app:width>3.0</app:width>" );
+        assertEquals( 3, feature.getProperties( WIDTH ).size() );
+        assertEquals( "1.0", getValues( feature, WIDTH ).get( 0 ) );
+        assertEquals( "3.0", getValues( feature, WIDTH ).get( 2 ) );
+    }
+
+    @Test
+    public void testElementWithAttributesDecodedGenerically()
+                            throws Exception {
+        Feature feature = parse( "<app:name>x</app:name><app:lanes xsi:nil=\"true\"/><app:open>1</app:open>" );
+        assertEquals( 3, feature.getProperties().size() );
+        assertNull( feature.getProperties( LANES ).get( 0 ).getValue() );
+        assertEquals( Boolean.TRUE, getValue( feature, OPEN ) );
+    }
+
+    @Test
+    public void testUnexpectedElement()
+                            throws Exception {
+        assertParsingFails( "<app:name>x</app:name><app:unknown>y</app:unknown>" );
+    }
+
+    @Test
+    public void testElementOutOfOrder()
+                            throws Exception {
+        assertParsingFails( "<app:name>x</app:name><app:open>true</app:open><app:lanes>4</app:lanes>" );
+    }
+
+    @Test
+    public void testMandatoryPropertyMissing()
+                            throws Exception {
+        assertParsingFails( "<app:lanes>4</app:lanes>" );
+    }
+
+    @Test
+    public void testInvalidValue()
+                            throws Exception {
+        assertParsingFails( "<app:name>x</app:name><app:lanes>four</app:lanes>" );
+    }
+
+    private Feature parse( String props )
+                            throws Exception {
+        String xml = "<app:Road xmlns:app='" + APP_NS + "' xmlns:gml='" + GML_NS
+                     + "' xmlns:xsi='http://www.w3.org/2001/XMLSchema-instance' gml:id='ROAD_1'>" + props
+                     + "</app:Road>";
+        XMLStreamReader xmlStream = XMLInputFactory.newInstance().createXMLStreamReader( new StringReader( xml ) );
+        GMLStreamReader gmlReader = GMLInputFactory.createGMLStreamReader( GML_32, xmlStream );
+        gmlReader.setApplicationSchema( schema );
+        return gmlReader.readFeature();
+    }
+
+    private void assertParsingFails( String props )
+                            throws Exception {
+        try {
+            parse( props );
+            fail( "Expected exception." );
+        } catch ( XMLParsingException e ) {
+            // expected
+        }
+    }
+
+    private static Object getValue( Feature feature, QName propName ) {
+        return ( (PrimitiveValue) feature.getProperties( propName ).get( 0 ).getValue() ).getValue();
+    }
+
+    private static List<String> getValues( Feature feature, QName propName ) {
+        List<String> values = new ArrayList<String>();
+        for ( Property prop : feature.getProperties( propName ) ) {
+            values.add( ( (PrimitiveValue) prop.getValue() ).getAsText() );
+        }
+        return values;
+    }
+}
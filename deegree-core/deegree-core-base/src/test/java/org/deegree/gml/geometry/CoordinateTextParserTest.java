@@ -0,0 +1,123 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.gml.geometry;
+
+import static javax.xml.stream.XMLStreamConstants.END_ELEMENT;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.StringReader;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.deegree.commons.xml.XMLParsingException;
+import org.deegree.commons.xml.stax.XMLStreamReaderWrapper;
+import org.junit.Test;
+
+/**
+ * Tests for {@link CoordinateTextParser}.
+ * 
+ * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class CoordinateTextParserTest {
+
+    @Test
+    public void parseDoubleList()
+                            throws XMLStreamException {
+        XMLStreamReaderWrapper xmlStream = getReader( "<posList>\n  7.5 51.25  -0.001\t1E3 +2 .5 1.\n"
+                                                      + "12345678.123456789 -0 </posList>" );
+        double[] values = new CoordinateTextParser().parseDoubleList( xmlStream );
+        double[] expected = { 7.5, 51.25, -0.001, 1000.0, 2.0, 0.5, 1.0, 12345678.123456789, -0.0 };
+        assertArrayEquals( expected, values, 0.0 );
+        assertEquals( Double.doubleToLongBits( -0.0 ), Double.doubleToLongBits( values[8] ) );
+        assertEquals( END_ELEMENT, xmlStream.getEventType() );
+    }
+
+    @Test
+    public void parseDoubleListMatchesParseDouble()
+                            throws XMLStreamException {
+        StringBuilder sb = new StringBuilder( "<posList><!-- comment -->" );
+        double[] expected = new double[10000];
+        for ( int i = 0; i < expected.length; i++ ) {
+            String s = Double.toString( ( i - 5000 ) * 0.0123456789 + 1.0 / ( i + 1 ) );
+            expected[i] = Double.parseDouble( s );
+            sb.append( s ).append( ' ' );
+        }
+        sb.append( "</posList>" );
+        double[] values = new CoordinateTextParser().parseDoubleList( getReader( sb.toString() ) );
+        assertArrayEquals( expected, values, 0.0 );
+    }
+
+    @Test
+    public void parseTuples()
+                            throws XMLStreamException {
+        CoordinateTextParser parser = new CoordinateTextParser();
+        XMLStreamReaderWrapper xmlStream = getReader( "<coordinates>\n1,2 3,4\n5.5,6.5 </coordinates>" );
+        double[] values = parser.parseTuples( xmlStream, ",", " " );
+        assertArrayEquals( new double[] { 1, 2, 3, 4, 5.5, 6.5 }, values, 0.0 );
+        assertEquals( 2, parser.getTupleDimension() );
+
+        xmlStream = getReader( "<coordinates>1 2 3;4 5 6</coordinates>" );
+        values = parser.parseTuples( xmlStream, " ", ";" );
+        assertArrayEquals( new double[] { 1, 2, 3, 4, 5, 6 }, values, 0.0 );
+        assertEquals( 3, parser.getTupleDimension() );
+    }
+
+    @Test(expected = XMLParsingException.class)
+    public void parseTuplesDifferentDimensions()
+                            throws XMLStreamException {
+        new CoordinateTextParser().parseTuples( getReader( "<coordinates>1,2 3,4,5</coordinates>" ), ",", " " );
+    }
+
+    @Test(expected = XMLParsingException.class)
+    public void parseInvalidValue()
+                            throws XMLStreamException {
+        new CoordinateTextParser().parseDoubleList( getReader( "<pos>1.0 x2</pos>" ) );
+    }
+
+    private XMLStreamReaderWrapper getReader( String xml )
+                            throws XMLStreamException {
+        XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader( new StringReader( xml ) );
+        XMLStreamReaderWrapper xmlStream = new XMLStreamReaderWrapper( reader, null );
+        xmlStream.nextTag();
+        return xmlStream;
+    }
+}
@@ -0,0 +1,91 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.gml.reference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link ExportedIdSet}.
+ * 
+ * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class ExportedIdSetTest {
+
+    @Test
+    public void testAddContains() {
+        ExportedIdSet set = new ExportedIdSet();
+        assertFalse( set.contains( "FEATURE_1" ) );
+        assertTrue( set.add( "FEATURE_1" ) );
+        assertFalse( set.add( "FEATURE_1" ) );
+        assertTrue( set.contains( "FEATURE_1" ) );
+        assertFalse( set.contains( "FEATURE_2" ) );
+        assertTrue( set.add( "" ) );
+        assertTrue( set.contains( "" ) );
+        assertEquals( 2, set.size() );
+    }
+
+    @Test
+    public void testManyIds() {
+        ExportedIdSet set = new ExportedIdSet();
+        for ( int i = 0; i < 200000; i++ ) {
+            assertTrue( set.add( "AX_Flurstueck_" + i ) );
+        }
+        assertEquals( 200000, set.size() );
+        for ( int i = 0; i < 200000; i++ ) {
+            assertTrue( set.contains( "AX_Flurstueck_" + i ) );
+            assertFalse( set.contains( "AX_Gebaeude_" + i ) );
+        }
+    }
+
+    @Test
+    public void testClear() {
+        ExportedIdSet set = new ExportedIdSet();
+        for ( int i = 0; i < 5000; i++ ) {
+            set.add( "GEOM_" + i );
+        }
+        set.clear();
+        assertEquals( 0, set.size() );
+        assertFalse( set.contains( "GEOM_1" ) );
+        assertTrue( set.add( "GEOM_1" ) );
+    }
+}
@@ -40,18 +40,28 @@ import static org.slf4j.LoggerFactory.getLogger;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.dbcp.ConnectionFactory;
 import org.apache.commons.dbcp.DelegatingConnection;
 import org.apache.commons.dbcp.DriverManagerConnectionFactory;
 import org.apache.commons.dbcp.PoolableConnectionFactory;
 import org.apache.commons.dbcp.PoolingDataSource;
+import org.apache.commons.pool.KeyedObjectPool;
+import org.apache.commons.pool.KeyedObjectPoolFactory;
+import org.apache.commons.pool.KeyedPoolableObjectFactory;
+import org.apache.commons.pool.impl.GenericKeyedObjectPool;
 import org.apache.commons.pool.impl.GenericObjectPool;
 import org.deegree.commons.annotations.LoggingNotes;
 import org.slf4j.Logger;
 
 /**
  * Simple implementation of a JDBC connection pool based on the Apache Commons Pool and DBCP projects.
+ * <p>
+ * Optionally, each pooled connection caches the {@link java.sql.PreparedStatement}s created from it, so preparing
+ * identical SQL repeatedly just reuses the statement. The pool keeps statistics on connection borrowing and statement
+ * reuse.
+ * </p>
  * 
  * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
  * @author last edited by: $Author: schneider $
@@ -69,8 +79,18 @@ public class ConnectionPool {
 
     private final GenericObjectPool<Connection> pool;
 
+    private final AtomicLong borrowed = new AtomicLong();
+
+    private final AtomicLong borrowWaitNanos = new AtomicLong();
+
+    private final AtomicLong maxBorrowWaitNanos = new AtomicLong();
+
+    private final AtomicLong statementsPrepared = new AtomicLong();
+
+    private final AtomicLong statementsRequested = new AtomicLong();
+
     /**
-     * Creates a new {@link ConnectionPool} instance.
+     * Creates a new {@link ConnectionPool} instance (without statement caching).
      * 
      * @param id
      * @param connectURI
@@ -82,6 +102,25 @@ public class ConnectionPool {
      */
     public ConnectionPool( String id, String connectURI, String user, String password, boolean readOnly, int minIdle,
                     int maxActive ) {
+        this( id, connectURI, user, password, readOnly, minIdle, maxActive, 0 );
+    }
+
+    /**
+     * Creates a new {@link ConnectionPool} instance.
+     * 
+     * @param id
+     * @param connectURI
+     * @param user
+     * @param password
+     * @param readOnly
+     * @param minIdle
+     * @param maxActive
+     * @param maxCachedStatements
+     *            maximum number of prepared statements cached per connection, <code>0</code> disables statement
+     *            caching
+     */
+    public ConnectionPool( String id, String connectURI, String user, String password, boolean readOnly, int minIdle,
+                    int maxActive, int maxCachedStatements ) {
 
         this.id = id;
         pool = new GenericObjectPool<Connection>( null );
@@ -89,8 +128,14 @@ public class ConnectionPool {
         pool.setMaxActive( maxActive );
 
         ConnectionFactory connectionFactory = new DriverManagerConnectionFactory( connectURI, user, password );
+        KeyedObjectPoolFactory<Object, Object> stmtPoolFactory = null;
+        if ( maxCachedStatements > 0 ) {
+            LOG.debug( "For connection id '{}': caching up to {} prepared statements per connection", id,
+                       maxCachedStatements );
+            stmtPoolFactory = new StatementPoolFactory( maxCachedStatements );
+        }
         // TODO make this configurable
-        new PoolableConnectionFactory( connectionFactory, pool, null, null, readOnly, true );
+        new PoolableConnectionFactory( connectionFactory, pool, stmtPoolFactory, null, readOnly, true );
         ds = new PoolingDataSource( pool );
         // needed, so users can retrieve the underlying connection from pooled
         // connections, e.g. to access the
@@ -108,7 +153,90 @@ public class ConnectionPool {
                             throws SQLException {
         LOG.debug( "For connection id '{}': active connections: {}, idle connections: {}",
                    new Object[] { id, pool.getNumActive(), pool.getNumIdle() } );
-        return ds.getConnection();
+        long begin = System.nanoTime();
+        Connection conn = ds.getConnection();
+        long wait = System.nanoTime() - begin;
+        borrowed.incrementAndGet();
+        borrowWaitNanos.addAndGet( wait );
+        long max = maxBorrowWaitNanos.get();
+        while ( wait > max && !maxBorrowWaitNanos.compareAndSet( max, wait ) ) {
+            max = maxBorrowWaitNanos.get();
+        }
+        return conn;
+    }
+
+    /**
+     * Returns the number of connections that are currently borrowed from the pool.
+     * 
+     * @return number of active connections
+     */
+    public int getNumActive() {
+        return pool.getNumActive();
+    }
+
+    /**
+     * Returns the number of connections that are currently idle in the pool.
+     * 
+     * @return number of idle connections
+     */
+    public int getNumIdle() {
+        return pool.getNumIdle();
+    }
+
+    /**
+     * Returns the maximum number of connections that can be borrowed from the pool at the same time.
+     * 
+     * @return maximum number of active connections
+     */
+    public int getMaxActive() {
+        return pool.getMaxActive();
+    }
+
+    /**
+     * Returns the total number of connections that have been borrowed from the pool.
+     * 
+     * @return number of borrowed connections
+     */
+    public long getNumBorrowed() {
+        return borrowed.get();
+    }
+
+    /**
+     * Returns the accumulated time spent waiting for connections from the pool.
+     * 
+     * @return accumulated waiting time in nanoseconds
+     */
+    public long getBorrowWaitNanos() {
+        return borrowWaitNanos.get();
+    }
+
+    /**
+     * Returns the longest time spent waiting for a connection from the pool.
+     * 
+     * @return maximum waiting time in nanoseconds
+     */
+    public long getMaxBorrowWaitNanos() {
+        return maxBorrowWaitNanos.get();
+    }
+
+    /**
+     * Returns the number of prepared statements that have actually been prepared by the database (statement cache
+     * misses). Only available if statement caching is enabled.
+     * 
+     * @return number of prepared statements
+     */
+    public long getNumStatementsPrepared() {
+        return statementsPrepared.get();
+    }
+
+    /**
+     * Returns the number of prepared statements that have been served from the statement cache. Only available if
+     * statement caching is enabled.
+     * 
+     * @return number of reused prepared statements
+     */
+    public long getNumStatementsReused() {
+        return Math.max( 0, statementsRequested.get() - statementsPrepared.get() );
     }
 
     /**
@@ -116,6 +244,10 @@ public class ConnectionPool {
      */
     public void destroy()
                             throws Exception {
+        LOG.debug( "For connection id '{}': borrowed connections: {}, max. wait: {} [ms], "
+                   + "statements prepared: {}, statements reused: {}",
+                   new Object[] { id, borrowed.get(), maxBorrowWaitNanos.get() / 1000000, statementsPrepared.get(),
+                                 getNumStatementsReused() } );
         pool.close();
     }
 
@@ -124,4 +256,82 @@ public class ConnectionPool {
         conn.getDelegate().close();
         pool.invalidateObject( conn );
     }
+
+    /**
+     * Creates the per-connection statement pools and tracks how many statements are prepared vs. reused.
+     */
+    private class StatementPoolFactory implements KeyedObjectPoolFactory<Object, Object> {
+
+        private final int maxStatements;
+
+        private StatementPoolFactory( int maxStatements ) {
+            this.maxStatements = maxStatements;
+        }
+
+        @Override
+        public KeyedObjectPool<Object, Object> createPool()
+                                throws IllegalStateException {
+            GenericKeyedObjectPool<Object, Object> stmtPool = new GenericKeyedObjectPool<Object, Object>() {
+                @Override
+                public Object borrowObject( Object key )
+                                        throws Exception {
+                    statementsRequested.incrementAndGet();
+                    return super.borrowObject( key );
+                }
+
+                @SuppressWarnings("deprecation")
+                @Override
+                public void setFactory( KeyedPoolableObjectFactory<Object, Object> factory )
+                                        throws IllegalStateException {
+                    super.setFactory( new CountingStatementFactory( factory ) );
+                }
+            };
+            // like DBCP's BasicDataSource, but grow instead of failing if more statements are open at the same time
+            stmtPool.setMaxActive( -1 );
+            stmtPool.setWhenExhaustedAction( GenericKeyedObjectPool.WHEN_EXHAUSTED_GROW );
+            stmtPool.setMaxWait( 0 );
+            stmtPool.setMaxIdle( 1 );
+            stmtPool.setMaxTotal( maxStatements );
+            return stmtPool;
+        }
+    }
+
+    private class CountingStatementFactory implements KeyedPoolableObjectFactory<Object, Object> {
+
+        private final KeyedPoolableObjectFactory<Object, Object> factory;
+
+        private CountingStatementFactory( KeyedPoolableObjectFactory<Object, Object> factory ) {
+            this.factory = factory;
+        }
+
+        @Override
+        public Object makeObject( Object key )
+                                throws Exception {
+            statementsPrepared.incrementAndGet();
+            return factory.makeObject( key );
+        }
+
+        @Override
+        public void destroyObject( Object key, Object obj )
+                                throws Exception {
+            factory.destroyObject( key, obj );
+        }
+
+        @Override
+        public boolean validateObject( Object key, Object obj ) {
+            return factory.validateObject( key, obj );
+        }
+
+        @Override
+        public void activateObject( Object key, Object obj )
+                                throws Exception {
+            factory.activateObject( key, obj );
+        }
+
+        @Override
+        public void passivateObject( Object key, Object obj )
+                                throws Exception {
+            factory.passivateObject( key, obj );
+        }
+    }
 }
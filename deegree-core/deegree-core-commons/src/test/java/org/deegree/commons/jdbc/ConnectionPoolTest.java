@@ -0,0 +1,171 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.commons.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import org.junit.After;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests for the statistics and the statement caching of {@link ConnectionPool} (using an in-memory H2 database).
+ * 
+ * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class ConnectionPoolTest {
+
+    private ConnectionPool pool;
+
+    @BeforeClass
+    public static void registerDriver()
+                            throws ClassNotFoundException {
+        Class.forName( "org.h2.Driver" );
+    }
+
+    @After
+    public void tearDown()
+                            throws Exception {
+        if ( pool != null ) {
+            pool.destroy();
+        }
+    }
+
+    @Test
+    public void testActiveAndIdle()
+                            throws SQLException {
+        pool = createPool( "active", 0 );
+        assertEquals( 0, pool.getNumActive() );
+        assertEquals( 0, pool.getNumIdle() );
+        assertEquals( 2, pool.getMaxActive() );
+
+        Connection conn1 = pool.getConnection();
+        Connection conn2 = pool.getConnection();
+        assertEquals( 2, pool.getNumActive() );
+        assertEquals( 0, pool.getNumIdle() );
+
+        conn1.close();
+        assertEquals( 1, pool.getNumActive() );
+        assertEquals( 1, pool.getNumIdle() );
+        conn2.close();
+        assertEquals( 0, pool.getNumActive() );
+        assertEquals( 2, pool.getNumIdle() );
+
+        // idle connection is handed out again
+        pool.getConnection().close();
+        assertEquals( 0, pool.getNumActive() );
+        assertEquals( 2, pool.getNumIdle() );
+    }
+
+    @Test
+    public void testBorrowStatistics()
+                            throws SQLException {
+        pool = createPool( "borrow", 0 );
+        assertEquals( 0, pool.getNumBorrowed() );
+        assertEquals( 0, pool.getBorrowWaitNanos() );
+        for ( int i = 0; i < 3; i++ ) {
+            pool.getConnection().close();
+        }
+        assertEquals( 3, pool.getNumBorrowed() );
+        assertTrue( pool.getMaxBorrowWaitNanos() > 0 );
+        assertTrue( pool.getBorrowWaitNanos() >= pool.getMaxBorrowWaitNanos() );
+    }
+
+    @Test
+    public void testStatementsReused()
+                            throws SQLException {
+        pool = createPool( "reused", 10 );
+        Connection conn = pool.getConnection();
+        prepareAndClose( conn, "SELECT 1" );
+        prepareAndClose( conn, "SELECT 1" );
+        prepareAndClose( conn, "SELECT 2" );
+        assertEquals( 2, pool.getNumStatementsPrepared() );
+        assertEquals( 1, pool.getNumStatementsReused() );
+        conn.close();
+
+        // statements stay cached with the pooled connection
+        conn = pool.getConnection();
+        prepareAndClose( conn, "SELECT 2" );
+        conn.close();
+        assertEquals( 2, pool.getNumStatementsPrepared() );
+        assertEquals( 2, pool.getNumStatementsReused() );
+    }
+
+    @Test
+    public void testStatementsPreparedWhileInUse()
+                            throws SQLException {
+        pool = createPool( "inuse", 10 );
+        Connection conn = pool.getConnection();
+        // a statement that is still open cannot be handed out twice
+        PreparedStatement stmt = conn.prepareStatement( "SELECT 1" );
+        prepareAndClose( conn, "SELECT 1" );
+        stmt.close();
+        conn.close();
+        assertEquals( 2, pool.getNumStatementsPrepared() );
+        assertEquals( 0, pool.getNumStatementsReused() );
+    }
+
+    @Test
+    public void testNoStatementCaching()
+                            throws SQLException {
+        pool = createPool( "uncached", 0 );
+        Connection conn = pool.getConnection();
+        prepareAndClose( conn, "SELECT 1" );
+        prepareAndClose( conn, "SELECT 1" );
+        conn.close();
+        assertEquals( 0, pool.getNumStatementsPrepared() );
+        assertEquals( 0, pool.getNumStatementsReused() );
+    }
+
+    private static ConnectionPool createPool( String db, int maxCachedStatements ) {
+        return new ConnectionPool( db, "jdbc:h2:mem:" + db, "sa", "", false, 0, 2, maxCachedStatements );
+    }
+
+    private static void prepareAndClose( Connection conn, String sql )
+                            throws SQLException {
+        PreparedStatement stmt = conn.prepareStatement( sql );
+        stmt.executeQuery().close();
+        stmt.close();
+    }
+}
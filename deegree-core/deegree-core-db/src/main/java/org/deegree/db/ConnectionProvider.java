@@ -74,4 +74,12 @@ public interface ConnectionProvider extends Resource {
      */
     void invalidate( Connection conn );
 
+    /**
+     * Returns statistics on the usage of connections and prepared statements, e.g. for sizing the pool.
+     * 
+     * @return snapshot of the current statistics, can be <code>null</code> (if the implementation does not collect
+     *         any)
+     */
+    ConnectionStatistics getStatistics();
+
 }
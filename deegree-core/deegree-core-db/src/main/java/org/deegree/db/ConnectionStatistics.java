@@ -0,0 +1,167 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.db;
+
+/**
+ * Snapshot of the usage statistics of a {@link ConnectionProvider}.
+ * 
+ * @see ConnectionProvider#getStatistics()
+ * 
+ * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class ConnectionStatistics {
+
+    private final int numActive;
+
+    private final int numIdle;
+
+    private final int maxActive;
+
+    private final long numBorrowed;
+
+    private final long borrowWaitNanos;
+
+    private final long maxBorrowWaitNanos;
+
+    private final long numStatementsPrepared;
+
+    private final long numStatementsReused;
+
+    /**
+     * Creates a new {@link ConnectionStatistics} instance.
+     * 
+     * @param numActive
+     *            number of connections that are currently in use
+     * @param numIdle
+     *            number of connections that are currently idle
+     * @param maxActive
+     *            maximum number of connections that may be in use at the same time
+     * @param numBorrowed
+     *            total number of connections handed out
+     * @param borrowWaitNanos
+     *            accumulated time spent waiting for connections (in nanoseconds)
+     * @param maxBorrowWaitNanos
+     *            longest time spent waiting for a connection (in nanoseconds)
+     * @param numStatementsPrepared
+     *            number of prepared statements actually prepared by the database
+     * @param numStatementsReused
+     *            number of prepared statements served from the statement cache
+     */
+    public ConnectionStatistics( int numActive, int numIdle, int maxActive, long numBorrowed, long borrowWaitNanos,
+                                 long maxBorrowWaitNanos, long numStatementsPrepared, long numStatementsReused ) {
+        this.numActive = numActive;
+        this.numIdle = numIdle;
+        this.maxActive = maxActive;
+        this.numBorrowed = numBorrowed;
+        this.borrowWaitNanos = borrowWaitNanos;
+        this.maxBorrowWaitNanos = maxBorrowWaitNanos;
+        this.numStatementsPrepared = numStatementsPrepared;
+        this.numStatementsReused = numStatementsReused;
+    }
+
+    /**
+     * @return number of connections that are currently in use
+     */
+    public int getNumActive() {
+        return numActive;
+    }
+
+    /**
+     * @return number of connections that are currently idle
+     */
+    public int getNumIdle() {
+        return numIdle;
+    }
+
+    /**
+     * @return maximum number of connections that may be in use at the same time
+     */
+    public int getMaxActive() {
+        return maxActive;
+    }
+
+    /**
+     * @return total number of connections handed out
+     */
+    public long getNumBorrowed() {
+        return numBorrowed;
+    }
+
+    /**
+     * @return accumulated time spent waiting for connections (in milliseconds)
+     */
+    public double getBorrowWaitMillis() {
+        return borrowWaitNanos / 1000000.0;
+    }
+
+    /**
+     * @return average time spent waiting for a connection (in milliseconds)
+     */
+    public double getAverageBorrowWaitMillis() {
+        return numBorrowed == 0 ? 0 : getBorrowWaitMillis() / numBorrowed;
+    }
+
+    /**
+     * @return longest time spent waiting for a connection (in milliseconds)
+     */
+    public double getMaxBorrowWaitMillis() {
+        return maxBorrowWaitNanos / 1000000.0;
+    }
+
+    /**
+     * @return number of prepared statements actually prepared by the database
+     */
+    public long getNumStatementsPrepared() {
+        return numStatementsPrepared;
+    }
+
+    /**
+     * @return number of prepared statements served from the statement cache
+     */
+    public long getNumStatementsReused() {
+        return numStatementsReused;
+    }
+
+    @Override
+    public String toString() {
+        return "active=" + numActive + ", idle=" + numIdle + ", maxActive=" + maxActive + ", borrowed=" + numBorrowed
+               + ", avgWait=" + getAverageBorrowWaitMillis() + "ms, maxWait=" + getMaxBorrowWaitMillis()
+               + "ms, statementsPrepared=" + numStatementsPrepared + ", statementsReused=" + numStatementsReused;
+    }
+}
@@ -47,6 +47,7 @@ import java.sql.SQLException;
 import org.apache.commons.dbcp.DelegatingConnection;
 import org.deegree.commons.jdbc.ConnectionPool;
 import org.deegree.db.ConnectionProvider;
+import org.deegree.db.ConnectionStatistics;
 import org.deegree.sqldialect.SQLDialect;
 import org.deegree.workspace.Resource;
 import org.deegree.workspace.ResourceException;
@@ -71,6 +72,16 @@ public class LegacyConnectionProvider implements ConnectionProvider {
 
     public LegacyConnectionProvider( String url, String user, String password, boolean readOnly,
                                      LegacyConnectionProviderMetadata metadata ) {
+        this( url, user, password, readOnly, 0, metadata );
+    }
+
+    /**
+     * @param maxCachedStatements
+     *            maximum number of prepared statements cached per connection, <code>0</code> disables statement
+     *            caching
+     */
+    public LegacyConnectionProvider( String url, String user, String password, boolean readOnly,
+                                     int maxCachedStatements, LegacyConnectionProviderMetadata metadata ) {
         this.metadata = metadata;
         // hardcoded as until 3.2
         int poolMinSize = 5;
@@ -78,9 +89,10 @@ public class LegacyConnectionProvider implements ConnectionProvider {
 
         if ( metadata != null ) {
             pool = new ConnectionPool( metadata.getIdentifier().getId(), url, user, password, readOnly, poolMinSize,
-                                       poolMaxSize );
+                                       poolMaxSize, maxCachedStatements );
         } else {
-            pool = new ConnectionPool( "<unspecified>", url, user, password, readOnly, poolMinSize, poolMaxSize );
+            pool = new ConnectionPool( "<unspecified>", url, user, password, readOnly, poolMinSize, poolMaxSize,
+                                       maxCachedStatements );
         }
     }
 
@@ -134,4 +146,12 @@ public class LegacyConnectionProvider implements ConnectionProvider {
         }
     }
 
+    @Override
+    public ConnectionStatistics getStatistics() {
+        return new ConnectionStatistics( pool.getNumActive(), pool.getNumIdle(), pool.getMaxActive(),
+                                         pool.getNumBorrowed(), pool.getBorrowWaitNanos(),
+                                         pool.getMaxBorrowWaitNanos(), pool.getNumStatementsPrepared(),
+                                         pool.getNumStatementsReused() );
+    }
+
 }
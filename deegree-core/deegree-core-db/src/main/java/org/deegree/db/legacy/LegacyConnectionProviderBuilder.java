@@ -85,8 +85,10 @@ public class LegacyConnectionProviderBuilder implements ResourceBuilder<Connecti
     public ConnectionProvider build() {
         String url = config.getUrl();
         LegacyConnectionProvider cprov;
+        int maxCachedStatements = config.getMaxCachedStatements() == null ? 0 : config.getMaxCachedStatements();
         cprov = new LegacyConnectionProvider( url, config.getUser(), config.getPassword(),
-                                              config.isReadOnly() == null ? false : config.isReadOnly(), metadata );
+                                              config.isReadOnly() == null ? false : config.isReadOnly(),
+                                              maxCachedStatements, metadata );
 
         ServiceLoader<SqlDialectProvider> dialectLoader = ServiceLoader.load( SqlDialectProvider.class,
                                                                               workspace.getModuleClassLoader() );
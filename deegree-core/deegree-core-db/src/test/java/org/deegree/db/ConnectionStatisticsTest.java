@@ -0,0 +1,117 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.db;
+
+import static org.junit.Assert.assertEquals;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import org.deegree.db.legacy.LegacyConnectionProvider;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests for {@link ConnectionStatistics} (as reported by the {@link LegacyConnectionProvider} for an in-memory H2
+ * database).
+ * 
+ * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class ConnectionStatisticsTest {
+
+    @BeforeClass
+    public static void registerDriver()
+                            throws ClassNotFoundException {
+        Class.forName( "org.h2.Driver" );
+    }
+
+    @Test
+    public void testWaitTimes() {
+        ConnectionStatistics stats = new ConnectionStatistics( 1, 2, 25, 4, 8000000, 3000000, 5, 6 );
+        assertEquals( 8.0, stats.getBorrowWaitMillis(), 1E-9 );
+        assertEquals( 2.0, stats.getAverageBorrowWaitMillis(), 1E-9 );
+        assertEquals( 3.0, stats.getMaxBorrowWaitMillis(), 1E-9 );
+    }
+
+    @Test
+    public void testWaitTimesNothingBorrowed() {
+        ConnectionStatistics stats = new ConnectionStatistics( 0, 0, 25, 0, 0, 0, 0, 0 );
+        assertEquals( 0.0, stats.getAverageBorrowWaitMillis(), 0.0 );
+    }
+
+    @Test
+    public void testStatisticsFromProvider()
+                            throws SQLException {
+        LegacyConnectionProvider provider = new LegacyConnectionProvider( "jdbc:h2:mem:stats", "sa", "", false, 10,
+                                                                          null );
+        try {
+            Connection conn1 = provider.getConnection();
+            Connection conn2 = provider.getConnection();
+            prepareAndClose( conn1, "SELECT 1" );
+            prepareAndClose( conn1, "SELECT 1" );
+            prepareAndClose( conn1, "SELECT 1" );
+            prepareAndClose( conn2, "SELECT 1" );
+
+            ConnectionStatistics stats = provider.getStatistics();
+            assertEquals( 2, stats.getNumActive() );
+            assertEquals( 0, stats.getNumIdle() );
+            assertEquals( 25, stats.getMaxActive() );
+            assertEquals( 2, stats.getNumBorrowed() );
+            // statements are cached per connection
+            assertEquals( 2, stats.getNumStatementsPrepared() );
+            assertEquals( 2, stats.getNumStatementsReused() );
+
+            conn1.close();
+            stats = provider.getStatistics();
+            assertEquals( 1, stats.getNumActive() );
+            assertEquals( 1, stats.getNumIdle() );
+            conn2.close();
+        } finally {
+            provider.destroy();
+        }
+    }
+
+    private static void prepareAndClose( Connection conn, String sql )
+                            throws SQLException {
+        PreparedStatement stmt = conn.prepareStatement( sql );
+        stmt.executeQuery().close();
+        stmt.close();
+    }
+}
@@ -0,0 +1,175 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.geometry.io;
+
+/**
+ * Reusable char buffer for assembling formatted coordinate lists (e.g. <code>gml:posList</code> or
+ * <code>gml:coordinates</code>), so a whole list can be written with a single
+ * <code>XMLStreamWriter.writeCharacters(char[],int,int)</code> call.
+ * <p>
+ * If the {@link CoordinateFormatter} is a {@link DecimalCoordinateFormatter}, ordinates are written into the buffer
+ * directly via {@link DecimalCoordinateFormatter#format(double, char[], int)}, otherwise
+ * {@link CoordinateFormatter#format(double)} is used. Instances are not thread-safe.
+ * </p>
+ * 
+ * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class CoordinateCharBuffer {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final CoordinateFormatter formatter;
+
+    private final DecimalCoordinateFormatter decimalFormatter;
+
+    private char[] chars = new char[INITIAL_CAPACITY];
+
+    private int length;
+
+    /**
+     * Creates a new {@link CoordinateCharBuffer} instance.
+     * 
+     * @param formatter
+     *            formatter to use for the ordinates, must not be <code>null</code>
+     */
+    public CoordinateCharBuffer( CoordinateFormatter formatter ) {
+        this.formatter = formatter;
+        if ( formatter instanceof DecimalCoordinateFormatter ) {
+            decimalFormatter = (DecimalCoordinateFormatter) formatter;
+        } else {
+            decimalFormatter = null;
+        }
+    }
+
+    /**
+     * Empties the buffer (retaining the allocated capacity).
+     */
+    public void reset() {
+        length = 0;
+    }
+
+    /**
+     * Appends the formatted representation of the given ordinate.
+     * 
+     * @param ordinate
+     *            ordinate to append
+     */
+    public void append( double ordinate ) {
+        if ( decimalFormatter != null ) {
+            ensureCapacity( length + DecimalCoordinateFormatter.MAX_DIRECT_LENGTH );
+            int written = decimalFormatter.format( ordinate, chars, length );
+            if ( written >= 0 ) {
+                length += written;
+                return;
+            }
+        }
+        String s = formatter.format( ordinate );
+        ensureCapacity( length + s.length() );
+        s.getChars( 0, s.length(), chars, length );
+        length += s.length();
+    }
+
+    /**
+     * Appends the formatted representations of the given ordinates, separated by the given char.
+     * 
+     * @param ordinates
+     *            ordinates to append, must not be <code>null</code>
+     * @param separator
+     *            separator char
+     */
+    public void append( double[] ordinates, char separator ) {
+        for ( int i = 0; i < ordinates.length; i++ ) {
+            if ( i > 0 ) {
+                append( separator );
+            }
+            append( ordinates[i] );
+        }
+    }
+
+    /**
+     * Appends the given char.
+     * 
+     * @param c
+     *            char to append
+     */
+    public void append( char c ) {
+        ensureCapacity( length + 1 );
+        chars[length++] = c;
+    }
+
+    /**
+     * Returns whether the buffer is empty.
+     * 
+     * @return <code>true</code>, if no chars have been appended since the last {@link #reset()}
+     */
+    public boolean isEmpty() {
+        return length == 0;
+    }
+
+    /**
+     * Returns the backing array (only the first {@link #length()} chars are valid).
+     * 
+     * @return the backing array, never <code>null</code>
+     */
+    public char[] getChars() {
+        return chars;
+    }
+
+    /**
+     * Returns the number of valid chars in the buffer.
+     * 
+     * @return number of valid chars
+     */
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public String toString() {
+        return new String( chars, 0, length );
+    }
+
+    private void ensureCapacity( int minCapacity ) {
+        if ( minCapacity > chars.length ) {
+            char[] newChars = new char[Math.max( minCapacity, chars.length * 2 )];
+            System.arraycopy( chars, 0, newChars, 0, length );
+            chars = newChars;
+        }
+    }
+}
@@ -43,6 +43,15 @@ import org.deegree.cs.components.Unit;
 
 /**
  * {@link CoordinateFormatter} based on {@link DecimalFormat}.
+ * <p>
+ * Besides the {@link String}-based {@link #format(double)}, this formatter offers
+ * {@link #format(double, char[], int)} which writes the digits of an ordinate directly into a caller-provided char
+ * array. For instances created from a number of decimal places (or a unit), this avoids the {@link DecimalFormat}
+ * round trip and any temporary objects, while yielding exactly the same characters.
+ * </p>
+ * <p>
+ * Instances are thread-safe and may be shared by concurrent encoders.
+ * </p>
  * 
  * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
  * @author last edited by: $Author$
@@ -54,11 +63,26 @@ public class DecimalCoordinateFormatter implements CoordinateFormatter {
     /** Number of decimal places used by default (6). **/
     public static final int DEFAULT_PLACES = 6;
 
+    /** Maximum number of characters written by a single call to {@link #format(double, char[], int)}. **/
+    public static final int MAX_DIRECT_LENGTH = 32;
+
     /** Number of decimal places used for metric coordinates (3). **/
     private static final int DEFAULT_PLACES_METRE = 3;
 
+    /** Maximum number of decimal places that are formatted directly. **/
+    private static final int MAX_DIRECT_PLACES = 9;
+
+    /** Scaled values must be below this limit to be formatted directly (exact integers in double precision). **/
+    private static final double DIRECT_LIMIT = 1E15;
+
     private final DecimalFormat decimalFormat;
 
+    private final int places;
+
+    private final long scale;
+
+    private final boolean direct;
+
     /**
      * Creates a new {@link DecimalCoordinateFormatter} instance that uses {@link #DEFAULT_PLACES}.
      */
@@ -73,20 +97,7 @@ public class DecimalCoordinateFormatter implements CoordinateFormatter {
      *            unit-of-measure, may be <code>null</code>
      */
     public DecimalCoordinateFormatter( IUnit uom ) {
-        int decimalPlaces = DEFAULT_PLACES;
-        if ( uom == Unit.METRE ) {
-            decimalPlaces = DEFAULT_PLACES_METRE;
-        }
-        StringBuffer pattern = new StringBuffer( "0" );
-        if ( decimalPlaces > 0 ) {
-            pattern.append( "." );
-            for ( int i = 0; i < decimalPlaces; i++ ) {
-                pattern.append( "0" );
-            }
-        }
-        DecimalFormatSymbols symbols = new DecimalFormatSymbols();
-        symbols.setDecimalSeparator( '.' );
-        decimalFormat = new DecimalFormat( pattern.toString(), symbols );
+        this( uom == Unit.METRE ? DEFAULT_PLACES_METRE : DEFAULT_PLACES );
     }
 
     /**
@@ -106,6 +117,14 @@ public class DecimalCoordinateFormatter implements CoordinateFormatter {
         DecimalFormatSymbols symbols = new DecimalFormatSymbols();
         symbols.setDecimalSeparator( '.' );
         decimalFormat = new DecimalFormat( pattern.toString(), symbols );
+        places = decimalPlaces < 0 ? 0 : decimalPlaces;
+        long s = 1;
+        for ( int i = 0; i < places; i++ ) {
+            s *= 10;
+        }
+        scale = s;
+        // locales with other digits or minus signs are left to DecimalFormat
+        direct = places <= MAX_DIRECT_PLACES && symbols.getZeroDigit() == '0' && symbols.getMinusSign() == '-';
     }
 
     /**
@@ -116,10 +135,79 @@ public class DecimalCoordinateFormatter implements CoordinateFormatter {
      */
     public DecimalCoordinateFormatter( DecimalFormat decimalFormat ) {
         this.decimalFormat = decimalFormat;
+        this.places = 0;
+        this.scale = 1;
+        this.direct = false;
     }
 
     @Override
     public String format( double number ) {
-        return decimalFormat.format( number );
+        // DecimalFormat is not thread-safe
+        synchronized ( decimalFormat ) {
+            return decimalFormat.format( number );
+        }
+    }
+
+    /**
+     * Writes the formatted representation of the given ordinate into the given char array, without creating any
+     * temporary objects.
+     * <p>
+     * The output is identical to {@link #format(double)}. If the ordinate cannot be formatted directly (e.g. NaN,
+     * infinite or very large values, values that are too close to a rounding tie, or an instance created from a
+     * {@link DecimalFormat}), nothing is written and <code>-1</code> is returned, so the caller has to fall back to
+     * {@link #format(double)}.
+     * </p>
+     * 
+     * @param number
+     *            ordinate to be formatted
+     * @param buffer
+     *            target array, must provide at least {@link #MAX_DIRECT_LENGTH} chars starting at <code>offset</code>
+     * @param offset
+     *            index of the first char to write
+     * @return number of written chars, or <code>-1</code> if the ordinate has not been written
+     */
+    public int format( double number, char[] buffer, int offset ) {
+        if ( !direct ) {
+            return -1;
+        }
+        double scaled = Math.abs( number ) * scale;
+        if ( !( scaled < DIRECT_LIMIT ) ) {
+            return -1;
+        }
+        // DecimalFormat rounds half-even based on the exact binary value, so leave (near) ties to it
+        double fraction = scaled - Math.floor( scaled );
+        if ( Math.abs( fraction - 0.5 ) <= 2 * Math.ulp( scaled ) ) {
+            return -1;
+        }
+        long digits = (long) Math.rint( scaled );
+
+        int pos = offset;
+        // DecimalFormat keeps the sign of negative values that round to zero (and of -0.0)
+        if ( number < 0.0 || ( number == 0.0 && 1.0 / number < 0.0 ) ) {
+            buffer[pos++] = '-';
+        }
+        pos = writeDigits( digits / scale, 1, buffer, pos );
+        if ( places > 0 ) {
+            buffer[pos++] = '.';
+            pos = writeDigits( digits % scale, places, buffer, pos );
+        }
+        return pos - offset;
+    }
+
+    private static int writeDigits( long value, int minDigits, char[] buffer, int offset ) {
+        int numDigits = 1;
+        for ( long v = value / 10; v > 0; v /= 10 ) {
+            numDigits++;
+        }
+        if ( numDigits < minDigits ) {
+            numDigits = minDigits;
+        }
+        int pos = offset + numDigits;
+        long v = value;
+        for ( int i = pos - 1; i >= offset; i-- ) {
+            buffer[i] = (char) ( '0' + ( v % 10 ) );
+            v /= 10;
+        }
+        return pos;
     }
 }
\ No newline at end of file
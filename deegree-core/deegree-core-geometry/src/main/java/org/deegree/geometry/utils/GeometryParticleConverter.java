@@ -53,4 +53,15 @@ public interface GeometryParticleConverter extends ParticleConverter<Geometry> {
     public String getSrid();
 
     public ICRS getCrs();
+
+    /**
+     * Returns an SQL snippet for selecting the geometry in a generalized (simplified) form.
+     * 
+     * @param tableAlias
+     *            alias of the table that stores the geometry, can be <code>null</code>
+     * @param tolerance
+     *            simplification tolerance (in units of the storage CRS), must be positive
+     * @return SQL snippet, or <code>null</code> if generalization is not supported by the database
+     */
+    public String getSimplifiedSelectSnippet( String tableAlias, double tolerance );
 }
\ No newline at end of file
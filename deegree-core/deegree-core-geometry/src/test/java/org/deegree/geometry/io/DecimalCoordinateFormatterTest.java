@@ -0,0 +1,102 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.geometry.io;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.deegree.cs.components.Unit;
+import org.junit.Test;
+
+/**
+ * Tests that {@link DecimalCoordinateFormatter#format(double, char[], int)} and {@link CoordinateCharBuffer} yield
+ * the same output as {@link DecimalCoordinateFormatter#format(double)}.
+ * 
+ * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class DecimalCoordinateFormatterTest {
+
+    private static final double[] SPECIAL = { 0.0, -0.0, -0.0001, -0.0005, 0.0005, 0.0015, 0.5, 1.5, 2.5, -2.5,
+                                             1234567.8915, 999.9999995, -3.9999999, 1E14, 1E20, Double.NaN,
+                                             Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.MIN_VALUE };
+
+    @Test
+    public void testDirectFormatEqualsDecimalFormat() {
+        Random random = new Random( 42 );
+        char[] buffer = new char[DecimalCoordinateFormatter.MAX_DIRECT_LENGTH];
+        for ( int places = 0; places <= 10; places++ ) {
+            DecimalCoordinateFormatter formatter = new DecimalCoordinateFormatter( places );
+            for ( double value : SPECIAL ) {
+                assertSameOutput( formatter, value, buffer );
+            }
+            for ( int i = 0; i < 100000; i++ ) {
+                assertSameOutput( formatter, ( random.nextDouble() - 0.5 ) * 360, buffer );
+                assertSameOutput( formatter, random.nextDouble() * 1E7, buffer );
+                assertSameOutput( formatter, Math.round( random.nextGaussian() * 1E6 ) / 1000.0, buffer );
+            }
+        }
+    }
+
+    @Test
+    public void testCoordinateCharBuffer() {
+        DecimalCoordinateFormatter formatter = new DecimalCoordinateFormatter( Unit.METRE );
+        CoordinateCharBuffer buffer = new CoordinateCharBuffer( formatter );
+        for ( int i = 0; i < 1000; i++ ) {
+            buffer.append( new double[] { i + 0.25, -i - 0.0625 }, ',' );
+            buffer.append( ' ' );
+        }
+        StringBuilder expected = new StringBuilder();
+        for ( int i = 0; i < 1000; i++ ) {
+            expected.append( formatter.format( i + 0.25 ) ).append( ',' ).append( formatter.format( -i - 0.0625 ) );
+            expected.append( ' ' );
+        }
+        assertEquals( expected.toString(), buffer.toString() );
+        buffer.reset();
+        buffer.append( Double.NaN );
+        assertEquals( formatter.format( Double.NaN ), buffer.toString() );
+    }
+
+    private void assertSameOutput( DecimalCoordinateFormatter formatter, double value, char[] buffer ) {
+        int length = formatter.format( value, buffer, 0 );
+        if ( length >= 0 ) {
+            assertEquals( "Value: " + value, formatter.format( value ), new String( buffer, 0, length ) );
+        }
+    }
+}
@@ -236,7 +236,9 @@ public class ConfigUtils {
         } else if ( cfg.getFeatureInfoRadius() != null ) {
             rad = cfg.getFeatureInfoRadius();
         }
-        return new MapOptions( quali, interpol, alias, maxFeats, rad );
+        MapOptions options = new MapOptions( quali, interpol, alias, maxFeats, rad );
+        options.setSimplification( cfg.isSimplification() );
+        return options;
     }
 
     public static Map<String, Dimension<?>> parseDimensions( String layerName, List<DimensionType> dimensions ) {
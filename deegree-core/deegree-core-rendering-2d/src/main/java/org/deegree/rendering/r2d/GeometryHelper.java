@@ -46,7 +46,6 @@ import static org.slf4j.LoggerFactory.getLogger;
 
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Path2D.Double;
-import java.util.Iterator;
 
 import org.deegree.cs.coordinatesystems.ICRS;
 import org.deegree.cs.exceptions.TransformationException;
@@ -78,8 +77,13 @@ class GeometryHelper {
 
     private GeometryTransformer transformer;
 
+    // maximum deviation (in pixels) of removed vertices from the simplified line
+    private static final double SIMPLIFICATION_TOLERANCE = 0.25;
+
     private AffineTransform worldToScreen;
 
+    private boolean simplification = true;
+
     GeometryHelper( Envelope bbox, int width, AffineTransform worldToScreen ) {
         this.worldToScreen = worldToScreen;
         try {
@@ -92,36 +96,112 @@ class GeometryHelper {
         }
     }
 
-    Double fromCurve( Curve curve, boolean close ) {
-        Double line = new Double();
+    void setSimplification( boolean simplification ) {
+        this.simplification = simplification;
+    }
 
+    Double fromCurve( Curve curve, boolean close ) {
         // TODO use error criterion
         ICRS crs = curve.getCoordinateSystem();
         curve = linearizer.linearize( curve, new NumPointsCriterion( 100 ) );
         curve.setCoordinateSystem( crs );
         Points points = curve.getControlPoints();
-        Iterator<Point> iter = points.iterator();
-        Point p = iter.next();
-        double x = p.get0(), y = p.get1();
-        line.moveTo( x, y );
-        while ( iter.hasNext() ) {
-            p = iter.next();
-            if ( iter.hasNext() ) {
-                line.lineTo( p.get0(), p.get1() );
-            } else {
-                if ( close && isZero( x - p.get0() ) && isZero( y - p.get1() ) ) {
-                    line.closePath();
-                } else {
-                    line.lineTo( p.get0(), p.get1() );
-                }
-            }
+        int size = points.size();
+        double[] coords = new double[size * 2];
+        int i = 0;
+        for ( Point p : points ) {
+            coords[i++] = p.get0();
+            coords[i++] = p.get1();
         }
+        close = close && size > 1 && isZero( coords[0] - coords[2 * size - 2] )
+                && isZero( coords[1] - coords[2 * size - 1] );
+
+        worldToScreen.transform( coords, 0, coords, 0, size );
 
-        line.transform( worldToScreen );
+        boolean[] keep = null;
+        if ( simplification && size > 2 ) {
+            keep = simplify( coords, size, close );
+        }
 
+        Double line = new Double();
+        line.moveTo( coords[0], coords[1] );
+        int last = close ? size - 1 : size;
+        for ( i = 1; i < last; i++ ) {
+            if ( keep == null || keep[i] ) {
+                line.lineTo( coords[2 * i], coords[2 * i + 1] );
+            }
+        }
+        if ( close ) {
+            line.closePath();
+        }
         return line;
     }
 
+    /**
+     * Determines the vertices that are retained when the given screen coordinates are simplified with the
+     * Douglas-Peucker algorithm. The first and the last vertex are always retained. Rings are not simplified below
+     * four vertices (including the closing one).
+     * 
+     * @return the vertices to keep, or <code>null</code> if all vertices need to be kept
+     */
+    private static boolean[] simplify( double[] coords, int size, boolean ring ) {
+        boolean[] keep = new boolean[size];
+        keep[0] = true;
+        keep[size - 1] = true;
+        int kept = 2;
+        double tolerance = SIMPLIFICATION_TOLERANCE * SIMPLIFICATION_TOLERANCE;
+        int[] stack = new int[2 * size];
+        int top = 0;
+        stack[top++] = 0;
+        stack[top++] = size - 1;
+        while ( top > 0 ) {
+            int to = stack[--top];
+            int from = stack[--top];
+            double maxDist = -1;
+            int maxIndex = -1;
+            for ( int i = from + 1; i < to; i++ ) {
+                double dist = distanceSq( coords, i, from, to );
+                if ( dist > maxDist ) {
+                    maxDist = dist;
+                    maxIndex = i;
+                }
+            }
+            if ( maxIndex != -1 && maxDist > tolerance ) {
+                keep[maxIndex] = true;
+                kept++;
+                stack[top++] = from;
+                stack[top++] = maxIndex;
+                stack[top++] = maxIndex;
+                stack[top++] = to;
+            }
+        }
+        if ( kept == size || ( ring && kept < 4 ) ) {
+            return null;
+        }
+        return keep;
+    }
+
+    // squared distance of a vertex to the segment between two other vertices
+    private static double distanceSq( double[] coords, int index, int from, int to ) {
+        double x = coords[2 * index], y = coords[2 * index + 1];
+        double x1 = coords[2 * from], y1 = coords[2 * from + 1];
+        double dx = coords[2 * to] - x1, dy = coords[2 * to + 1] - y1;
+        double lengthSq = dx * dx + dy * dy;
+        if ( lengthSq > 0 ) {
+            double t = ( ( x - x1 ) * dx + ( y - y1 ) * dy ) / lengthSq;
+            if ( t > 1 ) {
+                x1 += dx;
+                y1 += dy;
+            } else if ( t > 0 ) {
+                x1 += t * dx;
+                y1 += t * dy;
+            }
+        }
+        dx = x - x1;
+        dy = y - y1;
+        return dx * dx + dy * dy;
+    }
+
     <T extends Geometry> T transform( T g ) {
         if ( g == null ) {
             LOG.warn( "Trying to transform null geometry." );
@@ -44,20 +44,27 @@ package org.deegree.rendering.r2d;
 import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
 import static org.deegree.commons.utils.math.MathUtils.round;
 import static org.deegree.rendering.r2d.RenderHelper.renderMark;
+import static org.deegree.style.utils.SymbolCache.getRotationBucket;
 
 import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.TexturePaint;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
+import java.util.Arrays;
 
 import org.deegree.style.styling.components.Fill;
 import org.deegree.style.styling.components.Graphic;
+import org.deegree.style.styling.components.Mark;
+import org.deegree.style.styling.components.Stroke;
 import org.deegree.style.styling.components.UOM;
+import org.deegree.style.utils.SymbolCache;
+import org.deegree.style.utils.SymbolCache.Key;
 import org.deegree.style.utils.UomCalculator;
 
 /**
- * Responsible for applying fill stylings to a graphics 2d.
+ * Responsible for applying fill stylings to a graphics 2d. Marks used as graphic fills are rasterized once and kept in
+ * the shared {@link SymbolCache}.
  * 
  * @author <a href="mailto:schmitz@occamlabs.de">Andreas Schmitz</a>
  * @author last edited by: $Author: stranger $
@@ -66,6 +73,8 @@ import org.deegree.style.utils.UomCalculator;
  */
 class Java2DFillRenderer {
 
+    private static final SymbolCache symbols = SymbolCache.getInstance();
+
     private UomCalculator uomCalculator;
 
     private Graphics2D graphics;
@@ -80,12 +89,17 @@ class Java2DFillRenderer {
 
         if ( graphic.image == null ) {
             int size = round( uomCalculator.considerUOM( graphic.size, uom ) );
-            img = new BufferedImage( size, size, TYPE_INT_ARGB );
-            Graphics2D g = img.createGraphics();
-            Java2DRenderer renderer = new Java2DRenderer( g );
-            renderMark( graphic.mark, graphic.size < 0 ? 6 : size, uom, renderer.rendererContext, 0, 0,
-                        graphic.rotation );
-            g.dispose();
+            Key key = getMarkKey( graphic.mark, size, graphic.rotation, uom );
+            if ( key == null ) {
+                img = renderMarkImage( graphic.mark, graphic.size < 0 ? 6 : size, size, uom, graphic.rotation );
+            } else {
+                img = symbols.get( key );
+                if ( img == null ) {
+                    img = renderMarkImage( graphic.mark, graphic.size < 0 ? 6 : size, size, uom,
+                                           getRotationBucket( graphic.rotation ) );
+                    symbols.put( key, img );
+                }
+            }
         } else {
             img = graphic.image;
         }
@@ -93,6 +107,49 @@ class Java2DFillRenderer {
         graphics.setPaint( new TexturePaint( img, getGraphicBounds( graphic, 0, 0, uom ) ) );
     }
 
+    private static BufferedImage renderMarkImage( Mark mark, int markSize, int size, UOM uom, double rotation ) {
+        BufferedImage img = new BufferedImage( size, size, TYPE_INT_ARGB );
+        Graphics2D g = img.createGraphics();
+        Java2DRenderer renderer = new Java2DRenderer( g );
+        renderMark( mark, markSize, uom, renderer.rendererContext, 0, 0, rotation );
+        g.dispose();
+        return img;
+    }
+
+    /**
+     * Returns the key of the rasterized mark in the {@link SymbolCache}.
+     * 
+     * @return key, <code>null</code> if the mark cannot be cached (e.g. because it uses graphic fills or strokes)
+     */
+    private static Key getMarkKey( Mark mark, int size, double rotation, UOM uom ) {
+        if ( size <= 0 ) {
+            return null;
+        }
+        Object symbol = mark.wellKnown;
+        if ( mark.shape != null ) {
+            symbol = mark.shape;
+        } else if ( mark.font != null ) {
+            symbol = mark.font + "#" + mark.markIndex;
+        }
+        Color fillColor = null;
+        if ( mark.fill != null ) {
+            if ( mark.fill.graphic != null ) {
+                return null;
+            }
+            fillColor = mark.fill.color;
+        }
+        Stroke stroke = mark.stroke;
+        if ( stroke == null ) {
+            return new Key( symbol, size, size, getRotationBucket( rotation ), uom, fillColor );
+        }
+        if ( stroke.stroke != null || stroke.fill != null ) {
+            return null;
+        }
+        String dashes = stroke.dasharray == null ? null : Arrays.toString( stroke.dasharray );
+        return new Key( symbol, size, size, getRotationBucket( rotation ), uom, fillColor, stroke.color,
+                        stroke.width, stroke.linejoin, stroke.linecap, dashes, stroke.dashoffset );
+    }
+
     void applyFill( Fill fill, UOM uom ) {
         if ( fill == null ) {
             graphics.setPaint( new Color( 0, 0, 0, 0 ) );
@@ -138,6 +138,20 @@ public class Java2DRenderer implements Renderer {
         rendererContext = new RendererContext( pixelSize, res, graphics, this, bbox, width, worldToScreen );
     }
 
+    /**
+     * Enables or disables the simplification of lines and polygon rings in screen space (enabled by default).
+     * Simplification removes vertices that deviate from the simplified line by less than a fraction of a pixel, so it
+     * does not change the rendered image noticeably.
+     * 
+     * @param simplification
+     *            <code>true</code>, if geometries shall be simplified before rendering
+     */
+    public void setSimplification( boolean simplification ) {
+        if ( rendererContext.geomHelper != null ) {
+            rendererContext.geomHelper.setSimplification( simplification );
+        }
+    }
+
     @Override
     public void render( PointStyling styling, Geometry geom ) {
         if ( geom == null ) {
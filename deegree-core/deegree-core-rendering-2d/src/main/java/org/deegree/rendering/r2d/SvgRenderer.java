@@ -54,8 +54,6 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.LinkedHashMap;
-import java.util.Map;
 
 import javax.media.jai.RenderedOp;
 
@@ -63,14 +61,15 @@ import org.apache.batik.transcoder.TranscoderException;
 import org.apache.batik.transcoder.TranscoderInput;
 import org.apache.batik.transcoder.TranscoderOutput;
 import org.apache.batik.transcoder.image.PNGTranscoder;
-import org.deegree.commons.utils.ComparablePair;
 import org.deegree.style.styling.components.Graphic;
+import org.deegree.style.utils.SymbolCache;
+import org.deegree.style.utils.SymbolCache.Key;
 import org.slf4j.Logger;
 
 import com.sun.media.jai.codec.MemoryCacheSeekableStream;
 
 /**
- * Renders svg images onto buffered images.
+ * Renders svg images onto buffered images. The images are cached in the shared {@link SymbolCache}.
  * 
  * @author <a href="mailto:schmitz@occamlabs.de">Andreas Schmitz</a>
  * @author last edited by: $Author: mschneider $
@@ -81,26 +80,19 @@ class SvgRenderer {
 
     private static final Logger LOG = getLogger( SvgRenderer.class );
 
-    final LinkedHashMap<ComparablePair<String, Integer>, BufferedImage> svgCache = new LinkedHashMap<ComparablePair<String, Integer>, BufferedImage>(
-                                                                                                                                                      256 ) {
-        private static final long serialVersionUID = -6847956873232942891L;
-
-        @Override
-        protected boolean removeEldestEntry( Map.Entry<ComparablePair<String, Integer>, BufferedImage> eldest ) {
-            return size() > 256; // yeah, hardcoded max size... TODO
-        }
-    };
+    private static final SymbolCache symbols = SymbolCache.getInstance();
 
     BufferedImage prepareSvg( Rectangle2D.Double rect, Graphic g ) {
-        BufferedImage img = null;
-        ComparablePair<String, Integer> cp = new ComparablePair<String, Integer>( g.imageURL, round( g.size ) );
-        if ( svgCache.containsKey( cp ) ) {
-            img = svgCache.get( cp );
-        } else {
+        // the image is drawn with the rounded size anyway
+        int width = round( rect.width );
+        int height = round( rect.height );
+        Key key = new Key( g.imageURL, width, height, 0 );
+        BufferedImage img = symbols.get( key );
+        if ( img == null ) {
             PNGTranscoder t = new PNGTranscoder();
 
-            t.addTranscodingHint( KEY_WIDTH, new Float( rect.width ) );
-            t.addTranscodingHint( KEY_HEIGHT, new Float( rect.height ) );
+            t.addTranscodingHint( KEY_WIDTH, new Float( width ) );
+            t.addTranscodingHint( KEY_HEIGHT, new Float( height ) );
 
             TranscoderInput input = new TranscoderInput( g.imageURL );
 
@@ -110,7 +102,6 @@ class SvgRenderer {
             TranscoderOutput output = new TranscoderOutput( out );
             InputStream in = null;
 
-            // TODO cache images
             try {
                 t.transcode( input, output );
                 out.flush();
@@ -118,7 +109,7 @@ class SvgRenderer {
                 MemoryCacheSeekableStream mcss = new MemoryCacheSeekableStream( in );
                 RenderedOp rop = create( "stream", mcss );
                 img = rop.getAsBufferedImage();
-                svgCache.put( cp, img );
+                symbols.put( key, img );
             } catch ( TranscoderException e ) {
                 LOG.warn( "Could not rasterize svg '{}': {}", g.imageURL, e.getLocalizedMessage() );
             } catch ( IOException e ) {
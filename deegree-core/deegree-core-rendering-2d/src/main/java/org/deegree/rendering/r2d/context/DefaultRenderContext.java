@@ -49,6 +49,7 @@ import static java.awt.RenderingHints.VALUE_RENDER_QUALITY;
 import static java.awt.RenderingHints.VALUE_RENDER_SPEED;
 import static java.awt.RenderingHints.VALUE_TEXT_ANTIALIAS_OFF;
 import static java.awt.RenderingHints.VALUE_TEXT_ANTIALIAS_ON;
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
 import static javax.imageio.ImageIO.write;
 import static org.apache.commons.io.IOUtils.closeQuietly;
 
@@ -64,6 +65,7 @@ import org.deegree.rendering.r2d.Java2DLabelRenderer;
 import org.deegree.rendering.r2d.Java2DTileRenderer;
 import org.deegree.rendering.r2d.labelplacement.AutoLabelPlacement;
 import org.deegree.style.utils.ImageUtils;
+import org.deegree.style.utils.Png8Encoder;
 
 /**
  * 
@@ -92,10 +94,19 @@ public class DefaultRenderContext implements RenderContext {
 
     private String format;
 
+    private RenderingInfo info;
+
+    private Png8Encoder png8Encoder;
+
     public DefaultRenderContext( RenderingInfo info ) {
+        this( info, ImageUtils.prepareImage( info.getFormat(), info.getWidth(), info.getHeight(),
+                                             info.getTransparent(), info.getBgColor() ) );
+    }
+
+    private DefaultRenderContext( RenderingInfo info, BufferedImage image ) {
+        this.info = info;
+        this.image = image;
         format = info.getFormat();
-        image = ImageUtils.prepareImage( format, info.getWidth(), info.getHeight(), info.getTransparent(),
-                                         info.getBgColor() );
         graphics = image.createGraphics();
         renderer = new Java2DRenderer( graphics, info.getWidth(), info.getHeight(), info.getEnvelope(),
                                        info.getPixelSize() * 1000 );
@@ -134,6 +145,17 @@ public class DefaultRenderContext implements RenderContext {
     public void setOutput( OutputStream out ) {
         this.out = out;
     }
+
+    /**
+     * Sets the encoder to use for the 8 bit PNG formats (<code>image/png; mode=8bit</code> and
+     * <code>image/png; subtype=8bit</code>).
+     * 
+     * @param png8Encoder
+     *            encoder to use, may be <code>null</code> (encoder with default settings)
+     */
+    public void setPng8Encoder( Png8Encoder png8Encoder ) {
+        this.png8Encoder = png8Encoder;
+    }
     
     /**
      * To be called after all Renderings are done, to render and maybe optimize the labels.
@@ -160,7 +182,8 @@ public class DefaultRenderContext implements RenderContext {
                     format = "bmp";
                 }
                 if ( format.equals( "png; subtype=8bit" ) || format.equals( "png; mode=8bit" ) ) {
-                    format = "png";
+                    ( png8Encoder == null ? new Png8Encoder() : png8Encoder ).encode( image, out );
+                    return true;
                 }
                 return write( image, format, out );
             }
@@ -175,11 +198,40 @@ public class DefaultRenderContext implements RenderContext {
         graphics.drawImage( img, 0, 0, null );
     }
 
+    /**
+     * Creates a context for rendering a single layer into a separate (transparent) image, e.g. to render several
+     * layers concurrently. The layer image and the collected labels are transferred to this context using
+     * {@link #paintLayer(DefaultRenderContext)}.
+     * <p>
+     * Only reads the rendering info of this context, so it may be called from other threads.
+     * </p>
+     * 
+     * @return a new context with the same extent and size, but a transparent ARGB image, never <code>null</code>
+     */
+    public DefaultRenderContext createLayerContext() {
+        BufferedImage layerImage = new BufferedImage( info.getWidth(), info.getHeight(), TYPE_INT_ARGB );
+        return new DefaultRenderContext( info, layerImage );
+    }
+
+    /**
+     * Draws the image of a layer context onto this context and takes over its (not yet placed) labels. Layer contexts
+     * must be painted in the order of the layers.
+     * 
+     * @param layerContext
+     *            context created by {@link #createLayerContext()}, must not be <code>null</code>
+     */
+    public void paintLayer( DefaultRenderContext layerContext ) {
+        layerContext.graphics.dispose();
+        graphics.drawImage( layerContext.image, 0, 0, null );
+        labelRenderer.getLabels().addAll( layerContext.labelRenderer.getLabels() );
+    }
+
     @Override
     public void applyOptions( MapOptions options ) {
         applyQuality( options );
         applyInterpolation( options );
         applyAntialias( options );
+        renderer.setSimplification( options.getSimplification() == null || options.getSimplification() );
     }
 
     private void applyAntialias( MapOptions options ) {
@@ -54,6 +54,8 @@ public class MapOptions {
 
     private int featureInfoRadius;
 
+    private Boolean simplification;
+
     public MapOptions( Quality quality, Interpolation interpol, Antialias antialias, int maxFeatures,
                        int featureInfoRadius ) {
         this.quality = quality;
@@ -138,6 +140,22 @@ public class MapOptions {
         this.featureInfoRadius = featureInfoRadius;
     }
 
+    /**
+     * @return whether geometries are simplified in screen space before rendering, <code>null</code> if not set
+     *         (which means enabled)
+     */
+    public Boolean getSimplification() {
+        return simplification;
+    }
+
+    /**
+     * @param simplification
+     *            whether geometries are simplified in screen space before rendering, <code>null</code> if not set
+     */
+    public void setSimplification( Boolean simplification ) {
+        this.simplification = simplification;
+    }
+
     /**
      * <code>Quality</code>
      * 
@@ -58,6 +58,19 @@ public class MapOptionsHelper {
         insertInterpolation( layer, options, layerDefaults, globalDefaults );
         insertMaxFeatures( layer, options, layerDefaults, globalDefaults );
         insertRadius( layer, options, layerDefaults, globalDefaults );
+        insertSimplification( layer, options, layerDefaults, globalDefaults );
+    }
+
+    private static void insertSimplification( String layer, MapOptionsMaps options, MapOptions layerDefaults,
+                                              MapOptions globalDefaults ) {
+        if ( options.getSimplification( layer ) == null ) {
+            if ( layerDefaults != null ) {
+                options.setSimplification( layer, layerDefaults.getSimplification() );
+            }
+            if ( options.getSimplification( layer ) == null ) {
+                options.setSimplification( layer, globalDefaults.getSimplification() );
+            }
+        }
     }
 
     private static void insertRadius( String layer, MapOptionsMaps options, MapOptions layerDefaults,
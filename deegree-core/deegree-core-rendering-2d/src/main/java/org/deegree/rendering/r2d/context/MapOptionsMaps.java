@@ -108,6 +108,11 @@ public class MapOptionsMaps {
         return opts == null ? null : opts.getInterpolation();
     }
 
+    public Boolean getSimplification( String layer ) {
+        MapOptions opts = options.get( layer );
+        return opts == null ? null : opts.getSimplification();
+    }
+
     public void setMaxFeatures( String layer, int maxFeatures ) {
         if ( options.get( layer ) == null ) {
             options.put( layer, new MapOptions( null, null, null, maxFeatures, -1 ) );
@@ -148,9 +153,18 @@ public class MapOptionsMaps {
         }
     }
 
+    public void setSimplification( String layer, Boolean simplification ) {
+        if ( options.get( layer ) == null ) {
+            options.put( layer, new MapOptions( null, null, null, -1, -1 ) );
+        }
+        options.get( layer ).setSimplification( simplification );
+    }
+
     public MapOptions get( String layer ) {
-        return new MapOptions( getQuality( layer ), getInterpolation( layer ), getAntialias( layer ),
-                               getMaxFeatures( layer ), getFeatureInfoRadius( layer ) );
+        MapOptions opts = new MapOptions( getQuality( layer ), getInterpolation( layer ), getAntialias( layer ),
+                                          getMaxFeatures( layer ), getFeatureInfoRadius( layer ) );
+        opts.setSimplification( getSimplification( layer ) );
+        return opts;
     }
 
 }
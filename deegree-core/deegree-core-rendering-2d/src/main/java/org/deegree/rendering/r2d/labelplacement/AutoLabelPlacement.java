@@ -39,6 +39,8 @@ import static org.slf4j.LoggerFactory.getLogger;
 import org.slf4j.Logger;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 
 import org.deegree.rendering.r2d.Label;
@@ -47,6 +49,8 @@ import org.deegree.rendering.r2d.RendererContext;
 import org.deegree.rendering.r2d.Java2DRenderer;
 import org.deegree.style.utils.UomCalculator;
 
+import com.vividsolutions.jts.geom.Envelope;
+
 /**
  * <code>Automatic Label Placement, based on org.deegree.graphics.optimizers.LabelOptimizer from deegree2 </code>
  * 
@@ -68,8 +72,8 @@ public class AutoLabelPlacement {
 
     private ArrayList<PointLabelPositionOptions> labelPositionsList;
     
-    // collision matrix of PointLabelPositionOptions that may overlap
-    private boolean[][] collisionMatrix;
+    // for every PointLabelPositionOptions, the indices of the other PointLabelPositionOptions that may overlap
+    private int[][] neighbours;
     
     float placementQuality = 0.0f;
     int intersectionQuality = 0;
@@ -94,7 +98,7 @@ public class AutoLabelPlacement {
         LOG.debug( "Added "+labelPositionsList.size() + " Labels of " + labelList.size() + " to auto placement" );
     
         if( labelPositionsList.size() > 1 ){
-            buildCollisionMatrix();
+            neighbours = buildNeighbours( labelPositionsList );
     
             // do the magic
             try {
@@ -129,7 +133,11 @@ public class AutoLabelPlacement {
         LOG.debug( "Starting Annealing with value: " + currentQuality + ", trying to reach: " + ( n + 0.8 * 40 ));
         long now = System.currentTimeMillis();
 
-        while ( counter <= 2500 && currentQuality > ( n + 0.8 * 40 ) ) {
+        // every iteration only considers the neighbours of the chosen label, so the number of iterations can grow with
+        // the number of labels
+        int maxIterations = Math.max( 2500, 20 * n );
+
+        while ( counter <= maxIterations && currentQuality > ( n + 0.8 * 40 ) ) {
 
             counter++;
             if ( successCounter == 5 ) {
@@ -178,26 +186,102 @@ public class AutoLabelPlacement {
     }
 
     /**
-     * Builds the collision matrix for all <code>PointLabelPositionOptions</code>.
+     * Determines the neighbours (the <code>PointLabelPositionOptions</code> that may overlap) of all
+     * <code>PointLabelPositionOptions</code>. The bounding boxes of all possible positions are put into a uniform grid,
+     * so only <code>PointLabelPositionOptions</code> that share a grid cell have to be tested against each other.
+     * 
+     * @param labelPositionsList
+     *            label positions, must not be <code>null</code> or empty
+     * @return for every label position, the indexes of the label positions that may overlap with it, never
+     *         <code>null</code>
      */
-    private void buildCollisionMatrix() {
-        
+    static int[][] buildNeighbours( List<PointLabelPositionOptions> labelPositionsList ) {
+
         long now = System.currentTimeMillis();
-        collisionMatrix = new boolean[labelPositionsList.size()][labelPositionsList.size()];
-        
-        for ( int i = 0; i < labelPositionsList.size(); i++ ) {
+        int n = labelPositionsList.size();
+
+        double[][] boxes = new double[n][];
+        double cellSize = 0;
+        for ( int i = 0; i < n; i++ ) {
+            boxes[i] = getTotalBoundingBox( labelPositionsList.get( i ) );
+            cellSize += Math.max( boxes[i][2] - boxes[i][0], boxes[i][3] - boxes[i][1] );
+        }
+        // cells of the average label size, so a label usually covers up to four cells
+        cellSize = Math.max( 1.0, cellSize / n );
+
+        HashMap<Long, List<Integer>> grid = new HashMap<Long, List<Integer>>();
+        for ( int i = 0; i < n; i++ ) {
+            double[] box = boxes[i];
+            for ( long x = cell( box[0], cellSize ); x <= cell( box[2], cellSize ); x++ ) {
+                for ( long y = cell( box[1], cellSize ); y <= cell( box[3], cellSize ); y++ ) {
+                    Long key = ( x << 32 ) ^ ( y & 0xffffffffL );
+                    List<Integer> cellLabels = grid.get( key );
+                    if ( cellLabels == null ) {
+                        cellLabels = new ArrayList<Integer>( 4 );
+                        grid.put( key, cellLabels );
+                    }
+                    cellLabels.add( i );
+                }
+            }
+        }
+
+        List<List<Integer>> neighbourLists = new ArrayList<List<Integer>>( n );
+        for ( int i = 0; i < n; i++ ) {
+            neighbourLists.add( new ArrayList<Integer>( 4 ) );
+        }
+        int[] lastTested = new int[n];
+        Arrays.fill( lastTested, -1 );
+        int pairs = 0;
+        for ( int i = 0; i < n; i++ ) {
             PointLabelPositionOptions choice1 = labelPositionsList.get( i );
-            
-            for ( int j = i + 1; j < labelPositionsList.size(); j++ ) {
-                PointLabelPositionOptions choice2 = labelPositionsList.get( j );
-                collisionMatrix[i][j] = choice1.intersectsAny( choice2 );
+            double[] box = boxes[i];
+            for ( long x = cell( box[0], cellSize ); x <= cell( box[2], cellSize ); x++ ) {
+                for ( long y = cell( box[1], cellSize ); y <= cell( box[3], cellSize ); y++ ) {
+                    for ( int j : grid.get( ( x << 32 ) ^ ( y & 0xffffffffL ) ) ) {
+                        // test every pair only once
+                        if ( j <= i || lastTested[j] == i ) {
+                            continue;
+                        }
+                        lastTested[j] = i;
+                        if ( choice1.intersectsAny( labelPositionsList.get( j ) ) ) {
+                            neighbourLists.get( i ).add( j );
+                            neighbourLists.get( j ).add( i );
+                            pairs++;
+                        }
+                    }
+                }
             }
-            
         }
-        
-        LOG.debug( "Building of collision matrix took: " + ( System.currentTimeMillis() - now ) + " millis." );
+
+        int[][] neighbours = new int[n][];
+        for ( int i = 0; i < n; i++ ) {
+            List<Integer> list = neighbourLists.get( i );
+            neighbours[i] = new int[list.size()];
+            for ( int k = 0; k < neighbours[i].length; k++ ) {
+                neighbours[i][k] = list.get( k );
+            }
+        }
+
+        LOG.debug( "Determining " + pairs + " possibly overlapping label pairs took: "
+                   + ( System.currentTimeMillis() - now ) + " millis." );
+        return neighbours;
     }
-    
+
+    private static long cell( double coord, double cellSize ) {
+        return (long) Math.floor( coord / cellSize );
+    }
+
+    /**
+     * Returns the bounding box (minx, miny, maxx, maxy) around all possible positions (including rotation).
+     */
+    private static double[] getTotalBoundingBox( PointLabelPositionOptions options ) {
+        if ( options.label.getStyling().rotation != 0 ) {
+            Envelope env = options.totalPolygon.getEnvelopeInternal();
+            return new double[] { env.getMinX(), env.getMinY(), env.getMaxX(), env.getMaxY() };
+        }
+        return new double[] { options.getMinX(), options.getMinY(), options.getMaxX(), options.getMaxY() };
+    }
+
     /**
      * Updates the quality value for the currently selected combination of {@link Label}s and lets the label select a new random position
      * 
@@ -209,24 +293,9 @@ public class AutoLabelPlacement {
      */
     private void updateChoiceAndQuality(PointLabelPositionOptions changedLabel, int choice) {
        
-        int changedLabelIntersectionQuality = 0;
-        
-        
         //calculate, how much the (to bee) changedLabel does contribute to the intersectionQuality
-        for ( int i = 0; i < choice; i++ ) {
-            PointLabelPositionOptions choice1 = labelPositionsList.get( i );
-            if ( collisionMatrix[i][choice] && ( changedLabel.intersectsSelection(choice1) )) {
-                changedLabelIntersectionQuality += 40;
-            }
-        }
-        
-        for (int i = choice+1; i <  labelPositionsList.size(); i++ ) {
-            PointLabelPositionOptions choice1 = labelPositionsList.get( i );
-            if ( collisionMatrix[choice][i] && ( changedLabel.intersectsSelection(choice1) )) {
-                changedLabelIntersectionQuality += 40;
-            }
-        }
-        
+        int changedLabelIntersectionQuality = getIntersectionQuality( changedLabel, choice );
+
         //subtract the qualities of the label which is going to be changed
         intersectionQuality -= changedLabelIntersectionQuality;
         placementQuality -= changedLabel.getQuality();
@@ -237,25 +306,25 @@ public class AutoLabelPlacement {
 
         
         //calculate, how much the changedLabel does contribute to the intersectionQuality
-        changedLabelIntersectionQuality = 0;
-        for ( int i = 0; i < choice; i++ ) {
-            PointLabelPositionOptions choice1 = labelPositionsList.get( i );
-            if ( collisionMatrix[i][choice] && ( changedLabel.intersectsSelection(choice1) )) {
-                changedLabelIntersectionQuality += 40;
-            }
-        }
-        
-        for (int i = choice+1; i <  labelPositionsList.size(); i++ ) {
-            PointLabelPositionOptions choice1 = labelPositionsList.get( i );
-            if ( collisionMatrix[choice][i] && ( changedLabel.intersectsSelection(choice1) )) {
-                changedLabelIntersectionQuality += 40;
-            }
-        }
-        
+        changedLabelIntersectionQuality = getIntersectionQuality( changedLabel, choice );
+
         //add the new qualities
         intersectionQuality += changedLabelIntersectionQuality;
         placementQuality += changedLabel.getQuality();
     }
+
+    /**
+     * Calculates, how much the given label does contribute to the intersectionQuality with its current selection.
+     */
+    private int getIntersectionQuality( PointLabelPositionOptions label, int choice ) {
+        int quality = 0;
+        for ( int i : neighbours[choice] ) {
+            if ( label.intersectsSelection( labelPositionsList.get( i ) ) ) {
+                quality += 40;
+            }
+        }
+        return quality;
+    }
     
     /**
      * Calculates the initial quality values for the currently selected combination of {@link Label}s.
@@ -271,8 +340,8 @@ public class AutoLabelPlacement {
             //placementQuality += choice1.getQuality() + 1.0f;
             placementQuality += choice1.getQuality();
             
-            for ( int j = i + 1; j < labelPositionsList.size(); j++ ) {
-                if ( collisionMatrix[i][j] ) {
+            for ( int j : neighbours[i] ) {
+                if ( j > i ) {
                     PointLabelPositionOptions choice2 = labelPositionsList.get( j );
                     if ( choice1.intersectsSelection( choice2 ) ) {
                         intersectionQuality += 40;
@@ -0,0 +1,126 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.rendering.r2d;
+
+import static java.awt.geom.PathIterator.SEG_CLOSE;
+import static org.junit.Assert.assertEquals;
+
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+
+import org.deegree.geometry.Envelope;
+import org.deegree.geometry.GeometryFactory;
+import org.deegree.geometry.points.Points;
+import org.deegree.geometry.primitive.Curve;
+import org.deegree.geometry.standard.points.PackedPoints;
+import org.junit.Test;
+
+/**
+ * Tests the screen space simplification of {@link GeometryHelper}.
+ * 
+ * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class GeometryHelperTest {
+
+    private final GeometryFactory fac = new GeometryFactory();
+
+    private GeometryHelper createHelper() {
+        Envelope bbox = fac.createEnvelope( 0, 0, 100, 100, null );
+        return new GeometryHelper( bbox, 100, new AffineTransform() );
+    }
+
+    private Points createPoints( double... coords ) {
+        return new PackedPoints( null, coords, 2 );
+    }
+
+    private int countSegments( Path2D.Double path ) {
+        int count = 0;
+        for ( PathIterator iter = path.getPathIterator( null ); !iter.isDone(); iter.next() ) {
+            count++;
+        }
+        return count;
+    }
+
+    private int lastSegmentType( Path2D.Double path ) {
+        int type = -1;
+        double[] coords = new double[6];
+        for ( PathIterator iter = path.getPathIterator( null ); !iter.isDone(); iter.next() ) {
+            type = iter.currentSegment( coords );
+        }
+        return type;
+    }
+
+    @Test
+    public void testSubPixelVerticesRemoved() {
+        double[] coords = new double[2002];
+        for ( int i = 0; i <= 1000; i++ ) {
+            coords[2 * i] = i / 10.0;
+            coords[2 * i + 1] = ( i % 2 ) * 0.1;
+        }
+        Curve curve = fac.createLineString( null, null, createPoints( coords ) );
+        Path2D.Double path = createHelper().fromCurve( curve, false );
+        assertEquals( 2, countSegments( path ) );
+    }
+
+    @Test
+    public void testVisibleVerticesRetained() {
+        Curve curve = fac.createLineString( null, null, createPoints( 0, 0, 10, 10, 20, 0, 30, 10 ) );
+        Path2D.Double path = createHelper().fromCurve( curve, false );
+        assertEquals( 4, countSegments( path ) );
+    }
+
+    @Test
+    public void testSimplificationDisabled() {
+        Curve curve = fac.createLineString( null, null, createPoints( 0, 0, 5, 0.1, 10, 0 ) );
+        GeometryHelper helper = createHelper();
+        helper.setSimplification( false );
+        assertEquals( 3, countSegments( helper.fromCurve( curve, false ) ) );
+    }
+
+    @Test
+    public void testTinyRingNotCollapsed() {
+        Curve ring = fac.createLinearRing( null, null, createPoints( 0, 0, 0.1, 0, 0.1, 0.1, 0, 0.1, 0, 0 ) );
+        Path2D.Double path = createHelper().fromCurve( ring, true );
+        // move, three lines and close
+        assertEquals( 5, countSegments( path ) );
+        assertEquals( SEG_CLOSE, lastSegmentType( path ) );
+    }
+
+}
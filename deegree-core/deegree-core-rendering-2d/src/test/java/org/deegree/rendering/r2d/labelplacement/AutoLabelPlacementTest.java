@@ -0,0 +1,203 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.rendering.r2d.labelplacement;
+
+import static java.awt.Font.PLAIN;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.awt.Font;
+import java.awt.font.FontRenderContext;
+import java.awt.font.TextLayout;
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.deegree.rendering.r2d.Label;
+import org.deegree.style.styling.TextStyling;
+import org.deegree.style.utils.UomCalculator;
+import org.junit.Test;
+
+/**
+ * Tests for the neighbour determination of {@link AutoLabelPlacement}.
+ * 
+ * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class AutoLabelPlacementTest {
+
+    private static final FontRenderContext FRC = new FontRenderContext( null, false, false );
+
+    // pixel size of 0.28 mm, so pixel displacements are used as they are
+    private static final UomCalculator UOM_CALCULATOR = new UomCalculator( 0.28, 1 );
+
+    @Test
+    public void testRandomUnrotatedLabels() {
+        Random random = new Random( 42 );
+        List<PointLabelPositionOptions> options = new ArrayList<PointLabelPositionOptions>();
+        for ( int i = 0; i < 300; i++ ) {
+            options.add( createRandomOptions( random, 0 ) );
+        }
+        assertTrue( assertSameAsAllPairs( options ) > options.size() );
+    }
+
+    @Test
+    public void testRandomRotatedLabels() {
+        Random random = new Random( 4711 );
+        List<PointLabelPositionOptions> options = new ArrayList<PointLabelPositionOptions>();
+        for ( int i = 0; i < 300; i++ ) {
+            options.add( createRandomOptions( random, random.nextInt( 360 ) + random.nextDouble() ) );
+        }
+        assertTrue( assertSameAsAllPairs( options ) > options.size() );
+    }
+
+    @Test
+    public void testRandomMixedLabels() {
+        Random random = new Random( 815 );
+        List<PointLabelPositionOptions> options = new ArrayList<PointLabelPositionOptions>();
+        for ( int i = 0; i < 300; i++ ) {
+            double rotation = random.nextInt( 3 ) == 0 ? random.nextInt( 360 ) : 0;
+            options.add( createRandomOptions( random, rotation ) );
+        }
+        assertTrue( assertSameAsAllPairs( options ) > options.size() );
+    }
+
+    @Test
+    public void testLabelsTouchingAtCellEdges() {
+        // all labels have the same size, so the grid cells are as large as a label and the boxes of the lattice touch
+        // each other on the cell edges
+        PointLabelPositionOptions probe = createOptions( "label", 12, 0, 0, 0, 0 );
+        double width = probe.getMaxX() - probe.getMinX();
+        double height = probe.getMaxY() - probe.getMinY();
+        double cellSize = Math.max( width, height );
+
+        List<PointLabelPositionOptions> options = createLattice( probe );
+        // a duplicate and a label with its corner on a cell corner
+        options.add( createOptions( "label", 12, 3 * width - probe.getMinX(), 3 * height - probe.getMinY(), 0, 0 ) );
+        options.add( createOptions( "label", 12, 4 * cellSize - probe.getMinX(), 4 * cellSize - probe.getMinY(), 0,
+                                    0 ) );
+        assertSameAsAllPairs( options );
+    }
+
+    @Test
+    public void testRotatedLabelsOnLattice() {
+        PointLabelPositionOptions probe = createOptions( "label", 12, 0, 0, 0, 0 );
+        double width = probe.getMaxX() - probe.getMinX();
+        double height = probe.getMaxY() - probe.getMinY();
+
+        List<PointLabelPositionOptions> options = createLattice( probe );
+        // rotated labels crossing the lattice and touching it at its corners
+        options.add( createOptions( "label", 12, 2 * width, 5 * height, 45, 0 ) );
+        options.add( createOptions( "label", 12, -probe.getMinX(), -probe.getMinY(), 90, 0 ) );
+        options.add( createOptions( "label", 12, 8 * width - probe.getMinX(), 8 * height - probe.getMinY(), 180, 0 ) );
+        assertSameAsAllPairs( options );
+    }
+
+    private static List<PointLabelPositionOptions> createLattice( PointLabelPositionOptions probe ) {
+        double width = probe.getMaxX() - probe.getMinX();
+        double height = probe.getMaxY() - probe.getMinY();
+        List<PointLabelPositionOptions> options = new ArrayList<PointLabelPositionOptions>();
+        for ( int x = 0; x < 8; x++ ) {
+            for ( int y = 0; y < 8; y++ ) {
+                double originX = x * width - probe.getMinX();
+                double originY = y * height - probe.getMinY();
+                options.add( createOptions( "label", 12, originX, originY, 0, 0 ) );
+            }
+        }
+        return options;
+    }
+
+    /**
+     * Asserts that the grid based neighbours are the same as the ones found by testing all pairs.
+     * 
+     * @return the number of neighbours of all labels
+     */
+    private static int assertSameAsAllPairs( List<PointLabelPositionOptions> options ) {
+        int[][] neighbours = AutoLabelPlacement.buildNeighbours( options );
+        assertEquals( options.size(), neighbours.length );
+        int pairs = 0;
+        for ( int i = 0; i < options.size(); i++ ) {
+            Set<Integer> expected = new TreeSet<Integer>();
+            for ( int j = 0; j < options.size(); j++ ) {
+                if ( i != j && options.get( i ).intersectsAny( options.get( j ) ) ) {
+                    expected.add( j );
+                }
+            }
+            Set<Integer> actual = new TreeSet<Integer>();
+            for ( int j : neighbours[i] ) {
+                assertTrue( "Neighbour " + j + " of label " + i + " listed twice.", actual.add( j ) );
+            }
+            assertEquals( "Neighbours of label " + i, expected, actual );
+            pairs += expected.size();
+        }
+        return pairs;
+    }
+
+    private static PointLabelPositionOptions createRandomOptions( Random random, double rotation ) {
+        StringBuilder text = new StringBuilder();
+        int length = 1 + random.nextInt( 12 );
+        for ( int i = 0; i < length; i++ ) {
+            text.append( (char) ( 'a' + random.nextInt( 26 ) ) );
+        }
+        int size = 8 + random.nextInt( 13 );
+        double x = random.nextDouble() * 800;
+        double y = random.nextDouble() * 800;
+        return createOptions( text.toString(), size, x, y, rotation, random.nextInt( 10 ) );
+    }
+
+    private static PointLabelPositionOptions createOptions( String text, int size, double x, double y,
+                                                            double rotation, double displacement ) {
+        TextStyling styling = new TextStyling();
+        styling.rotation = rotation;
+        styling.displacementX = displacement;
+        styling.displacementY = displacement;
+        TextLayout layout = new TextLayout( text, new Font( "SansSerif", PLAIN, size ), FRC );
+
+        Label label = mock( Label.class );
+        when( label.getStyling() ).thenReturn( styling );
+        when( label.getLayout() ).thenReturn( layout );
+        when( label.getOrigin() ).thenReturn( new Point2D.Double( x, y ) );
+        return new PointLabelPositionOptions( label, UOM_CALCULATOR );
+    }
+
+}
@@ -54,6 +54,7 @@ import org.deegree.geometry.utils.GeometryParticleConverter;
 import org.deegree.sqldialect.filter.AbstractWhereBuilder;
 import org.deegree.sqldialect.filter.PropertyNameMapper;
 import org.deegree.sqldialect.filter.UnmappableException;
+import org.deegree.sqldialect.filter.expression.SQLArgument;
 
 /**
  * Implementations provide the vendor-specific behavior for a spatial DBMS so it can be accessed by deegree.
@@ -212,4 +213,66 @@ public interface SQLDialect {
      */
     String getSelectSequenceNextVal( String sequence );
 
+    /**
+     * Returns a <code>SELECT</code> statement for allocating values from the DB sequence that backs an auto-generated
+     * column (e.g. <code>serial</code>), so the values can be set explicitly on INSERT.
+     * <p>
+     * This allows to insert rows with auto-generated keys using JDBC batches, as the keys don't have to be retrieved
+     * after each single INSERT.
+     * </p>
+     * 
+     * @param table
+     *            table of the auto-generated column, must not be <code>null</code>
+     * @param column
+     *            auto-generated column, must not be <code>null</code>
+     * @param num
+     *            number of values to allocate, must be positive
+     * @return SQL <code>SELECT</code> statement that returns one row per allocated value (<code>NULL</code> if the
+     *         column is not backed by a sequence), or <code>null</code> if values of auto-generated columns cannot be
+     *         allocated in advance
+     */
+    String getSelectAutoColumnNextVals( TableName table, SQLIdentifier column, int num );
+
+    /**
+     * Returns a version of the given <code>SELECT</code> statement that only returns the specified window of rows.
+     * 
+     * @param sql
+     *            <code>SELECT</code> statement (including the <code>ORDER BY</code> clause, if any), must not be
+     *            <code>null</code>
+     * @param hasOrderBy
+     *            <code>true</code>, if the statement contains an <code>ORDER BY</code> clause, <code>false</code>
+     *            otherwise
+     * @param offset
+     *            number of rows to skip, must not be negative
+     * @param limit
+     *            maximum number of rows to return, -1 for no limit
+     * @return paged <code>SELECT</code> statement, or <code>null</code> if the dialect cannot express paging (caller
+     *         has to skip/limit rows itself)
+     */
+    String getPagedSelect( String sql, boolean hasOrderBy, int offset, int limit );
+
+    /**
+     * Returns an estimate of the number of rows that are returned by the given <code>SELECT</code> statement (or
+     * contained in the given table), based on the statistics maintained by the query planner of the DBMS.
+     * <p>
+     * This is usually orders of magnitude faster than determining the exact number using <code>COUNT(*)</code>, but the
+     * result may be off considerably (e.g. if the statistics are outdated).
+     * </p>
+     * 
+     * @param conn
+     *            connection to use, must not be <code>null</code>
+     * @param table
+     *            table to estimate the number of rows for, must not be <code>null</code>
+     * @param sql
+     *            <code>SELECT</code> statement (may contain <code>?</code> placeholders), can be <code>null</code>
+     *            (estimate the total number of rows in the table)
+     * @param args
+     *            arguments for the placeholders, must not be <code>null</code>
+     * @return estimated number of rows, or -1 if the dialect does not support estimates (or no statistics are
+     *         available)
+     * @throws SQLException
+     */
+    int getEstimatedRowCount( Connection conn, TableName table, String sql, List<SQLArgument> args )
+                            throws SQLException;
+
 }
@@ -97,6 +97,14 @@ public class MSSQLGeometryConverter implements GeometryParticleConverter {
         return tableAlias + "." + column + ".ToString()";
     }
 
+    @Override
+    public String getSimplifiedSelectSnippet( String tableAlias, double tolerance ) {
+        String reduced = ( tableAlias == null ? "" : ( tableAlias + "." ) ) + column + ".Reduce(" + tolerance + ")";
+        if ( is2d )
+            return reduced + ".STAsBinary()";
+        return reduced + ".ToString()";
+    }
+
     public String getSetSnippet( Geometry particle ) {
         if ( is2d )
             return "geometry::STGeomFromWKB(?, " + srid + ")";
@@ -37,6 +37,7 @@ package org.deegree.sqldialect.mssql;
 
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
@@ -60,6 +61,7 @@ import org.deegree.sqldialect.SQLDialect;
 import org.deegree.sqldialect.filter.AbstractWhereBuilder;
 import org.deegree.sqldialect.filter.PropertyNameMapper;
 import org.deegree.sqldialect.filter.UnmappableException;
+import org.deegree.sqldialect.filter.expression.SQLArgument;
 import org.deegree.sqldialect.filter.mssql.MSSQLGeometryConverter;
 import org.deegree.sqldialect.filter.mssql.MSSQLWhereBuilder;
 import org.slf4j.Logger;
@@ -197,4 +199,62 @@ public class MSSQLDialect implements SQLDialect {
                                                  "Using DB sequences for FIDs is currently not supported on Microsoft SQL Server." );
     }
 
+    /**
+     * Returns <code>null</code>, as values of identity columns cannot be set explicitly (without
+     * <code>IDENTITY_INSERT</code>).
+     */
+    @Override
+    public String getSelectAutoColumnNextVals( TableName table, SQLIdentifier column, int num ) {
+        return null;
+    }
+
+    /**
+     * Uses <code>OFFSET ... ROWS FETCH NEXT ... ROWS ONLY</code> (SQL Server 2012 and later), which requires an
+     * <code>ORDER BY</code> clause.
+     */
+    @Override
+    public String getPagedSelect( String sql, boolean hasOrderBy, int offset, int limit ) {
+        StringBuilder paged = new StringBuilder( sql );
+        if ( !hasOrderBy ) {
+            paged.append( " ORDER BY (SELECT NULL)" );
+        }
+        paged.append( " OFFSET " );
+        paged.append( offset );
+        paged.append( " ROWS" );
+        if ( limit >= 0 ) {
+            paged.append( " FETCH NEXT " );
+            paged.append( limit );
+            paged.append( " ROWS ONLY" );
+        }
+        return paged.toString();
+    }
+
+    /**
+     * Uses the row counts from <code>sys.partitions</code> for whole tables, statements are not supported.
+     */
+    @Override
+    public int getEstimatedRowCount( Connection conn, TableName table, String sql, List<SQLArgument> args )
+                            throws SQLException {
+        if ( sql != null ) {
+            return -1;
+        }
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        try {
+            String sql2 = "SELECT SUM(rows) FROM sys.partitions WHERE object_id=OBJECT_ID(?) AND index_id IN (0,1)";
+            stmt = conn.prepareStatement( sql2 );
+            stmt.setString( 1, table.toString() );
+            rs = stmt.executeQuery();
+            if ( rs.next() ) {
+                long rows = rs.getLong( 1 );
+                if ( !rs.wasNull() ) {
+                    return (int) Math.min( rows, Integer.MAX_VALUE );
+                }
+            }
+            return -1;
+        } finally {
+            JDBCUtils.close( rs, stmt, null, LOG );
+        }
+    }
+
 }
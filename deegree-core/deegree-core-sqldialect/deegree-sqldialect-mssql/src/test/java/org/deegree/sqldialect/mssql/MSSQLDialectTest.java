@@ -0,0 +1,94 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.sqldialect.mssql;
+
+import static org.junit.Assert.assertEquals;
+
+import org.deegree.geometry.utils.GeometryParticleConverter;
+import org.junit.Test;
+
+/**
+ * Tests for {@link MSSQLDialect}.
+ * 
+ * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class MSSQLDialectTest {
+
+    private static final String SQL = "SELECT X1.id,X1.name FROM app_road X1";
+
+    private final MSSQLDialect dialect = new MSSQLDialect();
+
+    @Test
+    public void testPagedSelect() {
+        assertEquals( SQL + " ORDER BY X1.id OFFSET 20 ROWS FETCH NEXT 10 ROWS ONLY",
+                      dialect.getPagedSelect( SQL + " ORDER BY X1.id", true, 20, 10 ) );
+    }
+
+    @Test
+    public void testPagedSelectWithoutOrderBy() {
+        // OFFSET/FETCH requires an ORDER BY clause
+        assertEquals( SQL + " ORDER BY (SELECT NULL) OFFSET 20 ROWS FETCH NEXT 10 ROWS ONLY",
+                      dialect.getPagedSelect( SQL, false, 20, 10 ) );
+    }
+
+    @Test
+    public void testPagedSelectFirstPage() {
+        assertEquals( SQL + " ORDER BY X1.id OFFSET 0 ROWS FETCH NEXT 10 ROWS ONLY",
+                      dialect.getPagedSelect( SQL + " ORDER BY X1.id", true, 0, 10 ) );
+    }
+
+    @Test
+    public void testPagedSelectNoLimit() {
+        assertEquals( SQL + " ORDER BY X1.id OFFSET 5 ROWS",
+                      dialect.getPagedSelect( SQL + " ORDER BY X1.id", true, 5, -1 ) );
+    }
+
+    @Test
+    public void testSimplifiedSelectSnippet() {
+        GeometryParticleConverter converter = dialect.getGeometryConverter( "geom", null, "4326", true );
+        assertEquals( "X1.geom.Reduce(8.0).STAsBinary()", converter.getSimplifiedSelectSnippet( "X1", 8.0 ) );
+        assertEquals( "geom.Reduce(0.5).STAsBinary()", converter.getSimplifiedSelectSnippet( null, 0.5 ) );
+    }
+
+    @Test
+    public void testSimplifiedSelectSnippet3D() {
+        GeometryParticleConverter converter = dialect.getGeometryConverter( "geom", null, "4326", false );
+        assertEquals( "X1.geom.Reduce(8.0).ToString()", converter.getSimplifiedSelectSnippet( "X1", 8.0 ) );
+    }
+}
@@ -46,6 +46,7 @@ import static org.slf4j.LoggerFactory.getLogger;
 
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
@@ -69,6 +70,7 @@ import org.deegree.sqldialect.SQLDialect;
 import org.deegree.sqldialect.filter.AbstractWhereBuilder;
 import org.deegree.sqldialect.filter.PropertyNameMapper;
 import org.deegree.sqldialect.filter.UnmappableException;
+import org.deegree.sqldialect.filter.expression.SQLArgument;
 import org.slf4j.Logger;
 
 /**
@@ -267,4 +269,84 @@ public class OracleDialect implements SQLDialect {
         return "SELECT " + sequence + ".NEXTVAL from DUAL";
     }
 
+    /**
+     * Returns <code>null</code>, as the trigger created by {@link #createAutoColumn} always overwrites the column
+     * value.
+     */
+    @Override
+    public String getSelectAutoColumnNextVals( TableName table, SQLIdentifier column, int num ) {
+        return null;
+    }
+
+    /**
+     * Uses <code>OFFSET ... ROWS FETCH NEXT ... ROWS ONLY</code> for Oracle 12 and later, <code>ROWNUM</code> wrapping
+     * for older versions.
+     */
+    @Override
+    public String getPagedSelect( String sql, boolean hasOrderBy, int offset, int limit ) {
+        StringBuilder paged = new StringBuilder();
+        if ( versionMajor >= 12 ) {
+            paged.append( sql );
+            paged.append( " OFFSET " );
+            paged.append( offset );
+            paged.append( " ROWS" );
+            if ( limit >= 0 ) {
+                paged.append( " FETCH NEXT " );
+                paged.append( limit );
+                paged.append( " ROWS ONLY" );
+            }
+        } else if ( offset == 0 && limit >= 0 ) {
+            paged.append( "SELECT * FROM (" );
+            paged.append( sql );
+            paged.append( ") WHERE ROWNUM<=" );
+            paged.append( limit );
+        } else {
+            // ROWNUM is assigned before ORDER BY is evaluated, so it must be determined on the ordered subquery
+            paged.append( "SELECT * FROM (SELECT P1.*,ROWNUM DEEGREE_RN FROM (" );
+            paged.append( sql );
+            paged.append( ") P1" );
+            if ( limit >= 0 ) {
+                paged.append( " WHERE ROWNUM<=" );
+                paged.append( offset + limit );
+            }
+            paged.append( ") WHERE DEEGREE_RN>" );
+            paged.append( offset );
+        }
+        return paged.toString();
+    }
+
+    /**
+     * Uses the optimizer statistics (<code>NUM_ROWS</code>) from <code>ALL_TABLES</code> for whole tables, statements
+     * are not supported.
+     */
+    @Override
+    public int getEstimatedRowCount( Connection conn, TableName table, String sql, List<SQLArgument> args )
+                            throws SQLException {
+        if ( sql != null ) {
+            return -1;
+        }
+        String schema = table.getSchema() != null ? table.getSchema() : getDefaultSchema();
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        try {
+            if ( schema != null ) {
+                stmt = conn.prepareStatement( "SELECT NUM_ROWS FROM ALL_TABLES WHERE TABLE_NAME=? AND OWNER=?" );
+                stmt.setString( 2, schema.toUpperCase() );
+            } else {
+                stmt = conn.prepareStatement( "SELECT NUM_ROWS FROM USER_TABLES WHERE TABLE_NAME=?" );
+            }
+            stmt.setString( 1, table.getTable().toUpperCase() );
+            rs = stmt.executeQuery();
+            if ( rs.next() ) {
+                long rows = rs.getLong( 1 );
+                if ( !rs.wasNull() ) {
+                    return (int) Math.min( rows, Integer.MAX_VALUE );
+                }
+            }
+            return -1;
+        } finally {
+            JDBCUtils.close( rs, stmt, null, LOG );
+        }
+    }
+
 }
@@ -105,6 +105,12 @@ public class OracleGeometryConverter implements GeometryParticleConverter {
         return column;
     }
 
+    @Override
+    public String getSimplifiedSelectSnippet( String tableAlias, double tolerance ) {
+        String qualifiedColumn = tableAlias != null ? tableAlias + "." + column : column;
+        return "SDO_UTIL.SIMPLIFY(" + qualifiedColumn + "," + tolerance + ")";
+    }
+
     @Override
     public String getSetSnippet( Geometry particle ) {
         return "?";
@@ -0,0 +1,93 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.sqldialect.oracle;
+
+import static org.junit.Assert.assertEquals;
+
+import org.deegree.geometry.utils.GeometryParticleConverter;
+import org.junit.Test;
+
+/**
+ * Tests for {@link OracleDialect}.
+ * 
+ * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class OracleDialectTest {
+
+    private static final String SQL = "SELECT X1.ID,X1.NAME FROM APP_ROAD X1 ORDER BY X1.ID";
+
+    private final OracleDialect oracle11 = new OracleDialect( "APP", 11, 2 );
+
+    private final OracleDialect oracle12 = new OracleDialect( "APP", 12, 1 );
+
+    @Test
+    public void testPagedSelectOffsetFetch() {
+        assertEquals( SQL + " OFFSET 20 ROWS FETCH NEXT 10 ROWS ONLY", oracle12.getPagedSelect( SQL, true, 20, 10 ) );
+    }
+
+    @Test
+    public void testPagedSelectOffsetFetchNoLimit() {
+        assertEquals( SQL + " OFFSET 5 ROWS", oracle12.getPagedSelect( SQL, true, 5, -1 ) );
+    }
+
+    @Test
+    public void testPagedSelectRownumFirstPage() {
+        assertEquals( "SELECT * FROM (" + SQL + ") WHERE ROWNUM<=10", oracle11.getPagedSelect( SQL, true, 0, 10 ) );
+    }
+
+    @Test
+    public void testPagedSelectRownum() {
+        // ROWNUM is determined on the ordered subquery
+        assertEquals( "SELECT * FROM (SELECT P1.*,ROWNUM DEEGREE_RN FROM (" + SQL
+                      + ") P1 WHERE ROWNUM<=30) WHERE DEEGREE_RN>20", oracle11.getPagedSelect( SQL, true, 20, 10 ) );
+    }
+
+    @Test
+    public void testPagedSelectRownumNoLimit() {
+        assertEquals( "SELECT * FROM (SELECT P1.*,ROWNUM DEEGREE_RN FROM (" + SQL + ") P1) WHERE DEEGREE_RN>5",
+                      oracle11.getPagedSelect( SQL, true, 5, -1 ) );
+    }
+
+    @Test
+    public void testSimplifiedSelectSnippet() {
+        GeometryParticleConverter converter = oracle12.getGeometryConverter( "GEOM", null, "4326", true );
+        assertEquals( "SDO_UTIL.SIMPLIFY(X1.GEOM,8.0)", converter.getSimplifiedSelectSnippet( "X1", 8.0 ) );
+        assertEquals( "SDO_UTIL.SIMPLIFY(GEOM,0.5)", converter.getSimplifiedSelectSnippet( null, 0.5 ) );
+    }
+}
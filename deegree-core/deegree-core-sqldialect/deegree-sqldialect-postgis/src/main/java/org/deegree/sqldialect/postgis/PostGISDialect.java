@@ -37,10 +37,13 @@ package org.deegree.sqldialect.postgis;
 
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.deegree.commons.jdbc.SQLIdentifier;
 import org.deegree.commons.jdbc.TableName;
@@ -60,6 +63,7 @@ import org.deegree.sqldialect.SQLDialect;
 import org.deegree.sqldialect.filter.AbstractWhereBuilder;
 import org.deegree.sqldialect.filter.PropertyNameMapper;
 import org.deegree.sqldialect.filter.UnmappableException;
+import org.deegree.sqldialect.filter.expression.SQLArgument;
 import org.postgis.PGboxbase;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -94,6 +98,8 @@ public class PostGISDialect implements SQLDialect {
 
     private static Logger LOG = LoggerFactory.getLogger( PostGISDialect.class );
 
+    private static final Pattern EXPLAIN_ROWS_PATTERN = Pattern.compile( "rows=(\\d+)" );
+
     private final String undefinedSrid;
 
     private final boolean useLegacyPredicates;
@@ -284,4 +290,72 @@ public class PostGISDialect implements SQLDialect {
         return "SELECT nextval('" + sequence + "')";
     }
 
+    /**
+     * Uses the sequence of <code>serial</code> columns (as created by {@link #createAutoColumn}).
+     */
+    @Override
+    public String getSelectAutoColumnNextVals( TableName table, SQLIdentifier column, int num ) {
+        // column name is taken literally, so use the folded name for unescaped identifiers
+        String columnName = column.isEscaped() ? column.getName() : column.getName().toLowerCase();
+        return "SELECT nextval(pg_get_serial_sequence('" + table.toString().replace( "'", "''" ) + "','"
+               + columnName.replace( "'", "''" ) + "')) FROM generate_series(1," + num + ")";
+    }
+
+    @Override
+    public String getPagedSelect( String sql, boolean hasOrderBy, int offset, int limit ) {
+        StringBuilder paged = new StringBuilder( sql );
+        if ( limit >= 0 ) {
+            paged.append( " LIMIT " );
+            paged.append( limit );
+        }
+        if ( offset > 0 ) {
+            paged.append( " OFFSET " );
+            paged.append( offset );
+        }
+        return paged.toString();
+    }
+
+    /**
+     * Uses the <code>reltuples</code> statistics from <code>pg_class</code> for whole tables and the row estimate of
+     * the top-level plan node (as reported by <code>EXPLAIN</code>) for statements.
+     */
+    @Override
+    public int getEstimatedRowCount( Connection conn, TableName table, String sql, List<SQLArgument> args )
+                            throws SQLException {
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        try {
+            if ( sql == null ) {
+                stmt = conn.prepareStatement( "SELECT reltuples::bigint,relpages FROM pg_class WHERE oid=?::regclass" );
+                stmt.setString( 1, table.toString() );
+                rs = stmt.executeQuery();
+                if ( rs.next() ) {
+                    long rows = rs.getLong( 1 );
+                    // never analyzed: -1 (PostgreSQL 14+) or 0 without any pages (earlier versions)
+                    if ( rows > 0 || ( rows == 0 && rs.getLong( 2 ) > 0 ) ) {
+                        return (int) Math.min( rows, Integer.MAX_VALUE );
+                    }
+                }
+                return -1;
+            }
+            stmt = conn.prepareStatement( "EXPLAIN " + sql );
+            int i = 1;
+            for ( SQLArgument arg : args ) {
+                arg.setArgument( stmt, i++ );
+            }
+            rs = stmt.executeQuery();
+            if ( rs.next() ) {
+                String plan = rs.getString( 1 );
+                LOG.debug( "Top-level plan node: {}", plan );
+                Matcher m = EXPLAIN_ROWS_PATTERN.matcher( plan );
+                if ( m.find() ) {
+                    return (int) Math.min( Long.parseLong( m.group( 1 ) ), Integer.MAX_VALUE );
+                }
+            }
+            return -1;
+        } finally {
+            JDBCUtils.close( rs, stmt, null, LOG );
+        }
+    }
+
 }
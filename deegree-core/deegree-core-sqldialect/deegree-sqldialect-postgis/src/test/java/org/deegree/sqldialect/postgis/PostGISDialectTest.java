@@ -0,0 +1,216 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.sqldialect.postgis;
+
+import static org.deegree.commons.tom.primitive.BaseType.STRING;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+
+import org.deegree.commons.jdbc.TableName;
+import org.deegree.commons.tom.primitive.PrimitiveType;
+import org.deegree.commons.tom.primitive.PrimitiveValue;
+import org.deegree.commons.tom.sql.DefaultPrimitiveConverter;
+import org.deegree.geometry.utils.GeometryParticleConverter;
+import org.deegree.sqldialect.filter.expression.SQLArgument;
+import org.junit.Test;
+
+/**
+ * Tests for {@link PostGISDialect}.
+ * 
+ * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class PostGISDialectTest {
+
+    private static final String SQL = "SELECT X1.id,X1.name FROM app_road X1 ORDER BY X1.id";
+
+    private static final String COUNT_SQL = "SELECT X1.id FROM app_road X1 WHERE X1.name=?";
+
+    private static final List<SQLArgument> NO_ARGS = Collections.emptyList();
+
+    private final PostGISDialect dialect = new PostGISDialect( "2.0.1" );
+
+    @Test
+    public void testPagedSelect() {
+        assertEquals( SQL + " LIMIT 10 OFFSET 20", dialect.getPagedSelect( SQL, true, 20, 10 ) );
+    }
+
+    @Test
+    public void testPagedSelectFirstPage() {
+        assertEquals( SQL + " LIMIT 10", dialect.getPagedSelect( SQL, true, 0, 10 ) );
+    }
+
+    @Test
+    public void testPagedSelectNoLimit() {
+        assertEquals( SQL + " OFFSET 5", dialect.getPagedSelect( SQL, true, 5, -1 ) );
+    }
+
+    @Test
+    public void testPagedSelectNoPaging() {
+        assertEquals( SQL, dialect.getPagedSelect( SQL, true, 0, -1 ) );
+    }
+
+    @Test
+    public void testPagedSelectWithoutOrderBy() {
+        String sql = "SELECT X1.id FROM app_road X1";
+        assertEquals( sql + " LIMIT 0 OFFSET 3", dialect.getPagedSelect( sql, false, 3, 0 ) );
+    }
+
+    @Test
+    public void testSimplifiedSelectSnippet() {
+        GeometryParticleConverter converter = dialect.getGeometryConverter( "geom", null, "4326", true );
+        assertEquals( "ST_AsEWKB(ST_SimplifyPreserveTopology(X1.geom,8.0))",
+                      converter.getSimplifiedSelectSnippet( "X1", 8.0 ) );
+        assertEquals( "ST_AsEWKB(ST_SimplifyPreserveTopology(geom,0.5))",
+                      converter.getSimplifiedSelectSnippet( null, 0.5 ) );
+    }
+
+    @Test
+    public void testSimplifiedSelectSnippetLegacy() {
+        PostGISDialect legacy = new PostGISDialect( "1.2.1" );
+        GeometryParticleConverter converter = legacy.getGeometryConverter( "geom", null, "4326", true );
+        assertEquals( "AsEWKB(SimplifyPreserveTopology(X1.geom,8.0))",
+                      converter.getSimplifiedSelectSnippet( "X1", 8.0 ) );
+    }
+
+    @Test
+    public void testEstimatedRowCountFromPlan()
+                            throws SQLException {
+        PreparedStatement stmt = mockStatement( "Seq Scan on app_road x1  (cost=0.00..35.50 rows=2550 width=36)" );
+        Connection conn = mockConnection( "EXPLAIN " + COUNT_SQL, stmt );
+        PrimitiveType pt = new PrimitiveType( STRING );
+        DefaultPrimitiveConverter converter = new DefaultPrimitiveConverter( pt, "name" );
+        SQLArgument arg = new SQLArgument( new PrimitiveValue( "A1", pt ), converter );
+        assertEquals( 2550, dialect.getEstimatedRowCount( conn, null, COUNT_SQL, Collections.singletonList( arg ) ) );
+        verify( stmt ).setObject( 1, "A1" );
+    }
+
+    @Test
+    public void testEstimatedRowCountFromLimitNode()
+                            throws SQLException {
+        PreparedStatement stmt = mockStatement( "Limit  (cost=0.00..0.35 rows=10 width=36)" );
+        Connection conn = mockConnection( "EXPLAIN " + SQL, stmt );
+        assertEquals( 10, dialect.getEstimatedRowCount( conn, null, SQL, NO_ARGS ) );
+    }
+
+    @Test
+    public void testEstimatedRowCountNoPlan()
+                            throws SQLException {
+        Connection conn = mockConnection( "EXPLAIN " + SQL, mockStatement() );
+        assertEquals( -1, dialect.getEstimatedRowCount( conn, null, SQL, NO_ARGS ) );
+    }
+
+    @Test
+    public void testEstimatedRowCountUnparseablePlan()
+                            throws SQLException {
+        Connection conn = mockConnection( "EXPLAIN " + SQL, mockStatement( "Result  (cost=0.00..0.01 width=0)" ) );
+        assertEquals( -1, dialect.getEstimatedRowCount( conn, null, SQL, NO_ARGS ) );
+    }
+
+    @Test
+    public void testEstimatedRowCountOverflow()
+                            throws SQLException {
+        String plan = "Seq Scan on app_road x1  (cost=0.00..1.00 rows=99999999999 width=36)";
+        Connection conn = mockConnection( "EXPLAIN " + SQL, mockStatement( plan ) );
+        assertEquals( Integer.MAX_VALUE, dialect.getEstimatedRowCount( conn, null, SQL, NO_ARGS ) );
+    }
+
+    @Test
+    public void testEstimatedRowCountTable()
+                            throws SQLException {
+        assertEquals( 1200, getTableEstimate( 1200, 12 ) );
+    }
+
+    @Test
+    public void testEstimatedRowCountTableNeverAnalyzed()
+                            throws SQLException {
+        assertEquals( -1, getTableEstimate( -1, 0 ) );
+        assertEquals( -1, getTableEstimate( 0, 0 ) );
+    }
+
+    @Test
+    public void testEstimatedRowCountTableEmpty()
+                            throws SQLException {
+        assertEquals( 0, getTableEstimate( 0, 5 ) );
+    }
+
+    private int getTableEstimate( long reltuples, long relpages )
+                            throws SQLException {
+        ResultSet rs = mock( ResultSet.class );
+        when( rs.next() ).thenReturn( true, false );
+        when( rs.getLong( 1 ) ).thenReturn( reltuples );
+        when( rs.getLong( 2 ) ).thenReturn( relpages );
+        PreparedStatement stmt = mock( PreparedStatement.class );
+        when( stmt.executeQuery() ).thenReturn( rs );
+        String sql = "SELECT reltuples::bigint,relpages FROM pg_class WHERE oid=?::regclass";
+        Connection conn = mockConnection( sql, stmt );
+        int estimate = dialect.getEstimatedRowCount( conn, new TableName( "app_road" ), null, NO_ARGS );
+        verify( stmt ).setString( 1, "app_road" );
+        return estimate;
+    }
+
+    private static Connection mockConnection( String sql, PreparedStatement stmt )
+                            throws SQLException {
+        Connection conn = mock( Connection.class );
+        when( conn.prepareStatement( sql ) ).thenReturn( stmt );
+        return conn;
+    }
+
+    private static PreparedStatement mockStatement( String... planRows )
+                            throws SQLException {
+        ResultSet rs = mock( ResultSet.class );
+        if ( planRows.length == 0 ) {
+            when( rs.next() ).thenReturn( false );
+        } else {
+            when( rs.next() ).thenReturn( true, false );
+            when( rs.getString( 1 ) ).thenReturn( planRows[0] );
+        }
+        PreparedStatement stmt = mock( PreparedStatement.class );
+        when( stmt.executeQuery() ).thenReturn( rs );
+        return stmt;
+    }
+}
@@ -60,10 +60,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
 
 import javax.imageio.ImageIO;
 import javax.xml.stream.Location;
@@ -83,6 +81,8 @@ import org.deegree.style.styling.components.Mark;
 import org.deegree.style.styling.components.Stroke;
 import org.deegree.style.styling.components.Mark.SimpleMark;
 import org.deegree.style.utils.ShapeHelper;
+import org.deegree.style.utils.SymbolCache;
+import org.deegree.style.utils.SymbolCache.Key;
 import org.slf4j.Logger;
 
 /**
@@ -375,22 +375,18 @@ class GraphicSymbologyParser {
                 final Continuation<StringBuffer> sbcontn = pair.third;
 
                 if ( pair.third != null ) {
-                    final LinkedHashMap<String, BufferedImage> cache = new LinkedHashMap<String, BufferedImage>( 256 ) {
-                        private static final long serialVersionUID = -6847956873232942891L;
-
-                        @Override
-                        protected boolean removeEldestEntry( Map.Entry<String, BufferedImage> eldest ) {
-                            return size() > 256; // yeah, hardcoded max size... TODO
-                        }
-                    };
+                    final SymbolCache cache = SymbolCache.getInstance();
                     contn = new Continuation<List<BufferedImage>>() {
                         @Override
                         public void updateStep( List<BufferedImage> base, Feature f, XPathEvaluator<Feature> evaluator ) {
                             StringBuffer sb = new StringBuffer();
                             sbcontn.evaluate( sb, f, evaluator );
                             String file = sb.toString();
-                            if ( cache.containsKey( file ) ) {
-                                base.add( cache.get( file ) );
+                            // file names are relative to this style, so the continuation is part of the key
+                            Key key = new Key( file, 0, 0, 0, this );
+                            BufferedImage cached = cache.get( key );
+                            if ( cached != null ) {
+                                base.add( cached );
                                 return;
                             }
                             try {
@@ -401,7 +397,9 @@ class GraphicSymbologyParser {
                                     i = ImageIO.read( resolve( file, in ) );
                                 }
                                 base.add( i );
-                                cache.put( file, i );
+                                if ( i != null ) {
+                                    cache.put( key, i );
+                                }
                             } catch ( MalformedURLException e ) {
                                 // TODO Auto-generated catch block
                                 e.printStackTrace();
@@ -0,0 +1,656 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.style.utils;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Encodes images as 8 bit palette PNGs (PNG8) with alpha.
+ * <p>
+ * Images with up to 256 distinct colors (common for vector maps) are encoded losslessly. Otherwise, the colors are
+ * reduced to 5 bits per color channel and 4 bits for alpha, and quantized to a palette using median cut. Fully
+ * transparent pixels always keep a palette entry of their own. The image is read row by row, and the compressed data is
+ * written to the stream as it is produced, so apart from the palette tables, only a few rows are held in memory.
+ * </p>
+ * <p>
+ * Instances are thread-safe.
+ * </p>
+ * 
+ * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class Png8Encoder {
+
+    /**
+     * PNG row filters.
+     */
+    public static enum Filter {
+        /** No filtering (recommended for palette images). */
+        NONE( 0 ),
+        /** Difference to the left pixel. */
+        SUB( 1 ),
+        /** Difference to the pixel above. */
+        UP( 2 ),
+        /** Paeth predictor. */
+        PAETH( 4 ),
+        /** Chooses the filter with the smallest sum of absolute differences per row. */
+        ADAPTIVE( -1 );
+
+        // filter type as defined by the PNG specification
+        private final int type;
+
+        private Filter( int type ) {
+            this.type = type;
+        }
+    }
+
+    private static final byte[] SIGNATURE = { (byte) 137, 80, 78, 71, 13, 10, 26, 10 };
+
+    private static final int MAX_COLORS = 256;
+
+    private static final int IDAT_SIZE = 32 * 1024;
+
+    private final int compressionLevel;
+
+    private final Filter filter;
+
+    /**
+     * Creates a new {@link Png8Encoder} that uses the default compression level of zlib (6) and no filtering.
+     */
+    public Png8Encoder() {
+        this( Deflater.DEFAULT_COMPRESSION, Filter.NONE );
+    }
+
+    /**
+     * Creates a new {@link Png8Encoder} instance.
+     * 
+     * @param compressionLevel
+     *            deflate level, between 0 (no compression) and 9 (best compression), or -1 for the zlib default
+     * @param filter
+     *            row filter, must not be <code>null</code>
+     */
+    public Png8Encoder( int compressionLevel, Filter filter ) {
+        if ( compressionLevel < -1 || compressionLevel > 9 ) {
+            throw new IllegalArgumentException( "Invalid compression level: " + compressionLevel );
+        }
+        this.compressionLevel = compressionLevel;
+        this.filter = filter;
+    }
+
+    /**
+     * Encodes the given image as PNG8.
+     * 
+     * @param img
+     *            image to encode, must not be <code>null</code>
+     * @param out
+     *            stream to write to, must not be <code>null</code> (is not closed)
+     * @throws IOException
+     *             if writing to the stream fails
+     */
+    public void encode( BufferedImage img, OutputStream out )
+                            throws IOException {
+        int width = img.getWidth();
+        int height = img.getHeight();
+        int[] row = new int[width];
+
+        Palette palette = createPalette( img, row );
+
+        CRC32 crc = new CRC32();
+        out.write( SIGNATURE );
+        byte[] header = new byte[13];
+        writeInt( header, 0, width );
+        writeInt( header, 4, height );
+        header[8] = 8; // bit depth
+        header[9] = 3; // color type: indexed
+        writeChunk( out, "IHDR", header, header.length, crc );
+        writeChunk( out, "PLTE", palette.rgb, palette.size * 3, crc );
+        if ( palette.numTranslucent > 0 ) {
+            writeChunk( out, "tRNS", palette.alpha, palette.numTranslucent, crc );
+        }
+
+        Deflater deflater = new Deflater( compressionLevel );
+        try {
+            DeflaterOutputStream zout = new DeflaterOutputStream( new IdatOutputStream( out, crc ), deflater, 8192 );
+            byte[] prior = new byte[width];
+            byte[] current = new byte[width];
+            byte[] filtered = new byte[width + 1];
+            byte[] best = filter == Filter.ADAPTIVE ? new byte[width + 1] : null;
+            for ( int y = 0; y < height; y++ ) {
+                img.getRGB( 0, y, width, 1, row, 0, width );
+                palette.map( row, current );
+                if ( best == null ) {
+                    filterRow( filter, current, prior, filtered );
+                    zout.write( filtered );
+                } else {
+                    long bestSum = Long.MAX_VALUE;
+                    for ( int f = 0; f < Filter.ADAPTIVE.ordinal(); f++ ) {
+                        long sum = filterRow( Filter.values()[f], current, prior, filtered );
+                        if ( sum < bestSum ) {
+                            bestSum = sum;
+                            System.arraycopy( filtered, 0, best, 0, filtered.length );
+                        }
+                    }
+                    zout.write( best );
+                }
+                byte[] tmp = prior;
+                prior = current;
+                current = tmp;
+            }
+            zout.finish();
+            zout.flush();
+        } finally {
+            deflater.end();
+        }
+        writeChunk( out, "IEND", new byte[0], 0, crc );
+        out.flush();
+    }
+
+    /**
+     * Filters a row of palette indices, the first byte of the result is the filter type.
+     * 
+     * @return sum of the absolute (signed) values of the filtered bytes
+     */
+    private static long filterRow( Filter filter, byte[] current, byte[] prior, byte[] filtered ) {
+        int width = current.length;
+        long sum = 0;
+        filtered[0] = (byte) filter.type;
+        for ( int x = 0; x < width; x++ ) {
+            int raw = current[x] & 0xff;
+            int left = x > 0 ? current[x - 1] & 0xff : 0;
+            int up = prior[x] & 0xff;
+            int upLeft = x > 0 ? prior[x - 1] & 0xff : 0;
+            int value;
+            switch ( filter ) {
+            case SUB:
+                value = raw - left;
+                break;
+            case UP:
+                value = raw - up;
+                break;
+            case PAETH:
+                value = raw - paeth( left, up, upLeft );
+                break;
+            default:
+                value = raw;
+            }
+            filtered[x + 1] = (byte) value;
+            sum += Math.abs( filtered[x + 1] );
+        }
+        return sum;
+    }
+
+    private static int paeth( int a, int b, int c ) {
+        int p = a + b - c;
+        int pa = Math.abs( p - a );
+        int pb = Math.abs( p - b );
+        int pc = Math.abs( p - c );
+        if ( pa <= pb && pa <= pc ) {
+            return a;
+        }
+        return pb <= pc ? b : c;
+    }
+
+    private static Palette createPalette( BufferedImage img, int[] row ) {
+        ColorTable exact = new ColorTable();
+        for ( int y = 0; y < img.getHeight(); y++ ) {
+            img.getRGB( 0, y, row.length, 1, row, 0, row.length );
+            for ( int argb : row ) {
+                exact.add( normalize( argb ), 1 );
+            }
+            if ( exact.size > MAX_COLORS ) {
+                return createQuantizedPalette( img, row );
+            }
+        }
+        Palette palette = new Palette( exact, false );
+        for ( int i = 0; i < exact.keys.length; i++ ) {
+            if ( exact.counts[i] > 0 ) {
+                exact.values[i] = palette.add( exact.keys[i] );
+            }
+        }
+        palette.sortTranslucentFirst();
+        return palette;
+    }
+
+    private static Palette createQuantizedPalette( BufferedImage img, int[] row ) {
+        ColorTable reduced = new ColorTable();
+        for ( int y = 0; y < img.getHeight(); y++ ) {
+            img.getRGB( 0, y, row.length, 1, row, 0, row.length );
+            for ( int argb : row ) {
+                reduced.add( reduce( argb ), 1 );
+            }
+        }
+
+        Palette palette = new Palette( reduced, true );
+        // fully transparent pixels get an entry of their own
+        int transparentSlot = reduced.indexOf( 0 );
+        int maxColors = MAX_COLORS;
+        if ( transparentSlot != -1 ) {
+            reduced.values[transparentSlot] = palette.add( 0 );
+            maxColors--;
+        }
+
+        int[] slots = new int[reduced.size];
+        int n = 0;
+        for ( int i = 0; i < reduced.keys.length; i++ ) {
+            if ( reduced.counts[i] > 0 && i != transparentSlot ) {
+                slots[n++] = i;
+            }
+        }
+        medianCut( reduced, slots, n, maxColors, palette );
+        palette.sortTranslucentFirst();
+        return palette;
+    }
+
+    /**
+     * Splits the given colors into boxes, adds the (weighted) mean color of every box to the palette and assigns the
+     * palette index to the colors of the box.
+     */
+    private static void medianCut( ColorTable table, int[] slots, int n, int maxColors, Palette palette ) {
+        if ( n == 0 ) {
+            return;
+        }
+        // expanded colors of the entries, kept in the same order as the slots
+        int[] colors = new int[n];
+        for ( int i = 0; i < n; i++ ) {
+            colors[i] = expand( table.keys[slots[i]] );
+        }
+
+        // boxes are ranges of the slots array, the channel ranges are kept per box
+        int[] boxStart = new int[maxColors];
+        int[] boxEnd = new int[maxColors];
+        long[] boxScore = new long[maxColors];
+        int[] boxChannel = new int[maxColors];
+        int numBoxes = 1;
+        boxEnd[0] = n;
+        updateBox( 0, colors, boxStart, boxEnd, boxScore, boxChannel );
+
+        int[] sortKeys = new int[n];
+        int[] tmpSlots = new int[n];
+        int[] tmpColors = new int[n];
+        while ( numBoxes < maxColors ) {
+            // split the box with the largest channel range (weighted by the number of colors in it)
+            int splitBox = -1;
+            long maxScore = 0;
+            for ( int b = 0; b < numBoxes; b++ ) {
+                if ( boxScore[b] > maxScore ) {
+                    maxScore = boxScore[b];
+                    splitBox = b;
+                }
+            }
+            if ( splitBox == -1 ) {
+                break;
+            }
+            int start = boxStart[splitBox], end = boxEnd[splitBox];
+            int shift = 24 - 8 * boxChannel[splitBox];
+            // sort by channel value, the position is encoded in the lower bits
+            long total = 0;
+            for ( int i = start; i < end; i++ ) {
+                sortKeys[i] = ( ( ( colors[i] >>> shift ) & 0xff ) << 20 ) | i;
+                total += table.counts[slots[i]];
+            }
+            Arrays.sort( sortKeys, start, end );
+            for ( int i = start; i < end; i++ ) {
+                int from = sortKeys[i] & 0xfffff;
+                tmpSlots[i] = slots[from];
+                tmpColors[i] = colors[from];
+            }
+            System.arraycopy( tmpSlots, start, slots, start, end - start );
+            System.arraycopy( tmpColors, start, colors, start, end - start );
+            // split at the median of the pixel count
+            long count = 0;
+            int median = start + 1;
+            for ( int i = start; i < end - 1; i++ ) {
+                count += table.counts[slots[i]];
+                if ( 2 * count >= total ) {
+                    median = i + 1;
+                    break;
+                }
+            }
+            boxStart[numBoxes] = median;
+            boxEnd[numBoxes] = end;
+            boxEnd[splitBox] = median;
+            updateBox( splitBox, colors, boxStart, boxEnd, boxScore, boxChannel );
+            updateBox( numBoxes, colors, boxStart, boxEnd, boxScore, boxChannel );
+            numBoxes++;
+        }
+
+        for ( int b = 0; b < numBoxes; b++ ) {
+            long total = 0;
+            long[] sums = new long[4];
+            for ( int i = boxStart[b]; i < boxEnd[b]; i++ ) {
+                int argb = colors[i];
+                long count = table.counts[slots[i]];
+                total += count;
+                sums[0] += count * ( ( argb >>> 24 ) & 0xff );
+                sums[1] += count * ( ( argb >> 16 ) & 0xff );
+                sums[2] += count * ( ( argb >> 8 ) & 0xff );
+                sums[3] += count * ( argb & 0xff );
+            }
+            int a = (int) ( ( sums[0] + total / 2 ) / total );
+            int r = (int) ( ( sums[1] + total / 2 ) / total );
+            int g = (int) ( ( sums[2] + total / 2 ) / total );
+            int bl = (int) ( ( sums[3] + total / 2 ) / total );
+            int index = palette.add( ( a << 24 ) | ( r << 16 ) | ( g << 8 ) | bl );
+            for ( int i = boxStart[b]; i < boxEnd[b]; i++ ) {
+                table.values[slots[i]] = index;
+            }
+        }
+    }
+
+    /**
+     * Determines the channel with the largest range of a box and the split score (0 if the box cannot be split).
+     */
+    private static void updateBox( int b, int[] colors, int[] boxStart, int[] boxEnd, long[] boxScore,
+                                   int[] boxChannel ) {
+        int size = boxEnd[b] - boxStart[b];
+        boxScore[b] = 0;
+        if ( size < 2 ) {
+            return;
+        }
+        int[] min = { 255, 255, 255, 255 };
+        int[] max = { 0, 0, 0, 0 };
+        for ( int i = boxStart[b]; i < boxEnd[b]; i++ ) {
+            int argb = colors[i];
+            for ( int c = 0; c < 4; c++ ) {
+                int v = ( argb >>> ( 24 - 8 * c ) ) & 0xff;
+                if ( v < min[c] ) {
+                    min[c] = v;
+                }
+                if ( v > max[c] ) {
+                    max[c] = v;
+                }
+            }
+        }
+        for ( int c = 0; c < 4; c++ ) {
+            long score = (long) ( max[c] - min[c] ) * size;
+            if ( score > boxScore[b] ) {
+                boxScore[b] = score;
+                boxChannel[b] = c;
+            }
+        }
+    }
+
+    private static int normalize( int argb ) {
+        return ( argb >>> 24 ) == 0 ? 0 : argb;
+    }
+
+    // 4 bits alpha, 5 bits per color channel
+    private static int reduce( int argb ) {
+        int a = ( argb >>> 28 );
+        if ( a == 0 ) {
+            return 0;
+        }
+        return ( a << 15 ) | ( ( ( argb >> 19 ) & 0x1f ) << 10 ) | ( ( ( argb >> 11 ) & 0x1f ) << 5 )
+               | ( ( argb >> 3 ) & 0x1f );
+    }
+
+    private static int expand( int reduced ) {
+        int a = ( reduced >> 15 ) * 17;
+        int r = ( reduced >> 10 ) & 0x1f;
+        int g = ( reduced >> 5 ) & 0x1f;
+        int b = reduced & 0x1f;
+        return ( a << 24 ) | ( ( ( r << 3 ) | ( r >> 2 ) ) << 16 ) | ( ( ( g << 3 ) | ( g >> 2 ) ) << 8 )
+               | ( ( b << 3 ) | ( b >> 2 ) );
+    }
+
+    private static void writeInt( byte[] buf, int off, int value ) {
+        buf[off] = (byte) ( value >>> 24 );
+        buf[off + 1] = (byte) ( value >>> 16 );
+        buf[off + 2] = (byte) ( value >>> 8 );
+        buf[off + 3] = (byte) value;
+    }
+
+    private static void writeChunk( OutputStream out, String type, byte[] data, int len, CRC32 crc )
+                            throws IOException {
+        byte[] buf = new byte[8];
+        writeInt( buf, 0, len );
+        for ( int i = 0; i < 4; i++ ) {
+            buf[4 + i] = (byte) type.charAt( i );
+        }
+        out.write( buf );
+        out.write( data, 0, len );
+        crc.reset();
+        crc.update( buf, 4, 4 );
+        crc.update( data, 0, len );
+        writeInt( buf, 0, (int) crc.getValue() );
+        out.write( buf, 0, 4 );
+    }
+
+    /**
+     * Open addressing hash table from colors to counts and palette indices.
+     */
+    private static class ColorTable {
+
+        int[] keys = new int[1024];
+
+        // 0 marks an empty slot
+        int[] counts = new int[1024];
+
+        int[] values = new int[1024];
+
+        int size;
+
+        void add( int key, int count ) {
+            int slot = find( keys, counts, key );
+            if ( counts[slot] == 0 ) {
+                keys[slot] = key;
+                size++;
+                if ( 2 * size > keys.length ) {
+                    counts[slot] = count;
+                    grow();
+                    return;
+                }
+            }
+            counts[slot] += count;
+        }
+
+        int indexOf( int key ) {
+            int slot = find( keys, counts, key );
+            return counts[slot] == 0 ? -1 : slot;
+        }
+
+        int get( int key ) {
+            return values[find( keys, counts, key )];
+        }
+
+        private void grow() {
+            int[] oldKeys = keys, oldCounts = counts;
+            keys = new int[oldKeys.length * 2];
+            counts = new int[oldKeys.length * 2];
+            values = new int[oldKeys.length * 2];
+            for ( int i = 0; i < oldKeys.length; i++ ) {
+                if ( oldCounts[i] > 0 ) {
+                    int slot = find( keys, counts, oldKeys[i] );
+                    keys[slot] = oldKeys[i];
+                    counts[slot] = oldCounts[i];
+                }
+            }
+        }
+
+        private static int find( int[] keys, int[] counts, int key ) {
+            int mask = keys.length - 1;
+            // the upper bits of the multiplicative hash are the well mixed ones
+            int slot = ( key * 0x9e3779b9 ) >>> Integer.numberOfLeadingZeros( mask );
+            while ( counts[slot] != 0 && keys[slot] != key ) {
+                slot = ( slot + 1 ) & mask;
+            }
+            return slot;
+        }
+    }
+
+    /**
+     * Palette and mapping from image colors to palette indices.
+     */
+    private static class Palette {
+
+        private final ColorTable table;
+
+        private final boolean reduced;
+
+        final byte[] rgb = new byte[MAX_COLORS * 3];
+
+        final byte[] alpha = new byte[MAX_COLORS];
+
+        int size;
+
+        int numTranslucent;
+
+        // maps the indices used while building the palette to the final (sorted) indices
+        private final int[] order = new int[MAX_COLORS];
+
+        private int lastColor;
+
+        private int lastIndex = -1;
+
+        Palette( ColorTable table, boolean reduced ) {
+            this.table = table;
+            this.reduced = reduced;
+        }
+
+        int add( int argb ) {
+            rgb[3 * size] = (byte) ( argb >> 16 );
+            rgb[3 * size + 1] = (byte) ( argb >> 8 );
+            rgb[3 * size + 2] = (byte) argb;
+            alpha[size] = (byte) ( argb >>> 24 );
+            return size++;
+        }
+
+        /**
+         * Moves the entries that are not fully opaque to the front, so the tRNS chunk can be as short as possible.
+         */
+        void sortTranslucentFirst() {
+            byte[] sortedRgb = new byte[rgb.length];
+            byte[] sortedAlpha = new byte[alpha.length];
+            int next = 0;
+            for ( int pass = 0; pass < 2; pass++ ) {
+                for ( int i = 0; i < size; i++ ) {
+                    boolean opaque = alpha[i] == (byte) 0xff;
+                    if ( opaque == ( pass == 1 ) ) {
+                        order[i] = next;
+                        System.arraycopy( rgb, 3 * i, sortedRgb, 3 * next, 3 );
+                        sortedAlpha[next] = alpha[i];
+                        next++;
+                    }
+                }
+                if ( pass == 0 ) {
+                    numTranslucent = next;
+                }
+            }
+            System.arraycopy( sortedRgb, 0, rgb, 0, rgb.length );
+            System.arraycopy( sortedAlpha, 0, alpha, 0, alpha.length );
+        }
+
+        /**
+         * Maps a row of ARGB pixels to palette indices.
+         */
+        void map( int[] row, byte[] indices ) {
+            for ( int x = 0; x < row.length; x++ ) {
+                int color = reduced ? reduce( row[x] ) : normalize( row[x] );
+                if ( color != lastColor || lastIndex == -1 ) {
+                    lastColor = color;
+                    lastIndex = order[table.get( color )];
+                }
+                indices[x] = (byte) lastIndex;
+            }
+        }
+    }
+
+    /**
+     * Writes the data as IDAT chunks of limited size.
+     */
+    private static class IdatOutputStream extends OutputStream {
+
+        private final OutputStream out;
+
+        private final CRC32 crc;
+
+        private final byte[] buffer = new byte[IDAT_SIZE];
+
+        private int len;
+
+        IdatOutputStream( OutputStream out, CRC32 crc ) {
+            this.out = out;
+            this.crc = crc;
+        }
+
+        @Override
+        public void write( int b )
+                                throws IOException {
+            if ( len == buffer.length ) {
+                flushChunk();
+            }
+            buffer[len++] = (byte) b;
+        }
+
+        @Override
+        public void write( byte[] b, int off, int l )
+                                throws IOException {
+            while ( l > 0 ) {
+                if ( len == buffer.length ) {
+                    flushChunk();
+                }
+                int n = Math.min( l, buffer.length - len );
+                System.arraycopy( b, off, buffer, len, n );
+                len += n;
+                off += n;
+                l -= n;
+            }
+        }
+
+        @Override
+        public void flush()
+                                throws IOException {
+            flushChunk();
+        }
+
+        private void flushChunk()
+                                throws IOException {
+            if ( len > 0 ) {
+                writeChunk( out, "IDAT", buffer, len, crc );
+                len = 0;
+            }
+        }
+    }
+
+}
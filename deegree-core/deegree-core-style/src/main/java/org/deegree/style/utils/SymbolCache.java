@@ -0,0 +1,288 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.style.utils;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map.Entry;
+
+import org.slf4j.Logger;
+
+/**
+ * Memory-bounded cache for rasterized symbols (e.g. transcoded SVGs, rendered marks or loaded external graphics).
+ * <p>
+ * A single instance is shared by all renderers of the JVM (see {@link #getInstance()}), so symbols are rasterized only
+ * once and not once per request. The cache evicts the least recently used symbols as soon as the estimated memory
+ * footprint of the cached images exceeds the maximum size. Cached images are shared, so they must not be modified.
+ * </p>
+ * <p>
+ * Instances are thread-safe.
+ * </p>
+ * 
+ * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class SymbolCache {
+
+    private static final Logger LOG = getLogger( SymbolCache.class );
+
+    private static final SymbolCache INSTANCE = new SymbolCache( 32 * 1024 * 1024 );
+
+    private final LinkedHashMap<Key, BufferedImage> symbols = new LinkedHashMap<Key, BufferedImage>( 256, 0.75f,
+                                                                                                    true );
+
+    private long maxSize;
+
+    private long size;
+
+    private long hits;
+
+    private long misses;
+
+    /**
+     * Creates a new {@link SymbolCache} instance.
+     * 
+     * @param maxSize
+     *            maximum memory footprint of the cached images in bytes
+     */
+    public SymbolCache( long maxSize ) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Returns the instance that is shared by all renderers.
+     * 
+     * @return shared instance, never <code>null</code>
+     */
+    public static SymbolCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns the cached symbol for the given key.
+     * 
+     * @param key
+     *            key of the symbol, must not be <code>null</code>
+     * @return cached symbol, <code>null</code> if the symbol is not cached
+     */
+    public synchronized BufferedImage get( Key key ) {
+        BufferedImage img = symbols.get( key );
+        if ( img == null ) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return img;
+    }
+
+    /**
+     * Adds the given symbol to the cache, evicting the least recently used symbols if necessary.
+     * 
+     * @param key
+     *            key of the symbol, must not be <code>null</code>
+     * @param img
+     *            rasterized symbol, must not be <code>null</code> and must not be modified afterwards
+     */
+    public synchronized void put( Key key, BufferedImage img ) {
+        long imgSize = getSize( img );
+        if ( imgSize > maxSize ) {
+            LOG.debug( "Not caching symbol {}, it exceeds the maximum cache size.", key );
+            return;
+        }
+        BufferedImage old = symbols.put( key, img );
+        if ( old != null ) {
+            size -= getSize( old );
+        }
+        size += imgSize;
+        evict();
+    }
+
+    /**
+     * Sets the maximum memory footprint of the cached images.
+     * 
+     * @param maxSize
+     *            maximum size in bytes
+     */
+    public synchronized void setMaxSize( long maxSize ) {
+        this.maxSize = maxSize;
+        evict();
+    }
+
+    /**
+     * Removes all symbols from the cache and resets the statistics.
+     */
+    public synchronized void clear() {
+        symbols.clear();
+        size = 0;
+        hits = 0;
+        misses = 0;
+    }
+
+    /**
+     * @return number of lookups that returned a cached symbol
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return number of lookups that did not return a cached symbol
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return ratio of successful lookups (between 0 and 1), 0 if there have not been any lookups
+     */
+    public synchronized double getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    /**
+     * @return number of cached symbols
+     */
+    public synchronized int getNumberOfSymbols() {
+        return symbols.size();
+    }
+
+    /**
+     * @return estimated memory footprint of the cached images in bytes
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    private void evict() {
+        Iterator<Entry<Key, BufferedImage>> iter = symbols.entrySet().iterator();
+        while ( size > maxSize && iter.hasNext() ) {
+            size -= getSize( iter.next().getValue() );
+            iter.remove();
+        }
+    }
+
+    private static long getSize( BufferedImage img ) {
+        return (long) img.getWidth() * img.getHeight() * img.getColorModel().getPixelSize() / 8;
+    }
+
+    /**
+     * Returns the rotation bucket for the given rotation, i.e. the rotation rounded to a tenth of a degree and
+     * normalized to [0,360). Symbols that are rasterized with a rotation should be rasterized with the bucket value, so
+     * all rotations of a bucket can share a cached symbol.
+     * 
+     * @param rotation
+     *            rotation in degrees
+     * @return rotation bucket in degrees
+     */
+    public static double getRotationBucket( double rotation ) {
+        double bucket = Math.round( rotation * 10 ) % 3600;
+        if ( bucket < 0 ) {
+            bucket += 3600;
+        }
+        return bucket / 10;
+    }
+
+    /**
+     * Identifies a rasterized symbol.
+     */
+    public static class Key {
+
+        private final Object symbol;
+
+        private final int width;
+
+        private final int height;
+
+        private final double rotation;
+
+        private final Object[] parameters;
+
+        /**
+         * Creates a new {@link Key} instance.
+         * 
+         * @param symbol
+         *            the symbol, e.g. the URL of a graphic or a mark shape, must not be <code>null</code>
+         * @param width
+         *            width of the rasterized symbol in pixels
+         * @param height
+         *            height of the rasterized symbol in pixels
+         * @param rotation
+         *            rotation bucket of the rasterized symbol (see {@link SymbolCache#getRotationBucket(double)})
+         * @param parameters
+         *            further parameters that affect the rasterization (e.g. colors), implementations must provide
+         *            equals/hashCode
+         */
+        public Key( Object symbol, int width, int height, double rotation, Object... parameters ) {
+            this.symbol = symbol;
+            this.width = width;
+            this.height = height;
+            this.rotation = rotation;
+            this.parameters = parameters;
+        }
+
+        @Override
+        public boolean equals( Object o ) {
+            if ( !( o instanceof Key ) ) {
+                return false;
+            }
+            Key that = (Key) o;
+            return symbol.equals( that.symbol ) && width == that.width && height == that.height
+                   && Double.compare( rotation, that.rotation ) == 0 && Arrays.equals( parameters, that.parameters );
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = symbol.hashCode();
+            hash = 31 * hash + width;
+            hash = 31 * hash + height;
+            long bits = Double.doubleToLongBits( rotation );
+            hash = 31 * hash + (int) ( bits ^ ( bits >>> 32 ) );
+            return 31 * hash + Arrays.hashCode( parameters );
+        }
+
+        @Override
+        public String toString() {
+            return symbol + " (" + width + "x" + height + ", rotation " + rotation + ")";
+        }
+    }
+}
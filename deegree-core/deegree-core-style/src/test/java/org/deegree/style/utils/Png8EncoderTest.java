@@ -0,0 +1,140 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.style.utils;
+
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+import org.deegree.style.utils.Png8Encoder.Filter;
+import org.junit.Test;
+
+/**
+ * Tests for {@link Png8Encoder}.
+ * 
+ * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class Png8EncoderTest {
+
+    @Test
+    public void testFewColorsAreLossless()
+                            throws IOException {
+        BufferedImage img = new BufferedImage( 50, 40, TYPE_INT_ARGB );
+        for ( int y = 0; y < img.getHeight(); y++ ) {
+            for ( int x = 0; x < img.getWidth(); x++ ) {
+                // 200 distinct colors with varying alpha, plus fully transparent pixels
+                int argb = ( x + y ) % 3 == 0 ? 0 : ( 5 + 25 * ( y % 10 ) ) << 24 | 0xff0000 | x % 20;
+                img.setRGB( x, y, argb );
+            }
+        }
+        for ( Filter filter : Filter.values() ) {
+            BufferedImage decoded = encodeAndDecode( img, new Png8Encoder( 9, filter ) );
+            assertTrue( decoded.getColorModel() instanceof IndexColorModel );
+            for ( int y = 0; y < img.getHeight(); y++ ) {
+                for ( int x = 0; x < img.getWidth(); x++ ) {
+                    int expected = img.getRGB( x, y );
+                    int actual = decoded.getRGB( x, y );
+                    if ( ( expected >>> 24 ) == 0 ) {
+                        assertEquals( 0, actual >>> 24 );
+                    } else {
+                        assertEquals( expected, actual );
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testManyColorsAreQuantized()
+                            throws IOException {
+        BufferedImage img = new BufferedImage( 256, 256, TYPE_INT_ARGB );
+        for ( int y = 0; y < img.getHeight(); y++ ) {
+            for ( int x = 0; x < img.getWidth(); x++ ) {
+                img.setRGB( x, y, x < 16 ? 0 : 0xff000000 | x << 16 | y << 8 | ( x ^ y ) );
+            }
+        }
+        BufferedImage decoded = encodeAndDecode( img, new Png8Encoder() );
+        assertEquals( img.getWidth(), decoded.getWidth() );
+        assertEquals( img.getHeight(), decoded.getHeight() );
+        for ( int y = 0; y < img.getHeight(); y++ ) {
+            for ( int x = 0; x < img.getWidth(); x++ ) {
+                int expected = img.getRGB( x, y );
+                int actual = decoded.getRGB( x, y );
+                assertEquals( expected >>> 24, actual >>> 24 );
+                for ( int shift = 0; shift < 24; shift += 8 ) {
+                    int diff = Math.abs( ( ( expected >> shift ) & 0xff ) - ( ( actual >> shift ) & 0xff ) );
+                    assertTrue( diff < 64 );
+                }
+            }
+        }
+    }
+
+    @Test(timeout = 20000)
+    public void testManyTranslucentColors()
+                            throws IOException {
+        // random translucent colors, the reduced color table holds far more than 64k entries
+        Random rnd = new Random( 42 );
+        BufferedImage img = new BufferedImage( 1024, 1024, TYPE_INT_ARGB );
+        for ( int y = 0; y < img.getHeight(); y++ ) {
+            for ( int x = 0; x < img.getWidth(); x++ ) {
+                img.setRGB( x, y, ( 16 + rnd.nextInt( 240 ) ) << 24 | rnd.nextInt( 0x1000000 ) );
+            }
+        }
+        BufferedImage decoded = encodeAndDecode( img, new Png8Encoder() );
+        assertEquals( img.getWidth(), decoded.getWidth() );
+        assertEquals( 256, ( (IndexColorModel) decoded.getColorModel() ).getMapSize() );
+    }
+
+    private static BufferedImage encodeAndDecode( BufferedImage img, Png8Encoder encoder )
+                            throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        encoder.encode( img, out );
+        return ImageIO.read( new ByteArrayInputStream( out.toByteArray() ) );
+    }
+
+}
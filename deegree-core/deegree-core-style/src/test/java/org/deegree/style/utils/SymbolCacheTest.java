@@ -0,0 +1,97 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.style.utils;
+
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+
+import org.deegree.style.utils.SymbolCache.Key;
+import org.junit.Test;
+
+/**
+ * Tests for {@link SymbolCache}.
+ * 
+ * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class SymbolCacheTest {
+
+    @Test
+    public void testKeyEquality() {
+        Key key1 = new Key( "symbol.svg", 10, 10, 0, new Color( 1, 2, 3 ) );
+        Key key2 = new Key( "symbol.svg", 10, 10, 0, new Color( 1, 2, 3 ) );
+        Key key3 = new Key( "symbol.svg", 10, 10, 0, new Color( 3, 2, 1 ) );
+        SymbolCache cache = new SymbolCache( 1024 * 1024 );
+        BufferedImage img = new BufferedImage( 10, 10, TYPE_INT_ARGB );
+        cache.put( key1, img );
+        assertSame( img, cache.get( key2 ) );
+        assertNull( cache.get( key3 ) );
+        assertEquals( 1, cache.getHits() );
+        assertEquals( 1, cache.getMisses() );
+        assertEquals( 0.5, cache.getHitRate(), 0.0 );
+    }
+
+    @Test
+    public void testEvictionOfLeastRecentlyUsed() {
+        // room for two images of 10x10 ARGB pixels
+        SymbolCache cache = new SymbolCache( 800 );
+        Key key1 = new Key( "1", 10, 10, 0 );
+        Key key2 = new Key( "2", 10, 10, 0 );
+        Key key3 = new Key( "3", 10, 10, 0 );
+        cache.put( key1, new BufferedImage( 10, 10, TYPE_INT_ARGB ) );
+        cache.put( key2, new BufferedImage( 10, 10, TYPE_INT_ARGB ) );
+        cache.get( key1 );
+        cache.put( key3, new BufferedImage( 10, 10, TYPE_INT_ARGB ) );
+        assertEquals( 2, cache.getNumberOfSymbols() );
+        assertEquals( 800, cache.getSize() );
+        assertNull( cache.get( key2 ) );
+    }
+
+    @Test
+    public void testRotationBucket() {
+        assertEquals( 10.1, SymbolCache.getRotationBucket( 10.06 ), 1e-9 );
+        assertEquals( 350.0, SymbolCache.getRotationBucket( -10 ), 1e-9 );
+        assertEquals( 0.0, SymbolCache.getRotationBucket( 360 ), 1e-9 );
+    }
+
+}
@@ -0,0 +1,531 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.deegree.commons.tom.ElementNode;
+import org.deegree.commons.tom.Reference;
+import org.deegree.commons.tom.TypedObjectNode;
+import org.deegree.commons.tom.gml.GMLObject;
+import org.deegree.commons.tom.gml.property.Property;
+import org.deegree.commons.tom.primitive.PrimitiveValue;
+import org.deegree.feature.persistence.FeatureStore;
+import org.deegree.geometry.Envelope;
+import org.deegree.geometry.Geometry;
+import org.deegree.geometry.multi.MultiGeometry;
+import org.deegree.geometry.points.Points;
+import org.deegree.geometry.primitive.Curve;
+import org.deegree.geometry.primitive.Point;
+import org.deegree.geometry.primitive.Surface;
+
+/**
+ * {@link FeatureStoreCache} that is bounded by the estimated memory footprint of the cached objects.
+ * <p>
+ * The cache is divided into independently locked segments (selected by the hash of the object id), so concurrent
+ * lookups of different objects rarely contend. Each segment evicts its least recently used objects as soon as its share
+ * of the byte budget is exceeded. Hit, miss and eviction counters are maintained for monitoring purposes.
+ * </p>
+ * <p>
+ * Stores that read objects concurrently to transactions should add them through a view (see {@link #getView(String)})
+ * and evict modified objects using {@link #invalidate(String)}: a view drops objects whose key has been invalidated
+ * since the creation of the view, so stale versions cannot be put back into the cache after a transaction has been
+ * committed. Invalidations are tracked per key hash, so they do not affect views that add other objects.
+ * </p>
+ * 
+ * @see FeatureStore
+ * 
+ * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class BoundedFeatureStoreCache implements FeatureStoreCache {
+
+    /** Default byte budget (64 MiB). */
+    public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+    private static final int NUM_SEGMENTS = 16;
+
+    private static final int OBJECT_BYTES = 64;
+
+    private static final int PROPERTY_BYTES = 48;
+
+    private static final int GEOMETRY_BYTES = 96;
+
+    private static final int UNKNOWN_GEOMETRY_BYTES = 1024;
+
+    private static final int MAX_DEPTH = 16;
+
+    private static final int NUM_INVALIDATION_STRIPES = 4096;
+
+    private static final char VIEW_SEPARATOR = ':';
+
+    private final Segment[] segments = new Segment[NUM_SEGMENTS];
+
+    private final long maxBytes;
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong evictions = new AtomicLong();
+
+    // incremented by every invalidation
+    private final AtomicLong generation = new AtomicLong();
+
+    // generation of the last invalidation of the keys (by key hash), views only add objects if their key has not been
+    // invalidated since their creation
+    private final AtomicLongArray invalidations = new AtomicLongArray( NUM_INVALIDATION_STRIPES );
+
+    /**
+     * Creates a new {@link BoundedFeatureStoreCache} instance with a byte budget of {@link #DEFAULT_MAX_BYTES}.
+     */
+    public BoundedFeatureStoreCache() {
+        this( DEFAULT_MAX_BYTES );
+    }
+
+    /**
+     * Creates a new {@link BoundedFeatureStoreCache} instance with the specified byte budget.
+     * 
+     * @param maxBytes
+     *            maximum estimated number of bytes occupied by the cached objects, must be positive
+     */
+    public BoundedFeatureStoreCache( long maxBytes ) {
+        if ( maxBytes <= 0 ) {
+            throw new IllegalArgumentException( "Maximum cache size must be positive, but is " + maxBytes + "." );
+        }
+        this.maxBytes = maxBytes;
+        long segmentBytes = Math.max( 1, maxBytes / NUM_SEGMENTS );
+        for ( int i = 0; i < NUM_SEGMENTS; i++ ) {
+            segments[i] = new Segment( segmentBytes );
+        }
+    }
+
+    @Override
+    public GMLObject get( String id ) {
+        Segment segment = getSegment( id );
+        CacheEntry entry;
+        synchronized ( segment ) {
+            entry = segment.get( id );
+        }
+        if ( entry == null ) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry.object;
+    }
+
+    @Override
+    public void add( GMLObject obj ) {
+        add( obj.getId(), obj, -1 );
+    }
+
+    // adds the object under the given key, unless the key has been invalidated since the given generation (-1: add
+    // unconditionally)
+    private void add( String key, GMLObject obj, long startGeneration ) {
+        Segment segment = getSegment( key );
+        long bytes = estimateBytes( obj );
+        if ( bytes > segment.maxBytes ) {
+            // would evict the whole segment (and itself)
+            remove( key );
+            return;
+        }
+        synchronized ( segment ) {
+            if ( startGeneration != -1 && invalidations.get( getInvalidationStripe( key ) ) > startGeneration ) {
+                return;
+            }
+            CacheEntry old = segment.put( key, new CacheEntry( obj, bytes ) );
+            if ( old != null ) {
+                segment.bytes -= old.bytes;
+            }
+            segment.bytes += bytes;
+            Iterator<CacheEntry> iter = segment.values().iterator();
+            while ( segment.bytes > segment.maxBytes && iter.hasNext() ) {
+                CacheEntry eldest = iter.next();
+                iter.remove();
+                segment.bytes -= eldest.bytes;
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    @Override
+    public void remove( String id ) {
+        Segment segment = getSegment( id );
+        synchronized ( segment ) {
+            CacheEntry old = segment.remove( id );
+            if ( old != null ) {
+                segment.bytes -= old.bytes;
+            }
+        }
+    }
+
+    /**
+     * Removes the object with the specified key and prevents that views created before this call add it again.
+     * 
+     * @param key
+     *            key of the object (for objects added via a view: prefix of the view plus object id), must not be
+     *            <code>null</code>
+     */
+    public void invalidate( String key ) {
+        Segment segment = getSegment( key );
+        synchronized ( segment ) {
+            invalidations.set( getInvalidationStripe( key ), generation.incrementAndGet() );
+            CacheEntry old = segment.remove( key );
+            if ( old != null ) {
+                segment.bytes -= old.bytes;
+            }
+        }
+    }
+
+    /**
+     * Returns a view of this cache for a single read operation.
+     * <p>
+     * The view stores the objects under their id plus the given prefix, so variants of the same object (e.g. with
+     * generalized geometries) can share the byte budget of this cache. Objects added to the view are dropped if their
+     * key has been invalidated (see {@link #invalidate(String)}) since the view has been created.
+     * </p>
+     * <p>
+     * As the views of a cache are only distinguished by their prefix, the ids of the objects must not contain a
+     * <code>:</code> (true for GML ids, which are NCNames).
+     * </p>
+     * 
+     * @param keyPrefix
+     *            prefix of the keys of the objects, must not be <code>null</code>, either an empty string (view of the
+     *            plain object ids) or a string that ends with <code>:</code> and contains no other <code>:</code>
+     * @return view, never <code>null</code>
+     * @throws IllegalArgumentException
+     *             if the prefix is not valid
+     */
+    public FeatureStoreCache getView( String keyPrefix ) {
+        if ( !keyPrefix.isEmpty() && keyPrefix.indexOf( VIEW_SEPARATOR ) != keyPrefix.length() - 1 ) {
+            throw new IllegalArgumentException( "Invalid view prefix '" + keyPrefix + "'. Must be empty or end with '"
+                                                + VIEW_SEPARATOR + "' (and not contain it otherwise)." );
+        }
+        return new View( keyPrefix, generation.get() );
+    }
+
+    @Override
+    public void clear() {
+        for ( Segment segment : segments ) {
+            synchronized ( segment ) {
+                segment.clear();
+                segment.bytes = 0;
+            }
+        }
+    }
+
+    // removes all objects of the view with the given prefix
+    private void clear( String keyPrefix ) {
+        for ( Segment segment : segments ) {
+            synchronized ( segment ) {
+                Iterator<Entry<String, CacheEntry>> iter = segment.entrySet().iterator();
+                while ( iter.hasNext() ) {
+                    Entry<String, CacheEntry> entry = iter.next();
+                    String key = entry.getKey();
+                    if ( key.startsWith( keyPrefix ) && key.indexOf( VIEW_SEPARATOR, keyPrefix.length() ) == -1 ) {
+                        iter.remove();
+                        segment.bytes -= entry.getValue().bytes;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of successful lookups.
+     * 
+     * @return number of successful lookups
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of lookups for objects that were not present in the cache.
+     * 
+     * @return number of unsuccessful lookups
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Returns the number of objects that have been removed from the cache to stay within the byte budget.
+     * 
+     * @return number of evicted objects
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * Returns the number of currently cached objects.
+     * 
+     * @return number of cached objects
+     */
+    public int getSize() {
+        int size = 0;
+        for ( Segment segment : segments ) {
+            synchronized ( segment ) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Returns the estimated number of bytes occupied by the currently cached objects.
+     * 
+     * @return estimated number of bytes
+     */
+    public long getBytes() {
+        long bytes = 0;
+        for ( Segment segment : segments ) {
+            synchronized ( segment ) {
+                bytes += segment.bytes;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Returns the byte budget of the cache.
+     * 
+     * @return maximum estimated number of bytes occupied by the cached objects
+     */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    @Override
+    public String toString() {
+        return "BoundedFeatureStoreCache [objects=" + getSize() + ", bytes=" + getBytes() + "/" + maxBytes + ", hits="
+               + hits + ", misses=" + misses + ", evictions=" + evictions + "]";
+    }
+
+    private Segment getSegment( String id ) {
+        int h = id.hashCode();
+        h ^= ( h >>> 16 );
+        return segments[h & ( NUM_SEGMENTS - 1 )];
+    }
+
+    private int getInvalidationStripe( String key ) {
+        int h = key.hashCode();
+        h ^= ( h >>> 16 );
+        return h & ( NUM_INVALIDATION_STRIPES - 1 );
+    }
+
+    /**
+     * Returns a rough estimation of the heap memory occupied by the given object.
+     * 
+     * @param obj
+     *            object, must not be <code>null</code>
+     * @return estimated number of bytes
+     */
+    static long estimateBytes( GMLObject obj ) {
+        return estimateBytes( obj, 0 );
+    }
+
+    private static long estimateBytes( TypedObjectNode node, int depth ) {
+        if ( node == null ) {
+            return 0;
+        }
+        if ( depth > MAX_DEPTH ) {
+            return OBJECT_BYTES;
+        }
+        if ( node instanceof Reference<?> ) {
+            String uri = ( (Reference<?>) node ).getURI();
+            return OBJECT_BYTES + ( uri == null ? 0 : 2 * uri.length() );
+        }
+        if ( node instanceof PrimitiveValue ) {
+            return OBJECT_BYTES + 2 * ( (PrimitiveValue) node ).getAsText().length();
+        }
+        if ( node instanceof Geometry ) {
+            return estimateBytes( (Geometry) node );
+        }
+        if ( node instanceof GMLObject ) {
+            long bytes = OBJECT_BYTES;
+            List<Property> props = ( (GMLObject) node ).getProperties();
+            if ( props != null ) {
+                for ( Property prop : props ) {
+                    bytes += estimateBytes( prop, depth + 1 );
+                }
+            }
+            return bytes;
+        }
+        if ( node instanceof Property ) {
+            Property prop = (Property) node;
+            long bytes = PROPERTY_BYTES;
+            if ( prop.getAttributes() != null ) {
+                for ( PrimitiveValue attr : prop.getAttributes().values() ) {
+                    bytes += PROPERTY_BYTES + estimateBytes( attr, depth + 1 );
+                }
+            }
+            List<TypedObjectNode> children = prop.getChildren();
+            if ( children == null || children.isEmpty() ) {
+                return bytes + estimateBytes( prop.getValue(), depth + 1 );
+            }
+            for ( TypedObjectNode child : children ) {
+                bytes += estimateBytes( child, depth + 1 );
+            }
+            return bytes;
+        }
+        if ( node instanceof ElementNode ) {
+            long bytes = OBJECT_BYTES;
+            ElementNode el = (ElementNode) node;
+            if ( el.getAttributes() != null ) {
+                for ( PrimitiveValue attr : el.getAttributes().values() ) {
+                    bytes += PROPERTY_BYTES + estimateBytes( attr, depth + 1 );
+                }
+            }
+            if ( el.getChildren() != null ) {
+                for ( TypedObjectNode child : el.getChildren() ) {
+                    bytes += estimateBytes( child, depth + 1 );
+                }
+            }
+            return bytes;
+        }
+        return OBJECT_BYTES;
+    }
+
+    private static long estimateBytes( Geometry geom ) {
+        try {
+            if ( geom instanceof Point ) {
+                return GEOMETRY_BYTES + 8 * ( (Point) geom ).getCoordinateDimension();
+            }
+            if ( geom instanceof Envelope ) {
+                return 3 * GEOMETRY_BYTES + 16 * geom.getCoordinateDimension();
+            }
+            if ( geom instanceof Curve ) {
+                return GEOMETRY_BYTES + estimateBytes( ( (Curve) geom ).getControlPoints() );
+            }
+            if ( geom instanceof Surface ) {
+                Surface surface = (Surface) geom;
+                long bytes = GEOMETRY_BYTES + estimateBytes( surface.getExteriorRingCoordinates() );
+                List<Points> interiors = surface.getInteriorRingsCoordinates();
+                if ( interiors != null ) {
+                    for ( Points interior : interiors ) {
+                        bytes += estimateBytes( interior );
+                    }
+                }
+                return bytes;
+            }
+            if ( geom instanceof MultiGeometry<?> ) {
+                long bytes = GEOMETRY_BYTES;
+                for ( Geometry member : (MultiGeometry<?>) geom ) {
+                    bytes += estimateBytes( member );
+                }
+                return bytes;
+            }
+        } catch ( Exception e ) {
+            // e.g. non-linear or composite geometries that do not provide their points directly
+        }
+        return UNKNOWN_GEOMETRY_BYTES;
+    }
+
+    private static long estimateBytes( Points points ) {
+        if ( points == null ) {
+            return 0;
+        }
+        return GEOMETRY_BYTES + 8L * points.size() * points.getDimension();
+    }
+
+    private class View implements FeatureStoreCache {
+
+        private final String keyPrefix;
+
+        private final long startGeneration;
+
+        private View( String keyPrefix, long startGeneration ) {
+            this.keyPrefix = keyPrefix;
+            this.startGeneration = startGeneration;
+        }
+
+        @Override
+        public GMLObject get( String id ) {
+            return BoundedFeatureStoreCache.this.get( keyPrefix + id );
+        }
+
+        @Override
+        public void add( GMLObject obj ) {
+            BoundedFeatureStoreCache.this.add( keyPrefix + obj.getId(), obj, startGeneration );
+        }
+
+        @Override
+        public void remove( String id ) {
+            BoundedFeatureStoreCache.this.remove( keyPrefix + id );
+        }
+
+        @Override
+        public void clear() {
+            BoundedFeatureStoreCache.this.clear( keyPrefix );
+        }
+    }
+
+    private static class CacheEntry {
+
+        private final GMLObject object;
+
+        private final long bytes;
+
+        private CacheEntry( GMLObject object, long bytes ) {
+            this.object = object;
+            this.bytes = bytes;
+        }
+    }
+
+    private static class Segment extends LinkedHashMap<String, CacheEntry> {
+
+        private static final long serialVersionUID = -4290817375372563519L;
+
+        private final long maxBytes;
+
+        private long bytes;
+
+        private Segment( long maxBytes ) {
+            super( 16, 0.75f, true );
+            this.maxBytes = maxBytes;
+        }
+    }
+}
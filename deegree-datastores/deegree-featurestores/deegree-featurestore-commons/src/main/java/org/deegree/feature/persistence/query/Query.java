@@ -97,6 +97,12 @@ public class Query {
 
     private int maxFeatures = -1;
 
+    private int offset = 0;
+
+    private int limit = -1;
+
+    private boolean pagingApplied;
+
     private final List<ProjectionClause> projections;
 
     /**
@@ -277,4 +283,68 @@ public class Query {
     public int getMaxFeatures() {
         return maxFeatures;
     }
+
+    /**
+     * Sets the window of matching features that shall be returned (e.g. WFS <code>startIndex</code>/
+     * <code>count</code>).
+     * <p>
+     * A {@link FeatureStore} may use these values to perform the paging in the backend. If it does so, it must call
+     * {@link #setPagingApplied()}. Otherwise, the caller is responsible for skipping/limiting the returned features.
+     * </p>
+     * 
+     * @param offset
+     *            number of matching features to skip, must not be negative
+     * @param limit
+     *            maximum number of features to return, -1 for no limit
+     */
+    public void setPaging( int offset, int limit ) {
+        this.offset = offset;
+        this.limit = limit;
+        this.pagingApplied = false;
+    }
+
+    /**
+     * Returns the number of matching features to skip.
+     * 
+     * @return number of features to skip, 0 if no offset has been set
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * Returns the maximum number of features to return after skipping {@link #getOffset()} features.
+     * 
+     * @return maximum number of features, -1 if no limit has been set
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Returns whether paging has been requested for this query.
+     * 
+     * @return <code>true</code>, if an offset or limit has been set, <code>false</code> otherwise
+     */
+    public boolean isPaged() {
+        return offset > 0 || limit >= 0;
+    }
+
+    /**
+     * Called by the {@link FeatureStore} to indicate that the returned features already respect {@link #getOffset()}
+     * and {@link #getLimit()}.
+     */
+    public void setPagingApplied() {
+        this.pagingApplied = true;
+    }
+
+    /**
+     * Returns whether the {@link FeatureStore} has applied the paging parameters.
+     * 
+     * @return <code>true</code>, if the returned features already respect offset and limit, <code>false</code>
+     *         otherwise
+     */
+    public boolean isPagingApplied() {
+        return pagingApplied;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,205 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.deegree.commons.tom.gml.GMLObject;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link BoundedFeatureStoreCache}.
+ * 
+ * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class BoundedFeatureStoreCacheTest {
+
+    private long objectBytes;
+
+    private BoundedFeatureStoreCache cache;
+
+    @Before
+    public void setUp() {
+        objectBytes = BoundedFeatureStoreCache.estimateBytes( createObject( "x" ) );
+        // 16 segments with room for two objects each
+        cache = new BoundedFeatureStoreCache( 16 * 2 * objectBytes );
+    }
+
+    @Test
+    public void testEvictionBoundedByBytes() {
+        for ( int i = 0; i < 100; i++ ) {
+            cache.add( createObject( "f" + i ) );
+        }
+        assertTrue( cache.getBytes() <= cache.getMaxBytes() );
+        assertTrue( cache.getSize() <= 32 );
+        assertEquals( cache.getSize() * objectBytes, cache.getBytes() );
+        assertEquals( 100 - cache.getSize(), cache.getEvictions() );
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEvicted() {
+        GMLObject keep = createObject( "keep" );
+        cache.add( keep );
+        for ( int i = 0; i < 100; i++ ) {
+            cache.add( createObject( "f" + i ) );
+            // always the most recently used object of its segment
+            assertSame( keep, cache.get( "keep" ) );
+        }
+        assertEquals( 0, cache.getMisses() );
+        assertTrue( cache.getEvictions() > 0 );
+    }
+
+    @Test
+    public void testOversizedObjectNotCached() {
+        BoundedFeatureStoreCache small = new BoundedFeatureStoreCache( 16 * objectBytes - 1 );
+        small.add( createObject( "a" ) );
+        assertNull( small.get( "a" ) );
+        assertEquals( 0, small.getBytes() );
+    }
+
+    @Test
+    public void testViewUsesKeyPrefix() {
+        GMLObject obj = createObject( "a" );
+        FeatureStoreCache view = cache.getView( "1:" );
+        view.add( obj );
+        assertNull( cache.get( "a" ) );
+        assertSame( obj, view.get( "a" ) );
+        assertSame( obj, cache.get( "1:a" ) );
+        assertNull( cache.getView( "2:" ).get( "a" ) );
+        // views share the byte budget
+        assertEquals( objectBytes, cache.getBytes() );
+    }
+
+    @Test
+    public void testInvalidate() {
+        GMLObject obj = createObject( "a" );
+        cache.add( obj );
+        cache.getView( "1:" ).add( obj );
+
+        cache.invalidate( "a" );
+        assertNull( cache.get( "a" ) );
+        assertSame( obj, cache.get( "1:a" ) );
+
+        cache.invalidate( "1:a" );
+        assertNull( cache.get( "1:a" ) );
+        assertEquals( 0, cache.getBytes() );
+    }
+
+    @Test
+    public void testViewDropsObjectsReadBeforeInvalidation() {
+        FeatureStoreCache view = cache.getView( "" );
+        // a transaction commits while the view is in use
+        cache.invalidate( "a" );
+        view.add( createObject( "a" ) );
+        assertNull( cache.get( "a" ) );
+
+        FeatureStoreCache laterView = cache.getView( "" );
+        GMLObject obj = createObject( "a" );
+        laterView.add( obj );
+        assertSame( obj, cache.get( "a" ) );
+    }
+
+    @Test
+    public void testInvalidationOfOtherKeysIgnoredByView() {
+        FeatureStoreCache view = cache.getView( "" );
+        cache.invalidate( "b" );
+        cache.invalidate( "1:a" );
+        GMLObject obj = createObject( "a" );
+        view.add( obj );
+        assertSame( obj, cache.get( "a" ) );
+    }
+
+    @Test
+    public void testViewClear() {
+        BoundedFeatureStoreCache large = new BoundedFeatureStoreCache( 1024 * objectBytes );
+        GMLObject a = createObject( "a" );
+        GMLObject b = createObject( "b" );
+        large.add( a );
+        large.getView( "1:" ).add( a );
+        large.getView( "1:" ).add( b );
+        large.getView( "11:" ).add( b );
+
+        large.getView( "1:" ).clear();
+        assertNull( large.get( "1:a" ) );
+        assertNull( large.get( "1:b" ) );
+        assertSame( a, large.get( "a" ) );
+        assertSame( b, large.get( "11:b" ) );
+        assertEquals( 2 * objectBytes, large.getBytes() );
+
+        // the view of the plain ids does not include the objects of other views
+        large.getView( "" ).clear();
+        assertNull( large.get( "a" ) );
+        assertSame( b, large.get( "11:b" ) );
+        assertEquals( objectBytes, large.getBytes() );
+    }
+
+    @Test
+    public void testInvalidViewPrefix() {
+        String[] invalid = new String[] { "1", "1:2:", ":1" };
+        for ( String prefix : invalid ) {
+            try {
+                cache.getView( prefix );
+                fail( "Expected exception for prefix '" + prefix + "'." );
+            } catch ( IllegalArgumentException e ) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testPlainAddIgnoresInvalidation() {
+        cache.invalidate( "b" );
+        GMLObject obj = createObject( "a" );
+        cache.add( obj );
+        assertSame( obj, cache.get( "a" ) );
+    }
+
+    private static GMLObject createObject( String id ) {
+        GMLObject obj = mock( GMLObject.class );
+        when( obj.getId() ).thenReturn( id );
+        return obj;
+    }
+}
@@ -79,8 +79,8 @@ import org.deegree.feature.GenericFeatureCollection;
 import org.deegree.feature.persistence.FeatureStore;
 import org.deegree.feature.persistence.FeatureStoreException;
 import org.deegree.feature.persistence.FeatureStoreTransaction;
+import org.deegree.feature.persistence.cache.BoundedFeatureStoreCache;
 import org.deegree.feature.persistence.cache.FeatureStoreCache;
-import org.deegree.feature.persistence.cache.SimpleFeatureStoreCache;
 import org.deegree.feature.persistence.lock.LockManager;
 import org.deegree.feature.persistence.query.Query;
 import org.deegree.feature.persistence.shape.ShapeFeatureStoreProvider.Mapping;
@@ -210,7 +210,7 @@ public class ShapeFeatureStore implements FeatureStore {
         if ( cache != null ) {
             this.cache = cache;
         } else {
-            this.cache = new SimpleFeatureStoreCache();
+            this.cache = new BoundedFeatureStoreCache();
         }
     }
 
@@ -48,6 +48,8 @@ import java.util.List;
 import org.deegree.cs.coordinatesystems.ICRS;
 import org.deegree.cs.persistence.CRSManager;
 import org.deegree.feature.persistence.FeatureStore;
+import org.deegree.feature.persistence.cache.BoundedFeatureStoreCache;
+import org.deegree.feature.persistence.cache.FeatureStoreCache;
 import org.deegree.feature.persistence.shape.ShapeFeatureStoreProvider.Mapping;
 import org.deegree.feature.persistence.shape.jaxb.ShapeFeatureStoreConfig;
 import org.deegree.feature.persistence.shape.jaxb.ShapeFeatureStoreConfig.Mapping.GeometryProperty;
@@ -128,10 +130,15 @@ public class ShapeFeatureStoreBuilder implements ResourceBuilder<FeatureStore> {
             }
         }
 
+        FeatureStoreCache cache = null;
+        if ( config.getFeatureCache() != null && config.getFeatureCache().getMaxBytes() != null ) {
+            cache = new BoundedFeatureStoreCache( config.getFeatureCache().getMaxBytes().longValue() );
+        }
+
         Boolean genIdx = config.isGenerateAlphanumericIndexes();
         return new ShapeFeatureStore( shapeFileName, crs, cs, config.getFeatureTypeNamespace(),
                                       config.getFeatureTypeName(), config.getFeatureTypePrefix(), genIdx == null
-                                                                                                  || genIdx, null,
+                                                                                                  || genIdx, cache,
                                       mappings, metadata );
     }
 
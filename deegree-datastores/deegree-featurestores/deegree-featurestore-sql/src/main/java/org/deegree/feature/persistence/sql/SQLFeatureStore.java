@@ -39,9 +39,11 @@ import static org.deegree.commons.utils.JDBCUtils.close;
 import static org.deegree.commons.xml.CommonNamespaces.OGCNS;
 import static org.deegree.commons.xml.CommonNamespaces.XLNNS;
 import static org.deegree.commons.xml.CommonNamespaces.XSINS;
+import static org.deegree.feature.persistence.query.Query.QueryHint.HINT_RESOLUTION;
 import static org.slf4j.LoggerFactory.getLogger;
 
 import java.lang.reflect.Constructor;
+import java.math.BigInteger;
 import java.net.URL;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -49,12 +51,21 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import javax.xml.namespace.QName;
 
@@ -71,6 +82,7 @@ import org.deegree.commons.tom.primitive.PrimitiveType;
 import org.deegree.commons.tom.primitive.PrimitiveValue;
 import org.deegree.commons.tom.sql.ParticleConverter;
 import org.deegree.commons.tom.sql.SQLValueMangler;
+import org.deegree.commons.utils.CloseableIterator;
 import org.deegree.commons.utils.JDBCUtils;
 import org.deegree.commons.utils.Pair;
 import org.deegree.cs.coordinatesystems.ICRS;
@@ -85,8 +97,8 @@ import org.deegree.feature.persistence.FeatureStoreGMLIdResolver;
 import org.deegree.feature.persistence.FeatureStoreManager;
 import org.deegree.feature.persistence.FeatureStoreTransaction;
 import org.deegree.feature.persistence.cache.BBoxCache;
+import org.deegree.feature.persistence.cache.BoundedFeatureStoreCache;
 import org.deegree.feature.persistence.cache.FeatureStoreCache;
-import org.deegree.feature.persistence.cache.SimpleFeatureStoreCache;
 import org.deegree.feature.persistence.lock.DefaultLockManager;
 import org.deegree.feature.persistence.lock.LockManager;
 import org.deegree.feature.persistence.query.Query;
@@ -100,6 +112,7 @@ import org.deegree.feature.persistence.sql.id.FIDMapping;
 import org.deegree.feature.persistence.sql.id.IdAnalysis;
 import org.deegree.feature.persistence.sql.jaxb.CustomConverterJAXB;
 import org.deegree.feature.persistence.sql.jaxb.CustomInspector;
+import org.deegree.feature.persistence.sql.jaxb.FeatureTypeMappingJAXB;
 import org.deegree.feature.persistence.sql.jaxb.SQLFeatureStoreJAXB;
 import org.deegree.feature.persistence.sql.rules.CompoundMapping;
 import org.deegree.feature.persistence.sql.rules.FeatureBuilderRelational;
@@ -112,6 +125,8 @@ import org.deegree.feature.stream.FeatureInputStream;
 import org.deegree.feature.stream.FilteredFeatureInputStream;
 import org.deegree.feature.stream.IteratorFeatureInputStream;
 import org.deegree.feature.stream.MemoryFeatureInputStream;
+import org.deegree.feature.stream.PagedFeatureInputStream;
+import org.deegree.feature.stream.ThreadedFeatureInputStream;
 import org.deegree.feature.types.FeatureType;
 import org.deegree.feature.types.property.GeometryPropertyType.CoordinateDimension;
 import org.deegree.feature.types.property.GeometryPropertyType.GeometryType;
@@ -125,6 +140,7 @@ import org.deegree.filter.spatial.BBOX;
 import org.deegree.geometry.Envelope;
 import org.deegree.geometry.Geometry;
 import org.deegree.geometry.GeometryTransformer;
+import org.deegree.geometry.io.WKTWriter;
 import org.deegree.sqldialect.SQLDialect;
 import org.deegree.sqldialect.filter.AbstractWhereBuilder;
 import org.deegree.sqldialect.filter.DBField;
@@ -158,7 +174,13 @@ public class SQLFeatureStore implements FeatureStore {
 
     private static final int DEFAULT_FETCH_SIZE = 1000;
 
-    private static final int DEFAULT_CACHE_SIZE = 10000;
+    static final int MAX_CACHED_HITS = 1000;
+
+    private static final int DEFAULT_READ_AHEAD = 500;
+
+    private static final int DEFAULT_PARALLEL_QUERY_THREADS = 10;
+
+    private static final int DEFAULT_PARALLEL_QUERY_TIMEOUT = 60;
 
     private final SQLFeatureStoreJAXB config;
 
@@ -176,7 +198,7 @@ public class SQLFeatureStore implements FeatureStore {
 
     private final Map<Mapping, ParticleConverter<?>> particleMappingToConverter = new HashMap<Mapping, ParticleConverter<?>>();
 
-    private final FeatureStoreCache cache;
+    private final BoundedFeatureStoreCache cache;
 
     private BBoxCache bboxCache;
 
@@ -194,6 +216,31 @@ public class SQLFeatureStore implements FeatureStore {
 
     private boolean nullEscalation;
 
+    private final boolean batchedJoinFetching;
+
+    // number of features fetched in advance for every query of a multi-query request, 0 for sequential execution
+    private final int parallelQueryReadAhead;
+
+    // threads for concurrent queries (no queueing, queries are executed sequentially if all threads are busy)
+    private final ExecutorService parallelQueryExecutor;
+
+    // timeout for concurrent queries (in milliseconds)
+    private final long parallelQueryTimeout;
+
+    private final boolean estimateHits;
+
+    // key: SQL of the hits query (plus arguments), value: exact number of hits, null if caching is disabled
+    private final Map<String, Integer> hitsCache;
+
+    // incremented whenever the hits cache is cleared, prevents caching of hits determined before a commit
+    private long hitsCacheGeneration;
+
+    // key: feature type name, value: generalization tolerance (in pixels)
+    final Map<QName, Double> ftNameToGeneralizationTolerance = new HashMap<QName, Double>();
+
+    // generalization levels of the features in the cache (stored under the level as key prefix)
+    private final Set<Integer> generalizationLevels = new HashSet<Integer>();
+
     private final SqlFeatureStoreMetadata metadata;
 
     private final Workspace workspace;
@@ -217,6 +264,37 @@ public class SQLFeatureStore implements FeatureStore {
         this.workspace = workspace;
         this.jdbcConnId = config.getJDBCConnId().getValue();
         this.allowInMemoryFiltering = config.getDisablePostFiltering() == null;
+        this.batchedJoinFetching = config.getDisableBatchedJoinFetching() == null;
+        if ( config.getParallelQueries() != null ) {
+            BigInteger readAhead = config.getParallelQueries().getReadAhead();
+            parallelQueryReadAhead = readAhead != null ? readAhead.intValue() : DEFAULT_READ_AHEAD;
+            BigInteger maxThreads = config.getParallelQueries().getMaxThreads();
+            int threads = maxThreads != null ? maxThreads.intValue() : DEFAULT_PARALLEL_QUERY_THREADS;
+            parallelQueryExecutor = new ThreadPoolExecutor( 0, threads, 60, TimeUnit.SECONDS,
+                                                            new SynchronousQueue<Runnable>() );
+            BigInteger timeout = config.getParallelQueries().getTimeout();
+            parallelQueryTimeout = 1000L * ( timeout != null ? timeout.intValue() : DEFAULT_PARALLEL_QUERY_TIMEOUT );
+            LOG.debug( "Parallel queries, read ahead: " + parallelQueryReadAhead + ", threads: " + threads );
+        } else {
+            parallelQueryReadAhead = 0;
+            parallelQueryExecutor = null;
+            parallelQueryTimeout = 0;
+        }
+        if ( config.getHitsCounting() != null ) {
+            estimateHits = config.getHitsCounting().isEstimate();
+            hitsCache = config.getHitsCounting().isCache() ? new LinkedHashMap<String, Integer>( 16, 0.75f, true ) {
+                private static final long serialVersionUID = -2815924377236496307L;
+
+                @Override
+                protected boolean removeEldestEntry( Map.Entry<String, Integer> eldest ) {
+                    return size() > MAX_CACHED_HITS;
+                }
+            } : null;
+        } else {
+            estimateHits = false;
+            hitsCache = null;
+        }
+        LOG.debug( "Estimate hits: " + estimateHits + ", cache hits: " + ( hitsCache != null ) );
         fetchSize = config.getJDBCConnId().getFetchSize() != null ? config.getJDBCConnId().getFetchSize().intValue()
                                                                   : DEFAULT_FETCH_SIZE;
         LOG.debug( "Fetch size: " + fetchSize );
@@ -225,7 +303,10 @@ public class SQLFeatureStore implements FeatureStore {
         LOG.debug( "Read auto commit: " + readAutoCommit );
 
         if ( config.getFeatureCache() != null ) {
-            cache = new SimpleFeatureStoreCache( DEFAULT_CACHE_SIZE );
+            BigInteger maxBytes = config.getFeatureCache().getMaxBytes();
+            long cacheMaxBytes = maxBytes != null ? maxBytes.longValue() : BoundedFeatureStoreCache.DEFAULT_MAX_BYTES;
+            LOG.debug( "Feature cache size: " + cacheMaxBytes + " bytes" );
+            cache = new BoundedFeatureStoreCache( cacheMaxBytes );
         } else {
             cache = null;
         }
@@ -582,6 +663,19 @@ public class SQLFeatureStore implements FeatureStore {
         return cache;
     }
 
+    /**
+     * Returns the {@link FeatureStoreCache} for a single query.
+     * <p>
+     * Features that have been read before a concurrent transaction has been committed are not added to this cache, so
+     * the query must be executed after this method has been called.
+     * </p>
+     * 
+     * @return feature store cache, can be <code>null</code> (no cache configured)
+     */
+    public FeatureStoreCache getQueryCache() {
+        return cache == null ? null : cache.getView( "" );
+    }
+
     /**
      * Returns a resolver instance for resolving references to objects that are stored in this feature store.
      * 
@@ -598,7 +692,12 @@ public class SQLFeatureStore implements FeatureStore {
 
     @Override
     public void destroy() {
-        // nothing to do
+        if ( cache != null ) {
+            LOG.debug( "Feature cache statistics: " + cache );
+        }
+        if ( parallelQueryExecutor != null ) {
+            parallelQueryExecutor.shutdownNow();
+        }
     }
 
     @Override
@@ -652,9 +751,6 @@ public class SQLFeatureStore implements FeatureStore {
         int hits = 0;
 
         Connection conn = null;
-        PreparedStatement stmt = null;
-        ResultSet rs = null;
-
         try {
             conn = getConnection();
             AbstractWhereBuilder wb = getWhereBuilder( ft, filter, query.getSortProperties(), conn );
@@ -665,75 +761,74 @@ public class SQLFeatureStore implements FeatureStore {
                 hits = queryByOperatorFilter( query, ftName, filter ).count();
             } else {
                 StringBuilder sql = new StringBuilder( "SELECT " );
+                StringBuilder idSelect = null;
                 if ( wb.getWhere() == null ) {
                     sql.append( "COUNT(*) FROM " );
                     sql.append( ftMapping.getFtTable() );
                 } else {
-                    sql.append( "COUNT(*) FROM (SELECT DISTINCT " );
+                    idSelect = new StringBuilder( "SELECT DISTINCT " );
 
                     FIDMapping fidMapping = ftMapping.getFidMapping();
                     List<Pair<SQLIdentifier, BaseType>> fidCols = fidMapping.getColumns();
                     boolean first = true;
                     for ( Pair<SQLIdentifier, BaseType> fidCol : fidCols ) {
                         if ( !first ) {
-                            sql.append( "," );
+                            idSelect.append( "," );
                         } else {
                             first = false;
                         }
-                        sql.append( fidCol.first );
+                        idSelect.append( fidCol.first );
                     }
 
-                    sql.append( " FROM " );
+                    idSelect.append( " FROM " );
 
                     String ftTableAlias = wb.getAliasManager().getRootTableAlias();
 
                     // pure relational query
-                    sql.append( ftMapping.getFtTable() );
-                    sql.append( ' ' );
-                    sql.append( ftTableAlias );
+                    idSelect.append( ftMapping.getFtTable() );
+                    idSelect.append( ' ' );
+                    idSelect.append( ftTableAlias );
 
                     for ( PropertyNameMapping mappedPropName : wb.getMappedPropertyNames() ) {
                         for ( Join join : mappedPropName.getJoins() ) {
-                            sql.append( " LEFT OUTER JOIN " );
-                            sql.append( join.getToTable() );
-                            sql.append( ' ' );
-                            sql.append( join.getToTableAlias() );
-                            sql.append( " ON " );
-                            sql.append( join.getSQLJoinCondition() );
+                            idSelect.append( " LEFT OUTER JOIN " );
+                            idSelect.append( join.getToTable() );
+                            idSelect.append( ' ' );
+                            idSelect.append( join.getToTableAlias() );
+                            idSelect.append( " ON " );
+                            idSelect.append( join.getSQLJoinCondition() );
                         }
                     }
 
                     LOG.debug( "WHERE clause: " + wb.getWhere() );
                     if ( wb.getWhere() != null ) {
-                        sql.append( " WHERE " );
-                        sql.append( wb.getWhere().getSQL() );
+                        idSelect.append( " WHERE " );
+                        idSelect.append( wb.getWhere().getSQL() );
                     }
+                    sql.append( "COUNT(*) FROM (" );
+                    sql.append( idSelect );
                     sql.append( ") featureids" );
                 }
-                LOG.debug( "SQL: {}", sql );
-                long begin = System.currentTimeMillis();
-                stmt = conn.prepareStatement( sql.toString() );
-                LOG.debug( "Preparing SELECT took {} [ms] ", System.currentTimeMillis() - begin );
-
-                int i = 1;
+                List<SQLArgument> args = Collections.emptyList();
                 if ( wb.getWhere() != null ) {
-                    for ( SQLArgument o : wb.getWhere().getArguments() ) {
-                        o.setArgument( stmt, i++ );
+                    args = wb.getWhere().getArguments();
+                }
+                if ( estimateHits ) {
+                    String estimateSql = idSelect != null ? idSelect.toString() : null;
+                    int estimate = dialect.getEstimatedRowCount( conn, ftMapping.getFtTable(), estimateSql, args );
+                    if ( estimate >= 0 ) {
+                        LOG.debug( "Estimated hits: {}", estimate );
+                        return estimate;
                     }
                 }
-
-                begin = System.currentTimeMillis();
-                rs = stmt.executeQuery();
-                LOG.debug( "Executing SELECT took {} [ms] ", System.currentTimeMillis() - begin );
-                rs.next();
-                hits = rs.getInt( 1 );
+                hits = countHits( conn, sql.toString(), args );
             }
         } catch ( Exception e ) {
             String msg = "Error performing hits query by operator filter: " + e.getMessage();
             LOG.error( msg, e );
             throw new FeatureStoreException( msg, e );
         } finally {
-            JDBCUtils.close( rs, stmt, conn, LOG );
+            JDBCUtils.close( null, null, conn, LOG );
         }
 
         return hits;
@@ -746,8 +841,6 @@ public class SQLFeatureStore implements FeatureStore {
 
         AbstractWhereBuilder wb = null;
         Connection conn = null;
-        PreparedStatement stmt = null;
-        ResultSet rs = null;
 
         int hits = 0;
         try {
@@ -762,30 +855,78 @@ public class SQLFeatureStore implements FeatureStore {
             }
             String alias = wb != null ? wb.getAliasManager().getRootTableAlias() : "X1";
 
-            StringBuilder sql = new StringBuilder( "SELECT COUNT(*) FROM " );
-            sql.append( blobMapping.getTable() );
-            sql.append( ' ' );
-            sql.append( alias );
-            sql.append( " WHERE " );
-            sql.append( alias );
-            sql.append( "." );
-            sql.append( blobMapping.getTypeColumn() );
-            sql.append( "=?" );
+            // feature type id is inlined, so the statement can also be passed to the dialect for estimating
+            StringBuilder from = new StringBuilder( " FROM " );
+            from.append( blobMapping.getTable() );
+            from.append( ' ' );
+            from.append( alias );
+            from.append( " WHERE " );
+            from.append( alias );
+            from.append( "." );
+            from.append( blobMapping.getTypeColumn() );
+            from.append( "=" );
+            from.append( getSchema().getFtId( ftName ) );
             if ( wb != null ) {
-                sql.append( " AND " );
-                sql.append( wb.getWhere().getSQL() );
+                from.append( " AND " );
+                from.append( wb.getWhere().getSQL() );
+            }
+            List<SQLArgument> args = Collections.emptyList();
+            if ( wb != null ) {
+                args = wb.getWhere().getArguments();
+            }
+            if ( estimateHits ) {
+                String estimateSql = "SELECT " + alias + "." + blobMapping.getGMLIdColumn() + from;
+                int estimate = dialect.getEstimatedRowCount( conn, blobMapping.getTable(), estimateSql, args );
+                if ( estimate >= 0 ) {
+                    LOG.debug( "Estimated hits: {}", estimate );
+                    return estimate;
+                }
             }
+            hits = countHits( conn, "SELECT COUNT(*)" + from, args );
+        } catch ( Exception e ) {
+            String msg = "Error performing query by operator filter: " + e.getMessage();
+            LOG.error( msg, e );
+            throw new FeatureStoreException( msg, e );
+        } finally {
+            close( null, null, conn, LOG );
+        }
+
+        return hits;
+    }
+
+    /**
+     * Determines the exact number of hits by executing the given <code>COUNT</code> statement, or returns the cached
+     * number from a previous execution (if hits caching is enabled).
+     */
+    int countHits( Connection conn, String sql, List<SQLArgument> args )
+                            throws SQLException {
+
+        String key = null;
+        long generation = 0;
+        if ( hitsCache != null ) {
+            key = getHitsCacheKey( sql, args );
+            synchronized ( hitsCache ) {
+                Integer hits = hitsCache.get( key );
+                if ( hits != null ) {
+                    LOG.debug( "Hits from cache: {}", hits );
+                    return hits;
+                }
+                generation = hitsCacheGeneration;
+            }
+        }
+
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        int hits = 0;
+        try {
             LOG.debug( "SQL: {}", sql );
             long begin = System.currentTimeMillis();
-            stmt = conn.prepareStatement( sql.toString() );
+            stmt = conn.prepareStatement( sql );
             LOG.debug( "Preparing SELECT took {} [ms] ", System.currentTimeMillis() - begin );
 
             int i = 1;
-            stmt.setShort( i++, getSchema().getFtId( ftName ) );
-            if ( wb != null ) {
-                for ( SQLArgument o : wb.getWhere().getArguments() ) {
-                    o.setArgument( stmt, i++ );
-                }
+            for ( SQLArgument o : args ) {
+                o.setArgument( stmt, i++ );
             }
 
             begin = System.currentTimeMillis();
@@ -793,17 +934,53 @@ public class SQLFeatureStore implements FeatureStore {
             LOG.debug( "Executing SELECT took {} [ms] ", System.currentTimeMillis() - begin );
             rs.next();
             hits = rs.getInt( 1 );
-        } catch ( Exception e ) {
-            String msg = "Error performing query by operator filter: " + e.getMessage();
-            LOG.error( msg, e );
-            throw new FeatureStoreException( msg, e );
         } finally {
-            close( rs, stmt, conn, LOG );
+            close( rs, stmt, null, LOG );
         }
 
+        if ( key != null ) {
+            synchronized ( hitsCache ) {
+                // a transaction may have been committed in the meantime
+                if ( generation == hitsCacheGeneration ) {
+                    hitsCache.put( key, hits );
+                }
+            }
+        }
         return hits;
     }
 
+    private String getHitsCacheKey( String sql, List<SQLArgument> args ) {
+        StringBuilder key = new StringBuilder( sql );
+        for ( SQLArgument arg : args ) {
+            key.append( '|' );
+            TypedObjectNode value = arg.getValue();
+            if ( value instanceof Geometry ) {
+                // Geometry#toString() truncates long geometries and omits the CRS
+                Geometry geom = (Geometry) value;
+                if ( geom.getCoordinateSystem() != null ) {
+                    key.append( geom.getCoordinateSystem().getAlias() );
+                }
+                key.append( ':' );
+                key.append( WKTWriter.write( geom ) );
+            } else {
+                key.append( value );
+            }
+        }
+        return key.toString();
+    }
+
+    /**
+     * Discards all cached numbers of hits. Must be called after a transaction has been committed.
+     */
+    void clearHitsCache() {
+        if ( hitsCache != null ) {
+            synchronized ( hitsCache ) {
+                hitsCache.clear();
+                hitsCacheGeneration++;
+            }
+        }
+    }
+
     @Override
     public int[] queryHits( Query[] queries )
                             throws FeatureStoreException, FilterEvaluationException {
@@ -898,7 +1075,7 @@ public class SQLFeatureStore implements FeatureStore {
         boolean wmsStyleQuery = false;
         Envelope env = queries[0].getPrefilterBBoxEnvelope();
         if ( getSchema().getBlobMapping() != null && queries[0].getFilter() == null
-                                && queries[0].getSortProperties().length == 0 ) {
+             && queries[0].getSortProperties().length == 0 && !queries[0].isPaged() ) {
             wmsStyleQuery = true;
             for ( int i = 1; i < queries.length; i++ ) {
                 Envelope queryBBox = queries[i].getPrefilterBBoxEnvelope();
@@ -913,6 +1090,10 @@ public class SQLFeatureStore implements FeatureStore {
             return queryMultipleFts( queries, env );
         }
 
+        if ( parallelQueryReadAhead > 0 && queries.length > 1 ) {
+            return queryParallel( queries );
+        }
+
         Iterator<FeatureInputStream> rsIter = new Iterator<FeatureInputStream>() {
             int i = 0;
 
@@ -944,6 +1125,27 @@ public class SQLFeatureStore implements FeatureStore {
         return new CombinedFeatureInputStream( rsIter );
     }
 
+    /**
+     * Starts all queries concurrently (each one using a separate connection) and returns the features in query order.
+     * Queries for which no thread is available are executed sequentially, when their features are requested.
+     */
+    private FeatureInputStream queryParallel( Query[] queries ) {
+        int minFill = Math.max( 1, parallelQueryReadAhead / 5 );
+        List<FeatureInputStream> streams = new ArrayList<FeatureInputStream>( queries.length );
+        for ( final Query query : queries ) {
+            Callable<FeatureInputStream> opener = new Callable<FeatureInputStream>() {
+                @Override
+                public FeatureInputStream call()
+                                        throws Exception {
+                    return query( query );
+                }
+            };
+            streams.add( new ThreadedFeatureInputStream( opener, parallelQueryReadAhead, minFill,
+                                                         parallelQueryExecutor, parallelQueryTimeout ) );
+        }
+        return new CombinedFeatureInputStream( streams.iterator() );
+    }
+
     private FeatureInputStream queryByIdFilter( IdFilter filter, SortProperty[] sortCrit )
                             throws FeatureStoreException {
         if ( blobMapping != null ) {
@@ -1030,8 +1232,8 @@ public class SQLFeatureStore implements FeatureStore {
             conn = getConnection();
 
             String tableAlias = "X1";
-            FeatureBuilder builder = new FeatureBuilderRelational( this, ft, ftMapping, conn, tableAlias,
-                                                                   nullEscalation );
+            FeatureBuilderRelational builder = new FeatureBuilderRelational( this, ft, ftMapping, conn, tableAlias,
+                                                                             nullEscalation );
             List<String> columns = builder.getInitialSelectColumns();
             StringBuilder sql = new StringBuilder( "SELECT " );
             sql.append( columns.get( 0 ) );
@@ -1081,7 +1283,7 @@ public class SQLFeatureStore implements FeatureStore {
             begin = System.currentTimeMillis();
             rs = stmt.executeQuery();
             LOG.debug( "Executing SELECT took {} [ms] ", System.currentTimeMillis() - begin );
-            result = new IteratorFeatureInputStream( new FeatureResultSetIterator( builder, rs, conn, stmt ) );
+            result = new IteratorFeatureInputStream( getRelationalIterator( builder, rs, conn, stmt ) );
         } catch ( Exception e ) {
             close( rs, stmt, conn, LOG );
             String msg = "Error performing query by id filter (relational mode): " + e.getMessage();
@@ -1108,6 +1310,7 @@ public class SQLFeatureStore implements FeatureStore {
         FeatureInputStream result = null;
         PreparedStatement stmt = null;
         ResultSet rs = null;
+        boolean pagedInDb = false;
 
         try {
             conn = getConnection();
@@ -1192,6 +1395,16 @@ public class SQLFeatureStore implements FeatureStore {
             // sql.append( wb.getOrderBy().getSQL() );
             // }
 
+            // paging can only be performed by the db if no in-memory filtering/sorting is required
+            String pagedSql = null;
+            if ( query.isPaged() && filter == null && query.getSortProperties().length == 0 ) {
+                pagedSql = dialect.getPagedSelect( sql.toString(), false, query.getOffset(), query.getLimit() );
+            }
+            if ( pagedSql != null ) {
+                pagedInDb = true;
+                sql = new StringBuilder( pagedSql );
+            }
+
             LOG.debug( "SQL: {}", sql );
             long begin = System.currentTimeMillis();
             stmt = conn.prepareStatement( sql.toString() );
@@ -1239,7 +1452,7 @@ public class SQLFeatureStore implements FeatureStore {
             LOG.debug( "Applying in-memory post-sorting." );
             result = new MemoryFeatureInputStream( Features.sortFc( result.toCollection(), query.getSortProperties() ) );
         }
-        return result;
+        return applyPaging( query, result, pagedInDb );
     }
 
     private FeatureInputStream queryByOperatorFilter( Query query, QName ftName, OperatorFilter filter )
@@ -1256,6 +1469,7 @@ public class SQLFeatureStore implements FeatureStore {
         FeatureInputStream result = null;
         PreparedStatement stmt = null;
         ResultSet rs = null;
+        boolean pagedInDb = false;
 
         FeatureType ft = getSchema().getFeatureType( ftName );
         FeatureTypeMapping ftMapping = getMapping( ftName );
@@ -1272,8 +1486,15 @@ public class SQLFeatureStore implements FeatureStore {
             LOG.debug( "WHERE clause: " + wb.getWhere() );
             LOG.debug( "ORDER BY clause: " + wb.getOrderBy() );
 
-            FeatureBuilder builder = new FeatureBuilderRelational( this, ft, ftMapping, conn, ftTableAlias,
-                                                                   nullEscalation );
+            FeatureBuilderRelational builder = null;
+            double tolerance = wb.getPostFilter() == null ? getGeneralizationTolerance( query, ftMapping ) : -1;
+            if ( tolerance > 0 ) {
+                LOG.debug( "Generalizing geometries with tolerance {}.", tolerance );
+                builder = new FeatureBuilderRelational( this, ft, ftMapping, conn, ftTableAlias, nullEscalation,
+                                                        tolerance, getGeneralizedCache( tolerance ) );
+            } else {
+                builder = new FeatureBuilderRelational( this, ft, ftMapping, conn, ftTableAlias, nullEscalation );
+            }
             List<String> columns = builder.getInitialSelectColumns();
 
             BlobMapping blobMapping = getSchema().getBlobMapping();
@@ -1315,6 +1536,17 @@ public class SQLFeatureStore implements FeatureStore {
                 sql.append( wb.getOrderBy().getSQL() );
             }
 
+            // paging can only be performed by the db if no in-memory filtering/sorting is required
+            String pagedSql = null;
+            if ( query.isPaged() && wb.getPostFilter() == null && wb.getPostSortCriteria() == null ) {
+                pagedSql = dialect.getPagedSelect( sql.toString(), wb.getOrderBy() != null, query.getOffset(),
+                                                   query.getLimit() );
+            }
+            if ( pagedSql != null ) {
+                pagedInDb = true;
+                sql = new StringBuilder( pagedSql );
+            }
+
             LOG.debug( "SQL: {}", sql );
             long begin = System.currentTimeMillis();
             stmt = conn.prepareStatement( sql.toString() );
@@ -1337,7 +1569,7 @@ public class SQLFeatureStore implements FeatureStore {
             rs = stmt.executeQuery();
             LOG.debug( "Executing SELECT took {} [ms] ", System.currentTimeMillis() - begin );
 
-            result = new IteratorFeatureInputStream( new FeatureResultSetIterator( builder, rs, conn, stmt ) );
+            result = new IteratorFeatureInputStream( getRelationalIterator( builder, rs, conn, stmt ) );
         } catch ( Exception e ) {
             close( rs, stmt, conn, LOG );
             String msg = "Error performing query by operator filter: " + e.getMessage();
@@ -1353,6 +1585,111 @@ public class SQLFeatureStore implements FeatureStore {
             LOG.debug( "Applying in-memory post-sorting." );
             result = new MemoryFeatureInputStream( Features.sortFc( result.toCollection(), wb.getPostSortCriteria() ) );
         }
+        return applyPaging( query, result, pagedInDb );
+    }
+
+    /**
+     * Determines the tolerance for generalizing the geometries of the given query in the database.
+     * <p>
+     * The tolerance is derived from the resolution hint of the query and the configured generalization tolerance (in
+     * pixels) of the feature type. It is snapped to a power of two (never coarser than requested), so the generalized
+     * features can be cached per level.
+     * </p>
+     * 
+     * @return tolerance in units of the storage CRS, or <code>-1</code> if the geometries must not be generalized
+     */
+    double getGeneralizationTolerance( Query query, FeatureTypeMapping ftMapping ) {
+        Double pixels = ftNameToGeneralizationTolerance.get( ftMapping.getFeatureType() );
+        Object resolutionHint = query.getHint( HINT_RESOLUTION );
+        Pair<TableName, GeometryMapping> geomMapping = ftMapping.getDefaultGeometryMapping();
+        if ( pixels == null || !( resolutionHint instanceof Number ) || geomMapping == null ) {
+            return -1;
+        }
+        double resolution = ( (Number) resolutionHint ).doubleValue();
+        ICRS storageCrs = geomMapping.second.getCRS();
+        Envelope bbox = query.getPrefilterBBoxEnvelope();
+        if ( bbox != null && bbox.getCoordinateSystem() != null && storageCrs != null
+             && !storageCrs.equals( bbox.getCoordinateSystem() ) ) {
+            // resolution refers to the CRS of the request
+            try {
+                Envelope transformed = new GeometryTransformer( storageCrs ).transform( bbox );
+                resolution *= transformed.getSpan0() / bbox.getSpan0();
+            } catch ( Exception e ) {
+                LOG.debug( "Unable to determine resolution in storage CRS. Not generalizing geometries: "
+                           + e.getMessage() );
+                return -1;
+            }
+        }
+        double tolerance = resolution * pixels;
+        if ( !( tolerance > 0 ) || Double.isInfinite( tolerance ) ) {
+            return -1;
+        }
+        return Math.pow( 2, getGeneralizationLevel( tolerance ) );
+    }
+
+    private int getGeneralizationLevel( double tolerance ) {
+        return (int) Math.floor( Math.log( tolerance ) / Math.log( 2 ) );
+    }
+
+    // returns the cache for a single query that generalizes with the given tolerance
+    FeatureStoreCache getGeneralizedCache( double tolerance ) {
+        if ( cache == null ) {
+            return null;
+        }
+        // all levels share the byte budget of the cache, ':' cannot occur in the feature ids (NCNames)
+        int level = getGeneralizationLevel( tolerance );
+        synchronized ( generalizationLevels ) {
+            generalizationLevels.add( level );
+        }
+        return cache.getView( level + ":" );
+    }
+
+    /**
+     * Evicts the specified feature from the caches (including the variants with generalized geometries). Features that
+     * are being read by concurrent queries are not added to the cache anymore.
+     * 
+     * @param id
+     *            id of the feature, must not be <code>null</code>
+     */
+    void evictFromCaches( String id ) {
+        if ( cache == null ) {
+            return;
+        }
+        cache.invalidate( id );
+        synchronized ( generalizationLevels ) {
+            for ( Integer level : generalizationLevels ) {
+                cache.invalidate( level + ":" + id );
+            }
+        }
+    }
+
+    private void initGeneralization() {
+        for ( FeatureTypeMappingJAXB ftMappingConf : config.getFeatureTypeMapping() ) {
+            if ( ftMappingConf.getGeneralizationTolerance() == null ) {
+                continue;
+            }
+            for ( FeatureTypeMapping ftMapping : schema.getFtMappings().values() ) {
+                QName ftName = ftMappingConf.getName();
+                if ( ( ftName != null && ftName.equals( ftMapping.getFeatureType() ) )
+                     || ( ftName == null && ftMapping.getFtTable().toString().equalsIgnoreCase( ftMappingConf.getTable() ) ) ) {
+                    LOG.debug( "Generalizing geometries of feature type '" + ftMapping.getFeatureType()
+                               + "' with tolerance (pixels): " + ftMappingConf.getGeneralizationTolerance() );
+                    ftNameToGeneralizationTolerance.put( ftMapping.getFeatureType(),
+                                                         ftMappingConf.getGeneralizationTolerance() );
+                }
+            }
+        }
+    }
+
+    private FeatureInputStream applyPaging( Query query, FeatureInputStream result, boolean pagedInDb ) {
+        if ( !query.isPaged() ) {
+            return result;
+        }
+        if ( !pagedInDb ) {
+            LOG.debug( "Applying in-memory paging." );
+            result = new PagedFeatureInputStream( result, query.getOffset(), query.getLimit() );
+        }
+        query.setPagingApplied();
         return result;
     }
 
@@ -1477,6 +1814,94 @@ public class SQLFeatureStore implements FeatureStore {
         }
     }
 
+    private CloseableIterator<Feature> getRelationalIterator( FeatureBuilderRelational builder, ResultSet rs,
+                                                              Connection conn, Statement stmt ) {
+        if ( batchedJoinFetching ) {
+            return new BatchedFeatureResultSetIterator( builder, rs, conn, stmt );
+        }
+        return new FeatureResultSetIterator( builder, rs, conn, stmt );
+    }
+
+    /**
+     * {@link CloseableIterator} that builds the features block-wise (see
+     * {@link FeatureBuilderRelational#buildFeatures(ResultSet, int)}), so joined tables are not queried for every
+     * single feature.
+     */
+    private class BatchedFeatureResultSetIterator implements CloseableIterator<Feature> {
+
+        private final FeatureBuilderRelational builder;
+
+        private final ResultSet rs;
+
+        private final Connection conn;
+
+        private final Statement stmt;
+
+        private final int batchSize;
+
+        private Iterator<Feature> batch = Collections.<Feature> emptyList().iterator();
+
+        private boolean exhausted;
+
+        BatchedFeatureResultSetIterator( FeatureBuilderRelational builder, ResultSet rs, Connection conn,
+                                         Statement stmt ) {
+            this.builder = builder;
+            this.rs = rs;
+            this.conn = conn;
+            this.stmt = stmt;
+            this.batchSize = fetchSize > 0 ? fetchSize : DEFAULT_FETCH_SIZE;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while ( !batch.hasNext() && !exhausted ) {
+                try {
+                    List<Feature> features = builder.buildFeatures( rs, batchSize );
+                    exhausted = features.size() < batchSize;
+                    batch = features.iterator();
+                } catch ( SQLException e ) {
+                    // try to close everything
+                    close();
+                    // wrap as unchecked exception
+                    throw new RuntimeException( e.getMessage(), e );
+                }
+            }
+            return batch.hasNext();
+        }
+
+        @Override
+        public Feature next() {
+            if ( !hasNext() ) {
+                throw new NoSuchElementException();
+            }
+            return batch.next();
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() {
+            JDBCUtils.close( rs, stmt, conn, LOG );
+        }
+
+        @Override
+        public List<Feature> getAsListAndClose() {
+            return (List<Feature>) getAsCollectionAndClose( new ArrayList<Feature>() );
+        }
+
+        @Override
+        public Collection<Feature> getAsCollectionAndClose( Collection<Feature> collection ) {
+            while ( hasNext() ) {
+                collection.add( next() );
+            }
+            close();
+            return collection;
+        }
+    }
+
     @Override
     public ResourceMetadata<? extends Resource> getMetadata() {
         return metadata;
@@ -1527,6 +1952,7 @@ public class SQLFeatureStore implements FeatureStore {
         this.schema = schema;
         this.blobMapping = schema.getBlobMapping();
         initConverters();
+        initGeneralization();
         try {
             // however TODO it properly on the DB
             ConnectionProvider conn = this.workspace.getResource( ConnectionProviderProvider.class, "LOCK_DB" );
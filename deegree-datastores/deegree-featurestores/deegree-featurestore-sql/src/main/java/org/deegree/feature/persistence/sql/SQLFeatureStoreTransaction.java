@@ -133,6 +133,9 @@ public class SQLFeatureStoreTransaction implements FeatureStoreTransaction {
 
     private final BBoxTracker bboxTracker;
 
+    // ids of features that have been modified, these are evicted from the caches once more on commit
+    private final Set<String> invalidatedIds = new HashSet<String>();
+
     // TODO
     private ParticleConverter<Geometry> blobGeomConverter;
 
@@ -173,6 +176,8 @@ public class SQLFeatureStoreTransaction implements FeatureStoreTransaction {
         LOG.debug( "Committing transaction." );
         try {
             conn.commit();
+            invalidateCaches();
+            fs.clearHitsCache();
             updateBBoxCache();
         } catch ( Throwable t ) {
             LOG.debug( t.getMessage(), t );
@@ -186,6 +191,26 @@ public class SQLFeatureStoreTransaction implements FeatureStoreTransaction {
         }
     }
 
+    /**
+     * Evicts all features that have been modified by this transaction from the feature caches.
+     * <p>
+     * The features are also evicted directly on modification, but concurrent queries may have put the old versions back
+     * into the cache before the transaction has been committed. Queries that are still running when the features are
+     * evicted do not add any more features to the cache.
+     * </p>
+     */
+    private void invalidateCaches() {
+        for ( String id : invalidatedIds ) {
+            fs.evictFromCaches( id );
+        }
+        invalidatedIds.clear();
+    }
+
+    private void invalidateCached( String id ) {
+        fs.evictFromCaches( id );
+        invalidatedIds.add( id );
+    }
+
     private void updateBBoxCache()
                             throws FeatureStoreException {
 
@@ -272,6 +297,9 @@ public class SQLFeatureStoreTransaction implements FeatureStoreTransaction {
             deleted = performDeleteBlob( filter, lock );
         } else {
             deleted = performDeleteRelational( filter, lock );
+            for ( ResourceId id : filter.getSelectedIds() ) {
+                invalidateCached( id.getRid() );
+            }
         }
 
         // TODO improve this
@@ -292,9 +320,7 @@ public class SQLFeatureStoreTransaction implements FeatureStoreTransaction {
             for ( ResourceId id : filter.getSelectedIds() ) {
                 stmt.setString( 1, id.getRid() );
                 stmt.addBatch();
-                if ( fs.getCache() != null ) {
-                    fs.getCache().remove( id.getRid() );
-                }
+                invalidateCached( id.getRid() );
             }
             int[] deletes = stmt.executeBatch();
             for ( int noDeleted : deletes ) {
@@ -657,6 +683,7 @@ public class SQLFeatureStoreTransaction implements FeatureStoreTransaction {
                         bboxTracker.insert( feature, storageSrs );
                     }
                 }
+                insertManager.flush();
                 if ( insertManager.getDelayedRows() != 0 ) {
                     String msg = "After insertion, " + insertManager.getDelayedRows()
                                  + " delayed rows left uninserted. Probably a cyclic key constraint blocks insertion.";
@@ -777,10 +804,8 @@ public class SQLFeatureStoreTransaction implements FeatureStoreTransaction {
         } else {
             try {
                 updated = performUpdateRelational( ftName, replacementProps, filter );
-                if ( fs.getCache() != null ) {
-                    for ( ResourceId id : filter.getSelectedIds() ) {
-                        fs.getCache().remove( id.getRid() );
-                    }
+                for ( ResourceId id : filter.getSelectedIds() ) {
+                    invalidateCached( id.getRid() );
                 }
             } catch ( Exception e ) {
                 LOG.debug( e.getMessage(), e );
@@ -0,0 +1,951 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.sql.blob;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.xml.namespace.QName;
+
+import org.deegree.commons.tom.Reference;
+import org.deegree.commons.tom.TypedObjectNode;
+import org.deegree.commons.tom.gml.GMLReferenceResolver;
+import org.deegree.commons.tom.gml.property.Property;
+import org.deegree.commons.tom.gml.property.PropertyType;
+import org.deegree.commons.tom.ows.CodeType;
+import org.deegree.commons.tom.ows.StringOrRef;
+import org.deegree.commons.tom.primitive.BaseType;
+import org.deegree.commons.tom.primitive.PrimitiveType;
+import org.deegree.commons.tom.primitive.PrimitiveValue;
+import org.deegree.commons.uom.Measure;
+import org.deegree.cs.coordinatesystems.ICRS;
+import org.deegree.feature.Feature;
+import org.deegree.feature.property.ExtraProps;
+import org.deegree.feature.property.GenericProperty;
+import org.deegree.feature.property.SimpleProperty;
+import org.deegree.feature.types.AppSchema;
+import org.deegree.feature.types.FeatureType;
+import org.deegree.feature.types.property.SimplePropertyType;
+import org.deegree.geometry.Envelope;
+import org.deegree.geometry.Geometry;
+import org.deegree.geometry.GeometryFactory;
+import org.deegree.geometry.GeometryTransformer;
+import org.deegree.geometry.multi.MultiGeometry;
+import org.deegree.geometry.multi.MultiLineString;
+import org.deegree.geometry.multi.MultiPoint;
+import org.deegree.geometry.multi.MultiPolygon;
+import org.deegree.geometry.points.Points;
+import org.deegree.geometry.primitive.LineString;
+import org.deegree.geometry.primitive.LinearRing;
+import org.deegree.geometry.primitive.Point;
+import org.deegree.geometry.primitive.Polygon;
+import org.deegree.geometry.primitive.Ring;
+import org.deegree.geometry.primitive.Ring.RingType;
+import org.deegree.geometry.standard.points.PackedPoints;
+import org.deegree.gml.reference.FeatureReference;
+
+/**
+ * Schema-aware binary encoding of {@link Feature} instances for {@link BlobCodec.Compression#BINARY}.
+ * <p>
+ * Properties are encoded as indices into the property declarations of the {@link FeatureType}, primitive values in
+ * their native binary form and geometries as packed ordinates, so decoding requires no XML parsing at all. Every
+ * encoded blob starts with {@link #MAGIC} and a format version byte. Features that contain content that cannot be
+ * represented (e.g. generic XML, curved geometries or geometry references) are rejected by
+ * {@link #encode(Feature, OutputStream, ICRS)}, the caller is expected to fall back to GML encoding in this case.
+ * </p>
+ * <p>
+ * Every encoded feature carries a fingerprint of the property declarations (names and types) of its feature type, so
+ * blobs that have been written for a different version of the application schema are detected on decoding instead of
+ * being mapped to the wrong declarations. Primitive types are written as explicit codes that do not depend on the
+ * declaration order of {@link BaseType}.
+ * </p>
+ * 
+ * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+class BinaryFeatureCodec {
+
+    /** Leading bytes of every binary encoded blob (cannot occur at the start of GML, GZIP or Fast Infoset blobs). */
+    static final byte[] MAGIC = new byte[] { 0x00, 'd', 'g', 'b' };
+
+    private static final int VERSION = 2;
+
+    private static final byte VALUE_NULL = 0;
+
+    private static final byte VALUE_PRIMITIVE = 1;
+
+    private static final byte VALUE_GEOMETRY = 2;
+
+    private static final byte VALUE_FEATURE = 3;
+
+    private static final byte VALUE_FEATURE_REF = 4;
+
+    private static final byte VALUE_CODE = 5;
+
+    private static final byte VALUE_MEASURE = 6;
+
+    private static final byte VALUE_STRING_OR_REF = 7;
+
+    private static final byte PRIMITIVE_STRING = 1;
+
+    private static final byte PRIMITIVE_BOOLEAN = 2;
+
+    private static final byte PRIMITIVE_DECIMAL = 3;
+
+    private static final byte PRIMITIVE_DOUBLE = 4;
+
+    private static final byte PRIMITIVE_INTEGER = 5;
+
+    private static final byte PRIMITIVE_DATE = 6;
+
+    private static final byte PRIMITIVE_DATE_TIME = 7;
+
+    private static final byte PRIMITIVE_TIME = 8;
+
+    private static final byte GEOM_POINT = 1;
+
+    private static final byte GEOM_LINE_STRING = 2;
+
+    private static final byte GEOM_POLYGON = 3;
+
+    private static final byte GEOM_MULTI_POINT = 4;
+
+    private static final byte GEOM_MULTI_LINE_STRING = 5;
+
+    private static final byte GEOM_MULTI_POLYGON = 6;
+
+    private static final byte GEOM_ENVELOPE = 7;
+
+    private static final int PROP_SIMPLE = 0x01;
+
+    private static final int PROP_NAME = 0x02;
+
+    private static final int PROP_ATTRS = 0x04;
+
+    private static final int PROP_NO_CHILDREN = 0x08;
+
+    private static final GeometryFactory geomFac = new GeometryFactory();
+
+    private final Map<FeatureType, TypeInfo> ftToTypeInfo = new ConcurrentHashMap<FeatureType, TypeInfo>();
+
+    /**
+     * Encodes the given {@link Feature} to the specified output stream.
+     * 
+     * @param feature
+     *            feature to be encoded, must not be <code>null</code>
+     * @param os
+     *            output stream to write to, must not be <code>null</code>
+     * @param crs
+     *            storage crs, geometries are transformed to this crs, can be <code>null</code>
+     * @return <code>true</code>, if the feature has been encoded, <code>false</code> if it contains content that cannot
+     *         be represented in binary form (nothing has been written to the stream in this case)
+     * @throws IOException
+     */
+    boolean encode( Feature feature, OutputStream os, ICRS crs )
+                            throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        Encoder encoder = new Encoder( new DataOutputStream( bos ), crs );
+        try {
+            encoder.writeFeature( feature );
+        } catch ( UnsupportedContentException e ) {
+            return false;
+        }
+        os.write( MAGIC );
+        os.write( VERSION );
+        bos.writeTo( os );
+        return true;
+    }
+
+    /**
+     * Decodes a {@link Feature} from the specified input stream.
+     * 
+     * @param is
+     *            input stream to read from, must be positioned at the {@link #MAGIC} bytes
+     * @param schema
+     *            application schema, must not be <code>null</code>
+     * @param crs
+     *            storage crs, assigned to all decoded geometries, can be <code>null</code>
+     * @param idResolver
+     *            resolver for feature references, can be <code>null</code>
+     * @return decoded feature, never <code>null</code>
+     * @throws IOException
+     *             if the stream is not a binary encoded feature or refers to unknown schema components
+     */
+    Feature decode( InputStream is, AppSchema schema, ICRS crs, GMLReferenceResolver idResolver )
+                            throws IOException {
+        DataInputStream dis = new DataInputStream( is );
+        for ( byte b : MAGIC ) {
+            if ( dis.readByte() != b ) {
+                throw new IOException( "Blob is not a binary encoded feature." );
+            }
+        }
+        int version = dis.readUnsignedByte();
+        if ( version != VERSION ) {
+            throw new IOException( "Unsupported binary feature encoding version: " + version );
+        }
+        return new Decoder( dis, schema, crs, idResolver ).readFeature();
+    }
+
+    /**
+     * Returns whether the given bytes start with {@link #MAGIC}.
+     * 
+     * @param header
+     *            leading bytes of a blob, must not be <code>null</code>
+     * @return <code>true</code>, if the bytes indicate a binary encoded feature, <code>false</code> otherwise
+     */
+    static boolean isBinary( byte[] header ) {
+        if ( header.length < MAGIC.length ) {
+            return false;
+        }
+        for ( int i = 0; i < MAGIC.length; i++ ) {
+            if ( header[i] != MAGIC[i] ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private TypeInfo getTypeInfo( FeatureType ft ) {
+        TypeInfo info = ftToTypeInfo.get( ft );
+        if ( info == null ) {
+            info = new TypeInfo( ft );
+            ftToTypeInfo.put( ft, info );
+        }
+        return info;
+    }
+
+    private static int getCode( BaseType bt ) {
+        switch ( bt ) {
+        case STRING:
+            return PRIMITIVE_STRING;
+        case BOOLEAN:
+            return PRIMITIVE_BOOLEAN;
+        case DECIMAL:
+            return PRIMITIVE_DECIMAL;
+        case DOUBLE:
+            return PRIMITIVE_DOUBLE;
+        case INTEGER:
+            return PRIMITIVE_INTEGER;
+        case DATE:
+            return PRIMITIVE_DATE;
+        case DATE_TIME:
+            return PRIMITIVE_DATE_TIME;
+        case TIME:
+            return PRIMITIVE_TIME;
+        }
+        return -1;
+    }
+
+    private static BaseType getBaseType( int code )
+                            throws IOException {
+        switch ( code ) {
+        case PRIMITIVE_STRING:
+            return BaseType.STRING;
+        case PRIMITIVE_BOOLEAN:
+            return BaseType.BOOLEAN;
+        case PRIMITIVE_DECIMAL:
+            return BaseType.DECIMAL;
+        case PRIMITIVE_DOUBLE:
+            return BaseType.DOUBLE;
+        case PRIMITIVE_INTEGER:
+            return BaseType.INTEGER;
+        case PRIMITIVE_DATE:
+            return BaseType.DATE;
+        case PRIMITIVE_DATE_TIME:
+            return BaseType.DATE_TIME;
+        case PRIMITIVE_TIME:
+            return BaseType.TIME;
+        }
+        throw new IOException( "Invalid primitive type in binary feature encoding: " + code );
+    }
+
+    /**
+     * Property declarations of a feature type, as used by the encoding.
+     */
+    private static class TypeInfo {
+
+        private final Map<PropertyType, Integer> propIndexes = new IdentityHashMap<PropertyType, Integer>();
+
+        private final long fingerprint;
+
+        private TypeInfo( FeatureType ft ) {
+            StringBuilder sb = new StringBuilder();
+            int i = 0;
+            for ( PropertyType pt : ft.getPropertyDeclarations() ) {
+                propIndexes.put( pt, i++ );
+                sb.append( pt.getName() ).append( '|' ).append( pt.getClass().getName() ).append( '|' );
+                sb.append( pt.getMinOccurs() ).append( '|' ).append( pt.getMaxOccurs() );
+                if ( pt instanceof SimplePropertyType ) {
+                    sb.append( '|' ).append( getCode( ( (SimplePropertyType) pt ).getPrimitiveType().getBaseType() ) );
+                }
+                sb.append( '\n' );
+            }
+            // 64 bit FNV-1a
+            long hash = 0xcbf29ce484222325L;
+            for ( int j = 0; j < sb.length(); j++ ) {
+                hash ^= sb.charAt( j );
+                hash *= 0x100000001b3L;
+            }
+            fingerprint = hash;
+        }
+    }
+
+    private static class UnsupportedContentException extends Exception {
+
+        private static final long serialVersionUID = -2305213432785702341L;
+
+        UnsupportedContentException( String msg ) {
+            super( msg );
+        }
+    }
+
+    private class Encoder {
+
+        private final DataOutputStream os;
+
+        private final ICRS crs;
+
+        private final Map<QName, Integer> qNames = new HashMap<QName, Integer>();
+
+        private final Set<String> exportedFids = new HashSet<String>();
+
+        private GeometryTransformer transformer;
+
+        Encoder( DataOutputStream os, ICRS crs ) {
+            this.os = os;
+            this.crs = crs;
+        }
+
+        void writeFeature( Feature feature )
+                                throws IOException, UnsupportedContentException {
+            ExtraProps extraProps = feature.getExtraProperties();
+            if ( extraProps != null && extraProps.getProperties().length > 0 ) {
+                throw new UnsupportedContentException( "Extra properties" );
+            }
+            if ( feature.getId() != null ) {
+                exportedFids.add( feature.getId() );
+            }
+            FeatureType ft = feature.getType();
+            TypeInfo info = getTypeInfo( ft );
+            List<Property> props = feature.getProperties();
+            writeQName( ft.getName() );
+            writeString( feature.getId() );
+            os.writeLong( info.fingerprint );
+            writeVarInt( props.size() );
+            for ( Property prop : props ) {
+                Integer idx = info.propIndexes.get( prop.getType() );
+                if ( idx == null ) {
+                    throw new UnsupportedContentException( "Undeclared property " + prop.getName() );
+                }
+                writeVarInt( idx );
+                writeProperty( prop );
+            }
+        }
+
+        private void writeProperty( Property prop )
+                                throws IOException, UnsupportedContentException {
+            if ( prop.getXSType() != null ) {
+                throw new UnsupportedContentException( "Generic XML property " + prop.getName() );
+            }
+            TypedObjectNode value = prop.getValue();
+            int flags = 0;
+            if ( prop instanceof SimpleProperty ) {
+                if ( !( prop.getType() instanceof SimplePropertyType )
+                     || ( value != null && !( value instanceof PrimitiveValue ) ) ) {
+                    throw new UnsupportedContentException( "Simple property with complex type " + prop.getName() );
+                }
+                flags |= PROP_SIMPLE;
+            } else if ( prop instanceof GenericProperty ) {
+                List<TypedObjectNode> children = prop.getChildren();
+                if ( children == null || children.isEmpty() ) {
+                    flags |= PROP_NO_CHILDREN;
+                } else if ( children.size() != 1 || children.get( 0 ) != value ) {
+                    throw new UnsupportedContentException( "Mixed content property " + prop.getName() );
+                }
+                if ( !prop.getName().equals( prop.getType().getName() ) ) {
+                    flags |= PROP_NAME;
+                }
+                if ( prop.getAttributes() != null && !prop.getAttributes().isEmpty() ) {
+                    flags |= PROP_ATTRS;
+                }
+            } else {
+                throw new UnsupportedContentException( "Property class " + prop.getClass() );
+            }
+            os.writeByte( flags );
+            if ( ( flags & PROP_NAME ) != 0 ) {
+                writeQName( prop.getName() );
+            }
+            if ( ( flags & PROP_ATTRS ) != 0 ) {
+                Map<QName, PrimitiveValue> attrs = prop.getAttributes();
+                writeVarInt( attrs.size() );
+                for ( Map.Entry<QName, PrimitiveValue> attr : attrs.entrySet() ) {
+                    writeQName( attr.getKey() );
+                    writePrimitive( attr.getValue() );
+                }
+            }
+            writeValue( value );
+        }
+
+        private void writeValue( TypedObjectNode value )
+                                throws IOException, UnsupportedContentException {
+            if ( value == null ) {
+                os.writeByte( VALUE_NULL );
+            } else if ( value instanceof PrimitiveValue ) {
+                os.writeByte( VALUE_PRIMITIVE );
+                writePrimitive( (PrimitiveValue) value );
+            } else if ( value instanceof FeatureReference ) {
+                os.writeByte( VALUE_FEATURE_REF );
+                writeString( ( (FeatureReference) value ).getURI() );
+            } else if ( value instanceof Reference<?> ) {
+                throw new UnsupportedContentException( "Non-feature reference " + value );
+            } else if ( value instanceof Feature ) {
+                Feature subFeature = (Feature) value;
+                if ( subFeature.getId() != null && exportedFids.contains( subFeature.getId() ) ) {
+                    // mimics the GML encoding of features that occur more than once
+                    os.writeByte( VALUE_FEATURE_REF );
+                    writeString( "#" + subFeature.getId() );
+                } else {
+                    os.writeByte( VALUE_FEATURE );
+                    writeFeature( subFeature );
+                }
+            } else if ( value instanceof Geometry ) {
+                os.writeByte( VALUE_GEOMETRY );
+                writeGeometry( transform( (Geometry) value ) );
+            } else if ( value instanceof CodeType ) {
+                os.writeByte( VALUE_CODE );
+                writeString( ( (CodeType) value ).getCode() );
+                writeString( ( (CodeType) value ).getCodeSpace() );
+            } else if ( value instanceof Measure ) {
+                os.writeByte( VALUE_MEASURE );
+                writeString( ( (Measure) value ).getValue().toString() );
+                writeString( ( (Measure) value ).getUomUri() );
+            } else if ( value instanceof StringOrRef ) {
+                os.writeByte( VALUE_STRING_OR_REF );
+                writeString( ( (StringOrRef) value ).getString() );
+                writeString( ( (StringOrRef) value ).getRef() );
+            } else {
+                throw new UnsupportedContentException( "Value class " + value.getClass() );
+            }
+        }
+
+        private void writePrimitive( PrimitiveValue pv )
+                                throws IOException, UnsupportedContentException {
+            BaseType bt = pv.getType().getBaseType();
+            Object value = pv.getValue();
+            int code = getCode( bt );
+            if ( code == -1 ) {
+                throw new UnsupportedContentException( "Primitive type " + bt );
+            }
+            os.writeByte( code );
+            switch ( bt ) {
+            case STRING:
+                writeString( pv.getAsText() );
+                return;
+            case BOOLEAN:
+                os.writeBoolean( (Boolean) value );
+                break;
+            case DOUBLE:
+                os.writeDouble( (Double) value );
+                break;
+            case INTEGER: {
+                BigInteger i = (BigInteger) value;
+                if ( i.bitLength() < 64 ) {
+                    os.writeBoolean( true );
+                    os.writeLong( i.longValue() );
+                } else {
+                    os.writeBoolean( false );
+                    writeString( i.toString() );
+                }
+                break;
+            }
+            case DECIMAL: {
+                BigDecimal d = (BigDecimal) value;
+                if ( d.unscaledValue().bitLength() < 64 ) {
+                    os.writeBoolean( true );
+                    os.writeLong( d.unscaledValue().longValue() );
+                    os.writeInt( d.scale() );
+                } else {
+                    os.writeBoolean( false );
+                    writeString( d.toString() );
+                }
+                break;
+            }
+            default:
+                // temporal values: lexical form is the most compact representation that keeps time zone information
+                writeString( pv.getAsText() );
+                return;
+            }
+            // lexical form only needs to be stored if it differs from the canonical one (e.g. "1.50" or "+1")
+            String canonical = new PrimitiveValue( value, new PrimitiveType( bt ) ).getAsText();
+            if ( canonical.equals( pv.getAsText() ) ) {
+                writeString( null );
+            } else {
+                writeString( pv.getAsText() );
+            }
+        }
+
+        private Geometry transform( Geometry geom )
+                                throws UnsupportedContentException {
+            ICRS geomCrs = geom.getCoordinateSystem();
+            if ( crs == null || geomCrs == null || crs.equals( geomCrs ) ) {
+                return geom;
+            }
+            try {
+                if ( transformer == null ) {
+                    transformer = new GeometryTransformer( crs );
+                }
+                return transformer.transform( geom );
+            } catch ( Exception e ) {
+                throw new UnsupportedContentException( "Geometry transformation failed: " + e.getMessage() );
+            }
+        }
+
+        private void writeGeometry( Geometry geom )
+                                throws IOException, UnsupportedContentException {
+            if ( geom instanceof Reference<?> ) {
+                throw new UnsupportedContentException( "Geometry reference" );
+            }
+            if ( geom.getType() != null
+                 || ( !( geom instanceof Envelope ) && geom.getProperties() != null && !geom.getProperties().isEmpty() ) ) {
+                throw new UnsupportedContentException( "Custom geometry" );
+            }
+            switch ( geom.getGeometryType() ) {
+            case ENVELOPE: {
+                Envelope env = (Envelope) geom;
+                os.writeByte( GEOM_ENVELOPE );
+                double[] min = env.getMin().getAsArray();
+                double[] max = env.getMax().getAsArray();
+                os.writeByte( min.length );
+                writeOrdinates( min );
+                writeOrdinates( max );
+                return;
+            }
+            case PRIMITIVE_GEOMETRY: {
+                if ( geom instanceof Point ) {
+                    os.writeByte( GEOM_POINT );
+                    writeString( geom.getId() );
+                    double[] coords = ( (Point) geom ).getAsArray();
+                    os.writeByte( coords.length );
+                    writeOrdinates( coords );
+                    return;
+                }
+                if ( geom instanceof LineString && !( geom instanceof Ring ) ) {
+                    os.writeByte( GEOM_LINE_STRING );
+                    writeString( geom.getId() );
+                    writePoints( ( (LineString) geom ).getControlPoints() );
+                    return;
+                }
+                if ( geom instanceof Polygon ) {
+                    Polygon polygon = (Polygon) geom;
+                    os.writeByte( GEOM_POLYGON );
+                    writeString( geom.getId() );
+                    writeRing( polygon.getExteriorRing() );
+                    List<Ring> interiors = polygon.getInteriorRings();
+                    writeVarInt( interiors == null ? 0 : interiors.size() );
+                    if ( interiors != null ) {
+                        for ( Ring interior : interiors ) {
+                            writeRing( interior );
+                        }
+                    }
+                    return;
+                }
+                break;
+            }
+            case MULTI_GEOMETRY: {
+                byte kind = 0;
+                if ( geom instanceof MultiPoint ) {
+                    kind = GEOM_MULTI_POINT;
+                } else if ( geom instanceof MultiLineString ) {
+                    kind = GEOM_MULTI_LINE_STRING;
+                } else if ( geom instanceof MultiPolygon ) {
+                    kind = GEOM_MULTI_POLYGON;
+                } else {
+                    break;
+                }
+                MultiGeometry<?> multi = (MultiGeometry<?>) geom;
+                os.writeByte( kind );
+                writeString( geom.getId() );
+                writeVarInt( multi.size() );
+                for ( Geometry member : multi ) {
+                    writeGeometry( member );
+                }
+                return;
+            }
+            default:
+                break;
+            }
+            throw new UnsupportedContentException( "Geometry class " + geom.getClass() );
+        }
+
+        private void writeRing( Ring ring )
+                                throws IOException, UnsupportedContentException {
+            if ( ring == null || ring instanceof Reference<?> || ring.getRingType() != RingType.LinearRing ) {
+                throw new UnsupportedContentException( "Non-linear ring" );
+            }
+            writeString( ring.getId() );
+            writePoints( ring.getControlPoints() );
+        }
+
+        private void writePoints( Points points )
+                                throws IOException {
+            int dim = points.getDimension();
+            os.writeByte( dim );
+            writeVarInt( points.size() );
+            for ( Point p : points ) {
+                for ( int d = 0; d < dim; d++ ) {
+                    os.writeDouble( p.get( d ) );
+                }
+            }
+        }
+
+        private void writeOrdinates( double[] ordinates )
+                                throws IOException {
+            for ( double ordinate : ordinates ) {
+                os.writeDouble( ordinate );
+            }
+        }
+
+        private void writeQName( QName name )
+                                throws IOException {
+            Integer idx = qNames.get( name );
+            if ( idx != null ) {
+                writeVarInt( idx + 1 );
+                return;
+            }
+            writeVarInt( 0 );
+            writeString( name.getNamespaceURI() );
+            writeString( name.getLocalPart() );
+            writeString( name.getPrefix() );
+            qNames.put( name, qNames.size() );
+        }
+
+        private void writeString( String s )
+                                throws IOException {
+            if ( s == null ) {
+                writeVarInt( 0 );
+                return;
+            }
+            byte[] bytes = s.getBytes( "UTF-8" );
+            writeVarInt( bytes.length + 1 );
+            os.write( bytes );
+        }
+
+        private void writeVarInt( int i )
+                                throws IOException {
+            while ( ( i & ~0x7F ) != 0 ) {
+                os.writeByte( ( i & 0x7F ) | 0x80 );
+                i >>>= 7;
+            }
+            os.writeByte( i );
+        }
+    }
+
+    private class Decoder {
+
+        private final DataInputStream is;
+
+        private final AppSchema schema;
+
+        private final ICRS crs;
+
+        private final GMLReferenceResolver idResolver;
+
+        private final List<QName> qNames = new ArrayList<QName>();
+
+        Decoder( DataInputStream is, AppSchema schema, ICRS crs, GMLReferenceResolver idResolver ) {
+            this.is = is;
+            this.schema = schema;
+            this.crs = crs;
+            this.idResolver = idResolver;
+        }
+
+        Feature readFeature()
+                                throws IOException {
+            QName ftName = readQName();
+            FeatureType ft = schema.getFeatureType( ftName );
+            if ( ft == null ) {
+                throw new IOException( "Feature type '" + ftName + "' is not defined in the application schema." );
+            }
+            List<PropertyType> decls = ft.getPropertyDeclarations();
+            String fid = readString();
+            if ( is.readLong() != getTypeInfo( ft ).fingerprint ) {
+                throw new IOException( "Blob for feature '" + fid + "' has been encoded for a different version of "
+                                       + "feature type '" + ftName + "'." );
+            }
+            int numProps = readVarInt();
+            List<Property> props = new ArrayList<Property>( numProps );
+            for ( int i = 0; i < numProps; i++ ) {
+                int idx = readVarInt();
+                if ( idx >= decls.size() ) {
+                    throw new IOException( "Invalid property index " + idx + " for feature type '" + ftName + "'." );
+                }
+                props.add( readProperty( decls.get( idx ) ) );
+            }
+            return ft.newFeature( fid, props, null );
+        }
+
+        private Property readProperty( PropertyType pt )
+                                throws IOException {
+            int flags = is.readUnsignedByte();
+            QName name = ( flags & PROP_NAME ) != 0 ? readQName() : pt.getName();
+            Map<QName, PrimitiveValue> attrs = Collections.emptyMap();
+            if ( ( flags & PROP_ATTRS ) != 0 ) {
+                int numAttrs = readVarInt();
+                attrs = new LinkedHashMap<QName, PrimitiveValue>( numAttrs );
+                for ( int i = 0; i < numAttrs; i++ ) {
+                    QName attrName = readQName();
+                    attrs.put( attrName, readPrimitive( null ) );
+                }
+            }
+            TypedObjectNode value = readValue( pt );
+            if ( ( flags & PROP_SIMPLE ) != 0 ) {
+                if ( !( pt instanceof SimplePropertyType )
+                     || ( value != null && !( value instanceof PrimitiveValue ) ) ) {
+                    throw new IOException( "Simple property '" + name + "' does not match the declaration." );
+                }
+                return new SimpleProperty( (SimplePropertyType) pt, (PrimitiveValue) value );
+            }
+            List<TypedObjectNode> children = ( flags & PROP_NO_CHILDREN ) != 0 ? Collections.<TypedObjectNode> emptyList()
+                                                                               : Collections.singletonList( value );
+            return new GenericProperty( pt, name, value, attrs, children );
+        }
+
+        private TypedObjectNode readValue( PropertyType pt )
+                                throws IOException {
+            byte type = is.readByte();
+            switch ( type ) {
+            case VALUE_NULL:
+                return null;
+            case VALUE_PRIMITIVE:
+                return readPrimitive( pt instanceof SimplePropertyType ? ( (SimplePropertyType) pt ).getPrimitiveType()
+                                                                      : null );
+            case VALUE_GEOMETRY:
+                return readGeometry();
+            case VALUE_FEATURE:
+                return readFeature();
+            case VALUE_FEATURE_REF:
+                return new FeatureReference( idResolver, readString(), null );
+            case VALUE_CODE: {
+                String code = readString();
+                return new CodeType( code, readString() );
+            }
+            case VALUE_MEASURE: {
+                String value = readString();
+                return new Measure( value, readString() );
+            }
+            case VALUE_STRING_OR_REF: {
+                String s = readString();
+                return new StringOrRef( s, readString() );
+            }
+            default:
+                throw new IOException( "Invalid value type in binary feature encoding: " + type );
+            }
+        }
+
+        private PrimitiveValue readPrimitive( PrimitiveType declaredType )
+                                throws IOException {
+            BaseType bt = getBaseType( is.readUnsignedByte() );
+            PrimitiveType type = declaredType;
+            if ( type == null || type.getBaseType() != bt ) {
+                type = new PrimitiveType( bt );
+            }
+            Object value = null;
+            switch ( bt ) {
+            case STRING:
+                return new PrimitiveValue( readString(), type );
+            case BOOLEAN:
+                value = is.readBoolean();
+                break;
+            case DOUBLE:
+                value = is.readDouble();
+                break;
+            case INTEGER:
+                value = is.readBoolean() ? BigInteger.valueOf( is.readLong() ) : new BigInteger( readString() );
+                break;
+            case DECIMAL:
+                if ( is.readBoolean() ) {
+                    long unscaled = is.readLong();
+                    value = BigDecimal.valueOf( unscaled, is.readInt() );
+                } else {
+                    value = new BigDecimal( readString() );
+                }
+                break;
+            default:
+                return new PrimitiveValue( readString(), type );
+            }
+            return new PrimitiveValue( value, readString(), type );
+        }
+
+        private Geometry readGeometry()
+                                throws IOException {
+            byte kind = is.readByte();
+            if ( kind == GEOM_ENVELOPE ) {
+                int dim = is.readUnsignedByte();
+                double[] min = readOrdinates( dim );
+                return geomFac.createEnvelope( min, readOrdinates( dim ), crs );
+            }
+            String id = readString();
+            switch ( kind ) {
+            case GEOM_POINT:
+                return geomFac.createPoint( id, readOrdinates( is.readUnsignedByte() ), crs );
+            case GEOM_LINE_STRING:
+                return geomFac.createLineString( id, crs, readPoints() );
+            case GEOM_POLYGON: {
+                Ring exterior = readRing();
+                int numInteriors = readVarInt();
+                List<Ring> interiors = new ArrayList<Ring>( numInteriors );
+                for ( int i = 0; i < numInteriors; i++ ) {
+                    interiors.add( readRing() );
+                }
+                return geomFac.createPolygon( id, crs, exterior, interiors );
+            }
+            case GEOM_MULTI_POINT: {
+                int size = readVarInt();
+                List<Point> members = new ArrayList<Point>( size );
+                for ( int i = 0; i < size; i++ ) {
+                    members.add( readMember( Point.class ) );
+                }
+                return geomFac.createMultiPoint( id, crs, members );
+            }
+            case GEOM_MULTI_LINE_STRING: {
+                int size = readVarInt();
+                List<LineString> members = new ArrayList<LineString>( size );
+                for ( int i = 0; i < size; i++ ) {
+                    members.add( readMember( LineString.class ) );
+                }
+                return geomFac.createMultiLineString( id, crs, members );
+            }
+            case GEOM_MULTI_POLYGON: {
+                int size = readVarInt();
+                List<Polygon> members = new ArrayList<Polygon>( size );
+                for ( int i = 0; i < size; i++ ) {
+                    members.add( readMember( Polygon.class ) );
+                }
+                return geomFac.createMultiPolygon( id, crs, members );
+            }
+            default:
+                throw new IOException( "Invalid geometry type in binary feature encoding: " + kind );
+            }
+        }
+
+        private <T extends Geometry> T readMember( Class<T> memberClass )
+                                throws IOException {
+            Geometry member = readGeometry();
+            if ( !memberClass.isInstance( member ) ) {
+                throw new IOException( "Invalid member in binary encoded multi geometry: " + member.getClass() );
+            }
+            return memberClass.cast( member );
+        }
+
+        private LinearRing readRing()
+                                throws IOException {
+            String id = readString();
+            return geomFac.createLinearRing( id, crs, readPoints() );
+        }
+
+        private Points readPoints()
+                                throws IOException {
+            int dim = is.readUnsignedByte();
+            int size = readVarInt();
+            return new PackedPoints( crs, readOrdinates( dim * size ), dim );
+        }
+
+        private double[] readOrdinates( int num )
+                                throws IOException {
+            double[] ordinates = new double[num];
+            for ( int i = 0; i < num; i++ ) {
+                ordinates[i] = is.readDouble();
+            }
+            return ordinates;
+        }
+
+        private QName readQName()
+                                throws IOException {
+            int idx = readVarInt();
+            if ( idx > 0 ) {
+                return qNames.get( idx - 1 );
+            }
+            String ns = readString();
+            String localPart = readString();
+            String prefix = readString();
+            QName name = new QName( ns, localPart, prefix == null ? "" : prefix );
+            qNames.add( name );
+            return name;
+        }
+
+        private String readString()
+                                throws IOException {
+            int length = readVarInt() - 1;
+            if ( length < 0 ) {
+                return null;
+            }
+            byte[] bytes = new byte[length];
+            is.readFully( bytes );
+            return new String( bytes, "UTF-8" );
+        }
+
+        private int readVarInt()
+                                throws IOException {
+            int value = 0;
+            int shift = 0;
+            int b;
+            do {
+                b = is.readUnsignedByte();
+                value |= ( b & 0x7F ) << shift;
+                shift += 7;
+            } while ( ( b & 0x80 ) != 0 );
+            return value;
+        }
+    }
+}
@@ -37,8 +37,13 @@
 package org.deegree.feature.persistence.sql.blob;
 
 import static javax.xml.stream.XMLOutputFactory.IS_REPAIRING_NAMESPACES;
+import static org.deegree.feature.persistence.sql.blob.BlobCodec.Compression.BINARY;
+import static org.deegree.feature.persistence.sql.blob.BlobCodec.Compression.FAST_INFOSET;
+import static org.deegree.feature.persistence.sql.blob.BlobCodec.Compression.GZIP;
+import static org.deegree.feature.persistence.sql.blob.BlobCodec.Compression.NONE;
 
 import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
@@ -64,6 +69,7 @@ import org.deegree.cs.coordinatesystems.ICRS;
 import org.deegree.cs.exceptions.TransformationException;
 import org.deegree.cs.exceptions.UnknownCRSException;
 import org.deegree.feature.Feature;
+import org.deegree.feature.FeatureCollection;
 import org.deegree.feature.persistence.FeatureStoreException;
 import org.deegree.feature.types.AppSchema;
 import org.deegree.gml.GMLInputFactory;
@@ -104,8 +110,15 @@ public class BlobCodec {
 
     private final Compression compression;
 
+    private final BinaryFeatureCodec binaryCodec = new BinaryFeatureCodec();
+
     public enum Compression {
-        NONE, GZIP, FAST_INFOSET
+        NONE, GZIP, FAST_INFOSET,
+        /**
+         * Schema-aware binary encoding of features (no XML involved), features with content that cannot be represented
+         * are stored as GZIP-compressed GML.
+         */
+        BINARY
     }
 
     /**
@@ -142,7 +155,22 @@ public class BlobCodec {
                             UnknownCRSException, TransformationException, IOException {
 
         long begin = System.currentTimeMillis();
-        XMLStreamWriter xmlWriter = getXMLWriter( os );
+        Compression xmlCompression = compression;
+        if ( compression == BINARY ) {
+            if ( object instanceof Feature && !( object instanceof FeatureCollection ) ) {
+                ByteArrayOutputStream bos = new ByteArrayOutputStream();
+                if ( binaryCodec.encode( (Feature) object, bos, crs ) ) {
+                    bos.writeTo( os );
+                    LOG.debug( "Encoding feature (compression: {}) took {} [ms]", compression,
+                               System.currentTimeMillis() - begin );
+                    return;
+                }
+            }
+            LOG.debug( "Object '{}' cannot be encoded in binary form. Falling back to GZIP compressed GML.",
+                       object.getId() );
+            xmlCompression = GZIP;
+        }
+        XMLStreamWriter xmlWriter = getXMLWriter( os, xmlCompression );
         GMLStreamWriter gmlWriter = GMLOutputFactory.createGMLStreamWriter( gmlVersion, xmlWriter );
         Map<String, String> bindings = new HashMap<String, String>( nsContext );
         gmlWriter.setNamespaceBindings( bindings );
@@ -153,7 +181,7 @@ public class BlobCodec {
         if ( LOG.isDebugEnabled() ) {
             File file = File.createTempFile( "encoded-feature", ".tmp" );
             os = new FileOutputStream( file );
-            xmlWriter = getXMLWriter( os );
+            xmlWriter = getXMLWriter( os, xmlCompression );
             gmlWriter = GMLOutputFactory.createGMLStreamWriter( gmlVersion, xmlWriter );
             gmlWriter.setOutputCrs( crs );
             gmlWriter.write( object );
@@ -161,10 +189,10 @@ public class BlobCodec {
             os.close();
             LOG.debug( "Wrote encoded feature to '" + file.getAbsolutePath() + "'" );
         }
-        LOG.debug( "Encoding feature (compression: {}) took {} [ms]", compression, System.currentTimeMillis() - begin );
+        LOG.debug( "Encoding feature (compression: {}) took {} [ms]", xmlCompression, System.currentTimeMillis() - begin );
     }
 
-    private XMLStreamWriter getXMLWriter( OutputStream os )
+    private XMLStreamWriter getXMLWriter( OutputStream os, Compression compression )
                             throws XMLStreamException, IOException {
         XMLStreamWriter writer = null;
         switch ( compression ) {
@@ -180,6 +208,7 @@ public class BlobCodec {
             writer = new XMLStreamWriterWrapper( writer, gos );
             break;
         }
+        case BINARY:
         case NONE: {
             writer = xmlOutputFactory.createXMLStreamWriter( os, "UTF-8" );
             break;
@@ -190,6 +219,10 @@ public class BlobCodec {
 
     /**
      * Decodes the given {@link GMLObject} from the specified input stream.
+     * <p>
+     * The actual encoding of the blob is detected from its leading bytes, so blobs written with a different
+     * {@link Compression} setting stay readable.
+     * </p>
      * 
      * @param is
      *            input stream to read from, must not be <code>null</code>
@@ -212,17 +245,52 @@ public class BlobCodec {
 
         long begin = System.currentTimeMillis();
         BufferedInputStream bis = new BufferedInputStream( is );
-        XMLStreamReader xmlStream = getXMLReader( bis, nsContext );
+        Compression blobCompression = detectCompression( bis );
+        if ( blobCompression == BINARY ) {
+            Feature feature = binaryCodec.decode( bis, schema, crs, idResolver );
+            LOG.debug( "Decoding feature (compression: {}) took {} [ms]", blobCompression, System.currentTimeMillis()
+                                                                                         - begin );
+            return feature;
+        }
+        XMLStreamReader xmlStream = getXMLReader( bis, blobCompression );
         GMLStreamReader gmlReader = GMLInputFactory.createGMLStreamReader( gmlVersion, xmlStream );
         gmlReader.setResolver( idResolver );
         gmlReader.setApplicationSchema( schema );
         gmlReader.setDefaultCRS( crs );
         Feature feature = gmlReader.readFeature();
-        LOG.debug( "Decoding feature (compression: {}) took {} [ms]", compression, System.currentTimeMillis() - begin );
+        LOG.debug( "Decoding feature (compression: {}) took {} [ms]", blobCompression, System.currentTimeMillis() - begin );
         return feature;
     }
 
-    private XMLStreamReader getXMLReader( InputStream is, Map<String, String> nsContext )
+    private Compression detectCompression( BufferedInputStream is )
+                            throws IOException {
+        byte[] header = new byte[BinaryFeatureCodec.MAGIC.length];
+        is.mark( header.length );
+        int read = 0;
+        while ( read < header.length ) {
+            int n = is.read( header, read, header.length - read );
+            if ( n < 0 ) {
+                break;
+            }
+            read += n;
+        }
+        is.reset();
+        if ( read < header.length ) {
+            return compression == BINARY ? NONE : compression;
+        }
+        if ( BinaryFeatureCodec.isBinary( header ) ) {
+            return BINARY;
+        }
+        if ( header[0] == (byte) 0x1f && header[1] == (byte) 0x8b ) {
+            return GZIP;
+        }
+        if ( header[0] == (byte) 0xe0 && header[1] == 0x00 && header[2] == 0x00 && header[3] == 0x01 ) {
+            return FAST_INFOSET;
+        }
+        return NONE;
+    }
+
+    private XMLStreamReader getXMLReader( InputStream is, Compression compression )
                             throws XMLStreamException, IOException {
         XMLStreamReader reader = null;
         switch ( compression ) {
@@ -235,6 +303,7 @@ public class BlobCodec {
             reader = xmlInputFactory.createXMLStreamReader( gis, "UTF-8" );
             break;
         }
+        case BINARY:
         case NONE: {
             reader = xmlInputFactory.createXMLStreamReader( is, "UTF-8" );
             break;
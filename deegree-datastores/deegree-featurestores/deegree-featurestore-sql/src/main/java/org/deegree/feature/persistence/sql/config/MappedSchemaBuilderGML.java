@@ -77,6 +77,7 @@ import org.deegree.feature.persistence.sql.FeatureTypeMapping;
 import org.deegree.feature.persistence.sql.GeometryStorageParams;
 import org.deegree.feature.persistence.sql.MappedAppSchema;
 import org.deegree.feature.persistence.sql.blob.BlobCodec;
+import org.deegree.feature.persistence.sql.blob.BlobCodec.Compression;
 import org.deegree.feature.persistence.sql.blob.BlobMapping;
 import org.deegree.feature.persistence.sql.expressions.StringConst;
 import org.deegree.feature.persistence.sql.expressions.TableJoin;
@@ -315,7 +316,10 @@ public class MappedSchemaBuilderGML extends AbstractMappedSchemaBuilder {
                                                                        : blobMappingConf.getFeatureTypeTable();
         BBoxTableMapping bboxMapping = new BBoxTableMapping( ftTable, geometryParams.getCrs() );
         String blobTable = blobMappingConf.getBlobTable() == null ? GML_OBJECTS_TABLE : blobMappingConf.getBlobTable();
-        BlobMapping blobMapping = new BlobMapping( blobTable, geometryParams.getCrs(), new BlobCodec( gmlVersion, NONE ) );
+        Compression compression = blobMappingConf.getCompression() == null ? NONE
+                                                                           : Compression.valueOf( blobMappingConf.getCompression() );
+        BlobMapping blobMapping = new BlobMapping( blobTable, geometryParams.getCrs(), new BlobCodec( gmlVersion,
+                                                                                                     compression ) );
         return new Pair<BlobMapping, BBoxTableMapping>( blobMapping, bboxMapping );
     }
 
@@ -35,8 +35,6 @@
  ----------------------------------------------------------------------------*/
 package org.deegree.feature.persistence.sql.insert;
 
-import java.sql.Connection;
-import java.sql.SQLException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -106,10 +104,8 @@ public class FeatureRow extends InsertRow {
     }
 
     @Override
-    void performInsert( Connection conn, boolean propagateAutoGenColumns )
-                            throws SQLException, FeatureStoreException {
-
-        super.performInsert( conn, propagateAutoGenColumns );
+    void afterInsert()
+                            throws FeatureStoreException {
 
         newId = buildNewFid();
         if ( newId == null ) {
@@ -169,11 +165,18 @@ public class FeatureRow extends InsertRow {
     protected Set<SQLIdentifier> getAutogenColumns( boolean propagateNonFidAutoGenColumns ) {
         Set<SQLIdentifier> cols = super.getAutogenColumns( propagateNonFidAutoGenColumns );
         for ( Pair<SQLIdentifier, BaseType> fidColumn : fidMapping.getColumns() ) {
-            cols.add( fidColumn.first );
+            if ( get( fidColumn.first ) == null ) {
+                cols.add( fidColumn.first );
+            }
         }
         return cols;
     }
 
+    @Override
+    boolean isInsertable() {
+        return isAssigned() && super.isInsertable();
+    }
+
     private void preInsertUseExisting( FeatureTypeMapping ftMapping )
                             throws FeatureStoreException {
 
@@ -212,22 +212,7 @@ public abstract class InsertRow extends TransactionRow {
             }
             stmt = conn.prepareStatement( sql, cols );
         }
-        int columnId = 1;
-        for ( Entry<SQLIdentifier, Object> entry : columnToObject.entrySet() ) {
-            if ( entry.getValue() != null ) {
-                LOG.debug( "- Argument " + entry.getKey() + " = " + entry.getValue() + " ("
-                           + entry.getValue().getClass() + ")" );
-                if ( entry.getValue() instanceof ParticleConversion<?> ) {
-                    ParticleConversion<?> conversion = (ParticleConversion<?>) entry.getValue();
-                    conversion.setParticle( stmt, columnId++ );
-                } else {
-                    stmt.setObject( columnId++, entry.getValue() );
-                }
-            } else {
-                LOG.debug( "- Argument " + entry.getKey() + " = NULL" );
-                stmt.setObject( columnId++, null );
-            }
-        }
+        setArguments( stmt );
         stmt.execute();
 
         if ( !autoGenColumns.isEmpty() ) {
@@ -251,13 +236,84 @@ public abstract class InsertRow extends TransactionRow {
             }
         }
         stmt.close();
+        afterInsert();
+    }
+
+    /**
+     * Sets the values of this row as arguments of the given (INSERT) statement.
+     * 
+     * @param stmt
+     *            statement prepared for the SQL returned by {@link #getSql()}, must not be <code>null</code>
+     * @throws SQLException
+     */
+    void setArguments( PreparedStatement stmt )
+                            throws SQLException {
+        int columnId = 1;
+        for ( Entry<SQLIdentifier, Object> entry : columnToObject.entrySet() ) {
+            if ( entry.getValue() != null ) {
+                LOG.debug( "- Argument " + entry.getKey() + " = " + entry.getValue() + " ("
+                           + entry.getValue().getClass() + ")" );
+                if ( entry.getValue() instanceof ParticleConversion<?> ) {
+                    ParticleConversion<?> conversion = (ParticleConversion<?>) entry.getValue();
+                    conversion.setParticle( stmt, columnId++ );
+                } else {
+                    stmt.setObject( columnId++, entry.getValue() );
+                }
+            } else {
+                LOG.debug( "- Argument " + entry.getKey() + " = NULL" );
+                stmt.setObject( columnId++, null );
+            }
+        }
+    }
+
+    /**
+     * Invoked after the row has been inserted (either by {@link #performInsert(Connection, boolean)} or as part of a
+     * JDBC batch).
+     * 
+     * @throws FeatureStoreException
+     */
+    void afterInsert()
+                            throws FeatureStoreException {
+        // nothing to do by default
     }
 
+    /**
+     * Returns whether this row can be inserted as part of a JDBC batch, i.e. no values of auto-generated columns have
+     * to be retrieved after the insert.
+     * 
+     * @param propagateNonFidAutoGenColumns
+     *            <code>true</code>, if auto generated key columns need to be processed (and propagated),
+     *            <code>false</code> otherwise
+     * @return <code>true</code>, if the row can be inserted in a batch, <code>false</code> otherwise
+     */
+    boolean isBatchable( boolean propagateNonFidAutoGenColumns ) {
+        return isInsertable() && getAutogenColumns( propagateNonFidAutoGenColumns ).isEmpty();
+    }
+
+    /**
+     * Returns whether the target table of this row is known.
+     * 
+     * @return <code>true</code>, if the table is known, <code>false</code> otherwise
+     */
+    boolean isInsertable() {
+        return table != null;
+    }
+
+    /**
+     * Returns the auto-generated columns whose values have to be retrieved after the insert.
+     * <p>
+     * Columns that already have a value (e.g. allocated in advance by the {@link InsertRowManager}) are not included.
+     * </p>
+     */
     protected Set<SQLIdentifier> getAutogenColumns( boolean propagateNonFidAutoGenColumns ) {
         Set<SQLIdentifier> cols = new LinkedHashSet<SQLIdentifier>();
         if ( propagateNonFidAutoGenColumns ) {
             if ( mgr.getGenColumns( table ) != null ) {
-                cols.addAll( mgr.getGenColumns( table ) );
+                for ( SQLIdentifier col : mgr.getGenColumns( table ) ) {
+                    if ( get( col ) == null ) {
+                        cols.add( col );
+                    }
+                }
             }
         }
         return cols;
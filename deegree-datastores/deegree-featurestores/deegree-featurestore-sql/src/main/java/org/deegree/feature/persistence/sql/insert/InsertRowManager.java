@@ -36,13 +36,19 @@
 package org.deegree.feature.persistence.sql.insert;
 
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
 
 import javax.xml.namespace.QName;
@@ -55,6 +61,7 @@ import org.deegree.commons.tom.gml.property.Property;
 import org.deegree.commons.tom.primitive.BaseType;
 import org.deegree.commons.tom.primitive.PrimitiveValue;
 import org.deegree.commons.tom.sql.ParticleConverter;
+import org.deegree.commons.utils.JDBCUtils;
 import org.deegree.commons.utils.Pair;
 import org.deegree.feature.Feature;
 import org.deegree.feature.persistence.FeatureStoreException;
@@ -93,6 +100,9 @@ import org.slf4j.LoggerFactory;
  * <li>Usability for complex structures/mappings</li>
  * <li>Coping with unresolved feature references (forward/backward xlinks)</li>
  * <li>Auto-generated feature ids/key columns</li>
+ * <li>JDBC batching: rows of the same table (and SQL) that don't need auto-generated keys to be retrieved are
+ * inserted using a single batched statement; if the {@link SQLDialect} supports it, values of auto-generated key
+ * columns are allocated in advance (in blocks), so these rows can be batched as well</li>
  * </ul>
  * 
  * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
@@ -104,6 +114,9 @@ public class InsertRowManager {
 
     private static Logger LOG = LoggerFactory.getLogger( InsertRowManager.class );
 
+    // number of insertable rows to collect before inserting / maximum number of rows in a single JDBC batch
+    static final int MAX_BATCH_SIZE = 1000;
+
     private final SQLFeatureStore fs;
 
     private final SQLDialect dialect;
@@ -126,6 +139,9 @@ public class InsertRowManager {
     // values: rows that have not been inserted yet, but can be inserted (no parents)
     private final Set<InsertRow> rootRows = new HashSet<InsertRow>();
 
+    // values: auto-generated columns (and their tables) whose values cannot be allocated in advance
+    private final Set<Pair<TableName, SQLIdentifier>> unallocatableColumns = new HashSet<Pair<TableName, SQLIdentifier>>();
+
     /**
      * Creates a new {@link InsertRowManager} instance.
      * 
@@ -148,8 +164,8 @@ public class InsertRowManager {
      * Inserts the specified feature.
      * <p>
      * Note that some or all of the corresponding table rows may actually not be inserted when this method returns. They
-     * may be delayed until their dependencies are inserted. This method also takes care of checking for rows that have
-     * been delayed and can be inserted now.
+     * may be delayed until their dependencies are inserted or until enough rows have been collected for batch
+     * insertion. Use {@link #flush()} to insert all remaining rows.
      * </p>
      * 
      * @param feature
@@ -181,9 +197,13 @@ public class InsertRowManager {
                 }
             }
 
-            LOG.debug( "Before heap run: uninserted rows: " + delayedRows.size() + ", root rows: " + rootRows.size() );
-            processHeap();
-            LOG.debug( "After heap run: uninserted rows: " + delayedRows.size() + ", root rows: " + rootRows.size() );
+            if ( rootRows.size() >= MAX_BATCH_SIZE ) {
+                LOG.debug( "Before heap run: uninserted rows: " + delayedRows.size() + ", root rows: "
+                           + rootRows.size() );
+                processHeap();
+                LOG.debug( "After heap run: uninserted rows: " + delayedRows.size() + ", root rows: "
+                           + rootRows.size() );
+            }
 
         } catch ( Throwable t ) {
             LOG.debug( t.getMessage(), t );
@@ -192,6 +212,23 @@ public class InsertRowManager {
         return featureRow;
     }
 
+    /**
+     * Inserts all rows that have been collected by {@link #insertFeature(Feature, FeatureTypeMapping)} and are
+     * insertable (i.e. all rows that do not depend on rows that have not been inserted yet).
+     * <p>
+     * Must be invoked after the last feature has been passed to {@link #insertFeature(Feature, FeatureTypeMapping)}.
+     * </p>
+     * 
+     * @throws SQLException
+     * @throws FeatureStoreException
+     */
+    public void flush()
+                            throws SQLException, FeatureStoreException {
+        LOG.debug( "Before heap run: uninserted rows: " + delayedRows.size() + ", root rows: " + rootRows.size() );
+        processHeap();
+        LOG.debug( "After heap run: uninserted rows: " + delayedRows.size() + ", root rows: " + rootRows.size() );
+    }
+
     public FeatureRow updateFeature( final Feature feature, final FeatureTypeMapping ftMapping, final String[] idParts,
                                      Mapping mapping, ParsedPropertyReplacement replacement )
                             throws SQLException, FeatureStoreException, FilterEvaluationException {
@@ -517,9 +554,37 @@ public class InsertRowManager {
         while ( !rootRows.isEmpty() ) {
             List<InsertRow> rootRemoves = new ArrayList<InsertRow>();
             List<InsertRow> rootAdds = new ArrayList<InsertRow>();
+
+            allocateGeneratedKeys( rootRows );
+
+            // root rows don't depend on each other, so rows with identical SQL can be inserted in a single batch
+            Map<String, List<InsertRow>> sqlToBatch = new LinkedHashMap<String, List<InsertRow>>();
+            for ( InsertRow row : rootRows ) {
+                boolean propagateAutoGenColumns = rowToChildRows.get( row ) != null;
+                if ( row.isBatchable( propagateAutoGenColumns ) ) {
+                    String sql = row.getSql();
+                    List<InsertRow> batch = sqlToBatch.get( sql );
+                    if ( batch == null ) {
+                        batch = new ArrayList<InsertRow>();
+                        sqlToBatch.put( sql, batch );
+                    }
+                    batch.add( row );
+                } else {
+                    LOG.debug( "Inserting row " + row );
+                    row.performInsert( conn, propagateAutoGenColumns );
+                }
+            }
+            for ( Entry<String, List<InsertRow>> sqlAndBatch : sqlToBatch.entrySet() ) {
+                List<InsertRow> batch = sqlAndBatch.getValue();
+                if ( batch.size() == 1 ) {
+                    LOG.debug( "Inserting row " + batch.get( 0 ) );
+                    batch.get( 0 ).performInsert( conn, false );
+                } else {
+                    insertBatch( sqlAndBatch.getKey(), batch );
+                }
+            }
+
             for ( InsertRow row : rootRows ) {
-                LOG.debug( "Inserting row " + row );
-                row.performInsert( conn, rowToChildRows.get( row ) != null );
                 delayedRows.remove( row );
                 rootRemoves.add( row );
 
@@ -541,6 +606,116 @@ public class InsertRowManager {
         }
     }
 
+    /**
+     * Allocates the values of auto-generated columns for the given rows (one statement per column), so the rows don't
+     * have to be inserted one by one to retrieve the generated values.
+     * 
+     * @param rows
+     *            rows to allocate the values for, must not be <code>null</code>
+     * @throws SQLException
+     * @throws FeatureStoreException
+     */
+    private void allocateGeneratedKeys( Collection<InsertRow> rows )
+                            throws SQLException, FeatureStoreException {
+
+        Map<Pair<TableName, SQLIdentifier>, List<InsertRow>> columnToRows = new LinkedHashMap<Pair<TableName, SQLIdentifier>, List<InsertRow>>();
+        for ( InsertRow row : rows ) {
+            if ( !row.isInsertable() ) {
+                continue;
+            }
+            boolean propagateAutoGenColumns = rowToChildRows.get( row ) != null;
+            for ( SQLIdentifier column : row.getAutogenColumns( propagateAutoGenColumns ) ) {
+                Pair<TableName, SQLIdentifier> tableAndColumn = new Pair<TableName, SQLIdentifier>( row.getTable(),
+                                                                                                    column );
+                if ( unallocatableColumns.contains( tableAndColumn ) ) {
+                    continue;
+                }
+                List<InsertRow> columnRows = columnToRows.get( tableAndColumn );
+                if ( columnRows == null ) {
+                    columnRows = new ArrayList<InsertRow>();
+                    columnToRows.put( tableAndColumn, columnRows );
+                }
+                columnRows.add( row );
+            }
+        }
+
+        for ( Entry<Pair<TableName, SQLIdentifier>, List<InsertRow>> columnAndRows : columnToRows.entrySet() ) {
+            TableName table = columnAndRows.getKey().first;
+            SQLIdentifier column = columnAndRows.getKey().second;
+            List<InsertRow> columnRows = columnAndRows.getValue();
+            List<Object> values = selectGeneratedValues( table, column, columnRows.size() );
+            if ( values == null ) {
+                LOG.debug( "Values of column '" + column + "' (table '" + table
+                           + "') cannot be allocated in advance. Using generated keys." );
+                unallocatableColumns.add( columnAndRows.getKey() );
+                continue;
+            }
+            for ( int i = 0; i < columnRows.size(); i++ ) {
+                columnRows.get( i ).addPreparedArgument( column, values.get( i ) );
+            }
+        }
+    }
+
+    private List<Object> selectGeneratedValues( TableName table, SQLIdentifier column, int num )
+                            throws SQLException, FeatureStoreException {
+
+        String sql = dialect.getSelectAutoColumnNextVals( table, column, num );
+        if ( sql == null ) {
+            return null;
+        }
+        LOG.debug( "Allocating " + num + " values for column '" + column + "': " + sql );
+        List<Object> values = new ArrayList<Object>( num );
+        Statement stmt = null;
+        ResultSet rs = null;
+        try {
+            stmt = conn.createStatement();
+            rs = stmt.executeQuery( sql );
+            while ( rs.next() ) {
+                Object value = rs.getObject( 1 );
+                if ( value == null ) {
+                    // column is not backed by a sequence
+                    return null;
+                }
+                values.add( value );
+            }
+        } finally {
+            JDBCUtils.close( rs, stmt, null, LOG );
+        }
+        if ( values.size() != num ) {
+            String msg = "Error allocating values for column '" + column + "'. Expected " + num + " values, got "
+                         + values.size() + ": " + sql;
+            throw new FeatureStoreException( msg );
+        }
+        return values;
+    }
+
+    private void insertBatch( String sql, List<InsertRow> rows )
+                            throws SQLException, FeatureStoreException {
+
+        LOG.debug( "Inserting " + rows.size() + " rows (batch): " + sql );
+        PreparedStatement stmt = null;
+        try {
+            stmt = conn.prepareStatement( sql );
+            int batchSize = 0;
+            for ( InsertRow row : rows ) {
+                row.setArguments( stmt );
+                stmt.addBatch();
+                if ( ++batchSize == MAX_BATCH_SIZE ) {
+                    stmt.executeBatch();
+                    batchSize = 0;
+                }
+            }
+            if ( batchSize > 0 ) {
+                stmt.executeBatch();
+            }
+        } finally {
+            JDBCUtils.close( stmt );
+        }
+        for ( InsertRow row : rows ) {
+            row.afterInsert();
+        }
+    }
+
     /**
      * Returns the number of currently delayed rows (rows that depend on some other row to be inserted first).
      * 
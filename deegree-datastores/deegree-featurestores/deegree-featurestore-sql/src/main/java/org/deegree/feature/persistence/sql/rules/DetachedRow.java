@@ -0,0 +1,192 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.sql.rules;
+
+import java.io.ByteArrayInputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Blob;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+/**
+ * Copy of a single {@link ResultSet} row that stays accessible after the cursor of the originating {@link ResultSet}
+ * has been moved on.
+ * <p>
+ * Detached rows are exposed as (read-only) {@link ResultSet} instances, so they can be passed to the
+ * {@link org.deegree.commons.tom.sql.ParticleConverter}s. Only the column index based getters are supported.
+ * </p>
+ * 
+ * @see FeatureBuilderRelational#buildFeatures(ResultSet, int)
+ * 
+ * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+class DetachedRow implements InvocationHandler {
+
+    private final Object[] values;
+
+    private boolean wasNull;
+
+    private DetachedRow( Object[] values ) {
+        this.values = values;
+    }
+
+    /**
+     * Copies the current row of the given {@link ResultSet}.
+     * 
+     * @param rs
+     *            result set positioned on a row, must not be <code>null</code>
+     * @param numColumns
+     *            number of columns to copy (starting with the first one)
+     * @return detached copy of the row, never <code>null</code>
+     * @throws SQLException
+     */
+    static ResultSet detach( ResultSet rs, int numColumns )
+                            throws SQLException {
+        Object[] values = new Object[numColumns];
+        for ( int i = 0; i < numColumns; i++ ) {
+            values[i] = rs.getObject( i + 1 );
+        }
+        return (ResultSet) Proxy.newProxyInstance( DetachedRow.class.getClassLoader(),
+                                                   new Class<?>[] { ResultSet.class }, new DetachedRow( values ) );
+    }
+
+    @Override
+    public Object invoke( Object proxy, Method method, Object[] args )
+                            throws Throwable {
+        String name = method.getName();
+        if ( name.startsWith( "get" ) && args != null && args.length == 1 && args[0] instanceof Integer ) {
+            Object value = values[(Integer) args[0] - 1];
+            wasNull = value == null;
+            return getValue( name, value );
+        }
+        if ( "wasNull".equals( name ) ) {
+            return wasNull;
+        }
+        if ( "close".equals( name ) ) {
+            return null;
+        }
+        if ( "isClosed".equals( name ) ) {
+            return false;
+        }
+        if ( "equals".equals( name ) ) {
+            return proxy == args[0];
+        }
+        if ( "hashCode".equals( name ) ) {
+            return System.identityHashCode( proxy );
+        }
+        if ( "toString".equals( name ) ) {
+            return "DetachedRow " + Arrays.toString( values );
+        }
+        throw new SQLException( "Operation '" + name + "' is not supported for detached rows." );
+    }
+
+    private Object getValue( String getter, Object value )
+                            throws SQLException {
+        if ( "getObject".equals( getter ) ) {
+            return value;
+        }
+        if ( "getString".equals( getter ) ) {
+            return value == null ? null : value.toString();
+        }
+        if ( "getBytes".equals( getter ) ) {
+            return getBytes( value );
+        }
+        if ( "getBinaryStream".equals( getter ) ) {
+            byte[] bytes = getBytes( value );
+            return bytes == null ? null : new ByteArrayInputStream( bytes );
+        }
+        if ( "getBoolean".equals( getter ) ) {
+            if ( value instanceof Number ) {
+                return ( (Number) value ).intValue() != 0;
+            }
+            return value == null ? false : Boolean.valueOf( value.toString() );
+        }
+        if ( "getBigDecimal".equals( getter ) ) {
+            if ( value == null || value instanceof BigDecimal ) {
+                return value;
+            }
+            return new BigDecimal( value.toString() );
+        }
+        if ( "getInt".equals( getter ) ) {
+            return value == null ? 0 : toNumber( value ).intValue();
+        }
+        if ( "getLong".equals( getter ) ) {
+            return value == null ? 0L : toNumber( value ).longValue();
+        }
+        if ( "getShort".equals( getter ) ) {
+            return value == null ? (short) 0 : toNumber( value ).shortValue();
+        }
+        if ( "getByte".equals( getter ) ) {
+            return value == null ? (byte) 0 : toNumber( value ).byteValue();
+        }
+        if ( "getDouble".equals( getter ) ) {
+            return value == null ? 0.0 : toNumber( value ).doubleValue();
+        }
+        if ( "getFloat".equals( getter ) ) {
+            return value == null ? 0.0f : toNumber( value ).floatValue();
+        }
+        if ( "getDate".equals( getter ) || "getTime".equals( getter ) || "getTimestamp".equals( getter ) ) {
+            return value;
+        }
+        throw new SQLException( "Operation '" + getter + "' is not supported for detached rows." );
+    }
+
+    private byte[] getBytes( Object value )
+                            throws SQLException {
+        if ( value == null || value instanceof byte[] ) {
+            return (byte[]) value;
+        }
+        if ( value instanceof Blob ) {
+            Blob blob = (Blob) value;
+            return blob.getBytes( 1, (int) blob.length() );
+        }
+        throw new SQLException( "Cannot convert value of type " + value.getClass() + " to byte array." );
+    }
+
+    private Number toNumber( Object value ) {
+        if ( value instanceof Number ) {
+            return (Number) value;
+        }
+        return new BigDecimal( value.toString() );
+    }
+}
@@ -41,6 +41,7 @@ import static org.deegree.commons.xml.CommonNamespaces.XSINS;
 import static org.deegree.commons.xml.CommonNamespaces.XSI_PREFIX;
 import static org.jaxen.saxpath.Axis.CHILD;
 
+import java.math.BigDecimal;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -72,6 +73,7 @@ import org.deegree.commons.utils.Pair;
 import org.deegree.commons.xml.CommonNamespaces;
 import org.deegree.commons.xml.NamespaceBindings;
 import org.deegree.feature.Feature;
+import org.deegree.feature.persistence.cache.FeatureStoreCache;
 import org.deegree.feature.persistence.sql.FeatureBuilder;
 import org.deegree.feature.persistence.sql.FeatureTypeMapping;
 import org.deegree.feature.persistence.sql.SQLFeatureStore;
@@ -86,6 +88,7 @@ import org.deegree.geometry.primitive.LineString;
 import org.deegree.geometry.primitive.Polygon;
 import org.deegree.geometry.primitive.patches.SurfacePatch;
 import org.deegree.geometry.primitive.segments.CurveSegment;
+import org.deegree.geometry.utils.GeometryParticleConverter;
 import org.deegree.sqldialect.filter.DBField;
 import org.deegree.sqldialect.filter.MappingExpression;
 import org.jaxen.expr.Expr;
@@ -129,6 +132,15 @@ public class FeatureBuilderRelational implements FeatureBuilder {
 
     private final boolean nullEscalation;
 
+    private final double generalizationTolerance;
+
+    private final FeatureStoreCache cache;
+
+    static final int MAX_KEYS_PER_SELECT = 500;
+
+    // only set while a block of features is being built by #buildFeatures(ResultSet,int)
+    private Map<Mapping, Pair<LinkedHashMap<String, Integer>, Map<List<Object>, List<ResultSet>>>> joinedRows;
+
     /**
      * Creates a new {@link FeatureBuilderRelational} instance.
      * 
@@ -145,7 +157,35 @@ public class FeatureBuilderRelational implements FeatureBuilder {
      */
     public FeatureBuilderRelational( SQLFeatureStore fs, FeatureType ft, FeatureTypeMapping ftMapping, Connection conn,
                                      String ftTableAlias, boolean nullEscalation ) {
+        this( fs, ft, ftMapping, conn, ftTableAlias, nullEscalation, -1, fs.getQueryCache() );
+    }
+
+    /**
+     * Creates a new {@link FeatureBuilderRelational} instance that generalizes the geometries.
+     * 
+     * @param fs
+     *            feature store, must not be <code>null</code>
+     * @param ft
+     *            feature type, must not be <code>null</code>
+     * @param ftMapping
+     *            feature type mapping, must not be <code>null</code>
+     * @param conn
+     *            JDBC connection (used for performing subsequent SELECTs), must not be <code>null</code>
+     * @param nullEscalation
+     *            the void escalation policy
+     * @param generalizationTolerance
+     *            tolerance (in units of the storage CRS) for simplifying geometries in the database, a non-positive
+     *            value disables generalization
+     * @param cache
+     *            cache for the built features, can be <code>null</code> (no caching), must only contain features
+     *            generalized with the same tolerance
+     */
+    public FeatureBuilderRelational( SQLFeatureStore fs, FeatureType ft, FeatureTypeMapping ftMapping, Connection conn,
+                                     String ftTableAlias, boolean nullEscalation, double generalizationTolerance,
+                                     FeatureStoreCache cache ) {
         this.fs = fs;
+        this.generalizationTolerance = generalizationTolerance;
+        this.cache = cache;
         this.ft = ft;
         this.ftMapping = ftMapping;
         this.conn = conn;
@@ -213,7 +253,7 @@ public class FeatureBuilderRelational implements FeatureBuilder {
                 }
             } else if ( mapping instanceof GeometryMapping ) {
                 if ( particleConverter != null ) {
-                    addColumn( colToRsIdx, particleConverter.getSelectSnippet( tableAlias ) );
+                    addColumn( colToRsIdx, getGeometrySelectSnippet( particleConverter ) );
                 } else {
                     LOG.info( "Omitting mapping '" + mapping + "' from SELECT list. Not mapped to column.'" );
                 }
@@ -236,21 +276,26 @@ public class FeatureBuilderRelational implements FeatureBuilder {
         }
     }
 
+    private String getGeometrySelectSnippet( ParticleConverter<?> converter ) {
+        if ( generalizationTolerance > 0 && converter instanceof GeometryParticleConverter ) {
+            String snippet = ( (GeometryParticleConverter) converter ).getSimplifiedSelectSnippet( tableAlias,
+                                                                                                  generalizationTolerance );
+            if ( snippet != null ) {
+                return snippet;
+            }
+        }
+        return converter.getSelectSnippet( tableAlias );
+    }
+
     @Override
     public Feature buildFeature( ResultSet rs )
                             throws SQLException {
 
         Feature feature = null;
         try {
-            String gmlId = ftMapping.getFidMapping().getPrefix();
-            List<Pair<SQLIdentifier, BaseType>> fidColumns = ftMapping.getFidMapping().getColumns();
-            gmlId += rs.getObject( colToRsIdx.get( tableAlias + "." + fidColumns.get( 0 ).first ) );
-            for ( int i = 1; i < fidColumns.size(); i++ ) {
-                gmlId += ftMapping.getFidMapping().getDelimiter()
-                                        + rs.getObject( colToRsIdx.get( tableAlias + "." + fidColumns.get( i ).first ) );
-            }
-            if ( fs.getCache() != null ) {
-                feature = (Feature) fs.getCache().get( gmlId );
+            String gmlId = getGmlId( rs );
+            if ( cache != null ) {
+                feature = (Feature) cache.get( gmlId );
             }
             if ( feature == null ) {
                 LOG.debug( "Recreating feature '" + gmlId + "' from db (relational mode)." );
@@ -269,8 +314,8 @@ public class FeatureBuilderRelational implements FeatureBuilder {
                     }
                 }
                 feature = ft.newFeature( gmlId, props, null );
-                if ( fs.getCache() != null ) {
-                    fs.getCache().add( feature );
+                if ( cache != null ) {
+                    cache.add( feature );
                 }
             } else {
                 LOG.debug( "Cache hit." );
@@ -282,6 +327,107 @@ public class FeatureBuilderRelational implements FeatureBuilder {
         return feature;
     }
 
+    private String getGmlId( ResultSet rs )
+                            throws SQLException {
+        String gmlId = ftMapping.getFidMapping().getPrefix();
+        List<Pair<SQLIdentifier, BaseType>> fidColumns = ftMapping.getFidMapping().getColumns();
+        gmlId += rs.getObject( colToRsIdx.get( tableAlias + "." + fidColumns.get( 0 ).first ) );
+        for ( int i = 1; i < fidColumns.size(); i++ ) {
+            gmlId += ftMapping.getFidMapping().getDelimiter()
+                     + rs.getObject( colToRsIdx.get( tableAlias + "." + fidColumns.get( i ).first ) );
+        }
+        return gmlId;
+    }
+
+    /**
+     * Builds the features for the next rows of the given {@link ResultSet}.
+     * <p>
+     * In contrast to calling {@link #buildFeature(ResultSet)} for every row, the rows of joined tables are fetched for
+     * all features of the block at once (one subsequent SELECT per join and block of up to
+     * {@value #MAX_KEYS_PER_SELECT} keys instead of one SELECT per join and row). Features that are already cached are
+     * not considered for fetching the joined rows.
+     * </p>
+     * 
+     * @param rs
+     *            result set, must not be <code>null</code>, the cursor is advanced by at most <code>maxRows</code> rows
+     * @param maxRows
+     *            maximum number of rows to consume
+     * @return features, can be empty (if the result set is exhausted), but never <code>null</code>
+     * @throws SQLException
+     */
+    public List<Feature> buildFeatures( ResultSet rs, int maxRows )
+                            throws SQLException {
+        int numColumns = colToRsIdx.size();
+        List<ResultSet> rows = new ArrayList<ResultSet>();
+        while ( rows.size() < maxRows && rs.next() ) {
+            rows.add( DetachedRow.detach( rs, numColumns ) );
+        }
+        List<Feature> features = new ArrayList<Feature>( rows.size() );
+        if ( rows.isEmpty() ) {
+            return features;
+        }
+
+        // cached features are looked up only once, so they cannot be evicted before being returned
+        Feature[] cachedFeatures = new Feature[rows.size()];
+        List<ResultSet> uncachedRows = rows;
+        if ( cache != null ) {
+            uncachedRows = new ArrayList<ResultSet>( rows.size() );
+            for ( int i = 0; i < rows.size(); i++ ) {
+                cachedFeatures[i] = (Feature) cache.get( getGmlId( rows.get( i ) ) );
+                if ( cachedFeatures[i] == null ) {
+                    uncachedRows.add( rows.get( i ) );
+                }
+            }
+        }
+
+        joinedRows = new HashMap<Mapping, Pair<LinkedHashMap<String, Integer>, Map<List<Object>, List<ResultSet>>>>();
+        try {
+            if ( !uncachedRows.isEmpty() ) {
+                for ( Mapping mapping : ftMapping.getMappings() ) {
+                    prefetchJoinedRows( mapping, uncachedRows, colToRsIdx );
+                }
+            }
+            for ( int i = 0; i < rows.size(); i++ ) {
+                if ( cachedFeatures[i] != null ) {
+                    LOG.debug( "Cache hit." );
+                    features.add( cachedFeatures[i] );
+                } else {
+                    features.add( buildFeature( rows.get( i ) ) );
+                }
+            }
+        } finally {
+            joinedRows = null;
+        }
+        return features;
+    }
+
+    private void prefetchJoinedRows( Mapping mapping, List<ResultSet> parentRows,
+                                     LinkedHashMap<String, Integer> parentColToRsIdx )
+                            throws SQLException {
+        if ( !( mapping instanceof FeatureMapping ) && mapping.getJoinedTable() != null ) {
+            Pair<LinkedHashMap<String, Integer>, Map<List<Object>, List<ResultSet>>> p = getJoinedRows( mapping.getJoinedTable().get( 0 ),
+                                                                                                      mapping,
+                                                                                                      parentRows,
+                                                                                                      parentColToRsIdx );
+            joinedRows.put( mapping, p );
+            if ( mapping instanceof CompoundMapping ) {
+                List<ResultSet> childRows = new ArrayList<ResultSet>();
+                for ( List<ResultSet> rows : p.second.values() ) {
+                    childRows.addAll( rows );
+                }
+                if ( !childRows.isEmpty() ) {
+                    for ( Mapping particle : ( (CompoundMapping) mapping ).getParticles() ) {
+                        prefetchJoinedRows( particle, childRows, p.first );
+                    }
+                }
+            }
+        } else if ( mapping instanceof CompoundMapping ) {
+            for ( Mapping particle : ( (CompoundMapping) mapping ).getParticles() ) {
+                prefetchJoinedRows( particle, parentRows, parentColToRsIdx );
+            }
+        }
+    }
+
     private String toIdPrefix( ValueReference propName ) {
         String s = propName.getAsText();
         s = s.replace( "/", "_" );
@@ -322,6 +468,23 @@ public class FeatureBuilderRelational implements FeatureBuilder {
                                                   LinkedHashMap<String, Integer> colToRsIdx, String idPrefix )
                                                                           throws SQLException {
 
+        if ( !( mapping instanceof FeatureMapping ) && mapping.getJoinedTable() != null && joinedRows != null
+             && joinedRows.containsKey( mapping ) ) {
+            Pair<LinkedHashMap<String, Integer>, Map<List<Object>, List<ResultSet>>> p = joinedRows.get( mapping );
+            List<TypedObjectNode> values = new ArrayList<TypedObjectNode>();
+            List<Object> key = getKey( rs, mapping.getJoinedTable().get( 0 ).getFromColumns(), colToRsIdx );
+            List<ResultSet> rows = key != null ? p.second.get( normalizeKey( key ) ) : null;
+            if ( rows != null ) {
+                int i = 0;
+                for ( ResultSet row : rows ) {
+                    TypedObjectNode particle = buildParticle( mapping, row, p.first, idPrefix + "_" + ( i++ ) );
+                    if ( particle != null ) {
+                        values.add( particle );
+                    }
+                }
+            }
+            return values;
+        }
         if ( !( mapping instanceof FeatureMapping ) && mapping.getJoinedTable() != null ) {
             List<TypedObjectNode> values = new ArrayList<TypedObjectNode>();
             ResultSet rs2 = null;
@@ -372,7 +535,7 @@ public class FeatureBuilderRelational implements FeatureBuilder {
             GeometryMapping pm = (GeometryMapping) mapping;
             MappingExpression me = pm.getMapping();
             if ( me instanceof DBField ) {
-                String col = converter.getSelectSnippet( tableAlias );
+                String col = getGeometrySelectSnippet( converter );
                 int colIndex = colToRsIdx.get( col );
                 particle = converter.toParticle( rs, colIndex );
                 Geometry geom = ( (Geometry) particle );
@@ -685,6 +848,173 @@ public class FeatureBuilderRelational implements FeatureBuilder {
         return new Pair<ResultSet, LinkedHashMap<String, Integer>>( rs2, rsToIdx );
     }
 
+    private Pair<LinkedHashMap<String, Integer>, Map<List<Object>, List<ResultSet>>> getJoinedRows( TableJoin jc,
+                                                                                                 Mapping mapping,
+                                                                                                 List<ResultSet> parentRows,
+                                                                                                 LinkedHashMap<String, Integer> parentColToRsIdx )
+                            throws SQLException {
+
+        LinkedHashMap<String, Integer> rsToIdx = getSubsequentSelectColumns( mapping );
+        List<Integer> keyIdx = new ArrayList<Integer>();
+        for ( SQLIdentifier keyColumn : jc.getToColumns() ) {
+            String column = tableAlias + "." + keyColumn;
+            addColumn( rsToIdx, column );
+            keyIdx.add( rsToIdx.get( column ) );
+        }
+
+        // distinct (non-null) keys of the parent rows
+        Map<List<Object>, List<Object>> keys = new LinkedHashMap<List<Object>, List<Object>>();
+        for ( ResultSet parentRow : parentRows ) {
+            List<Object> key = getKey( parentRow, jc.getFromColumns(), parentColToRsIdx );
+            if ( key != null ) {
+                List<Object> normalized = normalizeKey( key );
+                if ( !keys.containsKey( normalized ) ) {
+                    keys.put( normalized, key );
+                }
+            }
+        }
+
+        Map<List<Object>, List<ResultSet>> keyToRows = new HashMap<List<Object>, List<ResultSet>>();
+        List<List<Object>> keyList = new ArrayList<List<Object>>( keys.values() );
+        for ( int from = 0; from < keyList.size(); from += MAX_KEYS_PER_SELECT ) {
+            List<List<Object>> chunk = keyList.subList( from, Math.min( from + MAX_KEYS_PER_SELECT, keyList.size() ) );
+            String sql = getJoinedSelect( jc, rsToIdx, chunk.size() );
+            LOG.debug( "SQL: {}", sql );
+            PreparedStatement stmt = null;
+            ResultSet rs2 = null;
+            try {
+                long begin = System.currentTimeMillis();
+                stmt = conn.prepareStatement( sql );
+                int i = 1;
+                for ( List<Object> key : chunk ) {
+                    for ( Object value : key ) {
+                        stmt.setObject( i++, value );
+                    }
+                }
+                rs2 = stmt.executeQuery();
+                while ( rs2.next() ) {
+                    List<Object> key = new ArrayList<Object>( keyIdx.size() );
+                    for ( int idx : keyIdx ) {
+                        key.add( rs2.getObject( idx ) );
+                    }
+                    List<Object> normalized = normalizeKey( key );
+                    List<ResultSet> rows = keyToRows.get( normalized );
+                    if ( rows == null ) {
+                        rows = new ArrayList<ResultSet>();
+                        keyToRows.put( normalized, rows );
+                    }
+                    rows.add( DetachedRow.detach( rs2, rsToIdx.size() ) );
+                }
+                LOG.debug( "Fetching joined rows for {} keys took {} [ms]", chunk.size(), System.currentTimeMillis()
+                                                                                          - begin );
+            } catch ( Throwable t ) {
+                String msg = "Error performing subsequent SELECT: " + t.getMessage();
+                LOG.error( msg, t );
+                throw new SQLException( msg, t );
+            } finally {
+                close( rs2, stmt, null, LOG );
+            }
+        }
+        return new Pair<LinkedHashMap<String, Integer>, Map<List<Object>, List<ResultSet>>>( rsToIdx, keyToRows );
+    }
+
+    private String getJoinedSelect( TableJoin jc, LinkedHashMap<String, Integer> rsToIdx, int numKeys ) {
+        StringBuilder sql = new StringBuilder( "SELECT " );
+        boolean first = true;
+        for ( String column : rsToIdx.keySet() ) {
+            if ( !first ) {
+                sql.append( ',' );
+            }
+            sql.append( column );
+            first = false;
+        }
+        sql.append( " FROM " );
+        sql.append( jc.getToTable() );
+        sql.append( ' ' );
+        sql.append( tableAlias );
+        sql.append( " WHERE " );
+        List<SQLIdentifier> keyColumns = jc.getToColumns();
+        if ( keyColumns.size() == 1 ) {
+            sql.append( keyColumns.get( 0 ) );
+            sql.append( " IN (" );
+            for ( int i = 0; i < numKeys; i++ ) {
+                if ( i > 0 ) {
+                    sql.append( ',' );
+                }
+                sql.append( '?' );
+            }
+            sql.append( ')' );
+        } else {
+            for ( int i = 0; i < numKeys; i++ ) {
+                if ( i > 0 ) {
+                    sql.append( " OR " );
+                }
+                sql.append( '(' );
+                first = true;
+                for ( SQLIdentifier keyColumn : keyColumns ) {
+                    if ( !first ) {
+                        sql.append( " AND " );
+                    }
+                    sql.append( keyColumn );
+                    sql.append( " = ?" );
+                    first = false;
+                }
+                sql.append( ')' );
+            }
+        }
+        if ( jc.getOrderColumns() != null && !jc.getOrderColumns().isEmpty() ) {
+            sql.append( " ORDER BY " );
+            first = true;
+            for ( SQLIdentifier orderColumn : jc.getOrderColumns() ) {
+                if ( !first ) {
+                    sql.append( "," );
+                }
+                if ( orderColumn.toString().endsWith( "-" ) ) {
+                    sql.append( orderColumn.toString().substring( 0, orderColumn.toString().length() - 1 ) );
+                    sql.append( " DESC" );
+                } else {
+                    sql.append( orderColumn );
+                }
+                first = false;
+            }
+        }
+        return sql.toString();
+    }
+
+    private List<Object> getKey( ResultSet rs, List<SQLIdentifier> keyColumns, LinkedHashMap<String, Integer> colToRsIdx )
+                            throws SQLException {
+        List<Object> key = new ArrayList<Object>( keyColumns.size() );
+        for ( SQLIdentifier keyColumn : keyColumns ) {
+            Object value = rs.getObject( colToRsIdx.get( tableAlias + "." + keyColumn ) );
+            if ( value == null ) {
+                // "column = NULL" never matches
+                return null;
+            }
+            key.add( value );
+        }
+        return key;
+    }
+
+    /**
+     * Returns a representation of the given key values that can be compared across different JDBC types (e.g. an
+     * INTEGER foreign key column referencing a BIGINT primary key column).
+     */
+    static List<Object> normalizeKey( List<Object> key ) {
+        List<Object> normalized = new ArrayList<Object>( key.size() );
+        for ( Object value : key ) {
+            if ( value instanceof Number ) {
+                try {
+                    BigDecimal d = new BigDecimal( value.toString() );
+                    value = d.signum() == 0 ? "0" : d.stripTrailingZeros().toPlainString();
+                } catch ( NumberFormatException e ) {
+                    value = value.toString();
+                }
+            }
+            normalized.add( value );
+        }
+        return normalized;
+    }
+
     private QName getChildElementStepAsQName( ValueReference ref ) {
         QName qName = null;
         Expr xpath = ref.getAsXPath();
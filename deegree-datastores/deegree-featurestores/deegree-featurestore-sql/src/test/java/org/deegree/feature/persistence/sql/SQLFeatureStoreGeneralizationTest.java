@@ -0,0 +1,194 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.sql;
+
+import static org.deegree.commons.tom.primitive.BaseType.INTEGER;
+import static org.deegree.feature.types.property.GeometryPropertyType.CoordinateDimension.DIM_2;
+import static org.deegree.feature.types.property.GeometryPropertyType.GeometryType.GEOMETRY;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.namespace.QName;
+
+import org.deegree.commons.jdbc.SQLIdentifier;
+import org.deegree.commons.jdbc.TableName;
+import org.deegree.commons.tom.primitive.BaseType;
+import org.deegree.commons.utils.Pair;
+import org.deegree.feature.Feature;
+import org.deegree.feature.persistence.cache.FeatureStoreCache;
+import org.deegree.feature.persistence.query.Query;
+import org.deegree.feature.persistence.sql.id.AutoIDGenerator;
+import org.deegree.feature.persistence.sql.id.FIDMapping;
+import org.deegree.feature.persistence.sql.jaxb.SQLFeatureStoreJAXB;
+import org.deegree.feature.persistence.sql.jaxb.SQLFeatureStoreJAXB.FeatureCache;
+import org.deegree.feature.persistence.sql.jaxb.SQLFeatureStoreJAXB.JDBCConnId;
+import org.deegree.feature.persistence.sql.rules.GeometryMapping;
+import org.deegree.feature.persistence.sql.rules.Mapping;
+import org.deegree.filter.expression.ValueReference;
+import org.deegree.protocol.wfs.getfeature.TypeName;
+import org.deegree.sqldialect.SQLDialect;
+import org.deegree.sqldialect.filter.DBField;
+import org.junit.Test;
+
+/**
+ * Tests for the generalization of geometries by {@link SQLFeatureStore} (tolerance and per-level caching).
+ * 
+ * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class SQLFeatureStoreGeneralizationTest {
+
+    private static final String APP_NS = "http://www.example.org/app";
+
+    private static final QName FT_NAME = new QName( APP_NS, "Road", "app" );
+
+    private static final QName GEOM = new QName( APP_NS, "geom", "app" );
+
+    @Test
+    public void testToleranceFromResolution() {
+        SQLFeatureStore fs = createStore( false );
+        FeatureTypeMapping ftMapping = createMapping( true );
+        fs.ftNameToGeneralizationTolerance.put( FT_NAME, 2.0 );
+        // snapped to the next smaller power of two
+        assertEquals( 8.0, fs.getGeneralizationTolerance( createQuery( 5.0 ), ftMapping ), 0.0 );
+        assertEquals( 4.0, fs.getGeneralizationTolerance( createQuery( 3.0 ), ftMapping ), 0.0 );
+        assertEquals( 16.0, fs.getGeneralizationTolerance( createQuery( 12.0 ), ftMapping ), 0.0 );
+        assertEquals( 0.125, fs.getGeneralizationTolerance( createQuery( 0.1 ), ftMapping ), 0.0 );
+    }
+
+    @Test
+    public void testNoToleranceWithoutResolution() {
+        SQLFeatureStore fs = createStore( false );
+        FeatureTypeMapping ftMapping = createMapping( true );
+        fs.ftNameToGeneralizationTolerance.put( FT_NAME, 2.0 );
+        assertEquals( -1.0, fs.getGeneralizationTolerance( createQuery( -1 ), ftMapping ), 0.0 );
+    }
+
+    @Test
+    public void testNoToleranceForNonMapQuery() {
+        SQLFeatureStore fs = createStore( false );
+        FeatureTypeMapping ftMapping = createMapping( true );
+        fs.ftNameToGeneralizationTolerance.put( FT_NAME, 2.0 );
+        Query query = new Query( new TypeName[] { new TypeName( FT_NAME, null ) }, null, null, null, null );
+        assertEquals( -1.0, fs.getGeneralizationTolerance( query, ftMapping ), 0.0 );
+    }
+
+    @Test
+    public void testNoToleranceIfNotConfigured() {
+        SQLFeatureStore fs = createStore( false );
+        assertEquals( -1.0, fs.getGeneralizationTolerance( createQuery( 5.0 ), createMapping( true ) ), 0.0 );
+    }
+
+    @Test
+    public void testNoToleranceWithoutGeometry() {
+        SQLFeatureStore fs = createStore( false );
+        fs.ftNameToGeneralizationTolerance.put( FT_NAME, 2.0 );
+        assertEquals( -1.0, fs.getGeneralizationTolerance( createQuery( 5.0 ), createMapping( false ) ), 0.0 );
+    }
+
+    @Test
+    public void testCachesSeparatePerLevel() {
+        SQLFeatureStore fs = createStore( true );
+        FeatureStoreCache level3 = fs.getGeneralizedCache( 8.0 );
+        FeatureStoreCache level4 = fs.getGeneralizedCache( 16.0 );
+        Feature feature = mock( Feature.class );
+        when( feature.getId() ).thenReturn( "ROAD_1" );
+        level3.add( feature );
+
+        assertSame( feature, fs.getGeneralizedCache( 8.0 ).get( "ROAD_1" ) );
+        assertNull( level4.get( "ROAD_1" ) );
+        assertNull( fs.getQueryCache().get( "ROAD_1" ) );
+        assertNull( fs.getCache().get( "ROAD_1" ) );
+    }
+
+    @Test
+    public void testEvictedFromAllLevels() {
+        SQLFeatureStore fs = createStore( true );
+        Feature feature = mock( Feature.class );
+        when( feature.getId() ).thenReturn( "ROAD_1" );
+        fs.getQueryCache().add( feature );
+        fs.getGeneralizedCache( 8.0 ).add( feature );
+        fs.getGeneralizedCache( 16.0 ).add( feature );
+        assertNotNull( fs.getGeneralizedCache( 16.0 ).get( "ROAD_1" ) );
+
+        fs.evictFromCaches( "ROAD_1" );
+        assertNull( fs.getQueryCache().get( "ROAD_1" ) );
+        assertNull( fs.getGeneralizedCache( 8.0 ).get( "ROAD_1" ) );
+        assertNull( fs.getGeneralizedCache( 16.0 ).get( "ROAD_1" ) );
+    }
+
+    @Test
+    public void testNoGeneralizedCacheWithoutFeatureCache() {
+        assertNull( createStore( false ).getGeneralizedCache( 8.0 ) );
+    }
+
+    private static SQLFeatureStore createStore( boolean featureCache ) {
+        SQLFeatureStoreJAXB config = new SQLFeatureStoreJAXB();
+        JDBCConnId connId = new JDBCConnId();
+        connId.setValue( "test" );
+        config.setJDBCConnId( connId );
+        if ( featureCache ) {
+            config.setFeatureCache( new FeatureCache() );
+        }
+        return new SQLFeatureStore( config, null, mock( SQLDialect.class ), null, null );
+    }
+
+    private static Query createQuery( double resolution ) {
+        return new Query( FT_NAME, null, -1, -1, resolution );
+    }
+
+    private static FeatureTypeMapping createMapping( boolean withGeometry ) {
+        List<Pair<SQLIdentifier, BaseType>> fidColumns = new ArrayList<Pair<SQLIdentifier, BaseType>>();
+        fidColumns.add( new Pair<SQLIdentifier, BaseType>( new SQLIdentifier( "id" ), INTEGER ) );
+        FIDMapping fidMapping = new FIDMapping( "ROAD_", "_", fidColumns, new AutoIDGenerator() );
+        List<Mapping> mappings = new ArrayList<Mapping>();
+        if ( withGeometry ) {
+            GeometryStorageParams params = new GeometryStorageParams( null, "-1", DIM_2 );
+            mappings.add( new GeometryMapping( new ValueReference( GEOM ), true, new DBField( "geom" ), GEOMETRY,
+                                               params, null ) );
+        }
+        return new FeatureTypeMapping( FT_NAME, new TableName( "road" ), fidMapping, mappings );
+    }
+}
@@ -0,0 +1,221 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.sql;
+
+import static org.deegree.commons.tom.primitive.BaseType.STRING;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+
+import org.deegree.commons.tom.primitive.PrimitiveType;
+import org.deegree.commons.tom.primitive.PrimitiveValue;
+import org.deegree.commons.tom.sql.DefaultPrimitiveConverter;
+import org.deegree.feature.persistence.sql.jaxb.SQLFeatureStoreJAXB;
+import org.deegree.feature.persistence.sql.jaxb.SQLFeatureStoreJAXB.HitsCounting;
+import org.deegree.feature.persistence.sql.jaxb.SQLFeatureStoreJAXB.JDBCConnId;
+import org.deegree.sqldialect.SQLDialect;
+import org.deegree.sqldialect.filter.expression.SQLArgument;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ * Tests for the caching of the number of hits in {@link SQLFeatureStore}.
+ * 
+ * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class SQLFeatureStoreHitsCacheTest {
+
+    private static final List<SQLArgument> NO_ARGS = Collections.emptyList();
+
+    private SQLFeatureStore fs;
+
+    private Connection conn;
+
+    // number of hits returned by the database
+    private int count;
+
+    private int executions;
+
+    // if set, invoked while the COUNT statement is executed
+    private Runnable duringExecution;
+
+    @Before
+    public void setUp()
+                            throws SQLException {
+        fs = createStore( true );
+        conn = mock( Connection.class );
+        when( conn.prepareStatement( anyString() ) ).thenAnswer( new Answer<PreparedStatement>() {
+            @Override
+            public PreparedStatement answer( InvocationOnMock invocation )
+                                    throws SQLException {
+                return createCountStatement();
+            }
+        } );
+    }
+
+    @Test
+    public void testHitsCached()
+                            throws SQLException {
+        count = 5;
+        assertEquals( 5, fs.countHits( conn, "SELECT COUNT(*) FROM a", NO_ARGS ) );
+        count = 7;
+        assertEquals( 5, fs.countHits( conn, "SELECT COUNT(*) FROM a", NO_ARGS ) );
+        assertEquals( 1, executions );
+        assertEquals( 7, fs.countHits( conn, "SELECT COUNT(*) FROM b", NO_ARGS ) );
+        assertEquals( 2, executions );
+    }
+
+    @Test
+    public void testArgumentsPartOfKey()
+                            throws SQLException {
+        String sql = "SELECT COUNT(*) FROM a WHERE name=?";
+        count = 1;
+        assertEquals( 1, fs.countHits( conn, sql, args( "x" ) ) );
+        count = 2;
+        assertEquals( 2, fs.countHits( conn, sql, args( "y" ) ) );
+        assertEquals( 1, fs.countHits( conn, sql, args( "x" ) ) );
+        assertEquals( 2, executions );
+    }
+
+    @Test
+    public void testClearedAfterCommit()
+                            throws SQLException {
+        count = 5;
+        fs.countHits( conn, "SELECT COUNT(*) FROM a", NO_ARGS );
+        fs.clearHitsCache();
+        count = 6;
+        assertEquals( 6, fs.countHits( conn, "SELECT COUNT(*) FROM a", NO_ARGS ) );
+        assertEquals( 2, executions );
+    }
+
+    @Test
+    public void testNotCachedIfCommittedDuringCount()
+                            throws SQLException {
+        count = 5;
+        duringExecution = new Runnable() {
+            @Override
+            public void run() {
+                fs.clearHitsCache();
+                duringExecution = null;
+            }
+        };
+        assertEquals( 5, fs.countHits( conn, "SELECT COUNT(*) FROM a", NO_ARGS ) );
+        count = 6;
+        assertEquals( 6, fs.countHits( conn, "SELECT COUNT(*) FROM a", NO_ARGS ) );
+        assertEquals( 6, fs.countHits( conn, "SELECT COUNT(*) FROM a", NO_ARGS ) );
+        assertEquals( 2, executions );
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEvicted()
+                            throws SQLException {
+        for ( int i = 0; i < SQLFeatureStore.MAX_CACHED_HITS; i++ ) {
+            fs.countHits( conn, "SELECT COUNT(*) FROM t" + i, NO_ARGS );
+        }
+        // t0 becomes the most recently used entry
+        fs.countHits( conn, "SELECT COUNT(*) FROM t0", NO_ARGS );
+        assertEquals( SQLFeatureStore.MAX_CACHED_HITS, executions );
+
+        // evicts t1
+        fs.countHits( conn, "SELECT COUNT(*) FROM new", NO_ARGS );
+        fs.countHits( conn, "SELECT COUNT(*) FROM t0", NO_ARGS );
+        assertEquals( SQLFeatureStore.MAX_CACHED_HITS + 1, executions );
+        fs.countHits( conn, "SELECT COUNT(*) FROM t1", NO_ARGS );
+        assertEquals( SQLFeatureStore.MAX_CACHED_HITS + 2, executions );
+    }
+
+    @Test
+    public void testNoCachingIfDisabled()
+                            throws SQLException {
+        fs = createStore( false );
+        count = 5;
+        fs.countHits( conn, "SELECT COUNT(*) FROM a", NO_ARGS );
+        count = 6;
+        assertEquals( 6, fs.countHits( conn, "SELECT COUNT(*) FROM a", NO_ARGS ) );
+        assertEquals( 2, executions );
+    }
+
+    private static SQLFeatureStore createStore( boolean cacheHits ) {
+        SQLFeatureStoreJAXB config = new SQLFeatureStoreJAXB();
+        JDBCConnId connId = new JDBCConnId();
+        connId.setValue( "test" );
+        config.setJDBCConnId( connId );
+        HitsCounting hitsCounting = new HitsCounting();
+        hitsCounting.setCache( cacheHits );
+        config.setHitsCounting( hitsCounting );
+        SQLDialect dialect = mock( SQLDialect.class );
+        return new SQLFeatureStore( config, null, dialect, null, null );
+    }
+
+    private static List<SQLArgument> args( String value ) {
+        PrimitiveType pt = new PrimitiveType( STRING );
+        DefaultPrimitiveConverter converter = new DefaultPrimitiveConverter( pt, "name" );
+        return Collections.singletonList( new SQLArgument( new PrimitiveValue( value, pt ), converter ) );
+    }
+
+    private PreparedStatement createCountStatement()
+                            throws SQLException {
+        PreparedStatement stmt = mock( PreparedStatement.class );
+        when( stmt.executeQuery() ).thenAnswer( new Answer<ResultSet>() {
+            @Override
+            public ResultSet answer( InvocationOnMock invocation )
+                                    throws SQLException {
+                executions++;
+                if ( duringExecution != null ) {
+                    duringExecution.run();
+                }
+                ResultSet rs = mock( ResultSet.class );
+                when( rs.next() ).thenReturn( true );
+                when( rs.getInt( 1 ) ).thenReturn( count );
+                return rs;
+            }
+        } );
+        return stmt;
+    }
+}
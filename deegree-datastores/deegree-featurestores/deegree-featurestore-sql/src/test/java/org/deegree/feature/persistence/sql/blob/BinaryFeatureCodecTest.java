@@ -0,0 +1,285 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.sql.blob;
+
+import static org.deegree.commons.tom.primitive.BaseType.BOOLEAN;
+import static org.deegree.commons.tom.primitive.BaseType.DECIMAL;
+import static org.deegree.commons.tom.primitive.BaseType.DOUBLE;
+import static org.deegree.commons.tom.primitive.BaseType.INTEGER;
+import static org.deegree.commons.tom.primitive.BaseType.STRING;
+import static org.deegree.feature.types.property.GeometryPropertyType.CoordinateDimension.DIM_2;
+import static org.deegree.feature.types.property.GeometryPropertyType.GeometryType.GEOMETRY;
+import static org.deegree.feature.types.property.ValueRepresentation.BOTH;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.namespace.QName;
+
+import org.deegree.commons.tom.genericxml.GenericXMLElement;
+import org.deegree.commons.tom.gml.property.Property;
+import org.deegree.commons.tom.gml.property.PropertyType;
+import org.deegree.commons.tom.primitive.PrimitiveType;
+import org.deegree.commons.tom.primitive.PrimitiveValue;
+import org.deegree.feature.Feature;
+import org.deegree.feature.property.GenericProperty;
+import org.deegree.feature.property.SimpleProperty;
+import org.deegree.feature.types.AppSchema;
+import org.deegree.feature.types.FeatureType;
+import org.deegree.feature.types.GenericAppSchema;
+import org.deegree.feature.types.GenericFeatureType;
+import org.deegree.feature.types.property.GeometryPropertyType;
+import org.deegree.feature.types.property.SimplePropertyType;
+import org.deegree.geometry.GeometryFactory;
+import org.deegree.geometry.primitive.Point;
+import org.junit.Test;
+
+/**
+ * Tests for {@link BinaryFeatureCodec}.
+ * 
+ * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class BinaryFeatureCodecTest {
+
+    private static final String APP_NS = "http://www.example.org/app";
+
+    private static final QName FT_NAME = new QName( APP_NS, "Road", "app" );
+
+    private static final QName NAME = new QName( APP_NS, "name", "app" );
+
+    private static final QName LANES = new QName( APP_NS, "lanes", "app" );
+
+    private static final QName WIDTH = new QName( APP_NS, "width", "app" );
+
+    private static final QName LENGTH = new QName( APP_NS, "length", "app" );
+
+    private static final QName OPEN = new QName( APP_NS, "open", "app" );
+
+    private static final QName GEOM = new QName( APP_NS, "geometry", "app" );
+
+    private final BinaryFeatureCodec codec = new BinaryFeatureCodec();
+
+    @Test
+    public void testRoundTrip()
+                            throws Exception {
+        FeatureType ft = createSchema( createDefaultDeclarations() ).getFeatureType( FT_NAME );
+        List<Property> props = new ArrayList<Property>();
+        props.add( simple( ft, NAME, new PrimitiveValue( "Main Street" ) ) );
+        props.add( simple( ft, LANES, new PrimitiveValue( BigInteger.valueOf( 4 ), new PrimitiveType( INTEGER ) ) ) );
+        props.add( simple( ft, WIDTH, new PrimitiveValue( new BigDecimal( "7.50" ), new PrimitiveType( DECIMAL ) ) ) );
+        props.add( simple( ft, LENGTH, new PrimitiveValue( 1234.5, new PrimitiveType( DOUBLE ) ) ) );
+        props.add( simple( ft, OPEN, new PrimitiveValue( Boolean.TRUE, new PrimitiveType( BOOLEAN ) ) ) );
+        Point point = new GeometryFactory().createPoint( "p1", 7.1, 50.7, null );
+        props.add( new GenericProperty( ft.getPropertyDeclaration( GEOM ), point ) );
+        Feature feature = ft.newFeature( "ROAD_1", props, null );
+
+        Feature decoded = decode( encode( feature ), ft.getSchema() );
+
+        assertEquals( "ROAD_1", decoded.getId() );
+        assertEquals( FT_NAME, decoded.getName() );
+        assertEquals( props.size(), decoded.getProperties().size() );
+        assertEquals( "Main Street", getPrimitive( decoded, NAME ).getAsText() );
+        assertEquals( BigInteger.valueOf( 4 ), getPrimitive( decoded, LANES ).getValue() );
+        assertEquals( new BigDecimal( "7.50" ), getPrimitive( decoded, WIDTH ).getValue() );
+        assertEquals( "7.50", getPrimitive( decoded, WIDTH ).getAsText() );
+        assertEquals( 1234.5, getPrimitive( decoded, LENGTH ).getValue() );
+        assertEquals( Boolean.TRUE, getPrimitive( decoded, OPEN ).getValue() );
+        Point decodedPoint = (Point) decoded.getProperties( GEOM ).get( 0 ).getValue();
+        assertEquals( "p1", decodedPoint.getId() );
+        assertArrayEquals( new double[] { 7.1, 50.7 }, decodedPoint.getAsArray(), 0.0 );
+    }
+
+    @Test
+    public void testNullValue()
+                            throws Exception {
+        FeatureType ft = createSchema( createDefaultDeclarations() ).getFeatureType( FT_NAME );
+        List<Property> props = new ArrayList<Property>();
+        props.add( new SimpleProperty( (SimplePropertyType) ft.getPropertyDeclaration( NAME ), (PrimitiveValue) null ) );
+        Feature decoded = decode( encode( ft.newFeature( "ROAD_1", props, null ) ), ft.getSchema() );
+        assertNull( decoded.getProperties( NAME ).get( 0 ).getValue() );
+    }
+
+    @Test
+    public void testReorderedDeclarations()
+                            throws Exception {
+        // same number of declarations, but different order
+        List<PropertyType> decls = createDefaultDeclarations();
+        FeatureType ft = createSchema( decls ).getFeatureType( FT_NAME );
+        byte[] blob = encode( createFeature( ft ) );
+
+        List<PropertyType> reordered = createDefaultDeclarations();
+        reordered.add( 0, reordered.remove( 1 ) );
+        assertDecodingFails( blob, createSchema( reordered ) );
+    }
+
+    @Test
+    public void testChangedPropertyType()
+                            throws Exception {
+        FeatureType ft = createSchema( createDefaultDeclarations() ).getFeatureType( FT_NAME );
+        byte[] blob = encode( createFeature( ft ) );
+
+        List<PropertyType> changed = createDefaultDeclarations();
+        changed.set( 1, new SimplePropertyType( LANES, 0, 1, STRING, null, null ) );
+        assertDecodingFails( blob, createSchema( changed ) );
+    }
+
+    @Test
+    public void testAddedDeclaration()
+                            throws Exception {
+        FeatureType ft = createSchema( createDefaultDeclarations() ).getFeatureType( FT_NAME );
+        byte[] blob = encode( createFeature( ft ) );
+
+        List<PropertyType> extended = createDefaultDeclarations();
+        extended.add( new SimplePropertyType( new QName( APP_NS, "owner", "app" ), 0, 1, STRING, null, null ) );
+        assertDecodingFails( blob, createSchema( extended ) );
+    }
+
+    @Test
+    public void testUnchangedSchemaInstance()
+                            throws Exception {
+        // fingerprint only depends on the declarations, not on the schema instance
+        FeatureType ft = createSchema( createDefaultDeclarations() ).getFeatureType( FT_NAME );
+        byte[] blob = encode( createFeature( ft ) );
+        Feature decoded = decode( blob, createSchema( createDefaultDeclarations() ) );
+        assertEquals( "Main Street", getPrimitive( decoded, NAME ).getAsText() );
+    }
+
+    @Test
+    public void testUnsupportedContent()
+                            throws Exception {
+        FeatureType ft = createSchema( createDefaultDeclarations() ).getFeatureType( FT_NAME );
+        List<Property> props = new ArrayList<Property>();
+        GenericXMLElement xml = new GenericXMLElement( new QName( APP_NS, "any" ), null, null, null );
+        props.add( new GenericProperty( ft.getPropertyDeclaration( GEOM ), xml ) );
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        assertFalse( codec.encode( ft.newFeature( "ROAD_1", props, null ), bos, null ) );
+        assertEquals( 0, bos.size() );
+    }
+
+    @Test
+    public void testUsesStablePrimitiveTypeCodes()
+                            throws Exception {
+        FeatureType ft = createSchema( createDefaultDeclarations() ).getFeatureType( FT_NAME );
+        List<Property> props = new ArrayList<Property>();
+        props.add( simple( ft, NAME, new PrimitiveValue( "x" ) ) );
+        byte[] blob = encode( ft.newFeature( null, props, null ) );
+        assertTrue( BinaryFeatureCodec.isBinary( blob ) );
+        // magic, version, feature type name, id, fingerprint, number of properties, index, flags, value kind
+        int typeCodePos = BinaryFeatureCodec.MAGIC.length + 1 + 1 + 1 + APP_NS.length() + 1 + "Road".length() + 1
+                          + "app".length() + 1 + 8 + 1 + 1 + 1 + 1;
+        // code of STRING, independent of BaseType#ordinal()
+        assertEquals( 1, blob[typeCodePos] );
+        assertEquals( 'x', blob[blob.length - 1] );
+    }
+
+    @Test
+    public void testOtherVersionsRejected()
+                            throws Exception {
+        AppSchema schema = createSchema( createDefaultDeclarations() );
+        byte[] blob = encode( createFeature( schema.getFeatureType( FT_NAME ) ) );
+        int version = blob[BinaryFeatureCodec.MAGIC.length];
+        blob[BinaryFeatureCodec.MAGIC.length] = (byte) ( version - 1 );
+        assertDecodingFails( blob, schema );
+        blob[BinaryFeatureCodec.MAGIC.length] = (byte) ( version + 1 );
+        assertDecodingFails( blob, schema );
+    }
+
+    private static List<PropertyType> createDefaultDeclarations() {
+        List<PropertyType> decls = new ArrayList<PropertyType>();
+        decls.add( new SimplePropertyType( NAME, 0, 1, STRING, null, null ) );
+        decls.add( new SimplePropertyType( LANES, 0, 1, INTEGER, null, null ) );
+        decls.add( new SimplePropertyType( WIDTH, 0, 1, DECIMAL, null, null ) );
+        decls.add( new SimplePropertyType( LENGTH, 0, 1, DOUBLE, null, null ) );
+        decls.add( new SimplePropertyType( OPEN, 0, 1, BOOLEAN, null, null ) );
+        decls.add( new GeometryPropertyType( GEOM, 0, 1, null, null, GEOMETRY, DIM_2, BOTH ) );
+        return decls;
+    }
+
+    private static AppSchema createSchema( List<PropertyType> decls ) {
+        FeatureType ft = new GenericFeatureType( FT_NAME, decls, false );
+        return new GenericAppSchema( new FeatureType[] { ft }, null, null, null, null, null );
+    }
+
+    private static Feature createFeature( FeatureType ft ) {
+        List<Property> props = new ArrayList<Property>();
+        props.add( simple( ft, NAME, new PrimitiveValue( "Main Street" ) ) );
+        props.add( simple( ft, LANES, new PrimitiveValue( BigInteger.valueOf( 4 ), new PrimitiveType( INTEGER ) ) ) );
+        return ft.newFeature( "ROAD_1", props, null );
+    }
+
+    private static Property simple( FeatureType ft, QName name, PrimitiveValue value ) {
+        return new SimpleProperty( (SimplePropertyType) ft.getPropertyDeclaration( name ), value );
+    }
+
+    private static PrimitiveValue getPrimitive( Feature feature, QName propName ) {
+        return (PrimitiveValue) feature.getProperties( propName ).get( 0 ).getValue();
+    }
+
+    private byte[] encode( Feature feature )
+                            throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        assertTrue( codec.encode( feature, bos, null ) );
+        return bos.toByteArray();
+    }
+
+    private Feature decode( byte[] blob, AppSchema schema )
+                            throws IOException {
+        return codec.decode( new ByteArrayInputStream( blob ), schema, null, null );
+    }
+
+    private void assertDecodingFails( byte[] blob, AppSchema schema ) {
+        try {
+            decode( blob, schema );
+            fail( "Expected IOException." );
+        } catch ( IOException e ) {
+            // expected
+        }
+    }
+}
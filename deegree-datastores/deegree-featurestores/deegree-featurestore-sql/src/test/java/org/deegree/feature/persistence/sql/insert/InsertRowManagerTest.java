@@ -0,0 +1,487 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.sql.insert;
+
+import static org.deegree.commons.tom.primitive.BaseType.INTEGER;
+import static org.deegree.commons.tom.primitive.BaseType.STRING;
+import static org.deegree.protocol.wfs.transaction.action.IDGenMode.GENERATE_NEW;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyObject;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.namespace.QName;
+
+import org.deegree.commons.jdbc.SQLIdentifier;
+import org.deegree.commons.jdbc.TableName;
+import org.deegree.commons.tom.gml.property.Property;
+import org.deegree.commons.tom.gml.property.PropertyType;
+import org.deegree.commons.tom.primitive.BaseType;
+import org.deegree.commons.tom.primitive.PrimitiveType;
+import org.deegree.commons.tom.primitive.PrimitiveValue;
+import org.deegree.commons.tom.sql.DefaultPrimitiveConverter;
+import org.deegree.commons.utils.Pair;
+import org.deegree.feature.Feature;
+import org.deegree.feature.persistence.sql.FeatureTypeMapping;
+import org.deegree.feature.persistence.sql.MappedAppSchema;
+import org.deegree.feature.persistence.sql.SQLFeatureStore;
+import org.deegree.feature.persistence.sql.expressions.TableJoin;
+import org.deegree.feature.persistence.sql.id.AutoIDGenerator;
+import org.deegree.feature.persistence.sql.id.FIDMapping;
+import org.deegree.feature.persistence.sql.id.IDGenerator;
+import org.deegree.feature.persistence.sql.rules.Mapping;
+import org.deegree.feature.persistence.sql.rules.PrimitiveMapping;
+import org.deegree.feature.property.SimpleProperty;
+import org.deegree.feature.types.FeatureType;
+import org.deegree.feature.types.GenericFeatureType;
+import org.deegree.feature.types.property.SimplePropertyType;
+import org.deegree.filter.expression.ValueReference;
+import org.deegree.sqldialect.SQLDialect;
+import org.deegree.sqldialect.filter.DBField;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ * Tests for the JDBC batching of {@link InsertRowManager}.
+ * 
+ * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class InsertRowManagerTest {
+
+    private static final String APP_NS = "http://www.example.org/app";
+
+    private static final QName FT_NAME = new QName( APP_NS, "Road", "app" );
+
+    private static final QName NAME = new QName( APP_NS, "name", "app" );
+
+    private static final QName LANE = new QName( APP_NS, "lane", "app" );
+
+    private static final String ROAD_WITH_NAME = "INSERT INTO road(name,id) VALUES(?,?)";
+
+    private static final String ROAD_WITHOUT_NAME = "INSERT INTO road(id) VALUES(?)";
+
+    private static final String LANE_SQL = "INSERT INTO road_lane(lane,road_id) VALUES(?,?)";
+
+    private FeatureType ft;
+
+    private FeatureTypeMapping ftMapping;
+
+    private SQLDialect dialect;
+
+    private RecordingDatabase db;
+
+    private InsertRowManager mgr;
+
+    @Before
+    public void setUp() {
+        List<PropertyType> decls = new ArrayList<PropertyType>();
+        decls.add( new SimplePropertyType( NAME, 0, 1, STRING, null, null ) );
+        decls.add( new SimplePropertyType( LANE, 0, -1, STRING, null, null ) );
+        ft = new GenericFeatureType( FT_NAME, decls, false );
+
+        TableName roadTable = new TableName( "road" );
+        TableName laneTable = new TableName( "road_lane" );
+        List<Pair<SQLIdentifier, BaseType>> fidColumns = new ArrayList<Pair<SQLIdentifier, BaseType>>();
+        fidColumns.add( new Pair<SQLIdentifier, BaseType>( new SQLIdentifier( "id" ), INTEGER ) );
+        FIDMapping fidMapping = new FIDMapping( "ROAD_", "_", fidColumns, new AutoIDGenerator() );
+        List<Mapping> mappings = new ArrayList<Mapping>();
+        mappings.add( new PrimitiveMapping( new ValueReference( NAME ), true, new DBField( "name" ),
+                                            new PrimitiveType( STRING ), null, null ) );
+        TableJoin join = new TableJoin( roadTable, laneTable, Collections.singletonList( "id" ),
+                                        Collections.singletonList( "road_id" ), null, false,
+                                        new HashMap<SQLIdentifier, IDGenerator>() );
+        mappings.add( new PrimitiveMapping( new ValueReference( LANE ), true, new DBField( "lane" ),
+                                            new PrimitiveType( STRING ), Collections.singletonList( join ), null ) );
+        ftMapping = new FeatureTypeMapping( FT_NAME, roadTable, fidMapping, mappings );
+        MappedAppSchema schema = new MappedAppSchema( new FeatureType[] { ft }, null, null, null,
+                                                      new FeatureTypeMapping[] { ftMapping }, null, null, null, false,
+                                                      null, null, null );
+
+        dialect = mock( SQLDialect.class );
+        doAnswer( new Answer<String>() {
+            @Override
+            public String answer( InvocationOnMock invocation ) {
+                return "ALLOCATE " + invocation.getArguments()[2];
+            }
+        } ).when( dialect ).getSelectAutoColumnNextVals( any( TableName.class ), any( SQLIdentifier.class ), anyInt() );
+
+        SQLFeatureStore fs = mock( SQLFeatureStore.class );
+        when( fs.getDialect() ).thenReturn( dialect );
+        when( fs.getSchema() ).thenReturn( schema );
+        DefaultPrimitiveConverter converter = new DefaultPrimitiveConverter( new PrimitiveType( STRING ), "name" );
+        doReturn( converter ).when( fs ).getConverter( any( Mapping.class ) );
+
+        db = new RecordingDatabase();
+        mgr = new InsertRowManager( fs, db.conn, GENERATE_NEW );
+    }
+
+    @Test
+    public void testRowsGroupedBySql()
+                            throws Exception {
+        FeatureRow r1 = mgr.insertFeature( createRoad( "R1", "a", "x", "y" ), ftMapping );
+        FeatureRow r2 = mgr.insertFeature( createRoad( "R2", "b", "z" ), ftMapping );
+        FeatureRow r3 = mgr.insertFeature( createRoad( "R3", null ), ftMapping );
+        mgr.flush();
+
+        // keys of all root rows are allocated with a single statement
+        assertEquals( Collections.singletonList( "ALLOCATE 3" ), db.allocations );
+        assertEquals( 0, db.getExecutions( true ).size() );
+
+        Execution roadsWithName = db.getExecution( ROAD_WITH_NAME );
+        assertTrue( roadsWithName.batch );
+        assertEquals( 2, roadsWithName.rows.size() );
+        Execution roadsWithoutName = db.getExecution( ROAD_WITHOUT_NAME );
+        assertFalse( roadsWithoutName.batch );
+        assertEquals( 1, roadsWithoutName.rows.size() );
+        Execution lanes = db.getExecution( LANE_SQL );
+        assertTrue( lanes.batch );
+        assertEquals( 3, lanes.rows.size() );
+        assertEquals( 3, db.executions.size() );
+
+        assertEquals( "ROAD_" + roadsWithoutName.rows.get( 0 ).get( 1 ), r3.getNewId() );
+        assertNotNull( r1.getNewId() );
+        assertNotNull( r2.getNewId() );
+        assertEquals( 0, mgr.getDelayedRows() );
+    }
+
+    @Test
+    public void testParentKeysPropagatedAfterBatch()
+                            throws Exception {
+        FeatureRow r1 = mgr.insertFeature( createRoad( "R1", "a", "x", "y" ), ftMapping );
+        FeatureRow r2 = mgr.insertFeature( createRoad( "R2", "b", "z" ), ftMapping );
+        mgr.flush();
+
+        Map<String, Object> nameToId = new HashMap<String, Object>();
+        for ( Map<Integer, Object> road : db.getExecution( ROAD_WITH_NAME ).rows ) {
+            nameToId.put( (String) road.get( 1 ), road.get( 2 ) );
+        }
+        assertEquals( "ROAD_" + nameToId.get( "a" ), r1.getNewId() );
+        assertEquals( "ROAD_" + nameToId.get( "b" ), r2.getNewId() );
+
+        Map<String, Object> laneToRoadId = new HashMap<String, Object>();
+        for ( Map<Integer, Object> lane : db.getExecution( LANE_SQL ).rows ) {
+            laneToRoadId.put( (String) lane.get( 1 ), lane.get( 2 ) );
+        }
+        assertEquals( nameToId.get( "a" ), laneToRoadId.get( "x" ) );
+        assertEquals( nameToId.get( "a" ), laneToRoadId.get( "y" ) );
+        assertEquals( nameToId.get( "b" ), laneToRoadId.get( "z" ) );
+    }
+
+    @Test
+    public void testGeneratedKeysIfNotAllocatable()
+                            throws Exception {
+        doReturn( null ).when( dialect ).getSelectAutoColumnNextVals( any( TableName.class ),
+                                                                      any( SQLIdentifier.class ), anyInt() );
+
+        FeatureRow r1 = mgr.insertFeature( createRoad( "R1", "a", "x", "y" ), ftMapping );
+        mgr.flush();
+        FeatureRow r2 = mgr.insertFeature( createRoad( "R2", "b", "z" ), ftMapping );
+        mgr.flush();
+
+        // unallocatable column is remembered
+        verify( dialect, times( 1 ) ).getSelectAutoColumnNextVals( any( TableName.class ),
+                                                                   any( SQLIdentifier.class ), anyInt() );
+        List<Execution> roads = db.getExecutions( true );
+        assertEquals( 2, roads.size() );
+        assertEquals( "ROAD_" + roads.get( 0 ).generatedKey, r1.getNewId() );
+        assertEquals( "ROAD_" + roads.get( 1 ).generatedKey, r2.getNewId() );
+
+        List<Execution> lanes = db.getExecutions( LANE_SQL );
+        assertEquals( 2, lanes.size() );
+        assertTrue( lanes.get( 0 ).batch );
+        assertEquals( roads.get( 0 ).generatedKey, lanes.get( 0 ).rows.get( 0 ).get( 2 ) );
+        assertEquals( roads.get( 0 ).generatedKey, lanes.get( 0 ).rows.get( 1 ).get( 2 ) );
+        assertEquals( roads.get( 1 ).generatedKey, lanes.get( 1 ).rows.get( 0 ).get( 2 ) );
+    }
+
+    @Test
+    public void testRowsDelayedUntilFlush()
+                            throws Exception {
+        for ( int i = 0; i < 5; i++ ) {
+            mgr.insertFeature( createRoad( "R" + i, "road" + i, "lane" + i ), ftMapping );
+        }
+        assertTrue( db.executions.isEmpty() );
+        assertEquals( 10, mgr.getDelayedRows() );
+
+        mgr.flush();
+        assertEquals( 0, mgr.getDelayedRows() );
+        assertEquals( 5, db.getExecution( ROAD_WITH_NAME ).rows.size() );
+        assertEquals( 5, db.getExecution( LANE_SQL ).rows.size() );
+    }
+
+    @Test
+    public void testHeapProcessedAtMaxBatchSize()
+                            throws Exception {
+        int max = InsertRowManager.MAX_BATCH_SIZE;
+        for ( int i = 0; i < max - 1; i++ ) {
+            mgr.insertFeature( createRoad( "R" + i, "road" + i, "a" + i, "b" + i ), ftMapping );
+        }
+        assertTrue( db.executions.isEmpty() );
+
+        // the last root row triggers the insertion
+        mgr.insertFeature( createRoad( "R" + max, "road" + max, "a" + max, "b" + max ), ftMapping );
+        assertEquals( Collections.singletonList( "ALLOCATE " + max ), db.allocations );
+        List<Execution> roads = db.getExecutions( ROAD_WITH_NAME );
+        assertEquals( 1, roads.size() );
+        assertEquals( max, roads.get( 0 ).rows.size() );
+
+        // child rows of the same SQL are split into JDBC batches of the maximum size
+        List<Execution> lanes = db.getExecutions( LANE_SQL );
+        assertEquals( 2, lanes.size() );
+        assertEquals( max, lanes.get( 0 ).rows.size() );
+        assertEquals( max, lanes.get( 1 ).rows.size() );
+        assertEquals( 0, mgr.getDelayedRows() );
+
+        mgr.flush();
+        assertEquals( 3, db.executions.size() );
+    }
+
+    private Feature createRoad( String fid, String name, String... lanes ) {
+        List<Property> props = new ArrayList<Property>();
+        if ( name != null ) {
+            props.add( new SimpleProperty( (SimplePropertyType) ft.getPropertyDeclaration( NAME ),
+                                           new PrimitiveValue( name ) ) );
+        }
+        for ( String lane : lanes ) {
+            props.add( new SimpleProperty( (SimplePropertyType) ft.getPropertyDeclaration( LANE ),
+                                           new PrimitiveValue( lane ) ) );
+        }
+        return ft.newFeature( fid, props, null );
+    }
+
+    /**
+     * Statement execution: SQL and the arguments of the inserted rows (key: parameter index).
+     */
+    private static class Execution {
+
+        private final String sql;
+
+        private final boolean batch;
+
+        private final List<Map<Integer, Object>> rows;
+
+        private Object generatedKey;
+
+        private Execution( String sql, boolean batch, List<Map<Integer, Object>> rows ) {
+            this.sql = sql;
+            this.batch = batch;
+            this.rows = rows;
+        }
+    }
+
+    /**
+     * Mocked JDBC connection that records all executed statements.
+     */
+    private static class RecordingDatabase {
+
+        private final List<Execution> executions = new ArrayList<Execution>();
+
+        private final List<String> allocations = new ArrayList<String>();
+
+        private final Connection conn = mock( Connection.class );
+
+        private int nextKey = 100;
+
+        private RecordingDatabase() {
+            try {
+                Answer<PreparedStatement> prepare = new Answer<PreparedStatement>() {
+                    @Override
+                    public PreparedStatement answer( InvocationOnMock invocation )
+                                            throws SQLException {
+                        return createStatement( (String) invocation.getArguments()[0] );
+                    }
+                };
+                when( conn.prepareStatement( anyString() ) ).thenAnswer( prepare );
+                when( conn.prepareStatement( anyString(), any( String[].class ) ) ).thenAnswer( prepare );
+                when( conn.createStatement() ).thenAnswer( new Answer<Statement>() {
+                    @Override
+                    public Statement answer( InvocationOnMock invocation )
+                                            throws SQLException {
+                        return createAllocationStatement();
+                    }
+                } );
+            } catch ( SQLException e ) {
+                throw new RuntimeException( e );
+            }
+        }
+
+        private Execution getExecution( String sql ) {
+            List<Execution> matches = getExecutions( sql );
+            assertEquals( "Executions of " + sql, 1, matches.size() );
+            return matches.get( 0 );
+        }
+
+        private List<Execution> getExecutions( String sql ) {
+            List<Execution> matches = new ArrayList<Execution>();
+            for ( Execution execution : executions ) {
+                if ( execution.sql.equals( sql ) ) {
+                    matches.add( execution );
+                }
+            }
+            return matches;
+        }
+
+        private List<Execution> getExecutions( boolean withGeneratedKeys ) {
+            List<Execution> matches = new ArrayList<Execution>();
+            for ( Execution execution : executions ) {
+                if ( ( execution.generatedKey != null ) == withGeneratedKeys ) {
+                    matches.add( execution );
+                }
+            }
+            return matches;
+        }
+
+        private PreparedStatement createStatement( final String sql )
+                                throws SQLException {
+            final PreparedStatement stmt = mock( PreparedStatement.class );
+            final Map<Integer, Object> args = new HashMap<Integer, Object>();
+            final List<Map<Integer, Object>> batch = new ArrayList<Map<Integer, Object>>();
+            final Execution[] last = new Execution[1];
+            doAnswer( new Answer<Void>() {
+                @Override
+                public Void answer( InvocationOnMock invocation ) {
+                    args.put( (Integer) invocation.getArguments()[0], invocation.getArguments()[1] );
+                    return null;
+                }
+            } ).when( stmt ).setObject( anyInt(), anyObject() );
+            doAnswer( new Answer<Void>() {
+                @Override
+                public Void answer( InvocationOnMock invocation ) {
+                    batch.add( new HashMap<Integer, Object>( args ) );
+                    args.clear();
+                    return null;
+                }
+            } ).when( stmt ).addBatch();
+            when( stmt.executeBatch() ).thenAnswer( new Answer<int[]>() {
+                @Override
+                public int[] answer( InvocationOnMock invocation ) {
+                    executions.add( new Execution( sql, true, new ArrayList<Map<Integer, Object>>( batch ) ) );
+                    int[] counts = new int[batch.size()];
+                    Arrays.fill( counts, 1 );
+                    batch.clear();
+                    return counts;
+                }
+            } );
+            when( stmt.execute() ).thenAnswer( new Answer<Boolean>() {
+                @Override
+                public Boolean answer( InvocationOnMock invocation ) {
+                    List<Map<Integer, Object>> rows = new ArrayList<Map<Integer, Object>>();
+                    rows.add( new HashMap<Integer, Object>( args ) );
+                    args.clear();
+                    last[0] = new Execution( sql, false, rows );
+                    executions.add( last[0] );
+                    return false;
+                }
+            } );
+            when( stmt.getGeneratedKeys() ).thenAnswer( new Answer<ResultSet>() {
+                @Override
+                public ResultSet answer( InvocationOnMock invocation )
+                                        throws SQLException {
+                    last[0].generatedKey = nextKey++;
+                    return createResultSet( Collections.singletonList( last[0].generatedKey ) );
+                }
+            } );
+            return stmt;
+        }
+
+        private Statement createAllocationStatement()
+                                throws SQLException {
+            Statement stmt = mock( Statement.class );
+            when( stmt.executeQuery( anyString() ) ).thenAnswer( new Answer<ResultSet>() {
+                @Override
+                public ResultSet answer( InvocationOnMock invocation )
+                                        throws SQLException {
+                    String sql = (String) invocation.getArguments()[0];
+                    allocations.add( sql );
+                    int num = Integer.parseInt( sql.substring( "ALLOCATE ".length() ) );
+                    List<Object> values = new ArrayList<Object>( num );
+                    for ( int i = 0; i < num; i++ ) {
+                        values.add( nextKey++ );
+                    }
+                    return createResultSet( values );
+                }
+            } );
+            return stmt;
+        }
+
+        private static ResultSet createResultSet( final List<Object> values )
+                                throws SQLException {
+            ResultSet rs = mock( ResultSet.class );
+            final int[] pos = new int[] { -1 };
+            when( rs.next() ).thenAnswer( new Answer<Boolean>() {
+                @Override
+                public Boolean answer( InvocationOnMock invocation ) {
+                    return ++pos[0] < values.size();
+                }
+            } );
+            when( rs.getObject( 1 ) ).thenAnswer( new Answer<Object>() {
+                @Override
+                public Object answer( InvocationOnMock invocation ) {
+                    return values.get( pos[0] );
+                }
+            } );
+            return rs;
+        }
+    }
+
+}
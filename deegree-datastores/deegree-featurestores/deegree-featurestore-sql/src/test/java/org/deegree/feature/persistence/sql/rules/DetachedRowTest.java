@@ -0,0 +1,174 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.sql.rules;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ * Tests for {@link DetachedRow}.
+ * 
+ * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class DetachedRowTest {
+
+    @Test
+    public void testValuesAccessibleAfterCursorMoved()
+                            throws SQLException {
+        final Object[][] rows = { { 1, "a" }, { 2, "b" } };
+        ResultSet rs = mock( ResultSet.class );
+        final int[] pos = new int[] { 0 };
+        when( rs.getObject( anyInt() ) ).thenAnswer( new Answer<Object>() {
+            @Override
+            public Object answer( InvocationOnMock invocation ) {
+                return rows[pos[0]][(Integer) invocation.getArguments()[0] - 1];
+            }
+        } );
+        ResultSet first = DetachedRow.detach( rs, 2 );
+        pos[0] = 1;
+        ResultSet second = DetachedRow.detach( rs, 2 );
+        assertEquals( 1, first.getObject( 1 ) );
+        assertEquals( "a", first.getString( 2 ) );
+        assertEquals( 2, second.getObject( 1 ) );
+        assertEquals( "b", second.getString( 2 ) );
+    }
+
+    @Test
+    public void testTypedGetters()
+                            throws SQLException, IOException {
+        byte[] bytes = new byte[] { 1, 2, 3 };
+        ResultSet row = detach( 42, "7.5", 1L, bytes, "true" );
+        assertEquals( 42, row.getInt( 1 ) );
+        assertEquals( 42L, row.getLong( 1 ) );
+        assertEquals( (short) 42, row.getShort( 1 ) );
+        assertEquals( 42.0, row.getDouble( 1 ), 0.0 );
+        assertEquals( "42", row.getString( 1 ) );
+        assertEquals( new BigDecimal( "7.5" ), row.getBigDecimal( 2 ) );
+        assertEquals( 7.5, row.getDouble( 2 ), 0.0 );
+        assertTrue( row.getBoolean( 3 ) );
+        assertTrue( row.getBoolean( 5 ) );
+        assertArrayEquals( bytes, row.getBytes( 4 ) );
+        InputStream is = row.getBinaryStream( 4 );
+        assertEquals( 1, is.read() );
+        assertFalse( row.wasNull() );
+    }
+
+    @Test
+    public void testNullValues()
+                            throws SQLException {
+        ResultSet row = detach( (Object) null );
+        assertNull( row.getObject( 1 ) );
+        assertTrue( row.wasNull() );
+        assertEquals( 0, row.getInt( 1 ) );
+        assertEquals( 0.0, row.getDouble( 1 ), 0.0 );
+        assertFalse( row.getBoolean( 1 ) );
+        assertNull( row.getString( 1 ) );
+        assertNull( row.getBytes( 1 ) );
+        assertNull( row.getBinaryStream( 1 ) );
+    }
+
+    @Test
+    public void testCloseIsNoOp()
+                            throws SQLException {
+        ResultSet row = detach( "a" );
+        row.close();
+        assertFalse( row.isClosed() );
+        assertEquals( "a", row.getString( 1 ) );
+    }
+
+    @Test
+    public void testUnsupportedOperations()
+                            throws SQLException {
+        ResultSet row = detach( "a", new Object() );
+        try {
+            row.next();
+            fail( "Expected exception." );
+        } catch ( SQLException e ) {
+            // expected
+        }
+        try {
+            row.getString( "column" );
+            fail( "Expected exception." );
+        } catch ( SQLException e ) {
+            // expected
+        }
+        try {
+            row.getArray( 1 );
+            fail( "Expected exception." );
+        } catch ( SQLException e ) {
+            // expected
+        }
+        try {
+            row.getBytes( 2 );
+            fail( "Expected exception." );
+        } catch ( SQLException e ) {
+            // expected
+        }
+    }
+
+    private static ResultSet detach( final Object... values )
+                            throws SQLException {
+        ResultSet rs = mock( ResultSet.class );
+        when( rs.getObject( anyInt() ) ).thenAnswer( new Answer<Object>() {
+            @Override
+            public Object answer( InvocationOnMock invocation ) {
+                return values[(Integer) invocation.getArguments()[0] - 1];
+            }
+        } );
+        return DetachedRow.detach( rs, values.length );
+    }
+
+}
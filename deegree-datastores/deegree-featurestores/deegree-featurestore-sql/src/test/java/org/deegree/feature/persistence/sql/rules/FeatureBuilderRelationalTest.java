@@ -0,0 +1,398 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.sql.rules;
+
+import static org.deegree.commons.tom.primitive.BaseType.INTEGER;
+import static org.deegree.commons.tom.primitive.BaseType.STRING;
+import static org.deegree.feature.types.property.GeometryPropertyType.CoordinateDimension.DIM_2;
+import static org.deegree.feature.types.property.GeometryPropertyType.GeometryType.GEOMETRY;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyObject;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.namespace.QName;
+
+import org.deegree.commons.jdbc.SQLIdentifier;
+import org.deegree.commons.jdbc.TableName;
+import org.deegree.commons.tom.gml.property.Property;
+import org.deegree.commons.tom.gml.property.PropertyType;
+import org.deegree.commons.tom.primitive.BaseType;
+import org.deegree.commons.tom.primitive.PrimitiveType;
+import org.deegree.commons.tom.primitive.PrimitiveValue;
+import org.deegree.commons.tom.sql.DefaultPrimitiveConverter;
+import org.deegree.commons.utils.Pair;
+import org.deegree.feature.Feature;
+import org.deegree.feature.persistence.cache.FeatureStoreCache;
+import org.deegree.feature.persistence.sql.FeatureTypeMapping;
+import org.deegree.feature.persistence.sql.GeometryStorageParams;
+import org.deegree.feature.persistence.sql.SQLFeatureStore;
+import org.deegree.feature.persistence.sql.expressions.TableJoin;
+import org.deegree.feature.persistence.sql.id.AutoIDGenerator;
+import org.deegree.feature.persistence.sql.id.FIDMapping;
+import org.deegree.feature.persistence.sql.id.IDGenerator;
+import org.deegree.feature.types.FeatureType;
+import org.deegree.feature.types.GenericFeatureType;
+import org.deegree.feature.types.property.SimplePropertyType;
+import org.deegree.filter.expression.ValueReference;
+import org.deegree.geometry.utils.GeometryParticleConverter;
+import org.deegree.sqldialect.filter.DBField;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ * Tests for the batched fetching of joined rows in {@link FeatureBuilderRelational#buildFeatures(ResultSet, int)} and
+ * the selection of generalized geometries.
+ * 
+ * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class FeatureBuilderRelationalTest {
+
+    private static final String APP_NS = "http://www.example.org/app";
+
+    private static final QName FT_NAME = new QName( APP_NS, "Road", "app" );
+
+    private static final QName NAME = new QName( APP_NS, "name", "app" );
+
+    private static final QName LANE = new QName( APP_NS, "lane", "app" );
+
+    private static final QName GEOM = new QName( APP_NS, "geom", "app" );
+
+    private FeatureType ft;
+
+    private FeatureTypeMapping ftMapping;
+
+    private SQLFeatureStore fs;
+
+    private Connection conn;
+
+    // rows of the joined table (lane, road_id)
+    private final List<Object[]> laneTable = new ArrayList<Object[]>();
+
+    // parameters of the executed joined SELECTs
+    private final List<List<Object>> selects = new ArrayList<List<Object>>();
+
+    @Before
+    public void setUp()
+                            throws SQLException {
+        List<PropertyType> decls = new ArrayList<PropertyType>();
+        decls.add( new SimplePropertyType( NAME, 0, 1, STRING, null, null ) );
+        decls.add( new SimplePropertyType( LANE, 0, -1, STRING, null, null ) );
+        ft = new GenericFeatureType( FT_NAME, decls, false );
+
+        List<Pair<SQLIdentifier, BaseType>> fidColumns = new ArrayList<Pair<SQLIdentifier, BaseType>>();
+        fidColumns.add( new Pair<SQLIdentifier, BaseType>( new SQLIdentifier( "id" ), INTEGER ) );
+        FIDMapping fidMapping = new FIDMapping( "ROAD_", "_", fidColumns, new AutoIDGenerator() );
+        PrimitiveMapping nameMapping = new PrimitiveMapping( new ValueReference( NAME ), true, new DBField( "name" ),
+                                                             new PrimitiveType( STRING ), null, null );
+        TableJoin join = new TableJoin( new TableName( "road" ), new TableName( "road_lane" ),
+                                        Collections.singletonList( "id" ), Collections.singletonList( "road_id" ),
+                                        null, false, new HashMap<SQLIdentifier, IDGenerator>() );
+        PrimitiveMapping laneMapping = new PrimitiveMapping( new ValueReference( LANE ), true, new DBField( "lane" ),
+                                                             new PrimitiveType( STRING ),
+                                                             Collections.singletonList( join ), null );
+        List<Mapping> mappings = new ArrayList<Mapping>();
+        mappings.add( nameMapping );
+        mappings.add( laneMapping );
+        ftMapping = new FeatureTypeMapping( FT_NAME, new TableName( "road" ), fidMapping, mappings );
+
+        fs = mock( SQLFeatureStore.class );
+        when( fs.getNamespaceContext() ).thenReturn( Collections.singletonMap( "app", APP_NS ) );
+        PrimitiveType string = new PrimitiveType( STRING );
+        doReturn( new DefaultPrimitiveConverter( string, "name" ) ).when( fs ).getConverter( nameMapping );
+        doReturn( new DefaultPrimitiveConverter( string, "lane" ) ).when( fs ).getConverter( laneMapping );
+
+        conn = mock( Connection.class );
+        when( conn.prepareStatement( anyString() ) ).thenAnswer( new Answer<PreparedStatement>() {
+            @Override
+            public PreparedStatement answer( InvocationOnMock invocation )
+                                    throws SQLException {
+                return createJoinedSelect();
+            }
+        } );
+    }
+
+    @Test
+    public void testJoinedRowsStitchedInOrder()
+                            throws SQLException {
+        addLanes( 1, "1a", 2, "2a", 1, "1b", 4, "4a", 1, "1c" );
+        List<Feature> features = buildFeatures( null, rows( 1, "one", 2, "two", 3, "three" ) );
+
+        assertEquals( 3, features.size() );
+        assertEquals( "ROAD_1", features.get( 0 ).getId() );
+        assertEquals( Arrays.asList( "one" ), getValues( features.get( 0 ), NAME ) );
+        assertEquals( Arrays.asList( "1a", "1b", "1c" ), getValues( features.get( 0 ), LANE ) );
+        assertEquals( Arrays.asList( "2a" ), getValues( features.get( 1 ), LANE ) );
+        assertEquals( Collections.emptyList(), getValues( features.get( 2 ), LANE ) );
+
+        // one SELECT for all parent rows
+        assertEquals( 1, selects.size() );
+        assertEquals( Arrays.<Object> asList( 1, 2, 3 ), selects.get( 0 ) );
+    }
+
+    @Test
+    public void testKeysMatchedAcrossNumericTypes()
+                            throws SQLException {
+        addLanes( 1L, "1a", new BigDecimal( "2" ), "2a", Integer.valueOf( 3 ), "3a", BigInteger.valueOf( 4 ), "4a" );
+        List<Object[]> rows = rows( Integer.valueOf( 1 ), "one", 2L, "two", new BigDecimal( "3.00" ), "three",
+                                    (short) 4, "four" );
+        List<Feature> features = buildFeatures( null, rows );
+        assertEquals( Arrays.asList( "1a" ), getValues( features.get( 0 ), LANE ) );
+        assertEquals( Arrays.asList( "2a" ), getValues( features.get( 1 ), LANE ) );
+        assertEquals( Arrays.asList( "3a" ), getValues( features.get( 2 ), LANE ) );
+        assertEquals( Arrays.asList( "4a" ), getValues( features.get( 3 ), LANE ) );
+    }
+
+    @Test
+    public void testNormalizeKey() {
+        List<Object> expected = normalize( 5, "a" );
+        assertEquals( expected, normalize( 5L, "a" ) );
+        assertEquals( expected, normalize( (short) 5, "a" ) );
+        assertEquals( expected, normalize( BigInteger.valueOf( 5 ), "a" ) );
+        assertEquals( expected, normalize( new BigDecimal( "5.00" ), "a" ) );
+        assertEquals( expected, normalize( 5.0, "a" ) );
+        assertFalse( expected.equals( normalize( 50, "a" ) ) );
+        assertFalse( expected.equals( normalize( 5, "A" ) ) );
+        assertEquals( normalize( 0 ), normalize( new BigDecimal( "0.000" ) ) );
+    }
+
+    @Test
+    public void testSelectsChunkedByMaxKeys()
+                            throws SQLException {
+        int max = FeatureBuilderRelational.MAX_KEYS_PER_SELECT;
+        int num = 2 * max + 1;
+        List<Object[]> rows = new ArrayList<Object[]>();
+        for ( int i = 0; i < num; i++ ) {
+            rows.add( new Object[] { i, "road" + i } );
+            laneTable.add( new Object[] { "lane" + i, i } );
+        }
+        List<Feature> features = buildFeatures( null, rows );
+
+        assertEquals( 3, selects.size() );
+        assertEquals( max, selects.get( 0 ).size() );
+        assertEquals( max, selects.get( 1 ).size() );
+        assertEquals( 1, selects.get( 2 ).size() );
+        assertEquals( num, features.size() );
+        for ( int i = 0; i < num; i++ ) {
+            assertEquals( Arrays.asList( "lane" + i ), getValues( features.get( i ), LANE ) );
+        }
+    }
+
+    @Test
+    public void testCachedFeaturesNotFetched()
+                            throws SQLException {
+        addLanes( 1, "1a", 2, "2a", 3, "3a" );
+        Feature cached = mock( Feature.class );
+        FeatureStoreCache cache = mock( FeatureStoreCache.class );
+        when( cache.get( "ROAD_2" ) ).thenReturn( cached );
+
+        List<Feature> features = buildFeatures( cache, rows( 1, "one", 2, "two", 3, "three" ) );
+
+        assertSame( cached, features.get( 1 ) );
+        assertEquals( Arrays.asList( "1a" ), getValues( features.get( 0 ), LANE ) );
+        assertEquals( Arrays.asList( "3a" ), getValues( features.get( 2 ), LANE ) );
+        assertEquals( 1, selects.size() );
+        assertEquals( Arrays.<Object> asList( 1, 3 ), selects.get( 0 ) );
+    }
+
+    @Test
+    public void testNoSelectIfAllFeaturesCached()
+                            throws SQLException {
+        FeatureStoreCache cache = mock( FeatureStoreCache.class );
+        when( cache.get( anyString() ) ).thenReturn( mock( Feature.class ) );
+        List<Feature> features = buildFeatures( cache, rows( 1, "one", 2, "two" ) );
+        assertEquals( 2, features.size() );
+        assertEquals( 0, selects.size() );
+    }
+
+    @Test
+    public void testGeometrySimplified() {
+        GeometryParticleConverter converter = mock( GeometryParticleConverter.class );
+        when( converter.getSelectSnippet( "X1" ) ).thenReturn( "ST_AsEWKB(X1.geom)" );
+        when( converter.getSimplifiedSelectSnippet( "X1", 8.0 ) ).thenReturn( "SIMPLIFIED(X1.geom)" );
+        assertEquals( Arrays.asList( "X1.id", "SIMPLIFIED(X1.geom)" ), getGeometrySelectColumns( converter, 8.0 ) );
+    }
+
+    @Test
+    public void testGeometryNotSimplifiedWithoutTolerance() {
+        GeometryParticleConverter converter = mock( GeometryParticleConverter.class );
+        when( converter.getSelectSnippet( "X1" ) ).thenReturn( "ST_AsEWKB(X1.geom)" );
+        when( converter.getSimplifiedSelectSnippet( "X1", 8.0 ) ).thenReturn( "SIMPLIFIED(X1.geom)" );
+        assertEquals( Arrays.asList( "X1.id", "ST_AsEWKB(X1.geom)" ), getGeometrySelectColumns( converter, -1 ) );
+    }
+
+    @Test
+    public void testGeometryNotSimplifiedIfUnsupported() {
+        // dialect cannot generalize in the database
+        GeometryParticleConverter converter = mock( GeometryParticleConverter.class );
+        when( converter.getSelectSnippet( "X1" ) ).thenReturn( "ST_AsEWKB(X1.geom)" );
+        assertEquals( Arrays.asList( "X1.id", "ST_AsEWKB(X1.geom)" ), getGeometrySelectColumns( converter, 8.0 ) );
+    }
+
+    private List<String> getGeometrySelectColumns( GeometryParticleConverter converter, double tolerance ) {
+        List<Pair<SQLIdentifier, BaseType>> fidColumns = new ArrayList<Pair<SQLIdentifier, BaseType>>();
+        fidColumns.add( new Pair<SQLIdentifier, BaseType>( new SQLIdentifier( "id" ), INTEGER ) );
+        FIDMapping fidMapping = new FIDMapping( "ROAD_", "_", fidColumns, new AutoIDGenerator() );
+        GeometryMapping geomMapping = new GeometryMapping( new ValueReference( GEOM ), true, new DBField( "geom" ),
+                                                           GEOMETRY, new GeometryStorageParams( null, "-1", DIM_2 ),
+                                                           null );
+        List<Mapping> mappings = Collections.<Mapping> singletonList( geomMapping );
+        FeatureTypeMapping geomFtMapping = new FeatureTypeMapping( FT_NAME, new TableName( "road" ), fidMapping,
+                                                                   mappings );
+        doReturn( converter ).when( fs ).getConverter( geomMapping );
+        FeatureBuilderRelational builder = new FeatureBuilderRelational( fs, ft, geomFtMapping, conn, "X1", false,
+                                                                         tolerance, null );
+        return builder.getInitialSelectColumns();
+    }
+
+    private List<Feature> buildFeatures( FeatureStoreCache cache, List<Object[]> rows )
+                            throws SQLException {
+        FeatureBuilderRelational builder = new FeatureBuilderRelational( fs, ft, ftMapping, conn, "X1", false, -1,
+                                                                         cache );
+        assertEquals( Arrays.asList( "X1.id", "X1.name" ), builder.getInitialSelectColumns() );
+        ResultSet rs = createResultSet( rows );
+        List<Feature> features = builder.buildFeatures( rs, rows.size() + 1 );
+        assertEquals( 0, builder.buildFeatures( rs, 1 ).size() );
+        return features;
+    }
+
+    private static List<Object> normalize( Object... key ) {
+        return FeatureBuilderRelational.normalizeKey( Arrays.asList( key ) );
+    }
+
+    private void addLanes( Object... keysAndLanes ) {
+        for ( int i = 0; i < keysAndLanes.length; i += 2 ) {
+            laneTable.add( new Object[] { keysAndLanes[i + 1], keysAndLanes[i] } );
+        }
+    }
+
+    private static List<Object[]> rows( Object... idsAndNames ) {
+        List<Object[]> rows = new ArrayList<Object[]>();
+        for ( int i = 0; i < idsAndNames.length; i += 2 ) {
+            rows.add( new Object[] { idsAndNames[i], idsAndNames[i + 1] } );
+        }
+        return rows;
+    }
+
+    private static List<String> getValues( Feature feature, QName propName ) {
+        List<String> values = new ArrayList<String>();
+        for ( Property prop : feature.getProperties( propName ) ) {
+            values.add( ( (PrimitiveValue) prop.getValue() ).getAsText() );
+        }
+        return values;
+    }
+
+    private PreparedStatement createJoinedSelect()
+                            throws SQLException {
+        PreparedStatement stmt = mock( PreparedStatement.class );
+        final Map<Integer, Object> args = new HashMap<Integer, Object>();
+        doAnswer( new Answer<Void>() {
+            @Override
+            public Void answer( InvocationOnMock invocation ) {
+                args.put( (Integer) invocation.getArguments()[0], invocation.getArguments()[1] );
+                return null;
+            }
+        } ).when( stmt ).setObject( anyInt(), anyObject() );
+        when( stmt.executeQuery() ).thenAnswer( new Answer<ResultSet>() {
+            @Override
+            public ResultSet answer( InvocationOnMock invocation ) {
+                List<Object> keys = new ArrayList<Object>();
+                for ( int i = 1; i <= args.size(); i++ ) {
+                    keys.add( args.get( i ) );
+                }
+                selects.add( keys );
+                // rows in table order, like a DB without ORDER BY
+                List<Object[]> result = new ArrayList<Object[]>();
+                for ( Object[] lane : laneTable ) {
+                    for ( Object key : keys ) {
+                        if ( new BigDecimal( key.toString() ).compareTo( new BigDecimal( lane[1].toString() ) ) == 0 ) {
+                            result.add( lane );
+                        }
+                    }
+                }
+                return createResultSet( result );
+            }
+        } );
+        return stmt;
+    }
+
+    private static ResultSet createResultSet( final List<Object[]> rows ) {
+        ResultSet rs = mock( ResultSet.class );
+        final int[] pos = new int[] { -1 };
+        try {
+            when( rs.next() ).thenAnswer( new Answer<Boolean>() {
+                @Override
+                public Boolean answer( InvocationOnMock invocation ) {
+                    return ++pos[0] < rows.size();
+                }
+            } );
+            when( rs.getObject( anyInt() ) ).thenAnswer( new Answer<Object>() {
+                @Override
+                public Object answer( InvocationOnMock invocation ) {
+                    return rows.get( pos[0] )[(Integer) invocation.getArguments()[0] - 1];
+                }
+            } );
+        } catch ( SQLException e ) {
+            throw new RuntimeException( e );
+        }
+        return rs;
+    }
+
+}
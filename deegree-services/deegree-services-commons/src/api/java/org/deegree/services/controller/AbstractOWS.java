@@ -450,6 +450,10 @@ public abstract class AbstractOWS implements OWS {
                 throw new ServletException( e );
             }
             response.setExceptionSent();
+        } else if ( response.isStreaming() ) {
+            // response has already been (partially) sent
+            response.writeInBandException( exception.getExceptionCode() + ": " + exception.getMessage() );
+            response.setExceptionSent();
         }
 
         if ( userAgent != null && userAgent.toLowerCase().contains( "mozilla" ) ) {
@@ -115,9 +115,11 @@ import org.deegree.services.OwsManager;
 import org.deegree.services.authentication.SecurityException;
 import org.deegree.services.controller.exception.serializer.XMLExceptionSerializer;
 import org.deegree.services.controller.security.SecurityConfiguration;
+import org.deegree.services.controller.utils.CompressionSettings;
 import org.deegree.services.controller.utils.HttpResponseBuffer;
 import org.deegree.services.controller.utils.LoggingHttpResponseWrapper;
 import org.deegree.services.jaxb.controller.DeegreeServiceControllerType;
+import org.deegree.services.jaxb.controller.DeegreeServiceControllerType.ResponseCompression;
 import org.deegree.services.ows.OWS110ExceptionReportSerializer;
 import org.deegree.services.resources.ResourcesServlet;
 import org.slf4j.Logger;
@@ -179,6 +181,9 @@ public class OGCFrontController extends HttpServlet {
 
     private transient String hardcodedResourcesUrl;
 
+    // null, if response compression is disabled
+    private transient CompressionSettings compressionSettings;
+
     private transient final ThreadLocal<RequestContext> CONTEXT = new ThreadLocal<RequestContext>();
 
     private transient SecurityConfiguration securityConfiguration;
@@ -320,7 +325,7 @@ public class OGCFrontController extends HttpServlet {
 
             logHeaders( request );
             addHeaders( responseBuffer );
-            responseBuffer = handleCompression( responseBuffer );
+            responseBuffer = handleCompression( request, responseBuffer );
 
             String queryString = request.getQueryString();
             try {
@@ -431,7 +436,7 @@ public class OGCFrontController extends HttpServlet {
         try {
             logHeaders( request );
             addHeaders( responseBuffer );
-            responseBuffer = handleCompression( responseBuffer );
+            responseBuffer = handleCompression( request, responseBuffer );
 
             LOG.debug( "doPost(), contentType: '" + request.getContentType() + "'" );
 
@@ -612,14 +617,12 @@ public class OGCFrontController extends HttpServlet {
         return ows;
     }
 
-    private static HttpResponseBuffer handleCompression( HttpResponseBuffer response ) {
-        // TODO check if we should enable this in any case (XML, images, ...)
-        // String encoding = request.getHeader( "Accept-Encoding" );
-        // boolean supportsGzip = encoding != null && encoding.toLowerCase().contains( "gzip" );
-        // if ( supportsGzip ) {
-        // LOG.debug( "Using GZIP-compression" );
-        // response = new GZipHttpServletResponse( response );
-        // }
+    private HttpResponseBuffer handleCompression( HttpServletRequest request, HttpResponseBuffer response ) {
+        if ( compressionSettings != null ) {
+            String encoding = CompressionSettings.negotiateEncoding( request.getHeader( "Accept-Encoding" ) );
+            // actual compression depends on content type and size of the response
+            response.enableCompression( encoding, compressionSettings );
+        }
         return response;
     }
 
@@ -1126,10 +1129,23 @@ public class OGCFrontController extends HttpServlet {
         mainConfig = loader.getMainConfig();
         if ( mainConfig != null ) {
             initHardcodedUrls( mainConfig );
+            initCompression( mainConfig );
         }
         LOG.info( "" );
     }
 
+    private void initCompression( DeegreeServiceControllerType mainConfig ) {
+        ResponseCompression conf = mainConfig.getResponseCompression();
+        if ( conf != null ) {
+            compressionSettings = new CompressionSettings( conf.getMimeType(), conf.getMinSize().intValue(),
+                                                           conf.getLevel() );
+            LOG.info( "Response compression enabled (min size: " + compressionSettings.getMinSize() + " bytes, level: "
+                      + compressionSettings.getLevel() + ")." );
+        } else {
+            compressionSettings = null;
+        }
+    }
+
     private void initHardcodedUrls( DeegreeServiceControllerType mainConfig ) {
         if ( mainConfig.getReportedUrls() != null ) {
             hardcodedServicesUrl = mainConfig.getReportedUrls().getServices();
@@ -1525,6 +1541,10 @@ public class OGCFrontController extends HttpServlet {
                     throw new ServletException( e2 );
                 }
                 res.setExceptionSent();
+            } else if ( res.isStreaming() ) {
+                // response has already been (partially) sent
+                res.writeInBandException( e.getExceptionCode() + ": " + e.getMessage() );
+                res.setExceptionSent();
             }
         }
 
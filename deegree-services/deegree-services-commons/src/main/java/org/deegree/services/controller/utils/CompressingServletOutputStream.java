@@ -0,0 +1,183 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.controller.utils;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+
+import org.slf4j.Logger;
+
+/**
+ * {@link ServletOutputStream} that compresses the written data (if the response is suitable for compression).
+ * <p>
+ * The first bytes (up to the minimum size for compression) are held back. As soon as the minimum size is exceeded, the
+ * content type of the response is checked and the compression is started (setting the <code>Content-Encoding</code>
+ * header). If the stream is finished before the minimum size has been reached, the data is written uncompressed.
+ * </p>
+ * 
+ * @see CompressionSettings
+ * 
+ * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+class CompressingServletOutputStream extends ServletOutputStream {
+
+    private static final Logger LOG = getLogger( CompressingServletOutputStream.class );
+
+    private final HttpServletResponse response;
+
+    private final String encoding;
+
+    private final CompressionSettings settings;
+
+    // held back bytes, null after the decision has been made
+    private byte[] head;
+
+    private int headLength;
+
+    // null as long as no decision has been made
+    private OutputStream os;
+
+    // null, if the output is not compressed
+    private DeflaterOutputStream compressor;
+
+    private Deflater deflater;
+
+    private boolean finished;
+
+    /**
+     * Creates a new {@link CompressingServletOutputStream} instance.
+     * 
+     * @param response
+     *            response to write to, must not be <code>null</code>
+     * @param encoding
+     *            content encoding to use, either <code>gzip</code> or <code>deflate</code>
+     * @param settings
+     *            compression settings, must not be <code>null</code>
+     */
+    CompressingServletOutputStream( HttpServletResponse response, String encoding, CompressionSettings settings ) {
+        this.response = response;
+        this.encoding = encoding;
+        this.settings = settings;
+        this.head = new byte[settings.getMinSize()];
+    }
+
+    @Override
+    public void write( int b )
+                            throws IOException {
+        write( new byte[] { (byte) b }, 0, 1 );
+    }
+
+    @Override
+    public void write( byte[] b, int off, int len )
+                            throws IOException {
+        if ( os == null ) {
+            if ( headLength + len <= head.length ) {
+                System.arraycopy( b, off, head, headLength, len );
+                headLength += len;
+                return;
+            }
+            decide( true );
+        }
+        os.write( b, off, len );
+    }
+
+    @Override
+    public void flush()
+                            throws IOException {
+        // held back bytes are only written when the minimum size is exceeded or on finish
+        if ( os != null ) {
+            os.flush();
+        }
+    }
+
+    /**
+     * Writes all pending data (including the trailer of the compressed data) to the response.
+     * 
+     * @throws IOException
+     */
+    void finish()
+                            throws IOException {
+        if ( finished ) {
+            return;
+        }
+        finished = true;
+        if ( os == null ) {
+            decide( false );
+        }
+        if ( compressor != null ) {
+            compressor.finish();
+            deflater.end();
+        }
+        response.getOutputStream().flush();
+    }
+
+    private void decide( boolean exceedsMinSize )
+                            throws IOException {
+        OutputStream out = response.getOutputStream();
+        if ( exceedsMinSize && settings.isCompressible( response.getContentType() )
+             && !response.containsHeader( "Content-Encoding" ) && !response.containsHeader( "Content-Length" ) ) {
+            LOG.debug( "Compressing response (" + encoding + ", content type: " + response.getContentType() + ")" );
+            response.setHeader( "Content-Encoding", encoding );
+            deflater = new Deflater( settings.getLevel(), "gzip".equals( encoding ) );
+            if ( "gzip".equals( encoding ) ) {
+                compressor = new GZIPOutputStream( out ) {
+                    {
+                        // replace the default deflater to use the configured level
+                        def.end();
+                        def = deflater;
+                    }
+                };
+            } else {
+                compressor = new DeflaterOutputStream( out, deflater );
+            }
+            out = compressor;
+        }
+        os = out;
+        os.write( head, 0, headLength );
+        head = null;
+    }
+}
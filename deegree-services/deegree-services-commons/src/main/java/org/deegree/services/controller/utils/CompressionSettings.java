@@ -0,0 +1,200 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.controller.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Settings for the compression of service responses (HTTP <code>Content-Encoding</code>).
+ * <p>
+ * A response is compressed if the client accepts a supported encoding (<code>gzip</code> or <code>deflate</code>), the
+ * content type of the response is compressible and the response is not smaller than the minimum size. Content types of
+ * already compressed formats (e.g. PNG or JPEG images) are never compressed.
+ * </p>
+ * 
+ * @see HttpResponseBuffer#enableCompression(String, CompressionSettings)
+ * 
+ * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class CompressionSettings {
+
+    /** Default minimum size (in bytes) of responses to be compressed. */
+    public static final int DEFAULT_MIN_SIZE = 1024;
+
+    /** Default compression level (same as the default of the <code>level</code> attribute in the configuration). */
+    public static final int DEFAULT_LEVEL = 6;
+
+    private static final List<String> ALREADY_COMPRESSED = Arrays.asList( "image/png", "image/jpeg", "image/jpg",
+                                                                          "image/gif", "application/zip",
+                                                                          "application/gzip", "application/x-gzip" );
+
+    private final List<String> mimeTypes;
+
+    private final int minSize;
+
+    private final int level;
+
+    /**
+     * Creates a new {@link CompressionSettings} instance.
+     * 
+     * @param mimeTypes
+     *            content types to compress, a trailing <code>*</code> matches all subtypes (e.g.
+     *            <code>text/*</code>), if <code>null</code> or empty, all text, XML and JSON based content types are
+     *            compressed
+     * @param minSize
+     *            minimum size (in bytes) of responses to be compressed
+     * @param level
+     *            compression level, 1 (fastest) to 9 (best compression)
+     */
+    public CompressionSettings( List<String> mimeTypes, int minSize, int level ) {
+        this.mimeTypes = new ArrayList<String>();
+        if ( mimeTypes != null ) {
+            for ( String mimeType : mimeTypes ) {
+                this.mimeTypes.add( mimeType.trim().toLowerCase() );
+            }
+        }
+        this.minSize = minSize;
+        this.level = level;
+    }
+
+    /**
+     * Returns the minimum size of responses to be compressed.
+     * 
+     * @return minimum size in bytes
+     */
+    public int getMinSize() {
+        return minSize;
+    }
+
+    /**
+     * Returns the compression level.
+     * 
+     * @return compression level, 1 (fastest) to 9 (best compression)
+     */
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * Returns whether responses with the given content type should be compressed.
+     * 
+     * @param contentType
+     *            content type of the response (may include parameters, e.g. <code>charset</code>), can be
+     *            <code>null</code>
+     * @return true, if the content should be compressed, false otherwise
+     */
+    public boolean isCompressible( String contentType ) {
+        if ( contentType == null ) {
+            return false;
+        }
+        String mimeType = contentType;
+        int paramsStart = mimeType.indexOf( ';' );
+        if ( paramsStart != -1 ) {
+            mimeType = mimeType.substring( 0, paramsStart );
+        }
+        mimeType = mimeType.trim().toLowerCase();
+        if ( ALREADY_COMPRESSED.contains( mimeType ) ) {
+            return false;
+        }
+        if ( mimeTypes.isEmpty() ) {
+            return mimeType.startsWith( "text/" ) || mimeType.contains( "xml" ) || mimeType.contains( "json" );
+        }
+        for ( String pattern : mimeTypes ) {
+            if ( pattern.endsWith( "*" ) ) {
+                if ( mimeType.startsWith( pattern.substring( 0, pattern.length() - 1 ) ) ) {
+                    return true;
+                }
+            } else if ( mimeType.equals( pattern ) ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Determines the content encoding to use for a response, based on the <code>Accept-Encoding</code> header of the
+     * request.
+     * 
+     * @param acceptEncoding
+     *            value of the <code>Accept-Encoding</code> header, can be <code>null</code>
+     * @return <code>gzip</code>, <code>deflate</code> or <code>null</code> (no supported encoding accepted)
+     */
+    public static String negotiateEncoding( String acceptEncoding ) {
+        if ( acceptEncoding == null ) {
+            return null;
+        }
+        float gzipQuality = 0;
+        float deflateQuality = 0;
+        float wildcardQuality = -1;
+        for ( String token : acceptEncoding.split( "," ) ) {
+            String[] parts = token.split( ";" );
+            String coding = parts[0].trim().toLowerCase();
+            float quality = 1;
+            for ( int i = 1; i < parts.length; i++ ) {
+                String param = parts[i].trim();
+                if ( param.startsWith( "q=" ) ) {
+                    try {
+                        quality = Float.parseFloat( param.substring( 2 ).trim() );
+                    } catch ( NumberFormatException e ) {
+                        quality = 0;
+                    }
+                }
+            }
+            if ( "gzip".equals( coding ) || "x-gzip".equals( coding ) ) {
+                gzipQuality = quality;
+            } else if ( "deflate".equals( coding ) ) {
+                deflateQuality = quality;
+            } else if ( "*".equals( coding ) ) {
+                wildcardQuality = quality;
+            }
+        }
+        if ( wildcardQuality > 0 && !acceptEncoding.toLowerCase().contains( "gzip" ) ) {
+            gzipQuality = wildcardQuality;
+        }
+        if ( gzipQuality > 0 && gzipQuality >= deflateQuality ) {
+            return "gzip";
+        }
+        if ( deflateQuality > 0 ) {
+            return "deflate";
+        }
+        return null;
+    }
+}
@@ -83,6 +83,15 @@ import org.slf4j.Logger;
  * called. This is unlike the original servlet API that throws an {@link IllegalStateException} when getWriter is called
  * after getOutputStream, or vice versa.
  * </p>
+ * <p>
+ * For large responses, buffering can be replaced by streaming (see {@link #enableStreaming()}): the output is written
+ * directly to the container and the response is committed as soon as the first bytes are written. Exceptions that occur
+ * afterwards can only be signalled in-band (see {@link #writeInBandException(String)}).
+ * </p>
+ * <p>
+ * Independent of the buffering mode, the output can be compressed transparently (see
+ * {@link #enableCompression(String, CompressionSettings)}).
+ * </p>
  * 
  * @author <a href="mailto:bezema@lat-lon.de">Rutger Bezema</a>
  * @author <a href="mailto:tonnhofer@lat-lon.de">Oliver Tonnhofer</a>
@@ -100,6 +109,16 @@ public class HttpResponseBuffer extends HttpServletResponseWrapper {
     // if buffer == null, buffering is disabled
     private StreamBufferStore buffer;
 
+    // if true, output is written to the container directly and the response is committed on the first write
+    private boolean streaming;
+
+    // if compressedStream == null, compression is disabled
+    private CompressingServletOutputStream compressedStream;
+
+    private String compressionEncoding;
+
+    private CompressionSettings compressionSettings;
+
     /**
      * The servlet api only allows a call to either getWriter or getOutputStream. This enum will protocol the current
      * state.
@@ -149,12 +168,80 @@ public class HttpResponseBuffer extends HttpServletResponseWrapper {
         }
         LOG.debug( "Disabling buffering." );
         this.buffer = null;
+        if ( compressedStream != null ) {
+            outputStream = compressedStream;
+        }
+    }
+
+    /**
+     * Disables the buffering of the output and commits the response (headers and first bytes) as soon as output is
+     * written.
+     * <p>
+     * This minimizes the time to the first byte and avoids the copying of large responses, but an exception that
+     * occurs after the response has been committed cannot replace the response anymore. This method may only be
+     * called, if neither {@link #getWriter()}, {@link #getOutputStream()} nor {@link #getXMLWriter()} has been called
+     * before.
+     * </p>
+     */
+    public void enableStreaming() {
+        if ( returnType != ReturnType.NOT_DEFINED_YET ) {
+            throw new IllegalStateException(
+                                             "getOutputStream() / getWriter() has already been called for this response, cannot enable streaming" );
+        }
+        LOG.debug( "Enabling streaming." );
+        this.buffer = null;
+        this.streaming = true;
+        outputStream = new StreamingServletOutputStream();
+    }
+
+    /**
+     * Enables the compression of the output (if the content type and size of the response are suitable).
+     * <p>
+     * This method may only be called, if neither {@link #getWriter()}, {@link #getOutputStream()} nor
+     * {@link #getXMLWriter()} has been called before.
+     * </p>
+     * 
+     * <p>
+     * As the encoding has been negotiated, the response is marked with <code>Vary: Accept-Encoding</code>, regardless
+     * of whether it is actually compressed.
+     * </p>
+     * 
+     * @param encoding
+     *            content encoding accepted by the client, either <code>gzip</code> or <code>deflate</code>, or
+     *            <code>null</code> (client accepts no supported encoding, output is not compressed)
+     * @param settings
+     *            compression settings, must not be <code>null</code>
+     */
+    public void enableCompression( String encoding, CompressionSettings settings ) {
+        if ( returnType != ReturnType.NOT_DEFINED_YET ) {
+            throw new IllegalStateException(
+                                             "getOutputStream() / getWriter() has already been called for this response, cannot enable compression" );
+        }
+        LOG.debug( "Enabling compression (" + encoding + ")." );
+        this.compressionEncoding = encoding;
+        this.compressionSettings = settings;
+        addHeader( "Vary", "Accept-Encoding" );
+        if ( encoding != null ) {
+            compressedStream = new CompressingServletOutputStream( wrappee, encoding, settings );
+            if ( buffer == null && !streaming ) {
+                outputStream = compressedStream;
+            }
+        }
+    }
+
+    /**
+     * Returns whether the output is streamed directly to the container.
+     * 
+     * @return true, if streaming has been enabled, false otherwise
+     */
+    public boolean isStreaming() {
+        return streaming;
     }
 
     @Override
     public PrintWriter getWriter()
                             throws IOException {
-        if ( buffer == null ) {
+        if ( isDirectOutput() ) {
             return super.getWriter();
         }
 
@@ -176,7 +263,7 @@ public class HttpResponseBuffer extends HttpServletResponseWrapper {
     @Override
     public ServletOutputStream getOutputStream()
                             throws IOException {
-        if ( buffer == null ) {
+        if ( isDirectOutput() ) {
             return super.getOutputStream();
         }
         if ( returnType == ReturnType.NOT_DEFINED_YET ) {
@@ -188,6 +275,20 @@ public class HttpResponseBuffer extends HttpServletResponseWrapper {
         return outputStream;
     }
 
+    // true, if output is written to the container's output stream without buffering, streaming or compression
+    private boolean isDirectOutput() {
+        return buffer == null && !streaming && compressedStream == null;
+    }
+
+    // returns the stream that writes to the container (compressing, if enabled)
+    private ServletOutputStream getContainerOutputStream()
+                            throws IOException {
+        if ( compressedStream != null ) {
+            return compressedStream;
+        }
+        return super.getOutputStream();
+    }
+
     /**
      * Returns an {@link XMLStreamWriter} for writing a response with XML content.
      * <p>
@@ -293,6 +394,47 @@ public class HttpResponseBuffer extends HttpServletResponseWrapper {
         }
     }
 
+    /**
+     * Signals an exception that occurred after a streamed response has been committed, so the client can detect that
+     * the response is incomplete.
+     * <p>
+     * The message is appended as an XML comment, if streaming is enabled and the content type of the response is XML.
+     * Otherwise, the exception cannot be signalled and is only logged.
+     * </p>
+     * 
+     * @param message
+     *            description of the exception, must not be <code>null</code>
+     */
+    public void writeInBandException( String message ) {
+        if ( !streaming || !isXmlContentType() ) {
+            LOG.warn( "Cannot signal exception in committed response (content type: " + getContentType() + "): "
+                      + message );
+            return;
+        }
+        String comment = " Response is incomplete. An exception occurred: " + message.replace( "--", "- -" ) + " ";
+        try {
+            if ( xmlWriter != null ) {
+                xmlWriter.writeComment( comment );
+                xmlWriter.flush();
+            } else if ( returnType == ReturnType.PRINT_WRITER ) {
+                printWriter.print( "<!--" + comment + "-->" );
+                printWriter.flush();
+            } else {
+                OutputStream os = getOutputStream();
+                os.write( ( "<!--" + comment + "-->" ).getBytes( "UTF-8" ) );
+                os.flush();
+            }
+        } catch ( Exception e ) {
+            LOG.warn( "Cannot signal exception in committed response: " + e.getLocalizedMessage() );
+            LOG.trace( "Stack trace:", e );
+        }
+    }
+
+    private boolean isXmlContentType() {
+        String contentType = getContentType();
+        return contentType != null && contentType.toLowerCase().contains( "xml" );
+    }
+
     @Override
     public void flushBuffer()
                             throws IOException {
@@ -307,19 +449,42 @@ public class HttpResponseBuffer extends HttpServletResponseWrapper {
                 throw new IOException( e );
             }
         }
+        if ( printWriter != null && returnType == ReturnType.PRINT_WRITER ) {
+            printWriter.flush();
+        }
         if ( buffer != null ) {
             buffer.flush();
-            buffer.writeTo( super.getOutputStream() );
+            buffer.writeTo( getContainerOutputStream() );
             buffer.reset();
         }
+        if ( compressedStream != null ) {
+            compressedStream.finish();
+        }
         super.flushBuffer();
     }
 
     @Override
     public void reset() {
-        if ( buffer != null && !isCommitted() ) {
-            buffer.reset();
+        if ( !isDirectOutput() && !isCommitted() ) {
+            if ( buffer != null ) {
+                buffer.reset();
+            }
             super.reset();
+            if ( compressionSettings != null ) {
+                // reset() clears the headers as well
+                addHeader( "Vary", "Accept-Encoding" );
+            }
+            if ( compressedStream != null ) {
+                // discard compression state
+                compressedStream = new CompressingServletOutputStream( wrappee, compressionEncoding,
+                                                                       compressionSettings );
+                if ( buffer == null && !streaming ) {
+                    outputStream = compressedStream;
+                }
+            }
+            if ( streaming ) {
+                outputStream = new StreamingServletOutputStream();
+            }
             returnType = ReturnType.NOT_DEFINED_YET;
             xmlWriter = null;
         } else {
@@ -383,4 +548,52 @@ public class HttpResponseBuffer extends HttpServletResponseWrapper {
             buffer.write( b );
         }
     }
+
+    /**
+     * This is a ServletOutputStream that writes to the container's output stream and commits the response on the first
+     * write.
+     */
+    private class StreamingServletOutputStream extends ServletOutputStream {
+
+        private ServletOutputStream os;
+
+        private boolean committed;
+
+        @Override
+        public void write( byte[] b, int off, int len )
+                                throws IOException {
+            getStream().write( b, off, len );
+            commit();
+        }
+
+        @Override
+        public void write( int b )
+                                throws IOException {
+            getStream().write( b );
+            commit();
+        }
+
+        @Override
+        public void flush()
+                                throws IOException {
+            getStream().flush();
+        }
+
+        private ServletOutputStream getStream()
+                                throws IOException {
+            if ( os == null ) {
+                os = getContainerOutputStream();
+            }
+            return os;
+        }
+
+        private void commit()
+                                throws IOException {
+            if ( !committed ) {
+                committed = true;
+                // sends the headers and the first bytes
+                os.flush();
+            }
+        }
+    }
 }
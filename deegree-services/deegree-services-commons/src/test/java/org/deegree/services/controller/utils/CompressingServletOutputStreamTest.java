@@ -0,0 +1,178 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.controller.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link CompressingServletOutputStream} (and its use by {@link HttpResponseBuffer}).
+ * 
+ * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class CompressingServletOutputStreamTest {
+
+    private static final CompressionSettings SETTINGS = new CompressionSettings( null, 100,
+                                                                                 CompressionSettings.DEFAULT_LEVEL );
+
+    private final ByteArrayOutputStream sent = new ByteArrayOutputStream();
+
+    private HttpServletResponse container;
+
+    @Before
+    public void setUp()
+                            throws IOException {
+        container = mock( HttpServletResponse.class );
+        ServletOutputStream os = new ServletOutputStream() {
+            @Override
+            public void write( int b ) {
+                sent.write( b );
+            }
+        };
+        when( container.getOutputStream() ).thenReturn( os );
+        when( container.getContentType() ).thenReturn( "text/xml" );
+    }
+
+    @Test
+    public void testHeldBackUntilMinSizeExceeded()
+                            throws IOException {
+        CompressingServletOutputStream os = new CompressingServletOutputStream( container, "gzip", SETTINGS );
+        byte[] data = createData( 150 );
+        os.write( data, 0, 100 );
+        os.flush();
+        assertEquals( 0, sent.size() );
+        verify( container, never() ).setHeader( "Content-Encoding", "gzip" );
+
+        os.write( data, 100, 50 );
+        verify( container ).setHeader( "Content-Encoding", "gzip" );
+        os.finish();
+        assertArrayEquals( data, IOUtils.toByteArray( new GZIPInputStream( getSent() ) ) );
+    }
+
+    @Test
+    public void testSmallResponseNotCompressed()
+                            throws IOException {
+        CompressingServletOutputStream os = new CompressingServletOutputStream( container, "gzip", SETTINGS );
+        byte[] data = createData( 100 );
+        os.write( data, 0, data.length );
+        assertEquals( 0, sent.size() );
+        os.finish();
+        assertArrayEquals( data, sent.toByteArray() );
+        verify( container, never() ).setHeader( "Content-Encoding", "gzip" );
+    }
+
+    @Test
+    public void testNotCompressibleContentType()
+                            throws IOException {
+        when( container.getContentType() ).thenReturn( "image/png" );
+        CompressingServletOutputStream os = new CompressingServletOutputStream( container, "gzip", SETTINGS );
+        byte[] data = createData( 500 );
+        os.write( data, 0, data.length );
+        os.finish();
+        assertArrayEquals( data, sent.toByteArray() );
+        verify( container, never() ).setHeader( "Content-Encoding", "gzip" );
+    }
+
+    @Test
+    public void testDeflate()
+                            throws IOException {
+        CompressingServletOutputStream os = new CompressingServletOutputStream( container, "deflate", SETTINGS );
+        byte[] data = createData( 500 );
+        os.write( data, 0, data.length );
+        os.finish();
+        verify( container ).setHeader( "Content-Encoding", "deflate" );
+        assertArrayEquals( data, IOUtils.toByteArray( new InflaterInputStream( getSent() ) ) );
+    }
+
+    @Test
+    public void testFinishedByFlushBuffer()
+                            throws IOException {
+        HttpResponseBuffer response = new HttpResponseBuffer( container );
+        response.enableCompression( "gzip", SETTINGS );
+        byte[] data = createData( 500 );
+        response.getOutputStream().write( data );
+        response.flushBuffer();
+        verify( container ).setHeader( "Content-Encoding", "gzip" );
+        verify( container ).addHeader( "Vary", "Accept-Encoding" );
+        // fails if the trailer has not been written
+        assertArrayEquals( data, IOUtils.toByteArray( new GZIPInputStream( getSent() ) ) );
+    }
+
+    @Test
+    public void testVaryWithoutCompression()
+                            throws IOException {
+        HttpResponseBuffer response = new HttpResponseBuffer( container );
+        response.enableCompression( null, SETTINGS );
+        byte[] data = createData( 500 );
+        response.getOutputStream().write( data );
+        response.flushBuffer();
+        verify( container ).addHeader( "Vary", "Accept-Encoding" );
+        verify( container, never() ).setHeader( "Content-Encoding", "gzip" );
+        assertArrayEquals( data, sent.toByteArray() );
+    }
+
+    private InputStream getSent() {
+        return new ByteArrayInputStream( sent.toByteArray() );
+    }
+
+    private static byte[] createData( int length ) {
+        byte[] data = new byte[length];
+        Arrays.fill( data, (byte) 'x' );
+        return data;
+    }
+}
@@ -0,0 +1,90 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.controller.utils;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link CompressionSettings}.
+ * 
+ * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class CompressionSettingsTest {
+
+    @Test
+    public void testNegotiateEncoding() {
+        assertNull( CompressionSettings.negotiateEncoding( null ) );
+        assertNull( CompressionSettings.negotiateEncoding( "identity" ) );
+        assertEquals( "gzip", CompressionSettings.negotiateEncoding( "gzip, deflate" ) );
+        assertEquals( "gzip", CompressionSettings.negotiateEncoding( "x-gzip" ) );
+        assertEquals( "deflate", CompressionSettings.negotiateEncoding( "deflate" ) );
+        assertEquals( "deflate", CompressionSettings.negotiateEncoding( "gzip;q=0.5, deflate" ) );
+        assertEquals( "deflate", CompressionSettings.negotiateEncoding( "gzip;q=0, deflate" ) );
+        assertNull( CompressionSettings.negotiateEncoding( "gzip;q=0" ) );
+        assertEquals( "gzip", CompressionSettings.negotiateEncoding( "*" ) );
+    }
+
+    @Test
+    public void testIsCompressibleDefaults() {
+        CompressionSettings settings = new CompressionSettings( null, 0, 6 );
+        assertTrue( settings.isCompressible( "text/xml; subtype=gml/3.1.1" ) );
+        assertTrue( settings.isCompressible( "application/gml+xml; version=3.2" ) );
+        assertTrue( settings.isCompressible( "application/vnd.ogc.se_xml" ) );
+        assertTrue( settings.isCompressible( "application/json" ) );
+        assertFalse( settings.isCompressible( "image/png" ) );
+        assertFalse( settings.isCompressible( "application/octet-stream" ) );
+        assertFalse( settings.isCompressible( null ) );
+    }
+
+    @Test
+    public void testIsCompressibleConfigured() {
+        CompressionSettings settings = new CompressionSettings( asList( "text/*", "image/*" ), 0, 6 );
+        assertTrue( settings.isCompressible( "text/plain" ) );
+        assertTrue( settings.isCompressible( "image/tiff" ) );
+        assertFalse( settings.isCompressible( "image/png" ) );
+        assertFalse( settings.isCompressible( "IMAGE/JPEG" ) );
+        assertFalse( settings.isCompressible( "application/xml" ) );
+    }
+}
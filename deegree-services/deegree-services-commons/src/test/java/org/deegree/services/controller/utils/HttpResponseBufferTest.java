@@ -0,0 +1,225 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.controller.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UnsupportedEncodingException;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ * Tests for the buffering, streaming and in-band exception handling of {@link HttpResponseBuffer}.
+ * 
+ * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class HttpResponseBufferTest {
+
+    private static final String IN_BAND_EXCEPTION = "<!-- Response is incomplete. An exception occurred: boom - -x -->";
+
+    private final ByteArrayOutputStream sent = new ByteArrayOutputStream();
+
+    private int flushes;
+
+    private boolean committed;
+
+    private String contentType;
+
+    private HttpServletResponse container;
+
+    @Before
+    public void setUp()
+                            throws IOException {
+        container = mock( HttpServletResponse.class );
+        final ServletOutputStream os = new ServletOutputStream() {
+            @Override
+            public void write( int b ) {
+                sent.write( b );
+            }
+
+            @Override
+            public void flush() {
+                flushes++;
+                committed = true;
+            }
+        };
+        when( container.getOutputStream() ).thenReturn( os );
+        when( container.isCommitted() ).thenAnswer( new Answer<Boolean>() {
+            @Override
+            public Boolean answer( InvocationOnMock invocation ) {
+                return committed;
+            }
+        } );
+        when( container.getContentType() ).thenAnswer( new Answer<String>() {
+            @Override
+            public String answer( InvocationOnMock invocation ) {
+                return contentType;
+            }
+        } );
+        doAnswer( new Answer<Void>() {
+            @Override
+            public Void answer( InvocationOnMock invocation ) {
+                contentType = (String) invocation.getArguments()[0];
+                return null;
+            }
+        } ).when( container ).setContentType( anyString() );
+    }
+
+    @Test
+    public void testBufferedUntilFlush()
+                            throws IOException {
+        HttpResponseBuffer response = new HttpResponseBuffer( container );
+        response.getOutputStream().write( "<a/>".getBytes( "UTF-8" ) );
+        assertEquals( 0, sent.size() );
+        assertFalse( response.isCommitted() );
+        response.flushBuffer();
+        assertEquals( "<a/>", getSent() );
+    }
+
+    @Test
+    public void testStreamingNotCommittedBeforeFirstWrite()
+                            throws IOException {
+        HttpResponseBuffer response = new HttpResponseBuffer( container );
+        response.enableStreaming();
+        assertTrue( response.isStreaming() );
+        response.setContentType( "text/xml" );
+        response.getOutputStream();
+        assertFalse( response.isCommitted() );
+        // an exception can still replace the response
+        response.reset();
+        assertEquals( 0, sent.size() );
+    }
+
+    @Test
+    public void testStreamingFlushesFirstWrite()
+                            throws IOException {
+        HttpResponseBuffer response = new HttpResponseBuffer( container );
+        response.enableStreaming();
+        ServletOutputStream os = response.getOutputStream();
+        os.write( "<a>".getBytes( "UTF-8" ) );
+        // headers and first bytes are sent immediately
+        assertEquals( "<a>", getSent() );
+        assertEquals( 1, flushes );
+        assertTrue( response.isCommitted() );
+        os.write( "</a>".getBytes( "UTF-8" ) );
+        assertEquals( "<a></a>", getSent() );
+        assertEquals( 1, flushes );
+    }
+
+    @Test
+    public void testInBandExceptionForStreamedXml()
+                            throws IOException {
+        HttpResponseBuffer response = new HttpResponseBuffer( container );
+        response.enableStreaming();
+        response.setContentType( "application/gml+xml; version=3.2" );
+        response.getOutputStream().write( "<a>".getBytes( "UTF-8" ) );
+        response.writeInBandException( "boom --x" );
+        assertEquals( "<a>" + IN_BAND_EXCEPTION, getSent() );
+    }
+
+    @Test
+    public void testInBandExceptionForStreamedXmlWriter()
+                            throws Exception {
+        HttpResponseBuffer response = new HttpResponseBuffer( container );
+        response.enableStreaming();
+        response.setContentType( "text/xml" );
+        XMLStreamWriter writer = response.getXMLWriter();
+        writer.writeStartElement( "a" );
+        writer.writeCharacters( "x" );
+        writer.flush();
+        response.writeInBandException( "boom --x" );
+        assertTrue( getSent().endsWith( IN_BAND_EXCEPTION ) );
+    }
+
+    @Test
+    public void testInBandExceptionForStreamedPrintWriter()
+                            throws IOException {
+        HttpResponseBuffer response = new HttpResponseBuffer( container );
+        response.enableStreaming();
+        response.setContentType( "text/xml" );
+        PrintWriter writer = response.getWriter();
+        writer.print( "<a>" );
+        writer.flush();
+        response.writeInBandException( "boom --x" );
+        assertEquals( "<a>" + IN_BAND_EXCEPTION, getSent() );
+    }
+
+    @Test
+    public void testNoInBandExceptionForBufferedResponse()
+                            throws IOException {
+        HttpResponseBuffer response = new HttpResponseBuffer( container );
+        response.setContentType( "text/xml" );
+        response.getOutputStream().write( "<a/>".getBytes( "UTF-8" ) );
+        response.flushBuffer();
+        response.writeInBandException( "boom --x" );
+        assertEquals( "<a/>", getSent() );
+    }
+
+    @Test
+    public void testNoInBandExceptionForStreamedBinary()
+                            throws IOException {
+        HttpResponseBuffer response = new HttpResponseBuffer( container );
+        response.enableStreaming();
+        response.setContentType( "image/png" );
+        response.getOutputStream().write( new byte[] { 1, 2, 3 } );
+        response.writeInBandException( "boom --x" );
+        assertEquals( 3, sent.size() );
+    }
+
+    private String getSent()
+                            throws UnsupportedEncodingException {
+        return sent.toString( "UTF-8" );
+    }
+}
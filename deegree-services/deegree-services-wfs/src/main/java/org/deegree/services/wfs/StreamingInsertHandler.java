@@ -0,0 +1,418 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.wfs;
+
+import static javax.xml.stream.XMLOutputFactory.IS_REPAIRING_NAMESPACES;
+import static javax.xml.stream.XMLStreamConstants.END_ELEMENT;
+import static javax.xml.stream.XMLStreamConstants.START_ELEMENT;
+import static org.deegree.commons.xml.CommonNamespaces.GML3_2_NS;
+import static org.deegree.commons.xml.CommonNamespaces.GMLNS;
+import static org.deegree.commons.xml.CommonNamespaces.XLNNS;
+import static org.deegree.protocol.wfs.WFSConstants.WFS_NS;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import javax.xml.stream.util.StreamReaderDelegate;
+
+import org.deegree.commons.tom.ReferenceResolvingException;
+import org.deegree.commons.utils.io.StreamBufferStore;
+import org.deegree.commons.xml.XMLAdapter;
+import org.deegree.commons.xml.XMLParsingException;
+import org.deegree.commons.xml.stax.XMLStreamUtils;
+import org.deegree.cs.coordinatesystems.ICRS;
+import org.deegree.cs.exceptions.UnknownCRSException;
+import org.deegree.feature.Feature;
+import org.deegree.feature.GenericFeatureCollection;
+import org.deegree.feature.persistence.FeatureStoreException;
+import org.deegree.feature.persistence.FeatureStoreTransaction;
+import org.deegree.feature.types.AppSchema;
+import org.deegree.gml.GMLInputFactory;
+import org.deegree.gml.GMLStreamReader;
+import org.deegree.gml.GMLVersion;
+import org.deegree.gml.reference.FeatureReference;
+import org.deegree.gml.reference.GmlDocumentIdContext;
+import org.deegree.protocol.wfs.transaction.action.IDGenMode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Inserts the features of a <code>wfs:Insert</code> action in blocks, so the complete payload never has to be kept in
+ * memory as a feature collection.
+ * <p>
+ * The payload is processed in two passes:
+ * <ol>
+ * <li>The member features are copied to a {@link StreamBufferStore} (which switches to a temporary file for large
+ * payloads). While copying, the <code>gml:id</code>s and local <code>xlink:href</code>s of every member are recorded.
+ * Members that are connected by local references (in either direction) are grouped together.</li>
+ * <li>The copied members are parsed one by one and passed to
+ * {@link FeatureStoreTransaction#performInsert(org.deegree.feature.FeatureCollection, IDGenMode)} in blocks. A block is
+ * only closed when all members of the groups it touches have been read, so every local reference (including forward
+ * references) can be resolved within its block.</li>
+ * </ol>
+ * All blocks are inserted using the same {@link FeatureStoreTransaction}, so the all-or-nothing semantics of the
+ * transaction are retained.
+ * </p>
+ * 
+ * @see TransactionHandler
+ * 
+ * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+class StreamingInsertHandler {
+
+    private static final Logger LOG = LoggerFactory.getLogger( StreamingInsertHandler.class );
+
+    private static final QName WFS_FEATURE_COLLECTION = new QName( WFS_NS, "FeatureCollection" );
+
+    private final FeatureStoreTransaction ta;
+
+    private final AppSchema schema;
+
+    private final GMLVersion inputFormat;
+
+    private final ICRS defaultCRS;
+
+    private final int blockSize;
+
+    // key: gml:id of an object contained in a member, value: index of the member
+    private final Map<String, Integer> idToMember = new HashMap<String, Integer>();
+
+    // local references that point to objects which have not been encountered yet (member index / referenced id)
+    private final List<Integer> forwardRefMembers = new ArrayList<Integer>();
+
+    private final List<String> forwardRefIds = new ArrayList<String>();
+
+    // key: index of a member that is a reference (gml:featureMember/@xlink:href), value: uri
+    private final Map<Integer, String> memberRefs = new HashMap<Integer, String>();
+
+    // union-find forest over member indexes (members connected by local references)
+    private int[] groups = new int[1024];
+
+    private int numMembers;
+
+    /**
+     * Creates a new {@link StreamingInsertHandler} instance.
+     * 
+     * @param ta
+     *            transaction to use for inserting the features, must not be <code>null</code>
+     * @param schema
+     *            application schema of the features, must not be <code>null</code>
+     * @param inputFormat
+     *            GML version of the features, must not be <code>null</code>
+     * @param defaultCRS
+     *            default CRS for geometries without srsName, can be <code>null</code>
+     * @param blockSize
+     *            number of features to pass to the feature store at once (larger blocks may occur if features are
+     *            connected by local references)
+     */
+    StreamingInsertHandler( FeatureStoreTransaction ta, AppSchema schema, GMLVersion inputFormat, ICRS defaultCRS,
+                            int blockSize ) {
+        this.ta = ta;
+        this.schema = schema;
+        this.inputFormat = inputFormat;
+        this.defaultCRS = defaultCRS;
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * Inserts the features contained in a <code>wfs:Insert</code> element (either unenclosed or wrapped in a
+     * <code>wfs:FeatureCollection</code>).
+     * 
+     * @param xmlStream
+     *            must point at the <code>START_ELEMENT</code> event of the first child element of the
+     *            <code>wfs:Insert</code>, points at the <code>END_ELEMENT</code> event of the <code>wfs:Insert</code>
+     *            afterwards
+     * @param mode
+     *            id generation mode, must not be <code>null</code>
+     * @return ids of the inserted features, never <code>null</code>
+     * @throws XMLStreamException
+     * @throws XMLParsingException
+     * @throws UnknownCRSException
+     * @throws ReferenceResolvingException
+     * @throws FeatureStoreException
+     * @throws IOException
+     */
+    List<String> insert( XMLStreamReader xmlStream, IDGenMode mode )
+                            throws XMLStreamException, XMLParsingException, UnknownCRSException,
+                            ReferenceResolvingException, FeatureStoreException, IOException {
+
+        StreamBufferStore spool = new StreamBufferStore();
+        try {
+            spoolMembers( xmlStream, spool );
+            int[] groupEnds = determineGroupEnds();
+            LOG.debug( "Spooled " + numMembers + " members (" + spool.size() + " bytes) for streaming insert." );
+            InputStream is = spool.getInputStream();
+            try {
+                return insertMembers( is, groupEnds, mode );
+            } finally {
+                is.close();
+            }
+        } finally {
+            spool.reset();
+        }
+    }
+
+    private void spoolMembers( XMLStreamReader xmlStream, StreamBufferStore spool )
+                            throws XMLStreamException, IOException {
+
+        XMLOutputFactory outputFactory = XMLOutputFactory.newInstance();
+        // namespace bindings of ancestor elements are not copied, so they have to be repaired
+        outputFactory.setProperty( IS_REPAIRING_NAMESPACES, true );
+        XMLStreamWriter writer = outputFactory.createXMLStreamWriter( spool, "UTF-8" );
+        writer.writeStartDocument( "UTF-8", "1.0" );
+        writer.writeStartElement( "members" );
+
+        if ( WFS_FEATURE_COLLECTION.equals( xmlStream.getName() ) ) {
+            LOG.debug( "Features embedded in wfs:FeatureCollection" );
+            while ( xmlStream.nextTag() == START_ELEMENT ) {
+                QName elName = xmlStream.getName();
+                if ( GMLNS.equals( elName.getNamespaceURI() ) && "featureMember".equals( elName.getLocalPart() ) ) {
+                    String href = xmlStream.getAttributeValue( XLNNS, "href" );
+                    if ( href != null ) {
+                        int member = addMember();
+                        memberRefs.put( member, href );
+                        if ( href.startsWith( "#" ) ) {
+                            addLocalReference( member, href.substring( 1 ) );
+                        }
+                        XMLStreamUtils.skipElement( xmlStream );
+                    } else {
+                        xmlStream.nextTag();
+                        spoolMember( xmlStream, writer );
+                        xmlStream.nextTag();
+                    }
+                } else if ( GMLNS.equals( elName.getNamespaceURI() )
+                            && "featureMembers".equals( elName.getLocalPart() ) ) {
+                    while ( xmlStream.nextTag() == START_ELEMENT ) {
+                        spoolMember( xmlStream, writer );
+                    }
+                } else {
+                    LOG.debug( "Ignoring element '" + elName + "'" );
+                    XMLStreamUtils.skipElement( xmlStream );
+                }
+            }
+            xmlStream.require( END_ELEMENT, WFS_NS, "FeatureCollection" );
+            // skip to wfs:Insert END_ELEMENT
+            xmlStream.nextTag();
+        } else {
+            LOG.debug( "Unenclosed features to be inserted" );
+            spoolMember( xmlStream, writer );
+            while ( xmlStream.nextTag() == START_ELEMENT ) {
+                spoolMember( xmlStream, writer );
+            }
+        }
+
+        writer.writeEndElement();
+        writer.writeEndDocument();
+        writer.close();
+        spool.close();
+    }
+
+    private void spoolMember( XMLStreamReader xmlStream, XMLStreamWriter writer )
+                            throws XMLStreamException {
+        final int member = addMember();
+        scanAttributes( xmlStream, member );
+        XMLStreamReader scanningStream = new StreamReaderDelegate( xmlStream ) {
+            @Override
+            public int next()
+                                    throws XMLStreamException {
+                int event = super.next();
+                if ( event == START_ELEMENT ) {
+                    scanAttributes( this, member );
+                }
+                return event;
+            }
+        };
+        XMLAdapter.writeElement( writer, scanningStream );
+    }
+
+    private void scanAttributes( XMLStreamReader xmlStream, int member ) {
+        for ( int i = 0; i < xmlStream.getAttributeCount(); i++ ) {
+            String ns = xmlStream.getAttributeNamespace( i );
+            String localName = xmlStream.getAttributeLocalName( i );
+            if ( ns == null || ns.length() == 0 ) {
+                // GML 2 identifiers
+                if ( "fid".equals( localName ) || "gid".equals( localName ) ) {
+                    addId( xmlStream.getAttributeValue( i ), member );
+                }
+            } else if ( GMLNS.equals( ns ) || GML3_2_NS.equals( ns ) ) {
+                if ( "id".equals( localName ) ) {
+                    addId( xmlStream.getAttributeValue( i ), member );
+                }
+            } else if ( XLNNS.equals( ns ) && "href".equals( localName ) ) {
+                String href = xmlStream.getAttributeValue( i );
+                if ( href.startsWith( "#" ) ) {
+                    addLocalReference( member, href.substring( 1 ) );
+                }
+            }
+        }
+    }
+
+    private int addMember() {
+        if ( numMembers == groups.length ) {
+            groups = Arrays.copyOf( groups, numMembers * 2 );
+        }
+        groups[numMembers] = numMembers;
+        return numMembers++;
+    }
+
+    private void addId( String id, int member ) {
+        Integer previous = idToMember.put( id, member );
+        if ( previous != null ) {
+            union( previous, member );
+        }
+    }
+
+    private void addLocalReference( int member, String id ) {
+        Integer target = idToMember.get( id );
+        if ( target != null ) {
+            union( member, target );
+        } else {
+            forwardRefMembers.add( member );
+            forwardRefIds.add( id );
+        }
+    }
+
+    private int find( int member ) {
+        int root = member;
+        while ( groups[root] != root ) {
+            root = groups[root];
+        }
+        // path compression
+        while ( groups[member] != root ) {
+            int next = groups[member];
+            groups[member] = root;
+            member = next;
+        }
+        return root;
+    }
+
+    private void union( int member1, int member2 ) {
+        int root1 = find( member1 );
+        int root2 = find( member2 );
+        if ( root1 != root2 ) {
+            groups[Math.max( root1, root2 )] = Math.min( root1, root2 );
+        }
+    }
+
+    /**
+     * Resolves the recorded forward references and determines the index of the last member of every group.
+     * 
+     * @return index of the last member of the group, indexed by group root
+     */
+    private int[] determineGroupEnds() {
+        for ( int i = 0; i < forwardRefMembers.size(); i++ ) {
+            Integer target = idToMember.get( forwardRefIds.get( i ) );
+            if ( target != null ) {
+                union( forwardRefMembers.get( i ), target );
+            }
+            // unresolvable references are reported when the member is parsed
+        }
+        idToMember.clear();
+        forwardRefMembers.clear();
+        forwardRefIds.clear();
+
+        int[] groupEnds = new int[numMembers];
+        for ( int i = 0; i < numMembers; i++ ) {
+            groupEnds[find( i )] = i;
+        }
+        return groupEnds;
+    }
+
+    private List<String> insertMembers( InputStream is, int[] groupEnds, IDGenMode mode )
+                            throws XMLStreamException, XMLParsingException, UnknownCRSException,
+                            ReferenceResolvingException, FeatureStoreException {
+
+        XMLStreamReader xmlStream = XMLInputFactory.newInstance().createXMLStreamReader( is );
+        GMLStreamReader gmlStream = GMLInputFactory.createGMLStreamReader( inputFormat, xmlStream );
+        gmlStream.setApplicationSchema( schema );
+        gmlStream.setDefaultCRS( defaultCRS );
+        GmlDocumentIdContext idContext = gmlStream.getIdContext();
+
+        List<String> newFids = new ArrayList<String>();
+        List<Feature> block = new ArrayList<Feature>( blockSize );
+        int blockEnd = 0;
+
+        XMLStreamUtils.skipStartDocument( xmlStream );
+        // members element
+        xmlStream.nextTag();
+        for ( int i = 0; i < numMembers; i++ ) {
+            String href = memberRefs.get( i );
+            if ( href != null ) {
+                FeatureReference ref = new FeatureReference( idContext, href, null );
+                idContext.addReference( ref );
+                block.add( ref );
+            } else {
+                xmlStream.require( START_ELEMENT, null, null );
+                block.add( gmlStream.readFeature() );
+                xmlStream.nextTag();
+            }
+            blockEnd = Math.max( blockEnd, groupEnds[find( i )] );
+            if ( i >= blockEnd && block.size() >= blockSize ) {
+                insertBlock( block, idContext, mode, newFids );
+            }
+        }
+        if ( !block.isEmpty() ) {
+            insertBlock( block, idContext, mode, newFids );
+        }
+        xmlStream.close();
+        return newFids;
+    }
+
+    private void insertBlock( List<Feature> block, GmlDocumentIdContext idContext, IDGenMode mode,
+                              List<String> newFids )
+                            throws ReferenceResolvingException, FeatureStoreException {
+        // all members connected by local references are contained in the block
+        idContext.resolveLocalRefs();
+        LOG.debug( "Inserting block of " + block.size() + " features." );
+        newFids.addAll( ta.performInsert( new GenericFeatureCollection( null, block ), mode ) );
+        block.clear();
+        idContext.clear();
+    }
+}
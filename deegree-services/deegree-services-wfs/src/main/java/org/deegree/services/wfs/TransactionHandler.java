@@ -65,10 +65,12 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import javax.xml.namespace.QName;
 import javax.xml.stream.XMLStreamException;
@@ -102,6 +104,7 @@ import org.deegree.feature.persistence.lock.Lock;
 import org.deegree.feature.persistence.lock.LockManager;
 import org.deegree.feature.property.GenericProperty;
 import org.deegree.feature.types.AppSchema;
+import org.deegree.feature.types.FeatureCollectionType;
 import org.deegree.feature.types.FeatureType;
 import org.deegree.feature.types.property.CustomPropertyType;
 import org.deegree.filter.Filter;
@@ -129,6 +132,7 @@ import org.deegree.protocol.wfs.transaction.action.Update;
 import org.deegree.protocol.wfs.transaction.action.UpdateAction;
 import org.deegree.services.controller.utils.HttpResponseBuffer;
 import org.deegree.services.i18n.Messages;
+import org.deegree.services.wfs.cache.GetFeatureResponseCache;
 import org.jaxen.expr.Expr;
 import org.jaxen.expr.LocationPath;
 import org.jaxen.expr.NameStep;
@@ -167,8 +171,13 @@ class TransactionHandler {
 
     private int deleted;
 
+    // feature types that may have been modified (for invalidating cached responses)
+    private final Set<QName> modifiedFts = new HashSet<QName>();
+
     private final IDGenMode idGenMode;
 
+    private final int insertBlockSize;
+
     /**
      * Creates a new {@link TransactionHandler} instance that uses the given service to lookup requested
      * {@link FeatureType}s.
@@ -180,13 +189,17 @@ class TransactionHandler {
      * @param request
      *            request to be handled
      * @param idGenMode
+     * @param insertBlockSize
+     *            number of features to insert at once (streaming insert), 0 disables streaming (payload is parsed
+     *            completely before inserting)
      */
     TransactionHandler( WebFeatureService master, WfsFeatureStoreManager service, Transaction request,
-                        IDGenMode idGenMode ) {
+                        IDGenMode idGenMode, int insertBlockSize ) {
         this.master = master;
         this.service = service;
         this.request = request;
         this.idGenMode = idGenMode;
+        this.insertBlockSize = insertBlockSize;
     }
 
     /**
@@ -256,6 +269,11 @@ class TransactionHandler {
                 LOG.debug( "Committing feature store transaction:" + ta );
                 ta.commit();
             }
+
+            GetFeatureResponseCache responseCache = master.getResponseCache();
+            if ( responseCache != null && !modifiedFts.isEmpty() ) {
+                responseCache.invalidate( modifiedFts );
+            }
         } catch ( MissingParameterException e ) {
             // needed for CITE compliance (wfs:wfs-1.1.0-Transaction-tc12.1)
             LOG.debug( "Error occured during transaction, performing rollback." );
@@ -337,6 +355,7 @@ class TransactionHandler {
         }
 
         FeatureStoreTransaction ta = acquireTransaction( fs );
+        modifiedFts.add( ftName );
 
         Filter filter = delete.getFilter();
         // superimpose default query CRS
@@ -388,13 +407,10 @@ class TransactionHandler {
 
         GMLVersion inputFormat = determineFormat( request.getVersion(), insert.getInputFormat() );
 
-        // TODO streaming
         FeatureStoreTransaction ta = null;
         try {
             XMLStreamReader xmlStream = insert.getFeatures();
-            FeatureCollection fc = parseFeaturesOrCollection( xmlStream, inputFormat, defaultCRS );
             FeatureStore fs = service.getStores()[0];
-            ta = acquireTransaction( fs );
             IDGenMode mode = insert.getIdGen();
             if ( mode == null ) {
                 if ( VERSION_110.equals( request.getVersion() ) ) {
@@ -403,7 +419,21 @@ class TransactionHandler {
                     mode = idGenMode;
                 }
             }
-            List<String> newFids = ta.performInsert( fc, mode );
+            List<String> newFids = null;
+            // inserted features (and their subfeatures) may be of any type of the store
+            for ( FeatureType ft : fs.getSchema().getFeatureTypes() ) {
+                modifiedFts.add( ft.getName() );
+            }
+            if ( insertBlockSize > 0 && !isApplicationFeatureCollection( xmlStream, fs.getSchema() ) ) {
+                ta = acquireTransaction( fs );
+                StreamingInsertHandler handler = new StreamingInsertHandler( ta, fs.getSchema(), inputFormat,
+                                                                             defaultCRS, insertBlockSize );
+                newFids = handler.insert( xmlStream, mode );
+            } else {
+                FeatureCollection fc = parseFeaturesOrCollection( xmlStream, inputFormat, defaultCRS );
+                ta = acquireTransaction( fs );
+                newFids = ta.performInsert( fc, mode );
+            }
             for ( String newFid : newFids ) {
                 inserted.add( newFid, insert.getHandle() );
             }
@@ -414,6 +444,11 @@ class TransactionHandler {
         }
     }
 
+    private boolean isApplicationFeatureCollection( XMLStreamReader xmlStream, AppSchema schema ) {
+        FeatureType ft = schema.getFeatureType( xmlStream.getName() );
+        return ft instanceof FeatureCollectionType;
+    }
+
     private FeatureCollection parseFeaturesOrCollection( XMLStreamReader xmlStream, GMLVersion inputFormat,
                                                          ICRS defaultCRS )
                             throws XMLStreamException, XMLParsingException, UnknownCRSException,
@@ -531,6 +566,7 @@ class TransactionHandler {
         GMLVersion inputFormat = determineFormat( request.getVersion(), update.getInputFormat() );
 
         FeatureStoreTransaction ta = acquireTransaction( fs );
+        modifiedFts.add( ftName );
         List<ParsedPropertyReplacement> replacementProps = getReplacementProps( update, ft, inputFormat );
         Filter filter = null;
         try {
@@ -675,6 +711,7 @@ class TransactionHandler {
         }
 
         FeatureStoreTransaction ta = acquireTransaction( fs );
+        modifiedFts.add( ftName );
         try {
             String newFid = ta.performReplace( replacementFeature, filter, lock, idGenMode );
             replaced.add( newFid, replace.getHandle() );
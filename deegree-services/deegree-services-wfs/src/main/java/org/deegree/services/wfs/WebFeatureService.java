@@ -48,6 +48,7 @@ import static org.deegree.protocol.wfs.WFSConstants.VERSION_100;
 import static org.deegree.protocol.wfs.WFSConstants.VERSION_110;
 import static org.deegree.protocol.wfs.WFSConstants.VERSION_200;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.URL;
 import java.util.ArrayList;
@@ -150,9 +151,11 @@ import org.deegree.services.jaxb.wfs.CustomFormat;
 import org.deegree.services.jaxb.wfs.DeegreeWFS;
 import org.deegree.services.jaxb.wfs.DeegreeWFS.EnableTransactions;
 import org.deegree.services.jaxb.wfs.DeegreeWFS.ExtendedCapabilities;
+import org.deegree.services.jaxb.wfs.DeegreeWFS.ResponseCache;
 import org.deegree.services.jaxb.wfs.DeegreeWFS.SupportedVersions;
 import org.deegree.services.jaxb.wfs.FeatureTypeMetadata;
 import org.deegree.services.jaxb.wfs.GMLFormat;
+import org.deegree.services.jaxb.wfs.GeoJSONFormat;
 import org.deegree.services.jaxb.wfs.IdentifierGenerationOptionType;
 import org.deegree.services.metadata.MetadataUtils;
 import org.deegree.services.metadata.OWSMetadataProvider;
@@ -161,7 +164,9 @@ import org.deegree.services.metadata.provider.OWSMetadataProviderProvider;
 import org.deegree.services.ows.OWS100ExceptionReportSerializer;
 import org.deegree.services.ows.OWS110ExceptionReportSerializer;
 import org.deegree.services.ows.PreOWSExceptionReportSerializer;
+import org.deegree.services.wfs.cache.GetFeatureResponseCache;
 import org.deegree.services.wfs.format.Format;
+import org.deegree.services.wfs.format.geojson.GeoJsonFormat;
 import org.deegree.services.wfs.query.StoredQueryHandler;
 import org.deegree.workspace.ResourceIdentifier;
 import org.deegree.workspace.ResourceInitException;
@@ -207,8 +212,16 @@ public class WebFeatureService extends AbstractOWS {
 
     private IDGenMode idGenMode;
 
+    // number of features per block for streaming inserts, 0 means: parse complete insert payload first
+    private int insertBlockSize;
+
     private boolean disableBuffering = true;
 
+    // if true, GetFeature / GetPropertyValue responses are streamed to the client
+    private boolean enableStreaming;
+
+    private GetFeatureResponseCache responseCache;
+
     private ICRS defaultQueryCRS = CRSUtils.EPSG_4326;
 
     private List<ICRS> queryCRS = new ArrayList<ICRS>();
@@ -240,12 +253,18 @@ public class WebFeatureService extends AbstractOWS {
         if ( enableTransactions != null ) {
             this.enableTransactions = enableTransactions.isValue();
             this.idGenMode = parseIdGenMode( enableTransactions.getIdGen() );
+            if ( enableTransactions.getInsertBlockSize() != null ) {
+                this.insertBlockSize = enableTransactions.getInsertBlockSize().intValue();
+            }
         }
         if ( jaxbConfig.isEnableResponseBuffering() != null ) {
             disableBuffering = !jaxbConfig.isEnableResponseBuffering();
         } else if ( jaxbConfig.isDisableResponseBuffering() != null ) {
             disableBuffering = jaxbConfig.isDisableResponseBuffering();
         }
+        if ( jaxbConfig.isEnableResponseStreaming() != null ) {
+            enableStreaming = jaxbConfig.isEnableResponseStreaming();
+        }
 
         queryMaxFeatures = jaxbConfig.getQueryMaxFeatures() == null ? DEFAULT_MAX_FEATURES
                                                                    : jaxbConfig.getQueryMaxFeatures().intValue();
@@ -272,9 +291,32 @@ public class WebFeatureService extends AbstractOWS {
 
         initQueryCRS( jaxbConfig.getQueryCRS() );
         initFormats( jaxbConfig.getAbstractFormat() );
+        initResponseCache( jaxbConfig.getResponseCache() );
         mdProvider = initMetadataProvider( serviceMetadata, jaxbConfig );
     }
 
+    private void initResponseCache( ResponseCache cacheConfig ) {
+        if ( cacheConfig == null ) {
+            return;
+        }
+        try {
+            File directory;
+            if ( cacheConfig.getDirectory() != null ) {
+                directory = new File( cacheConfig.getDirectory() );
+            } else {
+                directory = File.createTempFile( "wfs-cache", "" );
+                if ( !directory.delete() ) {
+                    throw new IOException( "Unable to create cache directory '" + directory + "'." );
+                }
+            }
+            long maxSize = cacheConfig.getMaxSize().longValue();
+            LOG.info( "Caching GetFeature responses in '" + directory + "' (max. " + maxSize + " bytes)." );
+            responseCache = new GetFeatureResponseCache( directory, maxSize, service );
+        } catch ( IOException e ) {
+            throw new ResourceInitException( "Error initializing GetFeature response cache: " + e.getMessage(), e );
+        }
+    }
+
     private IDGenMode parseIdGenMode( IdentifierGenerationOptionType idGen ) {
         if ( idGen == null ) {
             return IDGenMode.GENERATE_NEW;
@@ -375,6 +417,8 @@ public class WebFeatureService extends AbstractOWS {
                 Format format = null;
                 if ( formatDef instanceof GMLFormat ) {
                     format = new org.deegree.services.wfs.format.gml.GmlFormat( this, (GMLFormat) formatDef );
+                } else if ( formatDef instanceof GeoJSONFormat ) {
+                    format = new GeoJsonFormat( this, (GeoJSONFormat) formatDef );
                 } else if ( formatDef instanceof CustomFormat ) {
                     CustomFormat cf = (CustomFormat) formatDef;
                     String className = cf.getJavaClass();
@@ -497,6 +541,9 @@ public class WebFeatureService extends AbstractOWS {
     @Override
     public void destroy() {
         LOG.debug( "destroy" );
+        if ( responseCache != null ) {
+            responseCache.destroy();
+        }
     }
 
     /**
@@ -508,6 +555,15 @@ public class WebFeatureService extends AbstractOWS {
         return service;
     }
 
+    /**
+     * Returns the cache for GetFeature responses.
+     * 
+     * @return the response cache, <code>null</code> if caching is disabled
+     */
+    public GetFeatureResponseCache getResponseCache() {
+        return responseCache;
+    }
+
     /**
      * @return the stored query handler for this service, never <code>null</code>.
      */
@@ -578,7 +634,8 @@ public class WebFeatureService extends AbstractOWS {
                 GetFeature getFeature = GetFeatureKVPAdapter.parse( kvpParamsUC, nsMap );
                 format = determineFormat( requestVersion, getFeature.getPresentationParams().getOutputFormat(),
                                           "outputFormat" );
-                format.doGetFeature( getFeature, response );
+                enableStreaming( response );
+                doGetFeature( getFeature, format, response );
                 break;
             case GetFeatureWithLock:
                 checkTransactionsEnabled( requestName );
@@ -596,6 +653,7 @@ public class WebFeatureService extends AbstractOWS {
                 GetPropertyValue getPropertyValue = GetPropertyValueKVPAdapter.parse( kvpParamsUC );
                 format = determineFormat( requestVersion, getPropertyValue.getPresentationParams().getOutputFormat(),
                                           "outputFormat" );
+                enableStreaming( response );
                 format.doGetPropertyValue( getPropertyValue, response );
                 break;
             case ListStoredQueries:
@@ -614,7 +672,8 @@ public class WebFeatureService extends AbstractOWS {
                 }
                 checkTransactionsEnabled( requestName );
                 Transaction transaction = TransactionKVPAdapter.parse( kvpParamsUC );
-                new TransactionHandler( this, service, transaction, idGenMode ).doTransaction( response );
+                new TransactionHandler( this, service, transaction, idGenMode,
+                                        insertBlockSize ).doTransaction( response );
                 break;
             default:
                 throw new RuntimeException( "Internal error: Unhandled request '" + requestName + "'." );
@@ -638,6 +697,21 @@ public class WebFeatureService extends AbstractOWS {
         }
     }
 
+    private void doGetFeature( GetFeature request, Format format, HttpResponseBuffer response )
+                            throws Exception {
+        if ( responseCache != null ) {
+            responseCache.doGetFeature( request, format, response );
+        } else {
+            format.doGetFeature( request, response );
+        }
+    }
+
+    private void enableStreaming( HttpResponseBuffer response ) {
+        if ( enableStreaming ) {
+            response.enableStreaming();
+        }
+    }
+
     private void checkTransactionsEnabled( String requestName )
                             throws OWSException {
         if ( !enableTransactions ) {
@@ -712,7 +786,8 @@ public class WebFeatureService extends AbstractOWS {
                 GetFeature getFeature = getFeatureAdapter.parse();
                 format = determineFormat( requestVersion, getFeature.getPresentationParams().getOutputFormat(),
                                           "outputFormat" );
-                format.doGetFeature( getFeature, response );
+                enableStreaming( response );
+                doGetFeature( getFeature, format, response );
                 break;
             case GetFeatureWithLock:
                 checkTransactionsEnabled( requestName );
@@ -736,6 +811,7 @@ public class WebFeatureService extends AbstractOWS {
                 GetPropertyValue getPropertyValue = getPropertyValueAdapter.parse();
                 format = determineFormat( requestVersion, getPropertyValue.getPresentationParams().getOutputFormat(),
                                           "outputFormat" );
+                enableStreaming( response );
                 format.doGetPropertyValue( getPropertyValue, response );
                 break;
             case ListStoredQueries:
@@ -755,7 +831,8 @@ public class WebFeatureService extends AbstractOWS {
                 checkTransactionsEnabled( requestName );
                 TransactionXmlReader transactionReader = new TransactionXmlReaderFactory().createReader( xmlStream );
                 Transaction transaction = transactionReader.read( xmlStream );
-                new TransactionHandler( this, service, transaction, idGenMode ).doTransaction( response );
+                new TransactionHandler( this, service, transaction, idGenMode,
+                                        insertBlockSize ).doTransaction( response );
                 break;
             default:
                 throw new RuntimeException( "Internal error: Unhandled request '" + requestName + "'." );
@@ -0,0 +1,212 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.wfs.cache;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link HttpServletResponseWrapper} that copies the response body and records the content type, so the response can be
+ * replayed later.
+ * <p>
+ * The copy is abandoned (but the response is still written) if it exceeds a maximum size or if writing it fails.
+ * </p>
+ * 
+ * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+class CapturingResponse extends HttpServletResponseWrapper {
+
+    private static final Logger LOG = LoggerFactory.getLogger( CapturingResponse.class );
+
+    private final OutputStream copy;
+
+    private final long maxCopySize;
+
+    private long copySize;
+
+    private boolean copyAbandoned;
+
+    private String contentType;
+
+    private String characterEncoding;
+
+    private ServletOutputStream outputStream;
+
+    private PrintWriter printWriter;
+
+    /**
+     * Creates a new {@link CapturingResponse} instance.
+     * 
+     * @param response
+     *            response to write to, must not be <code>null</code>
+     * @param copy
+     *            stream that receives the copy of the body, must not be <code>null</code>
+     * @param maxCopySize
+     *            maximum number of bytes to copy
+     */
+    CapturingResponse( HttpServletResponse response, OutputStream copy, long maxCopySize ) {
+        super( response );
+        this.copy = copy;
+        this.maxCopySize = maxCopySize;
+    }
+
+    @Override
+    public void setContentType( String type ) {
+        contentType = type;
+        super.setContentType( type );
+    }
+
+    @Override
+    public void setCharacterEncoding( String charset ) {
+        characterEncoding = charset;
+        super.setCharacterEncoding( charset );
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream()
+                            throws IOException {
+        if ( outputStream == null ) {
+            outputStream = new CopyingServletOutputStream( super.getOutputStream() );
+        }
+        return outputStream;
+    }
+
+    @Override
+    public PrintWriter getWriter()
+                            throws IOException {
+        if ( printWriter == null ) {
+            printWriter = new PrintWriter( new OutputStreamWriter( getOutputStream(), getCharacterEncoding() ) );
+        }
+        return printWriter;
+    }
+
+    /**
+     * Flushes all data written to this response.
+     * 
+     * @throws IOException
+     */
+    void finish()
+                            throws IOException {
+        if ( printWriter != null ) {
+            printWriter.flush();
+        }
+        if ( outputStream != null ) {
+            outputStream.flush();
+        }
+    }
+
+    /**
+     * Returns whether the copy contains the complete response body.
+     * 
+     * @return <code>true</code>, if the copy is complete, <code>false</code> if it has been abandoned
+     */
+    boolean isCopyComplete() {
+        return !copyAbandoned;
+    }
+
+    /**
+     * @return the recorded content type, can be <code>null</code>
+     */
+    String getRecordedContentType() {
+        return contentType;
+    }
+
+    /**
+     * @return the recorded character encoding, can be <code>null</code>
+     */
+    String getRecordedCharacterEncoding() {
+        return characterEncoding;
+    }
+
+    private void copy( byte[] b, int off, int len ) {
+        if ( copyAbandoned ) {
+            return;
+        }
+        if ( copySize + len > maxCopySize ) {
+            LOG.debug( "Response exceeds {} bytes, not caching it.", maxCopySize );
+            copyAbandoned = true;
+            return;
+        }
+        try {
+            copy.write( b, off, len );
+            copySize += len;
+        } catch ( IOException e ) {
+            LOG.warn( "Error writing copy of response: {}", e.getMessage() );
+            copyAbandoned = true;
+        }
+    }
+
+    private class CopyingServletOutputStream extends ServletOutputStream {
+
+        private final ServletOutputStream os;
+
+        private CopyingServletOutputStream( ServletOutputStream os ) {
+            this.os = os;
+        }
+
+        @Override
+        public void write( byte[] b, int off, int len )
+                                throws IOException {
+            os.write( b, off, len );
+            copy( b, off, len );
+        }
+
+        @Override
+        public void write( int b )
+                                throws IOException {
+            os.write( b );
+            copy( new byte[] { (byte) b }, 0, 1 );
+        }
+
+        @Override
+        public void flush()
+                                throws IOException {
+            os.flush();
+        }
+    }
+}
@@ -0,0 +1,431 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.wfs.cache;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.xml.namespace.QName;
+
+import org.apache.axiom.om.OMElement;
+import org.deegree.commons.tom.ResolveParams;
+import org.deegree.commons.tom.primitive.PrimitiveValue;
+import org.deegree.commons.xml.NamespaceBindings;
+import org.deegree.cs.coordinatesystems.ICRS;
+import org.deegree.filter.Expression;
+import org.deegree.filter.Filter;
+import org.deegree.filter.IdFilter;
+import org.deegree.filter.Operator;
+import org.deegree.filter.OperatorFilter;
+import org.deegree.filter.ResourceId;
+import org.deegree.filter.comparison.ComparisonOperator;
+import org.deegree.filter.comparison.PropertyIsLike;
+import org.deegree.filter.comparison.PropertyIsNil;
+import org.deegree.filter.expression.Function;
+import org.deegree.filter.expression.Literal;
+import org.deegree.filter.expression.ValueReference;
+import org.deegree.filter.logical.LogicalOperator;
+import org.deegree.filter.projection.ProjectionClause;
+import org.deegree.filter.projection.PropertyName;
+import org.deegree.filter.sort.SortProperty;
+import org.deegree.filter.spatial.Beyond;
+import org.deegree.filter.spatial.DWithin;
+import org.deegree.filter.spatial.SpatialOperator;
+import org.deegree.geometry.Geometry;
+import org.deegree.geometry.io.CoordinateFormatter;
+import org.deegree.geometry.io.WKTWriter;
+import org.deegree.protocol.wfs.getfeature.GetFeature;
+import org.deegree.protocol.wfs.getfeature.TypeName;
+import org.deegree.protocol.wfs.query.AdHocQuery;
+import org.deegree.protocol.wfs.query.BBoxQuery;
+import org.deegree.protocol.wfs.query.FeatureIdQuery;
+import org.deegree.protocol.wfs.query.FilterQuery;
+import org.deegree.protocol.wfs.query.Query;
+import org.deegree.protocol.wfs.query.StandardPresentationParams;
+import org.deegree.protocol.wfs.query.StoredQuery;
+
+/**
+ * Creates the keys of the {@link GetFeatureResponseCache} from parsed {@link GetFeature} requests.
+ * <p>
+ * The key is a normalized text representation of all request parameters that influence the response, so requests that
+ * only differ in their encoding (e.g. KVP vs. XML or the order of KVP parameters) share a single key. Namespace
+ * prefixes are part of the key, as they are used in the response. Of the namespace bindings of property names, only
+ * those for the prefixes used in the name are considered. Query handles are ignored. Requests that contain constructs
+ * which cannot be represented exactly (e.g. temporal operators or complex literals) are not cacheable.
+ * </p>
+ * <p>
+ * The service URL is part of the key as well, as it is used in the response (e.g. in schema locations). All values
+ * that originate from the request are written with a length prefix, so they can never be confused with the structure
+ * of the key.
+ * </p>
+ * 
+ * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+class GetFeatureCacheKey {
+
+    // coordinates must be represented exactly, default WKT output is rounded
+    private static final CoordinateFormatter EXACT = new CoordinateFormatter() {
+        @Override
+        public String format( double ordinate ) {
+            return Double.toString( ordinate );
+        }
+    };
+
+    // prefixes in a property name (but not axis names such as child::)
+    private static final Pattern PREFIX = Pattern.compile( "(?<![\\w.\\-])([A-Za-z_][\\w.\\-]*):(?!:)" );
+
+    private final StringBuilder sb = new StringBuilder();
+
+    private GetFeatureCacheKey() {
+        // use #create(GetFeature,String)
+    }
+
+    /**
+     * Returns the cache key for the given request.
+     * 
+     * @param request
+     *            request, must not be <code>null</code>
+     * @param serviceUrl
+     *            URL of the service as used in the response, can be <code>null</code>
+     * @return cache key, <code>null</code> if the request is not cacheable
+     */
+    static String create( GetFeature request, String serviceUrl ) {
+        GetFeatureCacheKey key = new GetFeatureCacheKey();
+        key.sb.append( "url=" );
+        key.appendString( serviceUrl );
+        key.sb.append( '\n' );
+        try {
+            if ( !key.append( request ) ) {
+                return null;
+            }
+        } catch ( RuntimeException e ) {
+            // e.g. geometries that cannot be written as WKT
+            return null;
+        }
+        return key.sb.toString();
+    }
+
+    /**
+     * Returns the names of the feature types that are queried by the given request.
+     * 
+     * @param request
+     *            request, must not be <code>null</code>
+     * @return names of the queried feature types, <code>null</code> if they are not known in advance (e.g. for stored
+     *         queries or feature id queries without type names)
+     */
+    static List<QName> getFeatureTypeNames( GetFeature request ) {
+        List<QName> ftNames = new ArrayList<QName>();
+        for ( Query query : request.getQueries() ) {
+            if ( !( query instanceof AdHocQuery ) ) {
+                return null;
+            }
+            TypeName[] typeNames = ( (AdHocQuery) query ).getTypeNames();
+            if ( typeNames == null || typeNames.length == 0 ) {
+                return null;
+            }
+            for ( TypeName typeName : typeNames ) {
+                ftNames.add( typeName.getFeatureTypeName() );
+            }
+        }
+        return ftNames;
+    }
+
+    private boolean append( GetFeature request ) {
+        sb.append( "GetFeature;" ).append( request.getVersion() );
+        StandardPresentationParams presentation = request.getPresentationParams();
+        if ( presentation != null ) {
+            sb.append( ";format=" );
+            appendString( presentation.getOutputFormat() );
+            sb.append( ";resultType=" ).append( presentation.getResultType() );
+            sb.append( ";startIndex=" ).append( presentation.getStartIndex() );
+            sb.append( ";count=" ).append( presentation.getCount() );
+        }
+        append( "resolve", request.getResolveParams() );
+        for ( Query query : request.getQueries() ) {
+            sb.append( "\nQuery;" );
+            if ( query instanceof StoredQuery ) {
+                append( (StoredQuery) query );
+            } else if ( query instanceof AdHocQuery ) {
+                if ( !append( (AdHocQuery) query ) ) {
+                    return false;
+                }
+            } else {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void append( StoredQuery query ) {
+        sb.append( "stored=" );
+        appendString( query.getId() );
+        Map<String, String> params = new TreeMap<String, String>();
+        for ( Map.Entry<String, OMElement> param : query.getParams().entrySet() ) {
+            params.put( param.getKey(), param.getValue() == null ? null : param.getValue().toString() );
+        }
+        sb.append( ";params=" );
+        for ( Map.Entry<String, String> param : params.entrySet() ) {
+            appendString( param.getKey() );
+            sb.append( '=' );
+            appendString( param.getValue() );
+            sb.append( ',' );
+        }
+    }
+
+    private boolean append( AdHocQuery query ) {
+        sb.append( query.getClass().getSimpleName() );
+        sb.append( ";typeNames=" );
+        if ( query.getTypeNames() != null ) {
+            for ( TypeName typeName : query.getTypeNames() ) {
+                // the prefix determines the prefix in the output
+                QName ftName = typeName.getFeatureTypeName();
+                appendString( ftName.getNamespaceURI() );
+                appendString( ftName.getPrefix() );
+                appendString( ftName.getLocalPart() );
+                appendString( typeName.getAlias() );
+                sb.append( ',' );
+            }
+        }
+        sb.append( ";featureVersion=" );
+        appendString( query.getFeatureVersion() );
+        sb.append( ";srsName=" );
+        appendString( query.getSrsName() == null ? null : query.getSrsName().getAlias() );
+        sb.append( ";projection=" );
+        if ( query.getProjectionClauses() != null ) {
+            for ( ProjectionClause clause : query.getProjectionClauses() ) {
+                if ( !( clause instanceof PropertyName ) ) {
+                    return false;
+                }
+                PropertyName propName = (PropertyName) clause;
+                append( propName.getPropertyName() );
+                append( "resolve", propName.getResolveParams() );
+                if ( propName.getResolvePath() != null ) {
+                    append( propName.getResolvePath() );
+                }
+                sb.append( ',' );
+            }
+        }
+        sb.append( ";sortBy=" );
+        if ( query.getSortBy() != null ) {
+            for ( SortProperty sortProperty : query.getSortBy() ) {
+                append( sortProperty.getSortProperty() );
+                sb.append( sortProperty.getSortOrder() ? " ASC," : " DESC," );
+            }
+        }
+        if ( query instanceof FeatureIdQuery ) {
+            sb.append( ";ids=" );
+            for ( String id : ( (FeatureIdQuery) query ).getFeatureIds() ) {
+                appendString( id );
+                sb.append( ',' );
+            }
+        } else if ( query instanceof BBoxQuery ) {
+            sb.append( ";bbox=" );
+            append( ( (BBoxQuery) query ).getBBox() );
+        } else if ( query instanceof FilterQuery ) {
+            sb.append( ";filter=" );
+            Filter filter = ( (FilterQuery) query ).getFilter();
+            if ( filter != null && !append( filter ) ) {
+                return false;
+            }
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    private void append( String name, ResolveParams params ) {
+        sb.append( ';' ).append( name ).append( '=' );
+        if ( params != null ) {
+            sb.append( params.getMode() ).append( ',' ).append( params.getDepth() ).append( ',' );
+            sb.append( params.getTimeout() );
+        }
+    }
+
+    private boolean append( Filter filter ) {
+        switch ( filter.getType() ) {
+        case ID_FILTER:
+            sb.append( "Id(" );
+            for ( ResourceId id : ( (IdFilter) filter ).getSelectedIds() ) {
+                appendString( id.getRid() );
+                sb.append( ',' );
+            }
+            sb.append( ')' );
+            return true;
+        case OPERATOR_FILTER:
+            return append( ( (OperatorFilter) filter ).getOperator() );
+        }
+        return false;
+    }
+
+    private boolean append( Operator operator ) {
+        sb.append( operator.getClass().getSimpleName() ).append( '(' );
+        switch ( operator.getType() ) {
+        case COMPARISON:
+            ComparisonOperator comparison = (ComparisonOperator) operator;
+            sb.append( comparison.isMatchCase() ).append( ',' ).append( comparison.getMatchAction() ).append( ',' );
+            if ( comparison instanceof PropertyIsLike ) {
+                PropertyIsLike like = (PropertyIsLike) comparison;
+                appendString( like.getWildCard() );
+                appendString( like.getSingleChar() );
+                appendString( like.getEscapeChar() );
+                sb.append( ',' );
+            } else if ( comparison instanceof PropertyIsNil ) {
+                appendString( ( (PropertyIsNil) comparison ).getNilReason() );
+                sb.append( ',' );
+            }
+            for ( Expression param : comparison.getParams() ) {
+                if ( !append( param ) ) {
+                    return false;
+                }
+            }
+            break;
+        case LOGICAL:
+            for ( Operator param : ( (LogicalOperator) operator ).getParams() ) {
+                if ( !append( param ) ) {
+                    return false;
+                }
+            }
+            break;
+        case SPATIAL:
+            SpatialOperator spatial = (SpatialOperator) operator;
+            for ( Object param : spatial.getParams() ) {
+                if ( param instanceof Expression ) {
+                    if ( !append( (Expression) param ) ) {
+                        return false;
+                    }
+                } else if ( param instanceof Geometry ) {
+                    append( (Geometry) param );
+                } else {
+                    return false;
+                }
+            }
+            if ( spatial instanceof DWithin ) {
+                sb.append( ( (DWithin) spatial ).getDistance() );
+            } else if ( spatial instanceof Beyond ) {
+                sb.append( ( (Beyond) spatial ).getDistance() );
+            }
+            break;
+        default:
+            // temporal operators
+            return false;
+        }
+        sb.append( ')' );
+        return true;
+    }
+
+    private boolean append( Expression expression ) {
+        if ( expression instanceof ValueReference ) {
+            append( (ValueReference) expression );
+            return true;
+        }
+        if ( expression instanceof Literal<?> ) {
+            Object value = ( (Literal<?>) expression ).getValue();
+            if ( value != null && !( value instanceof PrimitiveValue ) ) {
+                return false;
+            }
+            sb.append( "Literal:" );
+            appendString( value == null ? null : ( (PrimitiveValue) value ).getAsText() );
+            return true;
+        }
+        sb.append( expression.getType() );
+        if ( expression instanceof Function ) {
+            sb.append( ':' );
+            appendString( ( (Function) expression ).getName() );
+        }
+        sb.append( '(' );
+        for ( Expression param : expression.getParams() ) {
+            if ( !append( param ) ) {
+                return false;
+            }
+        }
+        sb.append( ')' );
+        return true;
+    }
+
+    private void append( ValueReference propName ) {
+        String text = propName.getAsText();
+        sb.append( '[' );
+        appendString( text );
+        // prefixes are only meaningful together with their bindings
+        NamespaceBindings nsContext = propName.getNsContext();
+        if ( nsContext != null && text != null ) {
+            TreeSet<String> prefixes = new TreeSet<String>();
+            Matcher m = PREFIX.matcher( text );
+            while ( m.find() ) {
+                prefixes.add( m.group( 1 ) );
+            }
+            for ( String prefix : prefixes ) {
+                appendString( prefix );
+                sb.append( '=' );
+                appendString( nsContext.getNamespaceURI( prefix ) );
+            }
+        }
+        sb.append( ']' );
+    }
+
+    /**
+     * Appends a value with a length prefix (or <code>~</code> for <code>null</code>), so arbitrary values can never be
+     * mistaken for the structure of the key.
+     */
+    private void appendString( String value ) {
+        if ( value == null ) {
+            sb.append( '~' );
+        } else {
+            sb.append( value.length() ).append( '"' ).append( value );
+        }
+    }
+
+    private void append( Geometry geometry ) {
+        ICRS crs = geometry.getCoordinateSystem();
+        sb.append( crs == null ? null : crs.getAlias() ).append( ';' );
+        StringWriter wkt = new StringWriter();
+        try {
+            new WKTWriter( null, EXACT ).writeGeometry( geometry, wkt );
+        } catch ( Exception e ) {
+            throw new IllegalArgumentException( e.getMessage(), e );
+        }
+        sb.append( wkt );
+    }
+}
@@ -0,0 +1,421 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.wfs.cache;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.namespace.QName;
+
+import org.apache.commons.io.IOUtils;
+import org.deegree.feature.persistence.FeatureStore;
+import org.deegree.feature.types.AppSchema;
+import org.deegree.feature.types.FeatureType;
+import org.deegree.feature.types.property.FeaturePropertyType;
+import org.deegree.feature.types.property.PropertyType;
+import org.deegree.protocol.wfs.getfeature.GetFeature;
+import org.deegree.services.controller.OGCFrontController;
+import org.deegree.services.controller.utils.HttpResponseBuffer;
+import org.deegree.services.wfs.WfsFeatureStoreManager;
+import org.deegree.services.wfs.format.Format;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Caches the encoded responses to {@link GetFeature} requests on disk.
+ * <p>
+ * Entries are keyed on a normalized form of the parsed request (see {@link GetFeatureCacheKey}) and evicted in
+ * least-recently-used order as soon as the total size of the cached responses exceeds the configured maximum. Each
+ * entry depends on the queried feature types and on all feature types that may be included in their features. An
+ * entry is dropped as soon as a transaction that modifies one of these types has been committed (see
+ * {@link #invalidate(Collection)}). Responses that are being produced while such a transaction commits are not
+ * stored.
+ * </p>
+ * 
+ * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class GetFeatureResponseCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger( GetFeatureResponseCache.class );
+
+    private final File directory;
+
+    private final long maxSize;
+
+    private final WfsFeatureStoreManager storeManager;
+
+    // access order, so the eldest entry is the least recently used one
+    private final LinkedHashMap<String, CacheEntry> entries = new LinkedHashMap<String, CacheEntry>( 16, 0.75f, true );
+
+    // modification counter: bumped by every invalidation
+    private long modCount;
+
+    // value of modCount when the respective feature type has been invalidated for the last time
+    private final Map<QName, Long> ftModCounts = new HashMap<QName, Long>();
+
+    // value of modCount when all feature types have been invalidated for the last time
+    private long allModCount;
+
+    private long size;
+
+    private long fileCount;
+
+    /**
+     * Creates a new {@link GetFeatureResponseCache} instance.
+     * 
+     * @param directory
+     *            directory for storing the cached responses, must not be <code>null</code> and should not be used for
+     *            anything else (existing cache files are deleted)
+     * @param maxSize
+     *            maximum total size of the cached responses (in bytes)
+     * @param storeManager
+     *            feature stores of the service, used for determining the dependencies of the entries, must not be
+     *            <code>null</code>
+     * @throws IOException
+     *             if the directory cannot be created
+     */
+    public GetFeatureResponseCache( File directory, long maxSize, WfsFeatureStoreManager storeManager )
+                            throws IOException {
+        if ( !directory.isDirectory() && !directory.mkdirs() ) {
+            throw new IOException( "Unable to create cache directory '" + directory + "'." );
+        }
+        this.directory = directory;
+        this.maxSize = maxSize;
+        this.storeManager = storeManager;
+        deleteCacheFiles();
+    }
+
+    /**
+     * Performs the given {@link GetFeature} request using the cache: if the response is cached, it is written from the
+     * cache, otherwise it is produced by the format and stored in the cache (if possible).
+     * 
+     * @param request
+     *            request to be performed, must not be <code>null</code>
+     * @param format
+     *            format for producing the response, must not be <code>null</code>
+     * @param response
+     *            response, must not be <code>null</code>
+     * @throws Exception
+     */
+    public void doGetFeature( GetFeature request, Format format, HttpResponseBuffer response )
+                            throws Exception {
+        // the service URL is used in the response (e.g. schema locations) and depends on the request
+        doGetFeature( request, format, response, OGCFrontController.getHttpGetURL() );
+    }
+
+    void doGetFeature( GetFeature request, Format format, HttpResponseBuffer response, String serviceUrl )
+                            throws Exception {
+
+        String key = GetFeatureCacheKey.create( request, serviceUrl );
+        if ( key == null ) {
+            LOG.debug( "Request is not cacheable." );
+            format.doGetFeature( request, response );
+            return;
+        }
+
+        CacheEntry entry = get( key );
+        if ( entry != null && writeFromCache( entry, response ) ) {
+            LOG.debug( "Wrote response from cache." );
+            return;
+        }
+
+        Set<QName> dependencies = getDependencies( request );
+        long startModCount = getModCount( dependencies );
+        File file = newFile();
+        OutputStream os = new BufferedOutputStream( new FileOutputStream( file ) );
+        CapturingResponse capture = new CapturingResponse( response, os, maxSize );
+        HttpResponseBuffer captureBuffer = new HttpResponseBuffer( capture );
+        // output is already buffered (or streamed) by the given response
+        captureBuffer.disableBuffering();
+        boolean success = false;
+        try {
+            format.doGetFeature( request, captureBuffer );
+            capture.finish();
+            success = true;
+        } finally {
+            IOUtils.closeQuietly( os );
+            if ( success && capture.isCopyComplete() ) {
+                put( key, new CacheEntry( file, file.length(), capture.getRecordedContentType(),
+                                          capture.getRecordedCharacterEncoding(), dependencies ), startModCount );
+            } else {
+                delete( file );
+            }
+        }
+    }
+
+    /**
+     * Drops all entries that depend on any of the given feature types (or on any feature type that may be included in
+     * their features).
+     * 
+     * @param ftNames
+     *            names of the modified feature types, must not be <code>null</code>
+     */
+    public void invalidate( Collection<QName> ftNames ) {
+        Set<QName> affected = new HashSet<QName>();
+        for ( QName ftName : ftNames ) {
+            if ( !addDependencies( ftName, affected ) ) {
+                invalidateAll();
+                return;
+            }
+        }
+        invalidateDependents( affected );
+    }
+
+    private synchronized void invalidateDependents( Collection<QName> ftNames ) {
+        modCount++;
+        for ( QName ftName : ftNames ) {
+            ftModCounts.put( ftName, modCount );
+        }
+        Iterator<CacheEntry> iter = entries.values().iterator();
+        while ( iter.hasNext() ) {
+            CacheEntry entry = iter.next();
+            if ( entry.dependsOnAny( ftNames ) ) {
+                iter.remove();
+                remove( entry );
+            }
+        }
+    }
+
+    /**
+     * Drops all entries.
+     */
+    public synchronized void invalidateAll() {
+        modCount++;
+        allModCount = modCount;
+        for ( CacheEntry entry : entries.values() ) {
+            remove( entry );
+        }
+        entries.clear();
+    }
+
+    /**
+     * Drops all entries and deletes the cache files.
+     */
+    public synchronized void destroy() {
+        invalidateAll();
+        deleteCacheFiles();
+    }
+
+    private synchronized CacheEntry get( String key ) {
+        return entries.get( key );
+    }
+
+    private synchronized void put( String key, CacheEntry entry, long startModCount ) {
+        if ( getModCount( entry.dependencies ) != startModCount ) {
+            LOG.debug( "Feature types have been modified while producing the response, not caching it." );
+            delete( entry.file );
+            return;
+        }
+        CacheEntry old = entries.put( key, entry );
+        if ( old != null ) {
+            remove( old );
+        }
+        size += entry.size;
+        Iterator<CacheEntry> iter = entries.values().iterator();
+        while ( size > maxSize && iter.hasNext() ) {
+            CacheEntry eldest = iter.next();
+            iter.remove();
+            remove( eldest );
+        }
+    }
+
+    private void remove( CacheEntry entry ) {
+        size -= entry.size;
+        delete( entry.file );
+    }
+
+    private synchronized long getModCount( Set<QName> dependencies ) {
+        if ( dependencies == null ) {
+            return modCount;
+        }
+        long max = allModCount;
+        for ( QName ftName : dependencies ) {
+            Long ftModCount = ftModCounts.get( ftName );
+            if ( ftModCount != null && ftModCount > max ) {
+                max = ftModCount;
+            }
+        }
+        return max;
+    }
+
+    private synchronized File newFile() {
+        return new File( directory, "response-" + ( fileCount++ ) + ".cache" );
+    }
+
+    private boolean writeFromCache( CacheEntry entry, HttpResponseBuffer response )
+                            throws IOException {
+        InputStream is;
+        try {
+            is = new FileInputStream( entry.file );
+        } catch ( FileNotFoundException e ) {
+            // evicted in the meantime
+            return false;
+        }
+        try {
+            if ( entry.characterEncoding != null ) {
+                response.setCharacterEncoding( entry.characterEncoding );
+            }
+            if ( entry.contentType != null ) {
+                response.setContentType( entry.contentType );
+            }
+            IOUtils.copy( is, response.getOutputStream() );
+        } finally {
+            IOUtils.closeQuietly( is );
+        }
+        return true;
+    }
+
+    /**
+     * Returns the names of all feature types that the response to the given request may depend on.
+     * 
+     * @return feature type names, <code>null</code> if the response may depend on any feature type
+     */
+    private Set<QName> getDependencies( GetFeature request ) {
+        List<QName> ftNames = GetFeatureCacheKey.getFeatureTypeNames( request );
+        if ( ftNames == null ) {
+            return null;
+        }
+        Set<QName> dependencies = new HashSet<QName>();
+        for ( QName ftName : ftNames ) {
+            if ( !addDependencies( ftName, dependencies ) ) {
+                return null;
+            }
+        }
+        return dependencies;
+    }
+
+    private boolean addDependencies( QName ftName, Set<QName> dependencies ) {
+        if ( !dependencies.add( ftName ) ) {
+            return true;
+        }
+        FeatureStore fs = storeManager.getStore( ftName );
+        if ( fs == null ) {
+            return false;
+        }
+        AppSchema schema = fs.getSchema();
+        FeatureType ft = schema.getFeatureType( ftName );
+        if ( ft == null ) {
+            return false;
+        }
+        for ( PropertyType pt : ft.getPropertyDeclarations() ) {
+            if ( pt instanceof FeaturePropertyType ) {
+                FeatureType valueFt = ( (FeaturePropertyType) pt ).getValueFt();
+                if ( valueFt == null ) {
+                    // any feature may be included
+                    return false;
+                }
+                if ( !addDependencies( valueFt.getName(), dependencies ) ) {
+                    return false;
+                }
+                for ( FeatureType substitution : schema.getSubtypes( valueFt ) ) {
+                    if ( !addDependencies( substitution.getName(), dependencies ) ) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    private void deleteCacheFiles() {
+        File[] files = directory.listFiles();
+        if ( files != null ) {
+            for ( File file : files ) {
+                if ( file.getName().endsWith( ".cache" ) ) {
+                    delete( file );
+                }
+            }
+        }
+    }
+
+    private void delete( File file ) {
+        if ( !file.delete() && file.exists() ) {
+            LOG.warn( "Unable to delete cache file '{}'.", file );
+        }
+    }
+
+    private static class CacheEntry {
+
+        private final File file;
+
+        private final long size;
+
+        private final String contentType;
+
+        private final String characterEncoding;
+
+        // null: depends on all feature types
+        private final Set<QName> dependencies;
+
+        private CacheEntry( File file, long size, String contentType, String characterEncoding,
+                            Set<QName> dependencies ) {
+            this.file = file;
+            this.size = size;
+            this.contentType = contentType;
+            this.characterEncoding = characterEncoding;
+            this.dependencies = dependencies;
+        }
+
+        private boolean dependsOnAny( Collection<QName> ftNames ) {
+            if ( dependencies == null ) {
+                return true;
+            }
+            for ( QName ftName : ftNames ) {
+                if ( dependencies.contains( ftName ) ) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,214 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.wfs.format.geojson;
+
+import static org.deegree.commons.ows.exception.OWSException.OPTION_NOT_SUPPORTED;
+
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.namespace.QName;
+
+import org.deegree.commons.ows.exception.OWSException;
+import org.deegree.feature.Feature;
+import org.deegree.feature.persistence.FeatureStore;
+import org.deegree.feature.persistence.query.Query;
+import org.deegree.feature.stream.FeatureInputStream;
+import org.deegree.filter.projection.ProjectionClause;
+import org.deegree.filter.projection.PropertyName;
+import org.deegree.protocol.wfs.getfeature.GetFeature;
+import org.deegree.protocol.wfs.getfeaturewithlock.GetFeatureWithLock;
+import org.deegree.services.controller.utils.HttpResponseBuffer;
+import org.deegree.services.wfs.WebFeatureService;
+import org.deegree.services.wfs.query.QueryAnalyzer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Handles {@link GetFeature} requests for the {@link GeoJsonFormat}.
+ * <p>
+ * Features are written to the response while iterating over the feature store results, so the memory usage does not
+ * depend on the size of the response.
+ * </p>
+ * 
+ * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+class GeoJsonGetFeatureHandler {
+
+    private static final Logger LOG = LoggerFactory.getLogger( GeoJsonGetFeatureHandler.class );
+
+    private final WebFeatureService master;
+
+    private final String mimeType;
+
+    GeoJsonGetFeatureHandler( WebFeatureService master, String mimeType ) {
+        this.master = master;
+        this.mimeType = mimeType;
+    }
+
+    void doGetFeatureResults( GetFeature request, HttpResponseBuffer response )
+                            throws Exception {
+
+        LOG.debug( "Performing GetFeature (results) request." );
+        checkNoLock( request );
+
+        QueryAnalyzer analyzer = new QueryAnalyzer( request.getQueries(), master, master.getStoreManager(),
+                                                    master.getCheckAreaOfUse() );
+
+        int maxFeatures = master.getQueryMaxFeatures();
+        if ( request.getPresentationParams().getCount() != null
+             && ( maxFeatures < 1 || request.getPresentationParams().getCount().intValue() < maxFeatures ) ) {
+            maxFeatures = request.getPresentationParams().getCount().intValue();
+        }
+        int startIndex = 0;
+        if ( request.getPresentationParams().getStartIndex() != null ) {
+            startIndex = request.getPresentationParams().getStartIndex().intValue();
+        }
+
+        response.setContentType( mimeType );
+        Writer writer = new BufferedWriter( new OutputStreamWriter( response.getOutputStream(), "UTF-8" ) );
+        GeoJsonWriter geoJson = new GeoJsonWriter( writer, analyzer.getRequestedCRS(),
+                                                   getPropertyNames( analyzer.getProjections() ) );
+        geoJson.startFeatureCollection();
+
+        int featuresAdded = 0;
+        int featuresSkipped = 0;
+        Query pagedQuery = preparePaging( analyzer, maxFeatures, startIndex );
+        for ( Map.Entry<FeatureStore, List<Query>> fsToQueries : analyzer.getQueries().entrySet() ) {
+            FeatureStore fs = fsToQueries.getKey();
+            Query[] queries = fsToQueries.getValue().toArray( new Query[fsToQueries.getValue().size()] );
+            FeatureInputStream rs = fs.query( queries );
+            if ( pagedQuery != null && pagedQuery.isPagingApplied() ) {
+                featuresSkipped = startIndex;
+            }
+            try {
+                for ( Feature member : rs ) {
+                    if ( featuresAdded == maxFeatures ) {
+                        break;
+                    }
+                    if ( featuresSkipped < startIndex ) {
+                        featuresSkipped++;
+                    } else {
+                        geoJson.write( member );
+                        featuresAdded++;
+                    }
+                }
+            } finally {
+                LOG.debug( "Closing FeatureResultSet (stream)" );
+                rs.close();
+            }
+        }
+
+        geoJson.endFeatureCollection( featuresAdded );
+        geoJson.flush();
+    }
+
+    void doGetFeatureHits( GetFeature request, HttpResponseBuffer response )
+                            throws Exception {
+
+        LOG.debug( "Performing GetFeature (hits) request." );
+        checkNoLock( request );
+
+        QueryAnalyzer analyzer = new QueryAnalyzer( request.getQueries(), master, master.getStoreManager(),
+                                                    master.getCheckAreaOfUse() );
+        int hits = 0;
+        for ( Map.Entry<FeatureStore, List<Query>> fsToQueries : analyzer.getQueries().entrySet() ) {
+            FeatureStore fs = fsToQueries.getKey();
+            Query[] queries = fsToQueries.getValue().toArray( new Query[fsToQueries.getValue().size()] );
+            for ( int queryHits : fs.queryHits( queries ) ) {
+                hits += queryHits;
+            }
+        }
+
+        response.setContentType( mimeType );
+        Writer writer = new BufferedWriter( new OutputStreamWriter( response.getOutputStream(), "UTF-8" ) );
+        GeoJsonWriter geoJson = new GeoJsonWriter( writer, null, null );
+        geoJson.writeHits( hits );
+        geoJson.flush();
+    }
+
+    private void checkNoLock( GetFeature request )
+                            throws OWSException {
+        if ( request instanceof GetFeatureWithLock ) {
+            throw new OWSException( "GetFeatureWithLock is not supported for GeoJSON output.", OPTION_NOT_SUPPORTED,
+                                    "outputFormat" );
+        }
+    }
+
+    /**
+     * Passes startIndex and maxFeatures to the feature store query, if the request results in a single feature store
+     * query (see GmlGetFeatureHandler).
+     */
+    private Query preparePaging( QueryAnalyzer analyzer, int maxFeatures, int startIndex ) {
+        int limit = maxFeatures > 0 ? maxFeatures : -1;
+        if ( ( startIndex <= 0 && limit < 0 ) || analyzer.getQueries().size() != 1 ) {
+            return null;
+        }
+        List<Query> queries = analyzer.getQueries().values().iterator().next();
+        if ( queries.size() != 1 ) {
+            return null;
+        }
+        Query query = queries.get( 0 );
+        query.setPaging( startIndex, limit );
+        return query;
+    }
+
+    private Set<QName> getPropertyNames( List<ProjectionClause> projections ) {
+        if ( projections == null || projections.isEmpty() ) {
+            return null;
+        }
+        Set<QName> propNames = new HashSet<QName>();
+        for ( ProjectionClause clause : projections ) {
+            if ( clause instanceof PropertyName ) {
+                QName propName = ( (PropertyName) clause ).getPropertyName().getAsQName();
+                if ( propName == null ) {
+                    // not a simple property name, no filtering possible
+                    return null;
+                }
+                propNames.add( propName );
+            }
+        }
+        return propNames.isEmpty() ? null : propNames;
+    }
+}
@@ -0,0 +1,559 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.wfs.format.geojson;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.namespace.QName;
+
+import org.deegree.commons.tom.Reference;
+import org.deegree.commons.tom.TypedObjectNode;
+import org.deegree.commons.tom.gml.property.Property;
+import org.deegree.commons.tom.genericxml.GenericXMLElement;
+import org.deegree.commons.tom.primitive.PrimitiveValue;
+import org.deegree.cs.CoordinateTransformer;
+import org.deegree.cs.coordinatesystems.ICRS;
+import org.deegree.cs.exceptions.TransformationException;
+import org.deegree.cs.exceptions.UnknownCRSException;
+import org.deegree.feature.Feature;
+import org.deegree.geometry.Envelope;
+import org.deegree.geometry.Geometry;
+import org.deegree.geometry.GeometryFactory;
+import org.deegree.geometry.composite.CompositeSurface;
+import org.deegree.geometry.linearization.CurveLinearizer;
+import org.deegree.geometry.linearization.LinearizationCriterion;
+import org.deegree.geometry.linearization.NumPointsCriterion;
+import org.deegree.geometry.multi.MultiCurve;
+import org.deegree.geometry.multi.MultiGeometry;
+import org.deegree.geometry.multi.MultiPoint;
+import org.deegree.geometry.multi.MultiSurface;
+import org.deegree.geometry.points.Points;
+import org.deegree.geometry.primitive.Curve;
+import org.deegree.geometry.primitive.Point;
+import org.deegree.geometry.primitive.Ring;
+import org.deegree.geometry.primitive.Surface;
+import org.deegree.geometry.primitive.patches.PolygonPatch;
+import org.deegree.geometry.primitive.patches.SurfacePatch;
+import org.deegree.geometry.refs.GeometryReference;
+import org.deegree.geometry.standard.points.PackedPoints;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Writes {@link Feature}s as GeoJSON feature collection, one feature at a time.
+ * <p>
+ * Coordinates are written directly from the ordinates of the geometries (and transformed to the output CRS on the
+ * fly), so the memory usage does not depend on the number of features. The first geometry-valued property of a feature
+ * is written as <code>geometry</code> member, all other properties become members of the <code>properties</code>
+ * object (using the local name of the property). Subsequent properties with the same name are combined into an array.
+ * As required by GeoJSON, coordinates are always written easting/longitude first, even if the output CRS uses a
+ * different axis order (e.g. <code>urn:ogc:def:crs:EPSG::4326</code>).
+ * </p>
+ * 
+ * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class GeoJsonWriter {
+
+    private static final Logger LOG = LoggerFactory.getLogger( GeoJsonWriter.class );
+
+    private final JsonWriter json;
+
+    private final ICRS outputCrs;
+
+    private final Set<QName> propNames;
+
+    private CoordinateTransformer transformer;
+
+    private final double[] ordinates2d = new double[2];
+
+    private final double[] ordinates3d = new double[3];
+
+    private double[] transformed;
+
+    private CurveLinearizer linearizer;
+
+    private final LinearizationCriterion crit = new NumPointsCriterion( 100 );
+
+    // CRS that has been checked for northing/easting axis order most recently
+    private ICRS axisOrderCrs;
+
+    private boolean northingFirst;
+
+    /**
+     * Creates a new {@link GeoJsonWriter} instance.
+     * 
+     * @param writer
+     *            writer to write to, must not be <code>null</code>
+     * @param outputCrs
+     *            CRS to use for the output geometries, can be <code>null</code> (keep the CRS of the geometries)
+     * @param propNames
+     *            names of the properties to write, can be <code>null</code> (all properties)
+     */
+    public GeoJsonWriter( Writer writer, ICRS outputCrs, Set<QName> propNames ) {
+        this.json = new JsonWriter( writer );
+        this.outputCrs = outputCrs;
+        this.propNames = propNames;
+        if ( outputCrs != null ) {
+            try {
+                transformer = new CoordinateTransformer( outputCrs );
+                transformed = new double[outputCrs.getDimension()];
+            } catch ( Exception e ) {
+                LOG.debug( "Could not create transformer for CRS '" + outputCrs + "': " + e.getMessage()
+                           + ". Encoding will fail if a transformation is actually necessary." );
+            }
+        }
+    }
+
+    /**
+     * Writes the start of the feature collection object (including the opening of the <code>features</code> array).
+     * 
+     * @throws IOException
+     */
+    public void startFeatureCollection()
+                            throws IOException {
+        json.beginObject();
+        json.name( "type" ).value( "FeatureCollection" );
+        if ( outputCrs != null ) {
+            json.name( "crs" ).beginObject();
+            json.name( "type" ).value( "name" );
+            json.name( "properties" ).beginObject().name( "name" ).value( outputCrs.getAlias() ).endObject();
+            json.endObject();
+        }
+        json.name( "features" ).beginArray();
+    }
+
+    /**
+     * Writes the end of the feature collection object.
+     * 
+     * @param numberReturned
+     *            number of features that have been written
+     * @throws IOException
+     */
+    public void endFeatureCollection( int numberReturned )
+                            throws IOException {
+        json.endArray();
+        json.name( "numberReturned" ).value( numberReturned );
+        json.endObject();
+    }
+
+    /**
+     * Writes an empty feature collection object that only contains the number of matching features.
+     * 
+     * @param numberMatched
+     *            number of matching features
+     * @throws IOException
+     */
+    public void writeHits( int numberMatched )
+                            throws IOException {
+        json.beginObject();
+        json.name( "type" ).value( "FeatureCollection" );
+        json.name( "numberMatched" ).value( numberMatched );
+        json.name( "numberReturned" ).value( 0 );
+        json.name( "features" ).beginArray().endArray();
+        json.endObject();
+    }
+
+    /**
+     * Writes the given feature as GeoJSON feature object.
+     * 
+     * @param feature
+     *            feature to write, must not be <code>null</code>
+     * @throws IOException
+     * @throws TransformationException
+     * @throws UnknownCRSException
+     */
+    public void write( Feature feature )
+                            throws IOException, TransformationException, UnknownCRSException {
+        writeFeature( feature, propNames );
+    }
+
+    /**
+     * Flushes the underlying writer.
+     * 
+     * @throws IOException
+     */
+    public void flush()
+                            throws IOException {
+        json.flush();
+    }
+
+    private void writeFeature( Feature feature, Set<QName> includedProps )
+                            throws IOException, TransformationException, UnknownCRSException {
+
+        List<Property> props = new ArrayList<Property>();
+        Property geometryProp = null;
+        for ( Property prop : feature.getProperties() ) {
+            if ( includedProps != null && !includedProps.contains( prop.getName() ) ) {
+                continue;
+            }
+            if ( geometryProp == null && prop.getValue() instanceof Geometry ) {
+                geometryProp = prop;
+            } else {
+                props.add( prop );
+            }
+        }
+
+        json.beginObject();
+        json.name( "type" ).value( "Feature" );
+        if ( feature.getId() != null ) {
+            json.name( "id" ).value( feature.getId() );
+        }
+        json.name( "geometry" );
+        if ( geometryProp != null ) {
+            writeGeometry( (Geometry) geometryProp.getValue() );
+        } else {
+            json.nullValue();
+        }
+        json.name( "properties" ).beginObject();
+        int i = 0;
+        while ( i < props.size() ) {
+            QName name = props.get( i ).getName();
+            int j = i + 1;
+            while ( j < props.size() && name.equals( props.get( j ).getName() ) ) {
+                j++;
+            }
+            json.name( name.getLocalPart() );
+            if ( j - i == 1 ) {
+                writeValue( props.get( i ).getValue() );
+            } else {
+                json.beginArray();
+                for ( int k = i; k < j; k++ ) {
+                    writeValue( props.get( k ).getValue() );
+                }
+                json.endArray();
+            }
+            i = j;
+        }
+        json.endObject();
+        json.endObject();
+    }
+
+    private void writeValue( TypedObjectNode value )
+                            throws IOException, TransformationException, UnknownCRSException {
+        if ( value == null ) {
+            json.nullValue();
+        } else if ( value instanceof PrimitiveValue ) {
+            writePrimitive( (PrimitiveValue) value );
+        } else if ( value instanceof Geometry ) {
+            writeGeometry( (Geometry) value );
+        } else if ( value instanceof Reference<?> ) {
+            // don't follow references (may be cyclic)
+            json.value( ( (Reference<?>) value ).getURI() );
+        } else if ( value instanceof Feature ) {
+            writeFeature( (Feature) value, null );
+        } else if ( value instanceof GenericXMLElement ) {
+            writeElement( (GenericXMLElement) value );
+        } else {
+            json.value( value.toString() );
+        }
+    }
+
+    private void writePrimitive( PrimitiveValue value )
+                            throws IOException {
+        Object o = value.getValue();
+        if ( o instanceof Boolean ) {
+            json.value( (Boolean) o );
+        } else if ( o instanceof Double || o instanceof Float ) {
+            double d = ( (Number) o ).doubleValue();
+            if ( Double.isNaN( d ) || Double.isInfinite( d ) ) {
+                json.nullValue();
+            } else {
+                json.value( d );
+            }
+        } else if ( o instanceof Number ) {
+            json.value( (Number) o );
+        } else if ( o != null ) {
+            json.value( value.getAsText() );
+        } else {
+            json.nullValue();
+        }
+    }
+
+    private void writeElement( GenericXMLElement el )
+                            throws IOException, TransformationException, UnknownCRSException {
+        List<TypedObjectNode> children = el.getChildren();
+        Map<QName, PrimitiveValue> attrs = el.getAttributes();
+        boolean simple = attrs == null || attrs.isEmpty();
+        for ( TypedObjectNode child : children ) {
+            if ( !( child instanceof PrimitiveValue ) ) {
+                simple = false;
+                break;
+            }
+        }
+        if ( simple ) {
+            PrimitiveValue text = el.getValue();
+            if ( text != null ) {
+                writePrimitive( text );
+            } else {
+                json.nullValue();
+            }
+            return;
+        }
+        json.beginObject();
+        if ( attrs != null ) {
+            for ( Map.Entry<QName, PrimitiveValue> attr : attrs.entrySet() ) {
+                json.name( "@" + attr.getKey().getLocalPart() );
+                writePrimitive( attr.getValue() );
+            }
+        }
+        for ( TypedObjectNode child : children ) {
+            if ( child instanceof GenericXMLElement ) {
+                json.name( ( (GenericXMLElement) child ).getName().getLocalPart() );
+                writeValue( child );
+            } else if ( child instanceof PrimitiveValue ) {
+                String text = ( (PrimitiveValue) child ).getAsText();
+                if ( text != null && !text.trim().isEmpty() ) {
+                    json.name( "#text" ).value( text );
+                }
+            } else if ( child instanceof Geometry || child instanceof Feature ) {
+                json.name( child instanceof Geometry ? "geometry" : "feature" );
+                writeValue( child );
+            }
+        }
+        json.endObject();
+    }
+
+    private void writeGeometry( Geometry geom )
+                            throws IOException, TransformationException, UnknownCRSException {
+
+        if ( geom instanceof GeometryReference<?> ) {
+            geom = ( (GeometryReference<?>) geom ).getReferencedObject();
+        }
+        ICRS crs = geom.getCoordinateSystem();
+
+        json.beginObject();
+        if ( geom instanceof Point ) {
+            json.name( "type" ).value( "Point" );
+            json.name( "coordinates" );
+            writePoint( (Point) geom, crs );
+        } else if ( geom instanceof Curve ) {
+            json.name( "type" ).value( "LineString" );
+            json.name( "coordinates" );
+            writePoints( getControlPoints( (Curve) geom ), crs );
+        } else if ( geom instanceof Surface ) {
+            List<PolygonPatch> patches = new ArrayList<PolygonPatch>();
+            collectPatches( (Surface) geom, patches );
+            if ( patches.size() == 1 ) {
+                json.name( "type" ).value( "Polygon" );
+                json.name( "coordinates" );
+                writePolygon( patches.get( 0 ), crs );
+            } else {
+                json.name( "type" ).value( "MultiPolygon" );
+                json.name( "coordinates" ).beginArray();
+                for ( PolygonPatch patch : patches ) {
+                    writePolygon( patch, crs );
+                }
+                json.endArray();
+            }
+        } else if ( geom instanceof Envelope ) {
+            json.name( "type" ).value( "Polygon" );
+            json.name( "coordinates" );
+            writeEnvelope( (Envelope) geom, crs );
+        } else if ( geom instanceof MultiPoint ) {
+            json.name( "type" ).value( "MultiPoint" );
+            json.name( "coordinates" ).beginArray();
+            for ( Point p : (MultiPoint) geom ) {
+                writePoint( p, crs );
+            }
+            json.endArray();
+        } else if ( geom instanceof MultiCurve<?> ) {
+            json.name( "type" ).value( "MultiLineString" );
+            json.name( "coordinates" ).beginArray();
+            for ( Curve c : (MultiCurve<?>) geom ) {
+                writePoints( getControlPoints( c ), crs );
+            }
+            json.endArray();
+        } else if ( geom instanceof MultiSurface<?> ) {
+            List<PolygonPatch> patches = new ArrayList<PolygonPatch>();
+            for ( Surface s : (MultiSurface<?>) geom ) {
+                collectPatches( s, patches );
+            }
+            json.name( "type" ).value( "MultiPolygon" );
+            json.name( "coordinates" ).beginArray();
+            for ( PolygonPatch patch : patches ) {
+                writePolygon( patch, crs );
+            }
+            json.endArray();
+        } else if ( geom instanceof MultiGeometry<?> ) {
+            json.name( "type" ).value( "GeometryCollection" );
+            json.name( "geometries" ).beginArray();
+            for ( Geometry member : (MultiGeometry<?>) geom ) {
+                writeGeometry( member );
+            }
+            json.endArray();
+        } else {
+            LOG.debug( "Geometry type '" + geom.getGeometryType() + "' cannot be represented in GeoJSON." );
+            json.name( "type" ).value( "GeometryCollection" );
+            json.name( "geometries" ).beginArray().endArray();
+        }
+        json.endObject();
+    }
+
+    private void collectPatches( Surface surface, List<PolygonPatch> patches ) {
+        if ( surface instanceof CompositeSurface ) {
+            for ( Surface member : (CompositeSurface) surface ) {
+                collectPatches( member, patches );
+            }
+            return;
+        }
+        for ( SurfacePatch patch : surface.getPatches() ) {
+            if ( patch instanceof PolygonPatch ) {
+                patches.add( (PolygonPatch) patch );
+            } else {
+                LOG.debug( "Skipping non-polygonal surface patch." );
+            }
+        }
+    }
+
+    private void writePolygon( PolygonPatch patch, ICRS crs )
+                            throws IOException, TransformationException, UnknownCRSException {
+        json.beginArray();
+        writePoints( getControlPoints( patch.getExteriorRing() ), crs );
+        for ( Ring interior : patch.getInteriorRings() ) {
+            writePoints( getControlPoints( interior ), crs );
+        }
+        json.endArray();
+    }
+
+    private void writeEnvelope( Envelope env, ICRS crs )
+                            throws IOException, TransformationException, UnknownCRSException {
+        double minX = env.getMin().get0();
+        double minY = env.getMin().get1();
+        double maxX = env.getMax().get0();
+        double maxY = env.getMax().get1();
+        json.beginArray().beginArray();
+        writePosition( minX, minY, Double.NaN, 2, crs );
+        writePosition( maxX, minY, Double.NaN, 2, crs );
+        writePosition( maxX, maxY, Double.NaN, 2, crs );
+        writePosition( minX, maxY, Double.NaN, 2, crs );
+        writePosition( minX, minY, Double.NaN, 2, crs );
+        json.endArray().endArray();
+    }
+
+    private Points getControlPoints( Curve curve ) {
+        try {
+            return curve.getControlPoints();
+        } catch ( IllegalArgumentException e ) {
+            // contains non-linear segments
+            if ( linearizer == null ) {
+                linearizer = new CurveLinearizer( new GeometryFactory() );
+            }
+            return linearizer.linearize( curve, crit ).getControlPoints();
+        }
+    }
+
+    private void writePoint( Point p, ICRS crs )
+                            throws IOException, TransformationException, UnknownCRSException {
+        writePosition( p.get0(), p.get1(), p.getCoordinateDimension() > 2 ? p.get2() : Double.NaN,
+                       p.getCoordinateDimension(), crs );
+    }
+
+    private void writePoints( Points points, ICRS crs )
+                            throws IOException, TransformationException, UnknownCRSException {
+        json.beginArray();
+        int dim = points.getDimension();
+        if ( points instanceof PackedPoints ) {
+            // backing array, no copy involved
+            double[] ordinates = points.getAsArray();
+            for ( int i = 0; i + dim <= ordinates.length; i += dim ) {
+                writePosition( ordinates[i], ordinates[i + 1], dim > 2 ? ordinates[i + 2] : Double.NaN, dim, crs );
+            }
+        } else {
+            for ( int i = 0; i < points.size(); i++ ) {
+                writePoint( points.get( i ), crs );
+            }
+        }
+        json.endArray();
+    }
+
+    private void writePosition( double x, double y, double z, int dim, ICRS crs )
+                            throws IOException, TransformationException, UnknownCRSException {
+        if ( crs != null && outputCrs != null && !crs.equals( outputCrs ) ) {
+            if ( transformer == null ) {
+                throw new UnknownCRSException( outputCrs.getAlias() );
+            }
+            double[] in = ordinates2d;
+            if ( dim > 2 && !Double.isNaN( z ) ) {
+                in = ordinates3d;
+                in[2] = z;
+            }
+            in[0] = x;
+            in[1] = y;
+            double[] out = transformer.transform( crs, in, transformed );
+            x = out[0];
+            y = out[1];
+            z = out.length > 2 && in.length > 2 ? out[2] : Double.NaN;
+        }
+        if ( isNorthingFirst( outputCrs != null ? outputCrs : crs ) ) {
+            double northing = x;
+            x = y;
+            y = northing;
+        }
+        json.beginArray();
+        json.value( x );
+        json.value( y );
+        if ( dim > 2 && !Double.isNaN( z ) ) {
+            json.value( z );
+        }
+        json.endArray();
+    }
+
+    private boolean isNorthingFirst( ICRS crs ) {
+        if ( crs == null ) {
+            return false;
+        }
+        if ( crs != axisOrderCrs ) {
+            axisOrderCrs = crs;
+            try {
+                northingFirst = crs.getNorthing() == 0 && crs.getEasting() == 1;
+            } catch ( Exception e ) {
+                LOG.debug( "Unable to determine axis order of CRS '" + crs.getAlias() + "': " + e.getMessage() );
+                northingFirst = false;
+            }
+        }
+        return northingFirst;
+    }
+}
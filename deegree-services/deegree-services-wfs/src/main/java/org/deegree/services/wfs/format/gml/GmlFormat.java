@@ -38,6 +38,10 @@ package org.deegree.services.wfs.format.gml;
 import static org.deegree.protocol.wfs.getfeature.ResultType.RESULTS;
 
 import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.xml.bind.JAXBElement;
 import javax.xml.namespace.QName;
@@ -99,6 +103,8 @@ public class GmlFormat implements Format {
 
     private final GmlGetGmlObjectHandler ggoHandler;
 
+    private final ExecutorService encoders;
+
     /**
      * Creates a new {@link GmlFormat} instance with default behaviour for the specified GML version.
      * 
@@ -110,11 +116,13 @@ public class GmlFormat implements Format {
     public GmlFormat( WebFeatureService master, GMLVersion gmlVersion ) {
         this.master = master;
         this.options = new GmlFormatOptions( gmlVersion, null, null, null, false, false, master.getQueryMaxFeatures(),
-                                             master.getCheckAreaOfUse(), null, null, gmlVersion.getMimeType(), false );
+                                             master.getCheckAreaOfUse(), null, null, gmlVersion.getMimeType(), false,
+                                             1 );
         this.dftHandler = new GmlDescribeFeatureTypeHandler( this );
         this.gfHandler = new GmlGetFeatureHandler( this );
         this.gpvHandler = new GmlGetPropertyValueHandler( this );
         this.ggoHandler = new GmlGetGmlObjectHandler( this );
+        this.encoders = null;
     }
 
     /**
@@ -140,6 +148,7 @@ public class GmlFormat implements Format {
 
         GetFeatureResponse responseConfig = formatDef.getGetFeatureResponse();
         boolean exportOriginalSchema = false;
+        int encodingThreads = 1;
         if ( responseConfig != null ) {
             if ( responseConfig.isDisableStreaming() != null ) {
                 disableStreaming = responseConfig.isDisableStreaming();
@@ -163,6 +172,9 @@ public class GmlFormat implements Format {
                     appSchemaBaseURL = null;
                 }
             }
+            if ( responseConfig.getEncodingThreads() != null ) {
+                encodingThreads = responseConfig.getEncodingThreads().intValue();
+            }
         }
 
         int queryMaxFeatures = master.getQueryMaxFeatures();
@@ -194,17 +206,26 @@ public class GmlFormat implements Format {
         this.options = new GmlFormatOptions( gmlVersion, responseContainerEl, responseFeatureMemberEl, schemaLocation,
                                              disableStreaming, generateBoundedByForFeatures, queryMaxFeatures,
                                              checkAreaOfUse, formatter, appSchemaBaseURL, mimeType,
-                                             exportOriginalSchema );
+                                             exportOriginalSchema, encodingThreads );
 
         this.dftHandler = new GmlDescribeFeatureTypeHandler( this );
         this.gfHandler = new GmlGetFeatureHandler( this );
         this.gpvHandler = new GmlGetPropertyValueHandler( this );
         this.ggoHandler = new GmlGetGmlObjectHandler( this );
+
+        if ( encodingThreads > 1 ) {
+            LOG.info( "Encoding GetFeature responses using " + encodingThreads + " threads." );
+            this.encoders = Executors.newFixedThreadPool( encodingThreads, new EncoderThreadFactory() );
+        } else {
+            this.encoders = null;
+        }
     }
 
     @Override
     public void destroy() {
-        // nothing to do
+        if ( encoders != null ) {
+            encoders.shutdownNow();
+        }
     }
 
     @Override
@@ -258,4 +279,25 @@ public class GmlFormat implements Format {
     public GmlFormatOptions getGmlFormatOptions() {
         return options;
     }
+
+    /**
+     * Returns the thread pool for encoding feature members concurrently.
+     * 
+     * @return thread pool, <code>null</code> if feature members are encoded sequentially
+     */
+    public ExecutorService getEncoders() {
+        return encoders;
+    }
+
+    private static class EncoderThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread( Runnable r ) {
+            Thread t = new Thread( r, "gml-encoder-" + count.incrementAndGet() );
+            t.setDaemon( true );
+            return t;
+        }
+    }
 }
@@ -76,6 +76,8 @@ public class GmlFormatOptions {
 
     private final boolean exportOriginalSchema;
 
+    private final int encodingThreads;
+
     /**
      * Creates a new {@link GmlFormatOptions} instance.
      * 
@@ -95,11 +97,15 @@ public class GmlFormatOptions {
      * @param appSchemaBaseURL
      * @param mimeType
      * @param exportOriginalSchema
+     * @param encodingThreads
+     *            number of threads for encoding the feature members of a streamed response, <code>1</code> encodes
+     *            them sequentially in the request thread
      */
     public GmlFormatOptions( GMLVersion gmlVersion, QName responseContainerEl, QName responseFeatureMemberEl,
                              String schemaLocation, boolean disableStreaming, boolean generateBoundedByForFeatures,
                              int queryMaxFeatures, boolean checkAreaOfUse, CoordinateFormatter formatter,
-                             String appSchemaBaseURL, String mimeType, boolean exportOriginalSchema ) {
+                             String appSchemaBaseURL, String mimeType, boolean exportOriginalSchema,
+                             int encodingThreads ) {
         this.gmlVersion = gmlVersion;
         this.responseContainerEl = responseContainerEl;
         this.responseFeatureMemberEl = responseFeatureMemberEl;
@@ -112,6 +118,7 @@ public class GmlFormatOptions {
         this.appSchemaBaseURL = appSchemaBaseURL;
         this.mimeType = mimeType;
         this.exportOriginalSchema = exportOriginalSchema;
+        this.encodingThreads = encodingThreads;
     }
 
     /**
@@ -197,4 +204,11 @@ public class GmlFormatOptions {
     public boolean isExportOriginalSchema() {
         return exportOriginalSchema;
     }
+
+    /**
+     * @return the number of threads for encoding feature members, at least <code>1</code>
+     */
+    public int getEncodingThreads() {
+        return encodingThreads;
+    }
 }
@@ -63,6 +63,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
 
 import javax.xml.namespace.QName;
 import javax.xml.stream.FactoryConfigurationError;
@@ -89,6 +90,8 @@ import org.deegree.filter.FilterEvaluationException;
 import org.deegree.filter.projection.ProjectionClause;
 import org.deegree.filter.projection.PropertyName;
 import org.deegree.geometry.Envelope;
+import org.deegree.geometry.io.CoordinateFormatter;
+import org.deegree.geometry.io.DecimalCoordinateFormatter;
 import org.deegree.gml.GMLStreamWriter;
 import org.deegree.gml.GMLVersion;
 import org.deegree.gml.reference.GmlXlinkOptions;
@@ -272,8 +275,10 @@ public class GmlGetFeatureHandler extends AbstractGmlRequestHandler {
             writeFeatureMembersCached( request.getVersion(), gmlStream, analyzer, gmlVersion, returnMaxFeatures,
                                        startIndex, memberElementName, lock );
         } else {
+            ParallelFeatureEncoder encoder = createParallelEncoder( gmlStream, response, localReferencesPossible,
+                                                                    memberElementName, xLinkTemplate );
             writeFeatureMembersStream( request.getVersion(), gmlStream, analyzer, gmlVersion, returnMaxFeatures,
-                                       startIndex, memberElementName, lock );
+                                       startIndex, memberElementName, lock, encoder );
         }
 
         if ( !isGetFeatureById ) {
@@ -389,9 +394,32 @@ public class GmlGetFeatureHandler extends AbstractGmlRequestHandler {
         xmlStream.flush();
     }
 
+    private ParallelFeatureEncoder createParallelEncoder( GMLStreamWriter gmlStream, HttpResponseBuffer response,
+                                                          boolean localReferencesPossible, QName featureMemberEl,
+                                                          String xLinkTemplate )
+                            throws IOException {
+        ExecutorService encoders = format.getEncoders();
+        if ( encoders == null ) {
+            return null;
+        }
+        if ( localReferencesPossible ) {
+            LOG.debug( "Local references possible, encoding feature members sequentially." );
+            return null;
+        }
+        CoordinateFormatter formatter = options.getFormatter();
+        if ( formatter != null && !( formatter instanceof DecimalCoordinateFormatter ) ) {
+            LOG.debug( "Custom coordinate formatter may not be thread-safe, encoding feature members sequentially." );
+            return null;
+        }
+        // bound the read-ahead to keep the memory consumption independent of the number of features
+        int maxPending = 4 * options.getEncodingThreads();
+        return new ParallelFeatureEncoder( encoders, maxPending, gmlStream, response.getOutputStream(),
+                                           featureMemberEl, xLinkTemplate );
+    }
+
     private void writeFeatureMembersStream( Version wfsVersion, GMLStreamWriter gmlStream, QueryAnalyzer analyzer,
                                             GMLVersion outputFormat, int maxFeatures, int startIndex,
-                                            QName featureMemberEl, Lock lock )
+                                            QName featureMemberEl, Lock lock, ParallelFeatureEncoder encoder )
                             throws XMLStreamException, UnknownCRSException, TransformationException,
                             FeatureStoreException, FilterEvaluationException, FactoryConfigurationError {
 
@@ -415,30 +443,47 @@ public class GmlGetFeatureHandler extends AbstractGmlRequestHandler {
         // retrieve and write result features
         int featuresAdded = 0;
         int featuresSkipped = 0;
+        Query pagedQuery = preparePaging( analyzer, maxFeatures, startIndex, lock );
         GmlXlinkOptions resolveState = gmlStream.getReferenceResolveStrategy().getResolveOptions();
-        for ( Map.Entry<FeatureStore, List<Query>> fsToQueries : analyzer.getQueries().entrySet() ) {
-            FeatureStore fs = fsToQueries.getKey();
-            Query[] queries = fsToQueries.getValue().toArray( new Query[fsToQueries.getValue().size()] );
-            FeatureInputStream rs = fs.query( queries );
-            try {
-                for ( Feature member : rs ) {
-                    if ( lock != null && !lock.isLocked( member.getId() ) ) {
-                        continue;
-                    }
-                    if ( featuresAdded == maxFeatures ) {
-                        // limit the number of features written to maxfeatures
-                        break;
-                    }
-                    if ( featuresSkipped < startIndex ) {
-                        featuresSkipped++;
-                    } else {
-                        writeMemberFeature( member, gmlStream, xmlStream, resolveState, featureMemberEl );
-                        featuresAdded++;
+        try {
+            for ( Map.Entry<FeatureStore, List<Query>> fsToQueries : analyzer.getQueries().entrySet() ) {
+                FeatureStore fs = fsToQueries.getKey();
+                Query[] queries = fsToQueries.getValue().toArray( new Query[fsToQueries.getValue().size()] );
+                FeatureInputStream rs = fs.query( queries );
+                if ( pagedQuery != null && pagedQuery.isPagingApplied() ) {
+                    featuresSkipped = startIndex;
+                }
+                try {
+                    for ( Feature member : rs ) {
+                        if ( lock != null && !lock.isLocked( member.getId() ) ) {
+                            continue;
+                        }
+                        if ( featuresAdded == maxFeatures ) {
+                            // limit the number of features written to maxfeatures
+                            break;
+                        }
+                        if ( featuresSkipped < startIndex ) {
+                            featuresSkipped++;
+                        } else {
+                            if ( encoder != null ) {
+                                encoder.write( member );
+                            } else {
+                                writeMemberFeature( member, gmlStream, xmlStream, resolveState, featureMemberEl );
+                            }
+                            featuresAdded++;
+                        }
                     }
+                } finally {
+                    LOG.debug( "Closing FeatureResultSet (stream)" );
+                    rs.close();
                 }
-            } finally {
-                LOG.debug( "Closing FeatureResultSet (stream)" );
-                rs.close();
+            }
+            if ( encoder != null ) {
+                encoder.finish();
+            }
+        } finally {
+            if ( encoder != null ) {
+                encoder.cancel();
             }
         }
     }
@@ -455,10 +500,14 @@ public class GmlGetFeatureHandler extends AbstractGmlRequestHandler {
         // retrieve maxfeatures features
         int featuresAdded = 0;
         int featuresSkipped = 0;
+        Query pagedQuery = preparePaging( analyzer, maxFeatures, startIndex, lock );
         for ( Map.Entry<FeatureStore, List<Query>> fsToQueries : analyzer.getQueries().entrySet() ) {
             FeatureStore fs = fsToQueries.getKey();
             Query[] queries = fsToQueries.getValue().toArray( new Query[fsToQueries.getValue().size()] );
             FeatureInputStream rs = fs.query( queries );
+            if ( pagedQuery != null && pagedQuery.isPagingApplied() ) {
+                featuresSkipped = startIndex;
+            }
             try {
                 for ( Feature feature : rs ) {
                     if ( lock != null && !lock.isLocked( feature.getId() ) ) {
@@ -500,6 +549,30 @@ public class GmlGetFeatureHandler extends AbstractGmlRequestHandler {
         }
     }
 
+    /**
+     * Passes startIndex and maxFeatures to the feature store query, so the store has a chance to perform the paging in
+     * the backend.
+     * <p>
+     * This is only possible if the request results in a single feature store query and no features are sorted out
+     * afterwards (locking). If the store does not apply the paging, the features are skipped during the output loop.
+     * </p>
+     * 
+     * @return the paged query, or <code>null</code> if paging has to be performed in the output loop
+     */
+    private Query preparePaging( QueryAnalyzer analyzer, int maxFeatures, int startIndex, Lock lock ) {
+        int limit = maxFeatures > 0 ? maxFeatures : -1;
+        if ( lock != null || ( startIndex <= 0 && limit < 0 ) || analyzer.getQueries().size() != 1 ) {
+            return null;
+        }
+        List<Query> queries = analyzer.getQueries().values().iterator().next();
+        if ( queries.size() != 1 ) {
+            return null;
+        }
+        Query query = queries.get( 0 );
+        query.setPaging( startIndex, limit );
+        return query;
+    }
+
     private void writeBoundedBy( Version wfsVersion, GMLStreamWriter gmlStream, GMLVersion outputFormat, Envelope env )
                             throws XMLStreamException, UnknownCRSException, TransformationException {
 
@@ -0,0 +1,417 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.wfs.format.gml.request;
+
+import static org.deegree.commons.xml.CommonNamespaces.XLNNS;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.deegree.commons.tom.gml.GMLReference;
+import org.deegree.feature.Feature;
+import org.deegree.gml.GMLOutputFactory;
+import org.deegree.gml.GMLStreamWriter;
+import org.deegree.gml.reference.ExportedIdSet;
+import org.deegree.gml.reference.GmlXlinkOptions;
+import org.deegree.gml.reference.GmlXlinkStrategy;
+
+/**
+ * Encodes the feature members of a GetFeature response concurrently.
+ * <p>
+ * Each member is serialized to a byte fragment by a worker thread, using a {@link GMLStreamWriter} of its own that is
+ * configured like the one of the response. The fragments are appended to the response in the original member order.
+ * The number of members that are encoded (or waiting to be written) at the same time is bounded, so memory
+ * consumption does not depend on the size of the response.
+ * </p>
+ * <p>
+ * Fragments are written without namespace declarations for the prefixes that are bound on the response container
+ * element. Workers treat the objects of all fragments that have already been written as exported. When a fragment is
+ * written, it is checked that none of the objects that its worker assumed to be missing has been exported by a
+ * preceding fragment in the meantime. Otherwise, the fragment is encoded again on the calling thread. So every object
+ * is written only once (by the first member that contains it) and referenced by <code>xlink:href</code> afterwards,
+ * exactly as in sequential encoding. As forward references are not resolved, this class must only be used if local
+ * references in the response can be ruled out.
+ * </p>
+ * 
+ * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+class ParallelFeatureEncoder {
+
+    private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+
+    private final ExecutorService executor;
+
+    private final int maxPending;
+
+    private final GMLStreamWriter gmlStream;
+
+    private final OutputStream os;
+
+    private final QName featureMemberEl;
+
+    private final String remoteXlinkTemplate;
+
+    private final ExportedIdSet writtenIds = new ExportedIdSet();
+
+    private final LinkedList<Future<Fragment>> pending = new LinkedList<Future<Fragment>>();
+
+    private NamespaceContext rootContext;
+
+    /**
+     * Creates a new {@link ParallelFeatureEncoder} instance.
+     * 
+     * @param executor
+     *            executor for the encoding tasks, must not be <code>null</code>
+     * @param maxPending
+     *            maximum number of members that are encoded or waiting to be written at the same time
+     * @param gmlStream
+     *            stream of the response, the container element must have been opened, never <code>null</code>
+     * @param os
+     *            output stream that the XML stream of the response writes to, never <code>null</code>
+     * @param featureMemberEl
+     *            feature member element, never <code>null</code>
+     * @param remoteXlinkTemplate
+     *            template for references to objects that are not included in the response, never <code>null</code>
+     */
+    ParallelFeatureEncoder( ExecutorService executor, int maxPending, GMLStreamWriter gmlStream, OutputStream os,
+                            QName featureMemberEl, String remoteXlinkTemplate ) {
+        this.executor = executor;
+        this.maxPending = maxPending;
+        this.gmlStream = gmlStream;
+        this.os = os;
+        this.featureMemberEl = featureMemberEl;
+        this.remoteXlinkTemplate = remoteXlinkTemplate;
+    }
+
+    /**
+     * Schedules the encoding of the given member and writes the fragments of preceding members as soon as the maximum
+     * number of pending members is reached.
+     * 
+     * @param member
+     *            feature to be written, never <code>null</code>
+     * @throws XMLStreamException
+     */
+    void write( Feature member )
+                            throws XMLStreamException {
+        if ( rootContext == null ) {
+            start();
+        }
+        pending.add( executor.submit( new FragmentEncoder( member ) ) );
+        while ( pending.size() >= maxPending ) {
+            writeFragment( pending.removeFirst() );
+        }
+    }
+
+    /**
+     * Writes the fragments of all pending members.
+     * 
+     * @throws XMLStreamException
+     */
+    void finish()
+                            throws XMLStreamException {
+        while ( !pending.isEmpty() ) {
+            writeFragment( pending.removeFirst() );
+        }
+    }
+
+    /**
+     * Cancels the encoding of all pending members (used when writing the response fails).
+     */
+    void cancel() {
+        for ( Future<Fragment> fragment : pending ) {
+            fragment.cancel( true );
+        }
+        pending.clear();
+    }
+
+    private void start()
+                            throws XMLStreamException {
+        XMLStreamWriter xmlStream = gmlStream.getXMLStream();
+        // close the start tag of the container element, fragments are appended to the underlying stream
+        xmlStream.writeCharacters( "" );
+        xmlStream.flush();
+
+        Map<String, String> nsToPrefix = new HashMap<String, String>();
+        NamespaceContext nsContext = xmlStream.getNamespaceContext();
+        Map<String, String> candidates = new HashMap<String, String>();
+        if ( gmlStream.getNamespaceBindings() != null ) {
+            candidates.putAll( gmlStream.getNamespaceBindings() );
+        }
+        candidates.put( "gml", gmlStream.getVersion().getNamespace() );
+        candidates.put( featureMemberEl.getPrefix(), featureMemberEl.getNamespaceURI() );
+        candidates.put( "xlink", XLNNS );
+        for ( Map.Entry<String, String> candidate : candidates.entrySet() ) {
+            String ns = candidate.getValue();
+            String prefix = nsContext.getPrefix( ns );
+            if ( prefix != null && !prefix.isEmpty() ) {
+                nsToPrefix.put( ns, prefix );
+            }
+        }
+        rootContext = new BoundNamespaces( nsToPrefix );
+    }
+
+    private synchronized boolean isWritten( String gmlId ) {
+        return writtenIds.contains( gmlId );
+    }
+
+    private synchronized boolean isUpToDate( Fragment fragment ) {
+        for ( String gmlId : fragment.assumedMissing ) {
+            if ( writtenIds.contains( gmlId ) ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private synchronized void markWritten( Fragment fragment ) {
+        for ( String gmlId : fragment.exportedIds ) {
+            writtenIds.add( gmlId );
+        }
+    }
+
+    private void writeFragment( Future<Fragment> future )
+                            throws XMLStreamException {
+        Fragment fragment;
+        try {
+            fragment = future.get();
+        } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new XMLStreamException( "Interrupted while encoding feature member." );
+        } catch ( ExecutionException e ) {
+            throw toXMLStreamException( e.getCause() );
+        }
+        if ( !isUpToDate( fragment ) ) {
+            // a preceding member has exported an object that the worker had to include, encode the member again
+            try {
+                fragment = new FragmentEncoder( fragment.member ).call();
+            } catch ( Exception e ) {
+                throw toXMLStreamException( e );
+            }
+        }
+        markWritten( fragment );
+        try {
+            os.write( fragment.bytes );
+        } catch ( IOException e ) {
+            throw new XMLStreamException( e.getMessage(), e );
+        }
+    }
+
+    private XMLStreamException toXMLStreamException( Throwable cause ) {
+        if ( cause instanceof XMLStreamException ) {
+            return (XMLStreamException) cause;
+        }
+        if ( cause instanceof RuntimeException ) {
+            throw (RuntimeException) cause;
+        }
+        if ( cause instanceof Error ) {
+            throw (Error) cause;
+        }
+        return new XMLStreamException( "Error encoding feature member: " + cause.getMessage(), cause );
+    }
+
+    /**
+     * Encoded feature member and the gml:ids that the encoding depends on.
+     */
+    private static class Fragment {
+
+        private final Feature member;
+
+        private final byte[] bytes;
+
+        private final Set<String> exportedIds;
+
+        private final Set<String> assumedMissing;
+
+        private Fragment( Feature member, byte[] bytes, Set<String> exportedIds, Set<String> assumedMissing ) {
+            this.member = member;
+            this.bytes = bytes;
+            this.exportedIds = exportedIds;
+            this.assumedMissing = assumedMissing;
+        }
+    }
+
+    private class FragmentEncoder implements Callable<Fragment> {
+
+        private final Feature member;
+
+        private FragmentEncoder( Feature member ) {
+            this.member = member;
+        }
+
+        @Override
+        public Fragment call()
+                                throws Exception {
+            GmlXlinkOptions resolveOptions = gmlStream.getReferenceResolveStrategy().getResolveOptions();
+            FragmentXlinkStrategy xlinkStrategy = new FragmentXlinkStrategy( resolveOptions );
+            ByteArrayOutputStream bos = new ByteArrayOutputStream( 4096 );
+            XMLStreamWriter writer = OUTPUT_FACTORY.createXMLStreamWriter( bos, "UTF-8" );
+            writer.setNamespaceContext( rootContext );
+            if ( member.getId() != null && xlinkStrategy.isObjectExported( member.getId() ) ) {
+                writer.writeEmptyElement( featureMemberEl.getNamespaceURI(), featureMemberEl.getLocalPart() );
+                if ( writer.getPrefix( XLNNS ) == null ) {
+                    writer.setPrefix( "xlink", XLNNS );
+                    writer.writeNamespace( "xlink", XLNNS );
+                }
+                writer.writeAttribute( XLNNS, "href", "#" + member.getId() );
+            } else {
+                writer.writeStartElement( featureMemberEl.getNamespaceURI(), featureMemberEl.getLocalPart() );
+                GMLStreamWriter fragmentStream = GMLOutputFactory.createGMLStreamWriter( gmlStream.getVersion(),
+                                                                                         writer );
+                fragmentStream.setProjections( gmlStream.getProjections() );
+                fragmentStream.setOutputCrs( gmlStream.getOutputCrs() );
+                fragmentStream.setCoordinateFormatter( gmlStream.getCoordinateFormatter() );
+                fragmentStream.setGenerateBoundedByForFeatures( gmlStream.getGenerateBoundedByForFeatures() );
+                fragmentStream.setExportGeometries( gmlStream.getOutputGeometries() );
+                fragmentStream.setExportExtraProps( gmlStream.getExportExtraProps() );
+                fragmentStream.setNamespaceBindings( gmlStream.getNamespaceBindings() );
+                fragmentStream.setReferenceResolveStrategy( xlinkStrategy );
+                fragmentStream.getFeatureWriter().export( member, resolveOptions );
+                writer.writeEndElement();
+            }
+            writer.close();
+            return new Fragment( member, bos.toByteArray(), xlinkStrategy.exportedIds, xlinkStrategy.assumedMissing );
+        }
+    }
+
+    /**
+     * {@link GmlXlinkStrategy} of a single fragment: writes local references as remote references and records the
+     * objects that are exported by the fragment and the objects that are assumed to be missing in the preceding
+     * fragments.
+     */
+    private class FragmentXlinkStrategy implements GmlXlinkStrategy {
+
+        private final GmlXlinkOptions resolveOptions;
+
+        private final Set<String> exportedIds = new HashSet<String>();
+
+        private final Set<String> assumedMissing = new HashSet<String>();
+
+        private FragmentXlinkStrategy( GmlXlinkOptions resolveOptions ) {
+            this.resolveOptions = resolveOptions;
+        }
+
+        @Override
+        public GmlXlinkOptions getResolveOptions() {
+            return resolveOptions;
+        }
+
+        @Override
+        public void addExportedId( String gmlId ) {
+            exportedIds.add( gmlId );
+        }
+
+        @Override
+        public boolean isObjectExported( String gmlId ) {
+            if ( exportedIds.contains( gmlId ) || isWritten( gmlId ) ) {
+                return true;
+            }
+            // checked again before the fragment is written
+            assumedMissing.add( gmlId );
+            return false;
+        }
+
+        @Override
+        public String requireObject( GMLReference<?> ref, GmlXlinkOptions options ) {
+            return handleReference( ref );
+        }
+
+        @Override
+        public String handleReference( GMLReference<?> ref ) {
+            String uri = ref.getURI();
+            if ( uri.startsWith( "#" ) ) {
+                return remoteXlinkTemplate.replace( "{}", ref.getId() );
+            }
+            return uri;
+        }
+    }
+
+    /**
+     * Namespace bindings in scope of the container element.
+     */
+    private static class BoundNamespaces implements NamespaceContext {
+
+        private final Map<String, String> nsToPrefix;
+
+        private final Map<String, String> prefixToNs = new HashMap<String, String>();
+
+        private BoundNamespaces( Map<String, String> nsToPrefix ) {
+            this.nsToPrefix = nsToPrefix;
+            for ( Map.Entry<String, String> binding : nsToPrefix.entrySet() ) {
+                prefixToNs.put( binding.getValue(), binding.getKey() );
+            }
+        }
+
+        @Override
+        public String getNamespaceURI( String prefix ) {
+            return prefixToNs.get( prefix );
+        }
+
+        @Override
+        public String getPrefix( String namespaceURI ) {
+            return nsToPrefix.get( namespaceURI );
+        }
+
+        @Override
+        public Iterator<String> getPrefixes( String namespaceURI ) {
+            String prefix = nsToPrefix.get( namespaceURI );
+            if ( prefix == null ) {
+                return Collections.<String> emptyList().iterator();
+            }
+            return Collections.singletonList( prefix ).iterator();
+        }
+    }
+}
@@ -37,15 +37,14 @@ package org.deegree.services.wfs.format.gml.request;
 
 import java.util.Collection;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.Set;
 
 import javax.xml.stream.XMLStreamException;
 
 import org.deegree.commons.tom.gml.GMLObject;
 import org.deegree.commons.tom.gml.GMLReference;
+import org.deegree.gml.reference.ExportedIdSet;
 import org.deegree.gml.reference.GmlXlinkOptions;
 import org.deegree.gml.reference.GmlXlinkStrategy;
 import org.deegree.protocol.wfs.getfeature.GetFeature;
@@ -79,7 +78,7 @@ public class WfsXlinkStrategy implements GmlXlinkStrategy {
 
     private final GmlXlinkOptions resolveOptions;
 
-    private final Set<String> exportedIds = new HashSet<String>();
+    private final ExportedIdSet exportedIds = new ExportedIdSet();
 
     public WfsXlinkStrategy( BufferableXMLStreamWriter xmlStream, boolean localReferencesPossible,
                              String xlinkTemplate, GmlXlinkOptions resolveOptions ) {
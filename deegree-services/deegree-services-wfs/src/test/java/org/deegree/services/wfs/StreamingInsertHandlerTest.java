@@ -0,0 +1,289 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.wfs;
+
+import static java.util.Arrays.asList;
+import static org.deegree.commons.tom.primitive.BaseType.STRING;
+import static org.deegree.commons.xml.CommonNamespaces.GMLNS;
+import static org.deegree.commons.xml.CommonNamespaces.XLNNS;
+import static org.deegree.feature.types.property.ValueRepresentation.BOTH;
+import static org.deegree.gml.GMLVersion.GML_31;
+import static org.deegree.protocol.wfs.WFSConstants.WFS_NS;
+import static org.deegree.protocol.wfs.transaction.action.IDGenMode.GENERATE_NEW;
+import static org.deegree.protocol.wfs.transaction.action.IDGenMode.USE_EXISTING;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamReader;
+
+import org.deegree.commons.tom.ReferenceResolvingException;
+import org.deegree.commons.tom.gml.property.Property;
+import org.deegree.commons.tom.gml.property.PropertyType;
+import org.deegree.feature.Feature;
+import org.deegree.feature.FeatureCollection;
+import org.deegree.feature.persistence.FeatureStoreTransaction;
+import org.deegree.feature.types.AppSchema;
+import org.deegree.feature.types.FeatureType;
+import org.deegree.feature.types.GenericAppSchema;
+import org.deegree.feature.types.GenericFeatureType;
+import org.deegree.feature.types.property.FeaturePropertyType;
+import org.deegree.feature.types.property.SimplePropertyType;
+import org.deegree.gml.reference.FeatureReference;
+import org.deegree.protocol.wfs.transaction.action.IDGenMode;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ * Tests for {@link StreamingInsertHandler}.
+ * 
+ * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class StreamingInsertHandlerTest {
+
+    private static final String APP_NS = "http://www.example.org/app";
+
+    private static final QName NODE = new QName( APP_NS, "Node", "app" );
+
+    private static final QName NAME = new QName( APP_NS, "name", "app" );
+
+    private static final QName NEXT = new QName( APP_NS, "next", "app" );
+
+    private AppSchema schema;
+
+    private FeatureStoreTransaction ta;
+
+    // ids of the members of every inserted block, references are prefixed with '#'
+    private List<List<String>> blocks;
+
+    @Before
+    public void setUp()
+                            throws Exception {
+        List<PropertyType> props = new ArrayList<PropertyType>();
+        props.add( new SimplePropertyType( NAME, 0, 1, STRING, null, null ) );
+        props.add( new FeaturePropertyType( NEXT, 0, -1, null, null, null, BOTH ) );
+        GenericFeatureType ft = new GenericFeatureType( NODE, props, false );
+        schema = new GenericAppSchema( new FeatureType[] { ft }, null, null, null, null, null );
+
+        blocks = new ArrayList<List<String>>();
+        ta = mock( FeatureStoreTransaction.class );
+        Answer<List<String>> recordBlock = new Answer<List<String>>() {
+            @Override
+            public List<String> answer( InvocationOnMock invocation )
+                                    throws Throwable {
+                return recordBlock( (FeatureCollection) invocation.getArguments()[0] );
+            }
+        };
+        when( ta.performInsert( any( FeatureCollection.class ), any( IDGenMode.class ) ) ).thenAnswer( recordBlock );
+    }
+
+    @Test
+    public void testIndependentMembersInBlocksOfBlockSize()
+                            throws Exception {
+        List<String> ids = insert( 3, node( "N0" ), node( "N1" ), node( "N2" ), node( "N3" ), node( "N4" ),
+                                   node( "N5" ), node( "N6" ) );
+        assertEquals( asList( asList( "N0", "N1", "N2" ), asList( "N3", "N4", "N5" ), asList( "N6" ) ), blocks );
+        assertEquals( asList( "N0", "N1", "N2", "N3", "N4", "N5", "N6" ), ids );
+    }
+
+    @Test
+    public void testGroupEndingAtBlockBoundary()
+                            throws Exception {
+        insert( 3, node( "N0", "N2" ), node( "N1" ), node( "N2" ), node( "N3" ), node( "N4" ), node( "N5" ) );
+        assertEquals( asList( asList( "N0", "N1", "N2" ), asList( "N3", "N4", "N5" ) ), blocks );
+    }
+
+    @Test
+    public void testGroupCrossingBlockBoundary()
+                            throws Exception {
+        // N2 -> N3 would be split by blocks of size 3
+        insert( 3, node( "N0" ), node( "N1" ), node( "N2", "N3" ), node( "N3" ), node( "N4" ), node( "N5" ),
+                node( "N6" ) );
+        assertEquals( asList( asList( "N0", "N1", "N2", "N3" ), asList( "N4", "N5", "N6" ) ), blocks );
+    }
+
+    @Test
+    public void testBackwardReference()
+                            throws Exception {
+        insert( 2, node( "N0" ), node( "N1" ), node( "N2", "N1" ), node( "N3" ) );
+        // the block would be full after N1, but the group of N1 ends at N2
+        assertEquals( asList( asList( "N0", "N1", "N2" ), asList( "N3" ) ), blocks );
+
+        blocks.clear();
+        insert( 1, node( "N0" ), node( "N1" ), node( "N2", "N1" ), node( "N3" ) );
+        assertEquals( asList( asList( "N0" ), asList( "N1", "N2" ), asList( "N3" ) ), blocks );
+    }
+
+    @Test
+    public void testGroupsMergedTransitively()
+                            throws Exception {
+        // N0 -> N3 and N5 -> N3 (forward and backward), N4 -> N5: one group from N0 to N5
+        insert( 1, node( "N0", "N3" ), node( "N1" ), node( "N2" ), node( "N3" ), node( "N4", "N5" ),
+                node( "N5", "N3" ), node( "N6" ), node( "N7" ) );
+        assertEquals( asList( asList( "N0", "N1", "N2", "N3", "N4", "N5" ), asList( "N6" ), asList( "N7" ) ),
+                      blocks );
+    }
+
+    @Test
+    public void testReferenceToNestedFeature()
+                            throws Exception {
+        String withNested = "<app:Node gml:id=\"N1\"><app:next><app:Node gml:id=\"N1a\"/></app:next></app:Node>";
+        insert( 1, node( "N0" ), withNested, node( "N2" ), node( "N3", "N1a" ), node( "N4" ) );
+        assertEquals( asList( asList( "N0" ), asList( "N1", "N2", "N3" ), asList( "N4" ) ), blocks );
+    }
+
+    @Test
+    public void testMemberReference()
+                            throws Exception {
+        String xml = "<wfs:FeatureCollection><gml:featureMember>" + node( "N0" )
+                     + "</gml:featureMember><gml:featureMember>" + node( "N1" )
+                     + "</gml:featureMember><gml:featureMember xlink:href=\"#N0\"/><gml:featureMember>"
+                     + node( "N2" ) + "</gml:featureMember></wfs:FeatureCollection>";
+        insert( 1, xml );
+        assertEquals( asList( asList( "N0", "N1", "#N0" ), asList( "N2" ) ), blocks );
+    }
+
+    @Test
+    public void testIdsOfAllBlocksInMemberOrder()
+                            throws Exception {
+        List<String> ids = insert( 2, GENERATE_NEW, node( "N0" ), node( "N1", "N3" ), node( "N2" ), node( "N3" ),
+                                   node( "N4" ), node( "N5" ) );
+        assertEquals( asList( asList( "N0", "N1", "N2", "N3" ), asList( "N4", "N5" ) ), blocks );
+        assertEquals( asList( "NEW_N0", "NEW_N1", "NEW_N2", "NEW_N3", "NEW_N4", "NEW_N5" ), ids );
+    }
+
+    @Test
+    public void testUnresolvableReference()
+                            throws Exception {
+        try {
+            insert( 2, node( "N0" ), node( "N1", "MISSING" ), node( "N2" ) );
+            fail( "Expected a ReferenceResolvingException." );
+        } catch ( ReferenceResolvingException e ) {
+            // expected
+        }
+    }
+
+    private List<String> insert( int blockSize, String... members )
+                            throws Exception {
+        return insert( blockSize, USE_EXISTING, members );
+    }
+
+    private List<String> insert( int blockSize, IDGenMode mode, String... members )
+                            throws Exception {
+        StringBuilder sb = new StringBuilder();
+        sb.append( "<wfs:Insert xmlns:wfs=\"" ).append( WFS_NS ).append( "\" xmlns:gml=\"" ).append( GMLNS );
+        sb.append( "\" xmlns:xlink=\"" ).append( XLNNS ).append( "\" xmlns:app=\"" ).append( APP_NS ).append( "\">" );
+        for ( String member : members ) {
+            sb.append( member );
+        }
+        sb.append( "</wfs:Insert>" );
+        XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+        XMLStreamReader xmlStream = inputFactory.createXMLStreamReader( new StringReader( sb.toString() ) );
+        // wfs:Insert
+        xmlStream.nextTag();
+        // first child
+        xmlStream.nextTag();
+        StreamingInsertHandler handler = new StreamingInsertHandler( ta, schema, GML_31, null, blockSize );
+        List<String> ids = handler.insert( xmlStream, mode );
+        assertTrue( xmlStream.isEndElement() );
+        assertEquals( "Insert", xmlStream.getLocalName() );
+        return ids;
+    }
+
+    private static String node( String id, String... refs ) {
+        StringBuilder sb = new StringBuilder( "<app:Node gml:id=\"" + id + "\"><app:name>" + id + "</app:name>" );
+        for ( String ref : refs ) {
+            sb.append( "<app:next xlink:href=\"#" + ref + "\"/>" );
+        }
+        return sb.append( "</app:Node>" ).toString();
+    }
+
+    private List<String> recordBlock( FeatureCollection fc ) {
+        Map<Feature, Feature> inBlock = new IdentityHashMap<Feature, Feature>();
+        List<String> ids = new ArrayList<String>();
+        List<String> newIds = new ArrayList<String>();
+        for ( Feature member : fc ) {
+            if ( member instanceof FeatureReference ) {
+                ids.add( "#" + ( (FeatureReference) member ).getId() );
+            } else {
+                ids.add( member.getId() );
+                newIds.add( "NEW_" + member.getId() );
+                collect( member, inBlock );
+            }
+        }
+        // every local reference has been resolved to a feature of the same block
+        for ( Feature member : fc ) {
+            if ( member instanceof FeatureReference ) {
+                assertTrue( inBlock.containsKey( ( (FeatureReference) member ).getReferencedObject() ) );
+            }
+        }
+        for ( Feature feature : inBlock.keySet() ) {
+            for ( Property prop : feature.getProperties( NEXT ) ) {
+                if ( prop.getValue() instanceof FeatureReference ) {
+                    FeatureReference ref = (FeatureReference) prop.getValue();
+                    assertTrue( ref.getURI(), inBlock.containsKey( ref.getReferencedObject() ) );
+                }
+            }
+        }
+        blocks.add( ids );
+        return newIds;
+    }
+
+    private static void collect( Feature feature, Map<Feature, Feature> features ) {
+        features.put( feature, feature );
+        for ( Property prop : feature.getProperties( NEXT ) ) {
+            if ( prop.getValue() instanceof Feature && !( prop.getValue() instanceof FeatureReference ) ) {
+                collect( (Feature) prop.getValue(), features );
+            }
+        }
+    }
+}
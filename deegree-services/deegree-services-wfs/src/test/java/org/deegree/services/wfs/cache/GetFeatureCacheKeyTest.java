@@ -0,0 +1,228 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.wfs.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.StringReader;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.namespace.QName;
+
+import org.deegree.commons.tom.ows.Version;
+import org.deegree.commons.tom.primitive.PrimitiveValue;
+import org.deegree.commons.utils.kvp.KVPUtils;
+import org.deegree.commons.xml.NamespaceBindings;
+import org.deegree.commons.xml.XMLAdapter;
+import org.deegree.filter.Expression;
+import org.deegree.filter.Filter;
+import org.deegree.filter.MatchAction;
+import org.deegree.filter.OperatorFilter;
+import org.deegree.filter.comparison.PropertyIsEqualTo;
+import org.deegree.filter.expression.Function;
+import org.deegree.filter.expression.Literal;
+import org.deegree.filter.expression.ValueReference;
+import org.deegree.filter.temporal.After;
+import org.deegree.protocol.wfs.getfeature.GetFeature;
+import org.deegree.protocol.wfs.getfeature.TypeName;
+import org.deegree.protocol.wfs.getfeature.kvp.GetFeatureKVPAdapter;
+import org.deegree.protocol.wfs.getfeature.xml.GetFeatureXMLAdapter;
+import org.deegree.protocol.wfs.query.FilterQuery;
+import org.deegree.protocol.wfs.query.Query;
+import org.deegree.protocol.wfs.query.StandardPresentationParams;
+import org.junit.Test;
+
+/**
+ * Tests for {@link GetFeatureCacheKey}.
+ * 
+ * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class GetFeatureCacheKeyTest {
+
+    private static final String APP_NS = "http://www.example.org/app";
+
+    private static final String OTHER_NS = "http://www.example.org/other";
+
+    private static final String URL = "http://localhost:8080/services/wfs";
+
+    private static final String FORMAT = "text/xml; subtype=gml/3.1.1";
+
+    private static final String FILTER = "<ogc:Filter xmlns:ogc=\"http://www.opengis.net/ogc\" xmlns:app=\""
+                                         + APP_NS + "\"><ogc:PropertyIsEqualTo><ogc:PropertyName>app:name"
+                                         + "</ogc:PropertyName><ogc:Literal>Main Street</ogc:Literal>"
+                                         + "</ogc:PropertyIsEqualTo></ogc:Filter>";
+
+    @Test
+    public void testKvpAndXmlShareKey()
+                            throws Exception {
+        Map<String, String> kvp = new HashMap<String, String>();
+        kvp.put( "SERVICE", "WFS" );
+        kvp.put( "VERSION", "1.1.0" );
+        kvp.put( "REQUEST", "GetFeature" );
+        kvp.put( "OUTPUTFORMAT", FORMAT );
+        kvp.put( "TYPENAME", "app:Road" );
+        kvp.put( "NAMESPACE", "xmlns(app=" + APP_NS + ")" );
+        kvp.put( "FILTER", FILTER );
+        GetFeature kvpRequest = GetFeatureKVPAdapter.parse( kvp, null );
+
+        String xml = "<wfs:GetFeature xmlns:wfs=\"http://www.opengis.net/wfs\" xmlns:app=\"" + APP_NS
+                     + "\" version=\"1.1.0\" service=\"WFS\" resultType=\"results\" outputFormat=\"" + FORMAT
+                     + "\"><wfs:Query typeName=\"app:Road\">" + FILTER + "</wfs:Query></wfs:GetFeature>";
+        GetFeatureXMLAdapter adapter = new GetFeatureXMLAdapter();
+        adapter.setRootElement( new XMLAdapter( new StringReader( xml ) ).getRootElement() );
+        GetFeature xmlRequest = adapter.parse();
+
+        String key = GetFeatureCacheKey.create( kvpRequest, URL );
+        assertNotNull( key );
+        assertEquals( key, GetFeatureCacheKey.create( xmlRequest, URL ) );
+    }
+
+    @Test
+    public void testKvpParameterOrderIrrelevant()
+                            throws Exception {
+        String filter = URLEncoder.encode( FILTER, "UTF-8" );
+        String query1 = "SERVICE=WFS&VERSION=1.1.0&REQUEST=GetFeature&TYPENAME=app:Road&NAMESPACE=xmlns(app="
+                        + APP_NS + ")&FILTER=" + filter;
+        String query2 = "FILTER=" + filter + "&NAMESPACE=xmlns(app=" + APP_NS
+                        + ")&TYPENAME=app:Road&REQUEST=GetFeature&VERSION=1.1.0&SERVICE=WFS";
+        GetFeature request1 = GetFeatureKVPAdapter.parse( KVPUtils.getNormalizedKVPMap( query1, "UTF-8" ), null );
+        GetFeature request2 = GetFeatureKVPAdapter.parse( KVPUtils.getNormalizedKVPMap( query2, "UTF-8" ), null );
+        assertEquals( GetFeatureCacheKey.create( request1, URL ), GetFeatureCacheKey.create( request2, URL ) );
+    }
+
+    @Test
+    public void testPrefixIsSignificant() {
+        Literal<?> literal = new Literal<PrimitiveValue>( "Main Street" );
+        GetFeature request1 = createRequest( new QName( APP_NS, "Road", "app" ), "app:name", literal );
+        GetFeature request2 = createRequest( new QName( APP_NS, "Road", "a" ), "a:name", literal );
+        assertFalse( GetFeatureCacheKey.create( request1, URL ).equals( GetFeatureCacheKey.create( request2, URL ) ) );
+    }
+
+    @Test
+    public void testPrefixBindingIsSignificant() {
+        QName ftName = new QName( APP_NS, "Road", "app" );
+        Literal<?> literal = new Literal<PrimitiveValue>( "Main Street" );
+        NamespaceBindings otherNs = new NamespaceBindings();
+        otherNs.addNamespace( "app", OTHER_NS );
+        GetFeature request1 = createRequest( ftName, "app:name", literal );
+        GetFeature request2 = createRequest( ftName, new ValueReference( "app:name", otherNs ), literal );
+        assertFalse( GetFeatureCacheKey.create( request1, URL ).equals( GetFeatureCacheKey.create( request2, URL ) ) );
+    }
+
+    @Test
+    public void testUnusedBindingsAreIgnored() {
+        QName ftName = new QName( APP_NS, "Road", "app" );
+        Literal<?> literal = new Literal<PrimitiveValue>( "Main Street" );
+        NamespaceBindings moreNs = new NamespaceBindings();
+        moreNs.addNamespace( "app", APP_NS );
+        moreNs.addNamespace( "other", OTHER_NS );
+        GetFeature request1 = createRequest( ftName, "app:name", literal );
+        GetFeature request2 = createRequest( ftName, new ValueReference( "app:name", moreNs ), literal );
+        assertEquals( GetFeatureCacheKey.create( request1, URL ), GetFeatureCacheKey.create( request2, URL ) );
+    }
+
+    @Test
+    public void testLiteralsCannotForgeStructure() {
+        QName ftName = new QName( APP_NS, "Road", "app" );
+        List<Expression> params = new ArrayList<Expression>();
+        params.add( new Literal<PrimitiveValue>( "a" ) );
+        params.add( new Literal<PrimitiveValue>( "b" ) );
+        GetFeature request1 = createRequest( ftName, "app:name", new Function( "f", params ) );
+        String key1 = GetFeatureCacheKey.create( request1, URL );
+
+        // a single literal that contains the text of the key of the function call
+        int start = key1.indexOf( "FUNCTION" );
+        int end = key1.lastIndexOf( "))" ) + 1;
+        String forged = key1.substring( start, end );
+        GetFeature request2 = createRequest( ftName, "app:name", new Literal<PrimitiveValue>( forged ) );
+        assertFalse( key1.equals( GetFeatureCacheKey.create( request2, URL ) ) );
+
+        GetFeature request3 = createRequest( ftName, "app:name", new Literal<PrimitiveValue>( "a'b" ) );
+        GetFeature request4 = createRequest( ftName, "app:name", new Literal<PrimitiveValue>( "a\"b" ) );
+        assertFalse( GetFeatureCacheKey.create( request3, URL ).equals( GetFeatureCacheKey.create( request4, URL ) ) );
+    }
+
+    @Test
+    public void testServiceUrlIsSignificant() {
+        GetFeature request = createRequest( new QName( APP_NS, "Road", "app" ), "app:name",
+                                            new Literal<PrimitiveValue>( "Main Street" ) );
+        String key1 = GetFeatureCacheKey.create( request, URL );
+        String key2 = GetFeatureCacheKey.create( request, "http://example.org/deegree/services/wfs" );
+        assertFalse( key1.equals( key2 ) );
+    }
+
+    @Test
+    public void testTemporalFilterNotCacheable() {
+        QName ftName = new QName( APP_NS, "Road", "app" );
+        Filter filter = new OperatorFilter( new After( appName( "app:built" ),
+                                                       new Literal<PrimitiveValue>( "2000-01-01" ) ) );
+        assertNull( GetFeatureCacheKey.create( createRequest( ftName, filter ), URL ) );
+    }
+
+    private static ValueReference appName( String text ) {
+        NamespaceBindings nsBindings = new NamespaceBindings();
+        nsBindings.addNamespace( "app", APP_NS );
+        nsBindings.addNamespace( "a", APP_NS );
+        return new ValueReference( text, nsBindings );
+    }
+
+    private static GetFeature createRequest( QName ftName, String propName, Expression value ) {
+        return createRequest( ftName, appName( propName ), value );
+    }
+
+    private static GetFeature createRequest( QName ftName, ValueReference propName, Expression value ) {
+        return createRequest( ftName, new OperatorFilter( new PropertyIsEqualTo( propName, value, true,
+                                                                                 MatchAction.ANY ) ) );
+    }
+
+    private static GetFeature createRequest( QName ftName, Filter filter ) {
+        TypeName[] typeNames = new TypeName[] { new TypeName( ftName, null ) };
+        Query query = new FilterQuery( null, typeNames, null, null, null, null, filter );
+        StandardPresentationParams presentation = new StandardPresentationParams( null, null, null, FORMAT );
+        return new GetFeature( Version.parseVersion( "1.1.0" ), null, presentation, null, Collections.singletonList( query ) );
+    }
+}
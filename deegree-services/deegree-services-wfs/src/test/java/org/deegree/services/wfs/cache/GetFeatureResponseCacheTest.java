@@ -0,0 +1,359 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.wfs.cache;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.servlet.ServletOutputStream;
+import javax.xml.namespace.QName;
+
+import org.deegree.commons.tom.ows.Version;
+import org.deegree.feature.persistence.FeatureStore;
+import org.deegree.feature.types.AppSchema;
+import org.deegree.feature.types.FeatureType;
+import org.deegree.protocol.wfs.describefeaturetype.DescribeFeatureType;
+import org.deegree.protocol.wfs.getfeature.GetFeature;
+import org.deegree.protocol.wfs.getfeature.TypeName;
+import org.deegree.protocol.wfs.getgmlobject.GetGmlObject;
+import org.deegree.protocol.wfs.getpropertyvalue.GetPropertyValue;
+import org.deegree.protocol.wfs.query.FilterQuery;
+import org.deegree.protocol.wfs.query.Query;
+import org.deegree.protocol.wfs.query.StandardPresentationParams;
+import org.deegree.services.controller.utils.HttpResponseBuffer;
+import org.deegree.services.wfs.WfsFeatureStoreManager;
+import org.deegree.services.wfs.format.Format;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for {@link GetFeatureResponseCache}.
+ * 
+ * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class GetFeatureResponseCacheTest {
+
+    private static final String APP_NS = "http://www.example.org/app";
+
+    private static final String URL = "http://localhost:8080/services/wfs";
+
+    private static final QName ROAD = new QName( APP_NS, "Road", "app" );
+
+    private static final QName RIVER = new QName( APP_NS, "River", "app" );
+
+    private static final QName LAKE = new QName( APP_NS, "Lake", "app" );
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private File directory;
+
+    private GetFeatureResponseCache cache;
+
+    private TestFormat format;
+
+    @Before
+    public void setUp()
+                            throws IOException {
+        directory = tmp.newFolder( "cache" );
+        format = new TestFormat();
+        // responses of the test format have 10 bytes each, so the cache holds two of them
+        cache = new GetFeatureResponseCache( directory, 25, mockStoreManager() );
+    }
+
+    @After
+    public void tearDown() {
+        cache.destroy();
+    }
+
+    @Test
+    public void testResponseFromCache()
+                            throws Exception {
+        HttpResponseBuffer response1 = mockResponse();
+        byte[] body1 = doGetFeature( ROAD, response1 );
+        byte[] body2 = doGetFeature( ROAD, mockResponse() );
+        HttpResponseBuffer response3 = mockResponse();
+        byte[] body3 = doGetFeature( ROAD, response3 );
+
+        assertEquals( 1, format.getCalls( ROAD ) );
+        assertArrayEquals( body1, body2 );
+        assertArrayEquals( body1, body3 );
+        verify( response3 ).setContentType( "text/xml" );
+        assertEquals( 1, countCacheFiles() );
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEvicted()
+                            throws Exception {
+        doGetFeature( ROAD, mockResponse() );
+        doGetFeature( RIVER, mockResponse() );
+        // makes RIVER the least recently used entry
+        doGetFeature( ROAD, mockResponse() );
+        doGetFeature( LAKE, mockResponse() );
+        assertEquals( 2, countCacheFiles() );
+
+        doGetFeature( ROAD, mockResponse() );
+        doGetFeature( LAKE, mockResponse() );
+        assertEquals( 1, format.getCalls( ROAD ) );
+        assertEquals( 1, format.getCalls( LAKE ) );
+
+        doGetFeature( RIVER, mockResponse() );
+        assertEquals( 2, format.getCalls( RIVER ) );
+        assertEquals( 2, countCacheFiles() );
+    }
+
+    @Test
+    public void testResponseExceedingMaxSizeNotCached()
+                            throws Exception {
+        format.bodySize = 26;
+        byte[] body1 = doGetFeature( ROAD, mockResponse() );
+        byte[] body2 = doGetFeature( ROAD, mockResponse() );
+
+        assertEquals( 26, body1.length );
+        assertArrayEquals( body1, body2 );
+        assertEquals( 2, format.getCalls( ROAD ) );
+        assertEquals( 0, countCacheFiles() );
+    }
+
+    @Test
+    public void testInvalidate()
+                            throws Exception {
+        doGetFeature( ROAD, mockResponse() );
+        doGetFeature( RIVER, mockResponse() );
+        cache.invalidate( Collections.singleton( ROAD ) );
+        doGetFeature( ROAD, mockResponse() );
+        doGetFeature( RIVER, mockResponse() );
+
+        assertEquals( 2, format.getCalls( ROAD ) );
+        assertEquals( 1, format.getCalls( RIVER ) );
+    }
+
+    @Test
+    public void testInvalidateAll()
+                            throws Exception {
+        doGetFeature( ROAD, mockResponse() );
+        doGetFeature( RIVER, mockResponse() );
+        cache.invalidateAll();
+        assertEquals( 0, countCacheFiles() );
+        doGetFeature( ROAD, mockResponse() );
+        doGetFeature( RIVER, mockResponse() );
+
+        assertEquals( 2, format.getCalls( ROAD ) );
+        assertEquals( 2, format.getCalls( RIVER ) );
+    }
+
+    @Test
+    public void testInvalidatedWhileWritingNotCached()
+                            throws Exception {
+        // a transaction on ROAD commits while the response is being written
+        format.duringWrite = new Runnable() {
+            @Override
+            public void run() {
+                cache.invalidate( Collections.singleton( ROAD ) );
+            }
+        };
+        byte[] body1 = doGetFeature( ROAD, mockResponse() );
+        assertEquals( 0, countCacheFiles() );
+
+        format.duringWrite = null;
+        byte[] body2 = doGetFeature( ROAD, mockResponse() );
+        doGetFeature( ROAD, mockResponse() );
+
+        assertArrayEquals( body1, body2 );
+        assertEquals( 2, format.getCalls( ROAD ) );
+        assertEquals( 1, countCacheFiles() );
+    }
+
+    @Test
+    public void testUnrelatedInvalidationWhileWriting()
+                            throws Exception {
+        format.duringWrite = new Runnable() {
+            @Override
+            public void run() {
+                cache.invalidate( Collections.singleton( RIVER ) );
+            }
+        };
+        doGetFeature( ROAD, mockResponse() );
+        doGetFeature( ROAD, mockResponse() );
+
+        assertEquals( 1, format.getCalls( ROAD ) );
+    }
+
+    @Test
+    public void testFailedResponseNotCached()
+                            throws Exception {
+        format.fail = true;
+        try {
+            doGetFeature( ROAD, mockResponse() );
+            fail( "Expected exception." );
+        } catch ( IOException e ) {
+            // expected
+        }
+        assertEquals( 0, countCacheFiles() );
+
+        format.fail = false;
+        doGetFeature( ROAD, mockResponse() );
+        doGetFeature( ROAD, mockResponse() );
+        assertEquals( 2, format.getCalls( ROAD ) );
+    }
+
+    private byte[] doGetFeature( QName ftName, HttpResponseBuffer response )
+                            throws Exception {
+        cache.doGetFeature( createRequest( ftName ), format, response, URL );
+        return ( (ByteServletOutputStream) response.getOutputStream() ).bytes.toByteArray();
+    }
+
+    private int countCacheFiles() {
+        int count = 0;
+        for ( File file : directory.listFiles() ) {
+            if ( file.getName().endsWith( ".cache" ) ) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static GetFeature createRequest( QName ftName ) {
+        TypeName[] typeNames = new TypeName[] { new TypeName( ftName, null ) };
+        Query query = new FilterQuery( null, typeNames, null, null, null, null, null );
+        StandardPresentationParams presentation = new StandardPresentationParams( null, null, null, "text/xml" );
+        return new GetFeature( Version.parseVersion( "1.1.0" ), null, presentation, null,
+                               Collections.singletonList( query ) );
+    }
+
+    private static HttpResponseBuffer mockResponse()
+                            throws IOException {
+        HttpResponseBuffer response = mock( HttpResponseBuffer.class );
+        when( response.getOutputStream() ).thenReturn( new ByteServletOutputStream() );
+        return response;
+    }
+
+    private static WfsFeatureStoreManager mockStoreManager() {
+        // feature types without feature properties, so every type only depends on itself
+        AppSchema schema = mock( AppSchema.class );
+        when( schema.getFeatureType( any( QName.class ) ) ).thenReturn( mock( FeatureType.class ) );
+        FeatureStore fs = mock( FeatureStore.class );
+        when( fs.getSchema() ).thenReturn( schema );
+        WfsFeatureStoreManager storeManager = mock( WfsFeatureStoreManager.class );
+        when( storeManager.getStore( any( QName.class ) ) ).thenReturn( fs );
+        return storeManager;
+    }
+
+    private static class ByteServletOutputStream extends ServletOutputStream {
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        @Override
+        public void write( int b ) {
+            bytes.write( b );
+        }
+    }
+
+    private static class TestFormat implements Format {
+
+        private final Map<QName, Integer> calls = new HashMap<QName, Integer>();
+
+        private int bodySize = 10;
+
+        private Runnable duringWrite;
+
+        private boolean fail;
+
+        private int getCalls( QName ftName ) {
+            Integer count = calls.get( ftName );
+            return count == null ? 0 : count;
+        }
+
+        @Override
+        public void doGetFeature( GetFeature request, HttpResponseBuffer response )
+                                throws Exception {
+            QName ftName = ( (FilterQuery) request.getQueries().get( 0 ) ).getTypeNames()[0].getFeatureTypeName();
+            calls.put( ftName, getCalls( ftName ) + 1 );
+            response.setContentType( "text/xml" );
+            ServletOutputStream os = response.getOutputStream();
+            byte[] name = ftName.getLocalPart().getBytes( "UTF-8" );
+            for ( int i = 0; i < bodySize; i++ ) {
+                os.write( name[i % name.length] );
+                if ( i == bodySize / 2 ) {
+                    if ( duringWrite != null ) {
+                        duringWrite.run();
+                    }
+                    if ( fail ) {
+                        throw new IOException( "Simulated failure." );
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void destroy() {
+            // nothing to do
+        }
+
+        @Override
+        public void doDescribeFeatureType( DescribeFeatureType request, HttpResponseBuffer response ) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void doGetGmlObject( GetGmlObject request, HttpResponseBuffer response ) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void doGetPropertyValue( GetPropertyValue getPropertyValue, HttpResponseBuffer response ) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
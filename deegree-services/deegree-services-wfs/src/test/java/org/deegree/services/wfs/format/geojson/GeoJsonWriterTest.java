@@ -0,0 +1,139 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.wfs.format.geojson;
+
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.StringWriter;
+import java.util.Collections;
+import java.util.List;
+
+import javax.xml.namespace.QName;
+
+import org.deegree.commons.tom.gml.property.Property;
+import org.deegree.cs.coordinatesystems.ICRS;
+import org.deegree.cs.persistence.CRSManager;
+import org.deegree.feature.Feature;
+import org.deegree.geometry.Geometry;
+import org.deegree.geometry.GeometryFactory;
+import org.junit.Test;
+
+/**
+ * Tests for {@link GeoJsonWriter}.
+ * 
+ * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class GeoJsonWriterTest {
+
+    private static final String LAT_LON = "urn:ogc:def:crs:EPSG::4326";
+
+    private static final String LON_LAT = "EPSG:4326";
+
+    private final GeometryFactory geomFac = new GeometryFactory();
+
+    @Test
+    public void testEastingFirstCrs()
+                            throws Exception {
+        ICRS crs = CRSManager.getCRSRef( LON_LAT );
+        String json = write( geomFac.createPoint( null, 7.1, 50.7, crs ), null );
+        assertTrue( json, json.contains( "\"coordinates\":[7.1,50.7]" ) );
+    }
+
+    @Test
+    public void testNorthingFirstCrs()
+                            throws Exception {
+        ICRS crs = CRSManager.getCRSRef( LAT_LON );
+        String json = write( geomFac.createPoint( null, 50.7, 7.1, crs ), null );
+        assertTrue( json, json.contains( "\"coordinates\":[7.1,50.7]" ) );
+    }
+
+    @Test
+    public void testNorthingFirstOutputCrs()
+                            throws Exception {
+        ICRS crs = CRSManager.getCRSRef( LAT_LON );
+        String json = write( geomFac.createPoint( null, 50.7, 7.1, crs ), crs );
+        assertTrue( json, json.contains( "\"coordinates\":[7.1,50.7]" ) );
+        assertTrue( json, json.contains( LAT_LON ) );
+    }
+
+    @Test
+    public void testTransformedToNorthingFirstOutputCrs()
+                            throws Exception {
+        ICRS crs = CRSManager.getCRSRef( LON_LAT );
+        String json = write( geomFac.createPoint( null, 7.1, 50.7, crs ), CRSManager.getCRSRef( LAT_LON ) );
+        assertTrue( json, json.contains( "\"coordinates\":[7.1,50.7]" ) );
+    }
+
+    @Test
+    public void testTransformedToEastingFirstOutputCrs()
+                            throws Exception {
+        ICRS crs = CRSManager.getCRSRef( LAT_LON );
+        String json = write( geomFac.createPoint( null, 50.7, 7.1, crs ), CRSManager.getCRSRef( LON_LAT ) );
+        assertTrue( json, json.contains( "\"coordinates\":[7.1,50.7]" ) );
+    }
+
+    @Test
+    public void testNorthingFirstEnvelope()
+                            throws Exception {
+        ICRS crs = CRSManager.getCRSRef( LAT_LON );
+        String json = write( geomFac.createEnvelope( 50.0, 7.0, 51.0, 8.0, crs ), null );
+        assertTrue( json, json.contains( "[[[7.0,50.0],[7.0,51.0],[8.0,51.0],[8.0,50.0],[7.0,50.0]]]" ) );
+    }
+
+    private static String write( Geometry geom, ICRS outputCrs )
+                            throws Exception {
+        Property prop = mock( Property.class );
+        when( prop.getName() ).thenReturn( new QName( "http://www.example.org/app", "geometry" ) );
+        when( prop.getValue() ).thenReturn( geom );
+        List<Property> props = Collections.singletonList( prop );
+        Feature feature = mock( Feature.class );
+        when( feature.getId() ).thenReturn( "f1" );
+        when( feature.getProperties() ).thenReturn( props );
+
+        StringWriter writer = new StringWriter();
+        GeoJsonWriter geoJson = new GeoJsonWriter( writer, outputCrs, null );
+        geoJson.startFeatureCollection();
+        geoJson.write( feature );
+        geoJson.endFeatureCollection( 1 );
+        geoJson.flush();
+        return writer.toString();
+    }
+}
@@ -0,0 +1,365 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.wfs.format.gml.request;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.deegree.commons.tom.primitive.BaseType.STRING;
+import static org.deegree.commons.xml.CommonNamespaces.GMLNS;
+import static org.deegree.commons.xml.CommonNamespaces.XLNNS;
+import static org.deegree.feature.types.property.GeometryPropertyType.CoordinateDimension.DIM_2;
+import static org.deegree.feature.types.property.GeometryPropertyType.GeometryType.POINT;
+import static org.deegree.feature.types.property.ValueRepresentation.BOTH;
+import static org.deegree.gml.GMLVersion.GML_31;
+import static org.deegree.protocol.wfs.WFSConstants.WFS_200_NS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.deegree.commons.tom.gml.property.Property;
+import org.deegree.commons.tom.gml.property.PropertyType;
+import org.deegree.commons.tom.primitive.PrimitiveValue;
+import org.deegree.feature.Feature;
+import org.deegree.feature.property.GenericProperty;
+import org.deegree.feature.property.SimpleProperty;
+import org.deegree.feature.types.FeatureType;
+import org.deegree.feature.types.GenericAppSchema;
+import org.deegree.feature.types.GenericFeatureType;
+import org.deegree.feature.types.property.FeaturePropertyType;
+import org.deegree.feature.types.property.GeometryPropertyType;
+import org.deegree.feature.types.property.SimplePropertyType;
+import org.deegree.geometry.GeometryFactory;
+import org.deegree.geometry.primitive.Point;
+import org.deegree.gml.GMLOutputFactory;
+import org.deegree.gml.GMLStreamWriter;
+import org.deegree.gml.reference.GmlXlinkOptions;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ * Tests for {@link ParallelFeatureEncoder}.
+ * 
+ * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class ParallelFeatureEncoderTest {
+
+    private static final String APP_NS = "http://www.example.org/app";
+
+    private static final String XLINK_TEMPLATE = "http://localhost/wfs?REQUEST=GetFeature&FEATUREID={}";
+
+    private static final QName MEMBER = new QName( WFS_200_NS, "member", "wfs" );
+
+    private static final QName ROAD = new QName( APP_NS, "Road", "app" );
+
+    private static final QName RIVER = new QName( APP_NS, "River", "app" );
+
+    private static final QName NAME = new QName( APP_NS, "name", "app" );
+
+    private static final QName GEOM = new QName( APP_NS, "geom", "app" );
+
+    private static final QName CROSSES = new QName( APP_NS, "crosses", "app" );
+
+    private final GenericFeatureType riverType;
+
+    private final GenericFeatureType roadType;
+
+    private final GeometryFactory geomFac = new GeometryFactory();
+
+    public ParallelFeatureEncoderTest() {
+        List<PropertyType> riverProps = new ArrayList<PropertyType>();
+        riverProps.add( new SimplePropertyType( NAME, 1, 1, STRING, null, null ) );
+        riverType = new GenericFeatureType( RIVER, riverProps, false );
+        List<PropertyType> roadProps = new ArrayList<PropertyType>();
+        roadProps.add( new SimplePropertyType( NAME, 1, 1, STRING, null, null ) );
+        roadProps.add( new GeometryPropertyType( GEOM, 0, 1, null, null, POINT, DIM_2, BOTH ) );
+        roadProps.add( new FeaturePropertyType( CROSSES, 0, 1, null, null, RIVER, BOTH ) );
+        roadType = new GenericFeatureType( ROAD, roadProps, false );
+        new GenericAppSchema( new FeatureType[] { roadType, riverType }, null, null, null, null, null );
+    }
+
+    @Test
+    public void testSameOutputAsSequential()
+                            throws Exception {
+        List<Feature> members = createMembers( 60 );
+        String expected = encodeSequentially( members );
+        assertEquals( expected, encodeConcurrently( members, 1, 1 ) );
+        assertEquals( expected, encodeConcurrently( members, 1, 4 ) );
+        assertEquals( expected, encodeConcurrently( members, 4, 16 ) );
+    }
+
+    @Test
+    public void testNamespacePrefixesOfContainerReused()
+                            throws Exception {
+        String xml = encodeConcurrently( createMembers( 10 ), 4, 16 );
+        assertEquals( 1, count( xml, "xmlns:app=" ) );
+        assertEquals( 1, count( xml, "xmlns:gml=" ) );
+        assertEquals( 1, count( xml, "xmlns:xlink=" ) );
+        assertEquals( 1, count( xml, "xmlns:wfs=" ) );
+    }
+
+    @Test
+    public void testDuplicateMembersReferenced()
+                            throws Exception {
+        Feature road = createRoad( 1, createRiver( 1 ), createPoint( 1 ) );
+        List<Feature> members = new ArrayList<Feature>();
+        Collections.addAll( members, road, road, road );
+        String xml = encodeConcurrently( members, 4, 16 );
+        assertEquals( encodeSequentially( members ), xml );
+        assertEquals( 1, count( xml, "gml:id=\"ROAD_1\"" ) );
+        assertEquals( 2, count( xml, "<wfs:member xlink:href=\"#ROAD_1\"" ) );
+    }
+
+    @Test
+    public void testSharedNestedObjectsWrittenOnce()
+                            throws Exception {
+        Feature river = createRiver( 1 );
+        Point point = createPoint( 1 );
+        List<Feature> members = new ArrayList<Feature>();
+        for ( int i = 0; i < 8; i++ ) {
+            members.add( createRoad( i, river, point ) );
+        }
+        // a member that has already been written as a nested feature
+        members.add( river );
+        // one thread, but members are only written when four are pending: the workers of the later members do not
+        // know that the first one exports the river and the point, so their fragments have to be encoded again
+        String xml = encodeConcurrently( members, 1, 4 );
+        assertEquals( encodeSequentially( members ), xml );
+        assertEquals( 1, count( xml, "gml:id=\"RIVER_1\"" ) );
+        assertEquals( 1, count( xml, "gml:id=\"POINT_1\"" ) );
+        assertEquals( 7, count( xml, "<app:crosses xlink:href=\"#RIVER_1\"" ) );
+        assertEquals( 1, count( xml, "<wfs:member xlink:href=\"#RIVER_1\"" ) );
+        assertEquals( 7, count( xml, "<app:geom xlink:href=\"#POINT_1\"" ) );
+        // inlined by the first road
+        assertTrue( xml.indexOf( "gml:id=\"RIVER_1\"" ) < xml.indexOf( "gml:id=\"ROAD_1\"" ) );
+    }
+
+    @Test
+    public void testWorkerFailureSurfacesAndPendingMembersCancelled()
+                            throws Exception {
+        final RuntimeException failure = new IllegalStateException( "broken feature" );
+        final CountDownLatch started = new CountDownLatch( 1 );
+        final CountDownLatch interrupted = new CountDownLatch( 1 );
+
+        Feature failing = mock( Feature.class );
+        when( failing.getType() ).thenThrow( failure );
+        Feature blocking = mock( Feature.class );
+        when( blocking.getType() ).thenAnswer( new Answer<FeatureType>() {
+            @Override
+            public FeatureType answer( InvocationOnMock invocation )
+                                    throws Throwable {
+                started.countDown();
+                try {
+                    new CountDownLatch( 1 ).await();
+                } catch ( InterruptedException e ) {
+                    interrupted.countDown();
+                    throw e;
+                }
+                return null;
+            }
+        } );
+        Feature queued = mock( Feature.class );
+
+        ExecutorService executor = Executors.newFixedThreadPool( 1 );
+        try {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            XMLStreamWriter xmlStream = startContainer( bos );
+            ParallelFeatureEncoder encoder = new ParallelFeatureEncoder( executor, 10, createGmlStream( xmlStream ),
+                                                                         bos, MEMBER, XLINK_TEMPLATE );
+            encoder.write( failing );
+            encoder.write( blocking );
+            encoder.write( queued );
+            assertTrue( started.await( 10, SECONDS ) );
+            try {
+                encoder.finish();
+                fail( "Expected the failure of the worker." );
+            } catch ( IllegalStateException e ) {
+                assertSame( failure, e );
+            } finally {
+                // as done by GmlGetFeatureHandler
+                encoder.cancel();
+            }
+            assertTrue( interrupted.await( 10, SECONDS ) );
+        } finally {
+            executor.shutdown();
+            assertTrue( executor.awaitTermination( 10, SECONDS ) );
+        }
+        verify( queued, never() ).getType();
+    }
+
+    private List<Feature> createMembers( int num ) {
+        List<Feature> rivers = new ArrayList<Feature>();
+        List<Point> points = new ArrayList<Point>();
+        for ( int i = 0; i < 5; i++ ) {
+            rivers.add( createRiver( i ) );
+            points.add( createPoint( i ) );
+        }
+        List<Feature> members = new ArrayList<Feature>();
+        for ( int i = 0; i < num; i++ ) {
+            Feature road = createRoad( i, rivers.get( i % 5 ), points.get( ( i / 2 ) % 5 ) );
+            members.add( road );
+            if ( i % 7 == 3 ) {
+                // duplicate member
+                members.add( road );
+            }
+            if ( i % 11 == 5 ) {
+                // member that may have been written as nested feature before
+                members.add( rivers.get( i % 5 ) );
+            }
+        }
+        return members;
+    }
+
+    private Feature createRiver( int i ) {
+        List<Property> props = new ArrayList<Property>();
+        props.add( new SimpleProperty( (SimplePropertyType) riverType.getPropertyDeclaration( NAME ),
+                                       new PrimitiveValue( "River " + i ) ) );
+        return riverType.newFeature( "RIVER_" + i, props, null );
+    }
+
+    private Point createPoint( int i ) {
+        return geomFac.createPoint( "POINT_" + i, 7.0 + i, 50.0 + i, null );
+    }
+
+    private Feature createRoad( int i, Feature river, Point point ) {
+        List<Property> props = new ArrayList<Property>();
+        props.add( new SimpleProperty( (SimplePropertyType) roadType.getPropertyDeclaration( NAME ),
+                                       new PrimitiveValue( "Road " + i ) ) );
+        props.add( new GenericProperty( roadType.getPropertyDeclaration( GEOM ), point ) );
+        props.add( new GenericProperty( roadType.getPropertyDeclaration( CROSSES ), river ) );
+        return roadType.newFeature( "ROAD_" + i, props, null );
+    }
+
+    private String encodeSequentially( List<Feature> members )
+                            throws Exception {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        XMLStreamWriter xmlStream = startContainer( bos );
+        GMLStreamWriter gmlStream = createGmlStream( xmlStream );
+        GmlXlinkOptions resolveState = gmlStream.getReferenceResolveStrategy().getResolveOptions();
+        for ( Feature member : members ) {
+            // same as AbstractGmlRequestHandler#writeMemberFeature
+            if ( gmlStream.getReferenceResolveStrategy().isObjectExported( member.getId() ) ) {
+                xmlStream.writeEmptyElement( MEMBER.getNamespaceURI(), MEMBER.getLocalPart() );
+                xmlStream.writeAttribute( "xlink", XLNNS, "href", "#" + member.getId() );
+            } else {
+                xmlStream.writeStartElement( MEMBER.getNamespaceURI(), MEMBER.getLocalPart() );
+                gmlStream.getFeatureWriter().export( member, resolveState );
+                xmlStream.writeEndElement();
+            }
+        }
+        return endContainer( xmlStream, bos );
+    }
+
+    private String encodeConcurrently( List<Feature> members, int threads, int maxPending )
+                            throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool( threads );
+        try {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            XMLStreamWriter xmlStream = startContainer( bos );
+            ParallelFeatureEncoder encoder = new ParallelFeatureEncoder( executor, maxPending,
+                                                                         createGmlStream( xmlStream ), bos, MEMBER,
+                                                                         XLINK_TEMPLATE );
+            for ( Feature member : members ) {
+                encoder.write( member );
+            }
+            encoder.finish();
+            return endContainer( xmlStream, bos );
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private XMLStreamWriter startContainer( ByteArrayOutputStream bos )
+                            throws Exception {
+        XMLStreamWriter xmlStream = XMLOutputFactory.newInstance().createXMLStreamWriter( bos, "UTF-8" );
+        xmlStream.setPrefix( "wfs", WFS_200_NS );
+        xmlStream.setPrefix( "app", APP_NS );
+        xmlStream.setPrefix( "gml", GMLNS );
+        xmlStream.setPrefix( "xlink", XLNNS );
+        xmlStream.writeStartElement( WFS_200_NS, "FeatureCollection" );
+        xmlStream.writeNamespace( "wfs", WFS_200_NS );
+        xmlStream.writeNamespace( "app", APP_NS );
+        xmlStream.writeNamespace( "gml", GMLNS );
+        xmlStream.writeNamespace( "xlink", XLNNS );
+        return xmlStream;
+    }
+
+    private String endContainer( XMLStreamWriter xmlStream, ByteArrayOutputStream bos )
+                            throws Exception {
+        xmlStream.writeEndElement();
+        xmlStream.close();
+        return bos.toString( "UTF-8" );
+    }
+
+    private GMLStreamWriter createGmlStream( XMLStreamWriter xmlStream )
+                            throws Exception {
+        GMLStreamWriter gmlStream = GMLOutputFactory.createGMLStreamWriter( GML_31, xmlStream );
+        gmlStream.setNamespaceBindings( Collections.singletonMap( "app", APP_NS ) );
+        // no local references, as required for concurrent encoding
+        gmlStream.setReferenceResolveStrategy( new WfsXlinkStrategy( null, false, XLINK_TEMPLATE,
+                                                                     new GmlXlinkOptions() ) );
+        return gmlStream;
+    }
+
+    private static int count( String s, String part ) {
+        int count = 0;
+        int pos = s.indexOf( part );
+        while ( pos != -1 ) {
+            count++;
+            pos = s.indexOf( part, pos + part.length() );
+        }
+        return count;
+    }
+}
@@ -69,10 +69,12 @@ import org.deegree.layer.LayerRef;
 import org.deegree.protocol.wms.filter.ScaleFunction;
 import org.deegree.protocol.wms.ops.GetFeatureInfoSchema;
 import org.deegree.protocol.wms.ops.GetLegendGraphic;
+import org.deegree.rendering.r2d.context.DefaultRenderContext;
 import org.deegree.rendering.r2d.context.MapOptions;
 import org.deegree.rendering.r2d.context.MapOptionsMaps;
 import org.deegree.rendering.r2d.context.RenderContext;
 import org.deegree.services.jaxb.wms.ServiceConfigurationType;
+import org.deegree.services.jaxb.wms.ServiceConfigurationType.ParallelRendering;
 import org.deegree.style.StyleRef;
 import org.deegree.style.se.unevaluated.Style;
 import org.deegree.style.utils.ImageUtils;
@@ -119,6 +121,8 @@ public class MapService {
 
     private int r;
 
+    private ParallelLayerRenderer parallelRenderer;
+
     /**
      * @param conf
      * @param adapter
@@ -152,6 +156,15 @@ public class MapService {
                 }
             }
         }
+        if ( conf != null && conf.getParallelRendering() != null ) {
+            ParallelRendering parallelConf = conf.getParallelRendering();
+            int maxLayers = parallelConf.getMaxLayersPerRequest().intValue();
+            int maxThreads = Runtime.getRuntime().availableProcessors();
+            if ( parallelConf.getMaxThreads() != null ) {
+                maxThreads = parallelConf.getMaxThreads().intValue();
+            }
+            parallelRenderer = new ParallelLayerRenderer( maxLayers, maxThreads );
+        }
         getLegendHandler = new GetLegendHandler( this );
     }
 
@@ -214,10 +227,14 @@ public class MapService {
         ScaleFunction.getCurrentScaleValue().set( scale );
 
         List<LayerData> layerDataList = checkStyleValidAndBuildLayerDataList( gm, headers, scale, queryIter );
-        Iterator<MapOptions> optIter = mapOptions.iterator();
-        for ( LayerData d : layerDataList ) {
-            ctx.applyOptions( optIter.next() );
-            d.render( ctx );
+        if ( parallelRenderer != null && ctx instanceof DefaultRenderContext && layerDataList.size() > 1 ) {
+            parallelRenderer.render( layerDataList, mapOptions, scale, (DefaultRenderContext) ctx );
+        } else {
+            Iterator<MapOptions> optIter = mapOptions.iterator();
+            for ( LayerData d : layerDataList ) {
+                ctx.applyOptions( optIter.next() );
+                d.render( ctx );
+            }
         }
         ctx.optimizeAndDrawLabels();
 
@@ -104,7 +104,12 @@ class MapServiceBuilder {
             } else {
                 LOG.debug( "Using default feature info radius of {}.", featureInfoRadius );
             }
-            return new MapOptions( quali, interpol, alias, maxFeatures, featureInfoRadius );
+            MapOptions options = new MapOptions( quali, interpol, alias, maxFeatures, featureInfoRadius );
+            if ( sf != null && sf.isSimplification() != null ) {
+                options.setSimplification( sf.isSimplification() );
+                LOG.debug( "Using global simplification setting of {}.", sf.isSimplification() );
+            }
+            return options;
         }
         return null;
     }
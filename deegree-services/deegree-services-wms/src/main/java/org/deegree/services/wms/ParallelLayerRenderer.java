@@ -0,0 +1,220 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.wms;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.deegree.commons.ows.exception.OWSException.NO_APPLICABLE_CODE;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.deegree.commons.ows.exception.OWSException;
+import org.deegree.layer.LayerData;
+import org.deegree.protocol.wms.filter.ScaleFunction;
+import org.deegree.rendering.r2d.context.DefaultRenderContext;
+import org.deegree.rendering.r2d.context.MapOptions;
+import org.slf4j.Logger;
+
+/**
+ * Renders the layers of a GetMap request concurrently.
+ * <p>
+ * Every layer is rendered into a separate layer context (see {@link DefaultRenderContext#createLayerContext()}). The
+ * layer images are painted onto the map context in the order of the layers, the labels of all layers are collected in
+ * the map context and placed afterwards. The number of layers that are rendered (and held in memory) at the same time is
+ * limited per request. All instances share a single thread pool, which limits the number of concurrently rendered
+ * layers in the JVM. Layer contexts are only allocated once a thread of the pool starts rendering the layer, so the
+ * number of layer images in memory is bounded by the pool size plus the rendered, but not yet painted layers.
+ * </p>
+ * 
+ * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+class ParallelLayerRenderer {
+
+    private static final Logger LOG = getLogger( ParallelLayerRenderer.class );
+
+    private static ThreadPoolExecutor executor;
+
+    private final int maxLayersPerRequest;
+
+    /**
+     * Creates a new {@link ParallelLayerRenderer} instance.
+     * 
+     * @param maxLayersPerRequest
+     *            maximum number of layers of a single request that are rendered at the same time, must be positive
+     * @param maxThreads
+     *            minimum size of the shared thread pool, must be positive
+     */
+    ParallelLayerRenderer( int maxLayersPerRequest, int maxThreads ) {
+        this.maxLayersPerRequest = maxLayersPerRequest;
+        configureExecutor( maxThreads );
+    }
+
+    private static synchronized void configureExecutor( int threads ) {
+        if ( executor == null ) {
+            LOG.debug( "Using {} threads for rendering layers.", threads );
+            executor = new ThreadPoolExecutor( threads, threads, 60, SECONDS, new LinkedBlockingQueue<Runnable>(),
+                                               new RendererThreadFactory() );
+            executor.allowCoreThreadTimeOut( true );
+        } else if ( executor.getMaximumPoolSize() < threads ) {
+            LOG.debug( "Increasing number of threads for rendering layers to {}.", threads );
+            executor.setMaximumPoolSize( threads );
+            executor.setCorePoolSize( threads );
+        }
+    }
+
+    private static synchronized ThreadPoolExecutor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Renders the given layers onto the given context. Labels are collected, but not placed.
+     * 
+     * @param layerDataList
+     *            layers to render, must not be <code>null</code>
+     * @param mapOptions
+     *            rendering options of the layers, must not be <code>null</code>
+     * @param scale
+     *            scale of the map
+     * @param ctx
+     *            map context, must not be <code>null</code>
+     * @throws OWSException
+     *             if rendering is interrupted
+     */
+    void render( List<LayerData> layerDataList, List<MapOptions> mapOptions, double scale, DefaultRenderContext ctx )
+                            throws OWSException {
+        ThreadPoolExecutor executor = getExecutor();
+        LinkedList<LayerTask> pending = new LinkedList<LayerTask>();
+        Iterator<MapOptions> optIter = mapOptions.iterator();
+        try {
+            for ( LayerData d : layerDataList ) {
+                if ( pending.size() == maxLayersPerRequest ) {
+                    paint( pending.removeFirst(), ctx );
+                }
+                LayerTask task = new LayerTask( d, optIter.next(), scale, ctx );
+                task.future = executor.submit( task );
+                pending.add( task );
+            }
+            while ( !pending.isEmpty() ) {
+                paint( pending.removeFirst(), ctx );
+            }
+        } finally {
+            for ( LayerTask task : pending ) {
+                task.future.cancel( true );
+            }
+        }
+    }
+
+    private void paint( LayerTask task, DefaultRenderContext ctx )
+                            throws OWSException {
+        DefaultRenderContext layerCtx = null;
+        try {
+            layerCtx = task.future.get();
+        } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new OWSException( "Rendering of the map has been interrupted.", NO_APPLICABLE_CODE );
+        } catch ( ExecutionException e ) {
+            Throwable cause = e.getCause();
+            if ( cause instanceof RuntimeException ) {
+                throw (RuntimeException) cause;
+            }
+            if ( cause instanceof Error ) {
+                throw (Error) cause;
+            }
+            throw new OWSException( "Rendering of a layer failed: " + cause.getMessage(), cause, NO_APPLICABLE_CODE );
+        }
+        // keep the options of the last layer active for the labels, as in sequential rendering
+        ctx.applyOptions( task.options );
+        ctx.paintLayer( layerCtx );
+    }
+
+    private static class LayerTask implements Callable<DefaultRenderContext> {
+
+        private final LayerData data;
+
+        private final MapOptions options;
+
+        private final double scale;
+
+        private final DefaultRenderContext mapCtx;
+
+        private Future<DefaultRenderContext> future;
+
+        private LayerTask( LayerData data, MapOptions options, double scale, DefaultRenderContext mapCtx ) {
+            this.data = data;
+            this.options = options;
+            this.scale = scale;
+            this.mapCtx = mapCtx;
+        }
+
+        @Override
+        public DefaultRenderContext call() {
+            // allocated by the worker, so queued tasks do not hold a layer image
+            DefaultRenderContext layerCtx = mapCtx.createLayerContext();
+            ScaleFunction.getCurrentScaleValue().set( scale );
+            try {
+                layerCtx.applyOptions( options );
+                data.render( layerCtx );
+            } finally {
+                ScaleFunction.getCurrentScaleValue().remove();
+            }
+            return layerCtx;
+        }
+    }
+
+    private static class RendererThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread( Runnable r ) {
+            Thread t = new Thread( r, "wms-layer-renderer-" + count.incrementAndGet() );
+            t.setDaemon( true );
+            return t;
+        }
+    }
+}
@@ -98,7 +98,6 @@ import org.deegree.protocol.wms.WMSException.MissingDimensionValue;
 import org.deegree.protocol.wms.ops.GetFeatureInfoSchema;
 import org.deegree.protocol.wms.ops.GetLegendGraphic;
 import org.deegree.rendering.r2d.context.DefaultRenderContext;
-import org.deegree.rendering.r2d.context.RenderContext;
 import org.deegree.rendering.r2d.context.RenderingInfo;
 import org.deegree.services.OWS;
 import org.deegree.services.OWSProvider;
@@ -115,11 +114,14 @@ import org.deegree.services.jaxb.wms.DeegreeWMS.ExtendedCapabilities;
 import org.deegree.services.jaxb.wms.FeatureInfoFormatsType.GetFeatureInfoFormat;
 import org.deegree.services.jaxb.wms.FeatureInfoFormatsType.GetFeatureInfoFormat.XSLTFile;
 import org.deegree.services.jaxb.wms.ServiceConfigurationType;
+import org.deegree.services.jaxb.wms.ServiceConfigurationType.Png8Encoding;
 import org.deegree.services.metadata.OWSMetadataProvider;
 import org.deegree.services.metadata.provider.OWSMetadataProviderProvider;
 import org.deegree.services.wms.MapService;
 import org.deegree.services.wms.controller.plugins.ImageSerializer;
 import org.deegree.style.StyleRef;
+import org.deegree.style.utils.Png8Encoder;
+import org.deegree.style.utils.Png8Encoder.Filter;
 import org.deegree.workspace.ResourceInitException;
 import org.deegree.workspace.ResourceMetadata;
 import org.deegree.workspace.Workspace;
@@ -140,6 +142,8 @@ public class WMSController extends AbstractOWS {
 
     private final HashMap<String, ImageSerializer> imageSerializers = new HashMap<String, ImageSerializer>();
 
+    private Png8Encoder png8Encoder = new Png8Encoder();
+
     /** The list of supported image formats. */
     public final LinkedList<String> supportedImageFormats = new LinkedList<String>();
 
@@ -264,6 +268,11 @@ public class WMSController extends AbstractOWS {
 
             ServiceConfigurationType sc = conf.getServiceConfiguration();
             service = new MapService( sc, workspace );
+            if ( sc != null && sc.getPng8Encoding() != null ) {
+                Png8Encoding enc = sc.getPng8Encoding();
+                int level = enc.getCompressionLevel().intValue();
+                png8Encoder = new Png8Encoder( level, Filter.valueOf( enc.getFilter() ) );
+            }
 
             // after the service knows what layers are available:
             handleMetadata( conf.getMetadataURLTemplate(), conf.getMetadataStoreId() );
@@ -496,7 +505,8 @@ public class WMSController extends AbstractOWS {
 
         RenderingInfo info = new RenderingInfo( gm2.getFormat(), gm2.getWidth(), gm2.getHeight(), gm2.getTransparent(),
                                                 gm2.getBgColor(), gm2.getBoundingBox(), gm2.getPixelSize(), map );
-        RenderContext ctx = new DefaultRenderContext( info );
+        DefaultRenderContext ctx = new DefaultRenderContext( info );
+        ctx.setPng8Encoder( png8Encoder );
         ctx.setOutput( response.getOutputStream() );
         LinkedList<String> headers = new LinkedList<String>();
         service.getMap( gm2, headers, ctx );
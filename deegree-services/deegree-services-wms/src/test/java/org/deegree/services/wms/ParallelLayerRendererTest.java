@@ -0,0 +1,221 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.wms;
+
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static org.deegree.rendering.r2d.context.MapOptions.Antialias.NONE;
+import static org.deegree.rendering.r2d.context.MapOptions.Interpolation.NEARESTNEIGHBOR;
+import static org.deegree.rendering.r2d.context.MapOptions.Quality.NORMAL;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+import org.deegree.feature.FeatureCollection;
+import org.deegree.layer.LayerData;
+import org.deegree.rendering.r2d.Java2DLabelRenderer;
+import org.deegree.rendering.r2d.Label;
+import org.deegree.rendering.r2d.context.DefaultRenderContext;
+import org.deegree.rendering.r2d.context.MapOptions;
+import org.deegree.rendering.r2d.context.RenderContext;
+import org.deegree.rendering.r2d.context.RenderingInfo;
+import org.junit.Test;
+
+/**
+ * Tests for {@link ParallelLayerRenderer}.
+ * 
+ * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class ParallelLayerRendererTest {
+
+    private static final int WIDTH = 100;
+
+    private static final int HEIGHT = 40;
+
+    private static final int NUM_LAYERS = 8;
+
+    @Test
+    public void testSameImageAndLabelsAsSequential()
+                            throws Exception {
+        List<LayerData> layers = createLayers();
+        List<MapOptions> options = createOptions();
+
+        DefaultRenderContext sequential = renderSequentially( layers, options );
+
+        DefaultRenderContext parallel = createMapContext();
+        new ParallelLayerRenderer( 3, 4 ).render( layers, options, 1000, parallel );
+
+        assertSameLabels( sequential, parallel );
+        assertSameImage( paint( sequential ), paint( parallel ) );
+    }
+
+    @Test
+    public void testMoreLayersThanThreads()
+                            throws Exception {
+        List<LayerData> layers = createLayers();
+        List<MapOptions> options = createOptions();
+
+        DefaultRenderContext sequential = renderSequentially( layers, options );
+
+        DefaultRenderContext parallel = createMapContext();
+        new ParallelLayerRenderer( 1, 1 ).render( layers, options, 1000, parallel );
+
+        assertSameLabels( sequential, parallel );
+        assertSameImage( paint( sequential ), paint( parallel ) );
+    }
+
+    @Test
+    public void testFailureOfLayerSurfaces()
+                            throws Exception {
+        List<LayerData> layers = createLayers();
+        final IllegalStateException failure = new IllegalStateException( "broken layer" );
+        layers.set( 2, new TestLayer( 2 ) {
+            @Override
+            public void render( RenderContext context ) {
+                throw failure;
+            }
+        } );
+        try {
+            new ParallelLayerRenderer( 3, 4 ).render( layers, createOptions(), 1000, createMapContext() );
+            fail( "Expected the failure of the layer." );
+        } catch ( IllegalStateException e ) {
+            assertSame( failure, e );
+        }
+    }
+
+    // same as the sequential code path of MapService
+    private static DefaultRenderContext renderSequentially( List<LayerData> layers, List<MapOptions> options ) {
+        DefaultRenderContext ctx = createMapContext();
+        for ( int i = 0; i < layers.size(); i++ ) {
+            ctx.applyOptions( options.get( i ) );
+            layers.get( i ).render( ctx );
+        }
+        return ctx;
+    }
+
+    private static List<LayerData> createLayers() {
+        List<LayerData> layers = new ArrayList<LayerData>();
+        for ( int i = 0; i < NUM_LAYERS; i++ ) {
+            layers.add( new TestLayer( i ) );
+        }
+        return layers;
+    }
+
+    private static List<MapOptions> createOptions() {
+        List<MapOptions> options = new ArrayList<MapOptions>();
+        for ( int i = 0; i < NUM_LAYERS; i++ ) {
+            options.add( new MapOptions( NORMAL, NEARESTNEIGHBOR, NONE, -1, 1 ) );
+        }
+        return options;
+    }
+
+    private static DefaultRenderContext createMapContext() {
+        RenderingInfo info = new RenderingInfo( "image/png", WIDTH, HEIGHT, false, Color.WHITE, null, 0.28, null );
+        return new DefaultRenderContext( info );
+    }
+
+    private static BufferedImage paint( DefaultRenderContext ctx )
+                            throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ctx.setOutput( out );
+        ctx.close();
+        return ImageIO.read( new ByteArrayInputStream( out.toByteArray() ) );
+    }
+
+    private static void assertSameImage( BufferedImage expected, BufferedImage actual ) {
+        for ( int y = 0; y < HEIGHT; y++ ) {
+            for ( int x = 0; x < WIDTH; x++ ) {
+                assertEquals( "Pixel " + x + "," + y, expected.getRGB( x, y ), actual.getRGB( x, y ) );
+            }
+        }
+    }
+
+    private static void assertSameLabels( DefaultRenderContext expected, DefaultRenderContext actual ) {
+        assertEquals( expected.getLabelRenderer().getLabels(), actual.getLabelRenderer().getLabels() );
+    }
+
+    private static class TestLayer implements LayerData {
+
+        private static final Color[] COLORS = { Color.RED, Color.GREEN, Color.BLUE, Color.YELLOW, Color.CYAN,
+                                               Color.MAGENTA, Color.ORANGE, Color.PINK };
+
+        private final int index;
+
+        private final Label label = mock( Label.class );
+
+        private TestLayer( int index ) {
+            this.index = index;
+        }
+
+        @Override
+        public void render( RenderContext context ) {
+            // later layers finish first, so painting in completion order would mix up the layers
+            try {
+                Thread.sleep( ( NUM_LAYERS - index ) * 5 );
+            } catch ( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            BufferedImage img = new BufferedImage( WIDTH, HEIGHT, TYPE_INT_ARGB );
+            Graphics2D g = img.createGraphics();
+            g.setColor( COLORS[index % COLORS.length] );
+            // overlapping bars, each layer covers the right half of the previous one
+            g.fillRect( index * 10, 0, 20, HEIGHT );
+            g.dispose();
+            context.paintImage( img );
+            ( (Java2DLabelRenderer) context.getLabelRenderer() ).getLabels().add( label );
+        }
+
+        @Override
+        public FeatureCollection info() {
+            return null;
+        }
+    }
+}
@@ -132,6 +132,9 @@ class TileHandler {
             if ( in == null ) {
                 throw new OWSException( "Tile yielded no data.", NO_APPLICABLE_CODE );
             }
+            // tile data is available, so stream it directly to the client
+            response.enableStreaming();
+            response.setContentType( format );
             copy( in, response.getOutputStream() );
         } catch ( Throwable e ) {
             throw new OWSException( e.getMessage(), e, NO_APPLICABLE_CODE );
@@ -45,6 +45,7 @@ import java.sql.Connection;
 import javax.sql.DataSource;
 
 import org.deegree.db.ConnectionProvider;
+import org.deegree.db.ConnectionStatistics;
 import org.deegree.sqldialect.SQLDialect;
 
 import org.springframework.jdbc.datasource.DataSourceUtils;
@@ -107,4 +108,10 @@ public class SpringConnectionProvider implements ConnectionProvider {
     public void invalidate( Connection conn ) {
         DataSourceUtils.releaseConnection( conn, dataSource );
     }
+
+    @Override
+    public ConnectionStatistics getStatistics() {
+        // pool statistics are specific to the DataSource implementation
+        return null;
+    }
 }
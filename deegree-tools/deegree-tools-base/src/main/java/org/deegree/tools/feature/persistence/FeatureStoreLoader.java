@@ -35,25 +35,47 @@
  ----------------------------------------------------------------------------*/
 package org.deegree.tools.feature.persistence;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
 import java.io.IOException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 import javax.xml.stream.FactoryConfigurationError;
+import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.Option;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
 import org.apache.commons.cli.PosixParser;
+import org.apache.commons.io.input.CountingInputStream;
 import org.deegree.commons.annotations.Tool;
 import org.deegree.commons.config.ResourceInitException;
+import org.deegree.commons.tom.ReferenceResolvingException;
+import org.deegree.commons.tom.gml.GMLReference;
 import org.deegree.commons.tools.CommandUtils;
 import org.deegree.commons.xml.XMLParsingException;
+import org.deegree.commons.xml.stax.XMLStreamReaderWrapper;
 import org.deegree.cs.exceptions.UnknownCRSException;
+import org.deegree.feature.Feature;
 import org.deegree.feature.FeatureCollection;
+import org.deegree.feature.GenericFeatureCollection;
 import org.deegree.feature.persistence.FeatureStore;
 import org.deegree.feature.persistence.FeatureStoreException;
 import org.deegree.feature.persistence.FeatureStoreProvider;
@@ -61,10 +83,14 @@ import org.deegree.feature.persistence.FeatureStoreTransaction;
 import org.deegree.gml.GMLInputFactory;
 import org.deegree.gml.GMLStreamReader;
 import org.deegree.gml.GMLVersion;
+import org.deegree.gml.feature.StreamFeatureCollection;
+import org.deegree.gml.reference.GmlDocumentIdContext;
 import org.deegree.protocol.wfs.transaction.action.IDGenMode;
 import org.deegree.tools.i18n.Messages;
 import org.deegree.workspace.Workspace;
 import org.deegree.workspace.standard.DefaultWorkspace;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Imports feature datasets into a feature store.
@@ -77,6 +103,8 @@ import org.deegree.workspace.standard.DefaultWorkspace;
 @Tool("Imports feature datasets into a feature store")
 public class FeatureStoreLoader {
 
+    private static final Logger LOG = LoggerFactory.getLogger( FeatureStoreLoader.class );
+
     // command line parameters
     private static final String OPT_ACTION = "action";
 
@@ -90,6 +118,12 @@ public class FeatureStoreLoader {
 
     private static final String OPT_IDGEN_MODE = "idgen";
 
+    private static final String OPT_CHUNK_SIZE = "chunksize";
+
+    private static final String OPT_THREADS = "threads";
+
+    private static final String OPT_CHECKPOINT_FILE = "checkpoint";
+
     private enum Action {
         insert, stats
     }
@@ -126,6 +160,363 @@ public class FeatureStoreLoader {
         }
     }
 
+    /**
+     * Streams the features of the dataset into the feature store, using one transaction per chunk of features.
+     * <p>
+     * Only a limited number of chunks is kept in memory at a time. After each commit, the ranges of committed features
+     * are written to the checkpoint file (if specified). With several threads, chunks may be committed out of order, so
+     * there may be several ranges. If the checkpoint file exists when the import is started, the features in the
+     * committed ranges are skipped.
+     * </p>
+     * <p>
+     * Note that references (xlinks) between features of different chunks cannot be resolved. They are logged and their
+     * number is reported in the summary.
+     * </p>
+     */
+    private static void insertStreaming( final FeatureStore fs, String datasetFile, GMLVersion gmlVersion,
+                                         final IDGenMode mode, final int chunkSize, int threads,
+                                         final File checkpointFile )
+                            throws XMLStreamException, FactoryConfigurationError, IOException, XMLParsingException,
+                            UnknownCRSException, FeatureStoreException, InterruptedException {
+
+        File f = new File( datasetFile );
+        long datasetSize = f.length();
+        FeatureRanges skip = readCheckpoint( checkpointFile );
+        if ( skip.getNumFeatures() > 0 ) {
+            System.out.println( "- Resuming from checkpoint: skipping " + skip.getNumFeatures()
+                                + " already committed features." );
+        }
+
+        // count the bytes read from the file (as long, as datasets may be larger than 2 GB)
+        CountingInputStream is = new CountingInputStream( new BufferedInputStream( new FileInputStream( f ) ) );
+        XMLStreamReader xmlStream = XMLInputFactory.newInstance().createXMLStreamReader( is );
+        xmlStream.nextTag();
+        String systemId = f.toURI().toURL().toString();
+        GMLStreamReader gmlReader = GMLInputFactory.createGMLStreamReader( gmlVersion,
+                                                                           new XMLStreamReaderWrapper( xmlStream,
+                                                                                                       systemId ) );
+        gmlReader.setApplicationSchema( fs.getSchema() );
+        StreamFeatureCollection fc = gmlReader.readFeatureCollectionStream();
+
+        final ChunkProgress progress = new ChunkProgress( skip, datasetSize, checkpointFile );
+        ExecutorService executor = Executors.newFixedThreadPool( threads );
+        // limits the number of chunks in memory (in progress and read ahead)
+        final Semaphore chunksInMemory = new Semaphore( threads + 1 );
+
+        System.out.println( "- Streaming features (chunk size: " + chunkSize + ", threads: " + threads + ")..." );
+        long featureIdx = 0;
+        int chunkIdx = 0;
+        try {
+            Feature feature = fc.read();
+            while ( feature != null && !progress.isFailed() ) {
+                final List<Feature> chunk = new ArrayList<Feature>( chunkSize );
+                // feature indexes of the chunk (committed features of a previous run are skipped)
+                FeatureRanges chunkRanges = new FeatureRanges();
+                while ( feature != null && chunk.size() < chunkSize ) {
+                    if ( !skip.contains( featureIdx ) ) {
+                        chunk.add( feature );
+                        chunkRanges.add( featureIdx, featureIdx + 1 );
+                    }
+                    featureIdx++;
+                    feature = fc.read();
+                }
+                // references within the chunk must be resolved before the id context is cleared
+                progress.addUnresolvedReferences( resolveLocalReferences( gmlReader.getIdContext() ) );
+                gmlReader.getIdContext().clear();
+                progress.setBytesRead( is.getByteCount() );
+                if ( chunk.isEmpty() ) {
+                    continue;
+                }
+                final int currentChunkIdx = chunkIdx++;
+                progress.chunkStarted( currentChunkIdx, chunkRanges );
+                chunksInMemory.acquire();
+                executor.execute( new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            if ( !progress.isFailed() ) {
+                                insertChunk( fs, chunk, mode );
+                                progress.chunkCommitted( currentChunkIdx );
+                            }
+                        } catch ( Throwable t ) {
+                            progress.chunkFailed( currentChunkIdx, t );
+                        } finally {
+                            chunksInMemory.release();
+                        }
+                    }
+                } );
+            }
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination( Long.MAX_VALUE, TimeUnit.MILLISECONDS );
+            gmlReader.close();
+            is.close();
+        }
+        progress.printSummary();
+    }
+
+    private static void insertChunk( FeatureStore fs, List<Feature> chunk, IDGenMode mode )
+                            throws FeatureStoreException {
+        FeatureStoreTransaction ta = null;
+        try {
+            ta = fs.acquireTransaction();
+            ta.performInsert( new GenericFeatureCollection( null, chunk ), mode );
+            ta.commit();
+            ta = null;
+        } finally {
+            if ( ta != null ) {
+                ta.rollback();
+            }
+        }
+    }
+
+    /**
+     * Resolves the local references of the current chunk against the objects of the chunk.
+     * 
+     * @return number of local references that cannot be resolved (references to objects of different chunks)
+     */
+    static int resolveLocalReferences( GmlDocumentIdContext idContext ) {
+        int unresolved = 0;
+        for ( GMLReference<?> ref : idContext.getReferences() ) {
+            if ( ref.isLocal() && !ref.isResolved() ) {
+                try {
+                    ref.getReferencedObject();
+                } catch ( ReferenceResolvingException e ) {
+                    LOG.warn( "Unable to resolve reference '" + ref.getURI()
+                              + "'. The referenced object is not part of the same chunk." );
+                    unresolved++;
+                }
+            }
+        }
+        return unresolved;
+    }
+
+    /**
+     * Reads the ranges of committed features from the checkpoint file. Each line contains a range
+     * (<code>start-end</code>, end exclusive), a single number <code>n</code> is the same as <code>0-n</code>.
+     */
+    static FeatureRanges readCheckpoint( File checkpointFile )
+                            throws IOException {
+        FeatureRanges ranges = new FeatureRanges();
+        if ( checkpointFile == null || !checkpointFile.exists() ) {
+            return ranges;
+        }
+        BufferedReader reader = new BufferedReader( new FileReader( checkpointFile ) );
+        try {
+            String line = null;
+            while ( ( line = reader.readLine() ) != null ) {
+                line = line.trim();
+                if ( line.isEmpty() ) {
+                    continue;
+                }
+                try {
+                    int pos = line.indexOf( '-' );
+                    if ( pos == -1 ) {
+                        ranges.add( 0, Long.parseLong( line ) );
+                    } else {
+                        ranges.add( Long.parseLong( line.substring( 0, pos ) ),
+                                    Long.parseLong( line.substring( pos + 1 ) ) );
+                    }
+                } catch ( NumberFormatException e ) {
+                    throw new IOException( "Invalid checkpoint file '" + checkpointFile + "': " + line );
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return ranges;
+    }
+
+    /**
+     * Set of feature index ranges (start inclusive, end exclusive), adjacent ranges are merged.
+     */
+    static class FeatureRanges {
+
+        // key: start, value: end
+        private final TreeMap<Long, Long> ranges = new TreeMap<Long, Long>();
+
+        void add( long start, long end ) {
+            if ( start >= end ) {
+                return;
+            }
+            Entry<Long, Long> before = ranges.floorEntry( start );
+            if ( before != null && before.getValue() >= start ) {
+                start = before.getKey();
+                end = Math.max( end, before.getValue() );
+            }
+            Entry<Long, Long> after = ranges.ceilingEntry( start );
+            while ( after != null && after.getKey() <= end ) {
+                end = Math.max( end, after.getValue() );
+                ranges.remove( after.getKey() );
+                after = ranges.ceilingEntry( start );
+            }
+            ranges.put( start, end );
+        }
+
+        void addAll( FeatureRanges other ) {
+            for ( Entry<Long, Long> range : other.ranges.entrySet() ) {
+                add( range.getKey(), range.getValue() );
+            }
+        }
+
+        boolean contains( long idx ) {
+            Entry<Long, Long> range = ranges.floorEntry( idx );
+            return range != null && idx < range.getValue();
+        }
+
+        long getNumFeatures() {
+            long num = 0;
+            for ( Entry<Long, Long> range : ranges.entrySet() ) {
+                num += range.getValue() - range.getKey();
+            }
+            return num;
+        }
+
+        /**
+         * @return number of features that have been committed without gaps
+         */
+        long getContiguous() {
+            Long end = ranges.get( 0L );
+            return end == null ? 0 : end;
+        }
+
+        long getFirst() {
+            return ranges.isEmpty() ? -1 : ranges.firstKey();
+        }
+
+        long getLast() {
+            return ranges.isEmpty() ? -1 : ranges.lastEntry().getValue() - 1;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            for ( Entry<Long, Long> range : ranges.entrySet() ) {
+                sb.append( range.getKey() ).append( '-' ).append( range.getValue() ).append( '\n' );
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * Keeps track of the committed chunks, prints progress information and maintains the checkpoint file.
+     */
+    private static class ChunkProgress {
+
+        private final long startTime = System.currentTimeMillis();
+
+        private final long datasetSize;
+
+        private final File checkpointFile;
+
+        // key: chunk index, value: feature indexes of the chunk
+        private final Map<Integer, FeatureRanges> pendingChunks = new HashMap<Integer, FeatureRanges>();
+
+        // committed features, including those of previous runs
+        private final FeatureRanges committed;
+
+        private long committedFeatures;
+
+        private long unresolvedReferences;
+
+        private volatile long bytesRead;
+
+        private volatile boolean failed;
+
+        ChunkProgress( FeatureRanges committed, long datasetSize, File checkpointFile ) {
+            this.committed = committed;
+            this.datasetSize = datasetSize;
+            this.checkpointFile = checkpointFile;
+        }
+
+        void setBytesRead( long bytesRead ) {
+            this.bytesRead = bytesRead;
+        }
+
+        boolean isFailed() {
+            return failed;
+        }
+
+        synchronized void addUnresolvedReferences( int num ) {
+            unresolvedReferences += num;
+        }
+
+        synchronized void chunkStarted( int chunkIdx, FeatureRanges chunkRanges ) {
+            pendingChunks.put( chunkIdx, chunkRanges );
+        }
+
+        synchronized void chunkCommitted( int chunkIdx ) {
+            FeatureRanges chunk = pendingChunks.remove( chunkIdx );
+            committedFeatures += chunk.getNumFeatures();
+            // out of order commits are recorded as well, so a restart never inserts them again
+            committed.addAll( chunk );
+            if ( checkpointFile != null ) {
+                try {
+                    writeCheckpoint();
+                } catch ( IOException e ) {
+                    System.err.println( "Error writing checkpoint file: " + e.getMessage() );
+                }
+            }
+
+            double seconds = Math.max( 1, System.currentTimeMillis() - startTime ) / 1000.0;
+            long throughput = Math.round( committedFeatures / seconds );
+            String eta = "n/a";
+            long read = bytesRead;
+            if ( read > 0 && datasetSize > read ) {
+                eta = formatDuration( Math.round( seconds * ( datasetSize - read ) / read ) );
+            }
+            System.out.println( "- Committed " + committedFeatures + " features (checkpoint: "
+                                + committed.getContiguous() + ", " + throughput + " features/s, ETA: " + eta + ")" );
+        }
+
+        private void writeCheckpoint()
+                                throws IOException {
+            // write to temporary file first, so an interruption never leaves a corrupt checkpoint
+            File tmpFile = new File( checkpointFile.getPath() + ".tmp" );
+            FileWriter writer = new FileWriter( tmpFile );
+            try {
+                writer.write( committed.toString() );
+            } finally {
+                writer.close();
+            }
+            if ( !tmpFile.renameTo( checkpointFile ) ) {
+                checkpointFile.delete();
+                if ( !tmpFile.renameTo( checkpointFile ) ) {
+                    throw new IOException( "Unable to write checkpoint file '" + checkpointFile + "'." );
+                }
+            }
+        }
+
+        synchronized void chunkFailed( int chunkIdx, Throwable t ) {
+            failed = true;
+            FeatureRanges chunk = pendingChunks.remove( chunkIdx );
+            System.err.println( "Error inserting features " + chunk.getFirst() + " to " + chunk.getLast() + ": "
+                                + t.getMessage() );
+            t.printStackTrace();
+        }
+
+        synchronized void printSummary() {
+            double seconds = ( System.currentTimeMillis() - startTime ) / 1000.0;
+            if ( failed ) {
+                System.out.println( "\n- Insert failed. " + committedFeatures + " features have been committed." );
+                if ( checkpointFile != null ) {
+                    System.out.println( "- Restart with the same checkpoint file to skip the committed features." );
+                }
+            } else {
+                System.out.println( "\n- Insert succeeded (" + committedFeatures + " features in "
+                                    + formatDuration( Math.round( seconds ) ) + ")." );
+            }
+            if ( unresolvedReferences > 0 ) {
+                System.out.println( "- " + unresolvedReferences + " references to features of other chunks could not"
+                                    + " be resolved. Increase the chunk size to keep referencing features together." );
+            }
+        }
+
+        private String formatDuration( long seconds ) {
+            return String.format( "%d:%02d:%02d", seconds / 3600, ( seconds / 60 ) % 60, seconds % 60 );
+        }
+    }
+
     /**
      * @param args
      * @throws FeatureStoreException
@@ -191,7 +582,17 @@ public class FeatureStoreLoader {
 
             switch ( action ) {
             case insert:
-                insert( fs, inputFileName, format, idGenMode );
+                if ( cmdline.hasOption( OPT_CHUNK_SIZE ) ) {
+                    int chunkSize = Integer.parseInt( cmdline.getOptionValue( OPT_CHUNK_SIZE ) );
+                    int threads = Integer.parseInt( cmdline.getOptionValue( OPT_THREADS, "1" ) );
+                    File checkpointFile = null;
+                    if ( cmdline.hasOption( OPT_CHECKPOINT_FILE ) ) {
+                        checkpointFile = new File( cmdline.getOptionValue( OPT_CHECKPOINT_FILE ) );
+                    }
+                    insertStreaming( fs, inputFileName, format, idGenMode, chunkSize, threads, checkpointFile );
+                } else {
+                    insert( fs, inputFileName, format, idGenMode );
+                }
                 break;
             case stats:
                 System.out.println( "TODO: Stats..." );
@@ -200,6 +601,10 @@ public class FeatureStoreLoader {
         } catch ( ParseException exp ) {
             System.err.println( Messages.getMessage( "TOOL_COMMANDLINE_ERROR", exp.getMessage() ) );
             // printHelp( options );
+        } catch ( NumberFormatException e ) {
+            System.err.println( Messages.getMessage( "TOOL_COMMANDLINE_ERROR", e.getMessage() ) );
+        } catch ( InterruptedException e ) {
+            System.err.println( "Interrupted: " + e.getMessage() );
         }
     }
 
@@ -245,6 +650,17 @@ public class FeatureStoreLoader {
         opt.setRequired( true );
         opts.addOption( opt );
 
+        opt = new Option( OPT_CHUNK_SIZE, true,
+                          "if specified, features are streamed and committed in chunks of this number of features" );
+        opts.addOption( opt );
+
+        opt = new Option( OPT_THREADS, true, "number of parallel insert transactions (streaming mode), default: 1" );
+        opts.addOption( opt );
+
+        opt = new Option( OPT_CHECKPOINT_FILE, true,
+                          "file for storing the ranges of committed features, used for resuming (streaming mode)" );
+        opts.addOption( opt );
+
         CommandUtils.addDefaultOptions( opts );
         return opts;
     }
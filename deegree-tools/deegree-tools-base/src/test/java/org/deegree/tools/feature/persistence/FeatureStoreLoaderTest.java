@@ -0,0 +1,224 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2013 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.tools.feature.persistence;
+
+import static org.deegree.gml.GMLVersion.GML_32;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+import org.deegree.feature.Feature;
+import org.deegree.gml.reference.FeatureReference;
+import org.deegree.gml.reference.GmlDocumentIdContext;
+import org.deegree.tools.feature.persistence.FeatureStoreLoader.FeatureRanges;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for the chunk and checkpoint handling of {@link FeatureStoreLoader}.
+ * 
+ * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class FeatureStoreLoaderTest {
+
+    private File checkpointFile;
+
+    @Before
+    public void setUp()
+                            throws IOException {
+        checkpointFile = File.createTempFile( "checkpoint", ".txt" );
+        checkpointFile.delete();
+    }
+
+    @After
+    public void tearDown() {
+        checkpointFile.delete();
+    }
+
+    @Test
+    public void testRangesMerged() {
+        FeatureRanges ranges = new FeatureRanges();
+        ranges.add( 10, 20 );
+        ranges.add( 30, 40 );
+        assertEquals( "10-20\n30-40\n", ranges.toString() );
+        // adjacent
+        ranges.add( 20, 25 );
+        assertEquals( "10-25\n30-40\n", ranges.toString() );
+        // overlapping both
+        ranges.add( 22, 35 );
+        assertEquals( "10-40\n", ranges.toString() );
+        // contained
+        ranges.add( 12, 18 );
+        assertEquals( "10-40\n", ranges.toString() );
+        // spanning
+        ranges.add( 50, 60 );
+        ranges.add( 0, 100 );
+        assertEquals( "0-100\n", ranges.toString() );
+    }
+
+    @Test
+    public void testEmptyRangeIgnored() {
+        FeatureRanges ranges = new FeatureRanges();
+        ranges.add( 5, 5 );
+        ranges.add( 7, 6 );
+        assertEquals( 0, ranges.getNumFeatures() );
+        assertEquals( -1, ranges.getFirst() );
+        assertEquals( -1, ranges.getLast() );
+    }
+
+    @Test
+    public void testContains() {
+        FeatureRanges ranges = new FeatureRanges();
+        ranges.add( 10, 20 );
+        ranges.add( 30, 31 );
+        assertFalse( ranges.contains( 9 ) );
+        assertTrue( ranges.contains( 10 ) );
+        assertTrue( ranges.contains( 19 ) );
+        assertFalse( ranges.contains( 20 ) );
+        assertTrue( ranges.contains( 30 ) );
+        assertFalse( ranges.contains( 31 ) );
+    }
+
+    @Test
+    public void testCounts() {
+        FeatureRanges ranges = new FeatureRanges();
+        ranges.add( 10, 20 );
+        assertEquals( 0, ranges.getContiguous() );
+        ranges.add( 0, 5 );
+        ranges.add( 30, 35 );
+        assertEquals( 20, ranges.getNumFeatures() );
+        assertEquals( 5, ranges.getContiguous() );
+        assertEquals( 0, ranges.getFirst() );
+        assertEquals( 34, ranges.getLast() );
+        ranges.add( 5, 10 );
+        assertEquals( 20, ranges.getContiguous() );
+    }
+
+    @Test
+    public void testAddAll() {
+        FeatureRanges ranges = new FeatureRanges();
+        ranges.add( 0, 10 );
+        FeatureRanges other = new FeatureRanges();
+        other.add( 10, 20 );
+        other.add( 40, 50 );
+        ranges.addAll( other );
+        assertEquals( "0-20\n40-50\n", ranges.toString() );
+    }
+
+    @Test
+    public void testReadMissingCheckpoint()
+                            throws IOException {
+        assertEquals( 0, FeatureStoreLoader.readCheckpoint( null ).getNumFeatures() );
+        assertEquals( 0, FeatureStoreLoader.readCheckpoint( checkpointFile ).getNumFeatures() );
+    }
+
+    @Test
+    public void testReadCheckpoint()
+                            throws IOException {
+        writeCheckpoint( "0-100\n\n  200-250 \n120-150\n" );
+        FeatureRanges ranges = FeatureStoreLoader.readCheckpoint( checkpointFile );
+        assertEquals( "0-100\n120-150\n200-250\n", ranges.toString() );
+        assertEquals( 180, ranges.getNumFeatures() );
+        assertEquals( 100, ranges.getContiguous() );
+    }
+
+    @Test
+    public void testReadCheckpointSingleNumber()
+                            throws IOException {
+        writeCheckpoint( "42\n" );
+        FeatureRanges ranges = FeatureStoreLoader.readCheckpoint( checkpointFile );
+        assertEquals( "0-42\n", ranges.toString() );
+    }
+
+    @Test
+    public void testCheckpointRoundTrip()
+                            throws IOException {
+        FeatureRanges ranges = new FeatureRanges();
+        ranges.add( 0, 1000 );
+        ranges.add( 2000, 3000 );
+        writeCheckpoint( ranges.toString() );
+        assertEquals( ranges.toString(), FeatureStoreLoader.readCheckpoint( checkpointFile ).toString() );
+    }
+
+    @Test
+    public void testReadInvalidCheckpoint()
+                            throws IOException {
+        writeCheckpoint( "0-100\n100-abc\n" );
+        try {
+            FeatureStoreLoader.readCheckpoint( checkpointFile );
+            fail( "Expected exception." );
+        } catch ( IOException e ) {
+            assertTrue( e.getMessage().contains( "100-abc" ) );
+        }
+    }
+
+    @Test
+    public void testUnresolvedReferencesCounted() {
+        GmlDocumentIdContext idContext = new GmlDocumentIdContext( GML_32 );
+        Feature feature = mock( Feature.class );
+        when( feature.getId() ).thenReturn( "f1" );
+        idContext.addObject( feature );
+        FeatureReference resolvable = new FeatureReference( idContext, "#f1", null );
+        idContext.addReference( resolvable );
+        idContext.addReference( new FeatureReference( idContext, "#f2", null ) );
+        idContext.addReference( new FeatureReference( idContext, "#f3", null ) );
+
+        assertEquals( 2, FeatureStoreLoader.resolveLocalReferences( idContext ) );
+        assertTrue( resolvable.isResolved() );
+    }
+
+    private void writeCheckpoint( String content )
+                            throws IOException {
+        FileWriter writer = new FileWriter( checkpointFile );
+        try {
+            writer.write( content );
+        } finally {
+            writer.close();
+        }
+    }
+
+}